@@ -20,8 +20,11 @@
  */
 package org.xwiki.eclipse.core;
 
+import java.lang.management.ManagementFactory;
 import java.security.cert.CertificateException;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -32,6 +35,8 @@
 
 import org.eclipse.core.runtime.Plugin;
 import org.osgi.framework.BundleContext;
+import org.xwiki.eclipse.core.metrics.MetricsDynamicMBean;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -101,6 +106,17 @@ public boolean verify(String arg0, SSLSession arg1)
         sc.init(null, trustAllCertificates, new java.security.SecureRandom());
         HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
         HttpsURLConnection.setDefaultHostnameVerifier(hv);
+
+        /* Expose the metrics through JMX, e.g., to jconsole */
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MetricsDynamicMBean.OBJECT_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(new MetricsDynamicMBean(MetricsRegistry.getDefault()), name);
+            }
+        } catch (Exception e) {
+            CoreLog.logError("Unable to register the metrics MBean", e);
+        }
     }
 
     /*
@@ -109,6 +125,16 @@ public boolean verify(String arg0, SSLSession arg1)
      */
     public void stop(BundleContext context) throws Exception
     {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MetricsDynamicMBean.OBJECT_NAME);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            CoreLog.logError("Unable to unregister the metrics MBean", e);
+        }
+
         plugin = null;
         super.stop(context);
     }
@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A metric counting events or quantities, e.g., bytes transferred.
+ * 
+ * @version $Id$
+ */
+public class Counter implements IMetric
+{
+    private final String name;
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name)
+    {
+        this.name = name;
+    }
+
+    public void increment()
+    {
+        count.incrementAndGet();
+    }
+
+    public void add(long value)
+    {
+        count.addAndGet(value);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Map<String, Number> getValues()
+    {
+        return Collections.<String, Number> singletonMap("count", count.get()); //$NON-NLS-1$
+    }
+
+    public void reset()
+    {
+        count.set(0);
+    }
+}
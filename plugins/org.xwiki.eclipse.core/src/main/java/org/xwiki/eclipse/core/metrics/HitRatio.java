@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A metric recording the ratio of the lookups of a cache that are served from the cache.
+ * 
+ * @version $Id$
+ */
+public class HitRatio implements IMetric
+{
+    private final String name;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    HitRatio(String name)
+    {
+        this.name = name;
+    }
+
+    public void hit()
+    {
+        hits.incrementAndGet();
+    }
+
+    public void miss()
+    {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * @param hit true to record a hit, false to record a miss.
+     */
+    public void record(boolean hit)
+    {
+        if (hit) {
+            hit();
+        } else {
+            miss();
+        }
+    }
+
+    /**
+     * @return The ratio of hits, between 0 and 1, or 0 if nothing has been recorded.
+     */
+    public double getRatio()
+    {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Map<String, Number> getValues()
+    {
+        Map<String, Number> values = new LinkedHashMap<String, Number>();
+        values.put("hits", hits.get()); //$NON-NLS-1$
+        values.put("misses", misses.get()); //$NON-NLS-1$
+        values.put("ratio", getRatio()); //$NON-NLS-1$
+
+        return values;
+    }
+
+    public void reset()
+    {
+        hits.set(0);
+        misses.set(0);
+    }
+}
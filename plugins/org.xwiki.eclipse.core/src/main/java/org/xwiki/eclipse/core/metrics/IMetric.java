@@ -0,0 +1,45 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.util.Map;
+
+/**
+ * A metric recorded by the {@link MetricsRegistry}.
+ * 
+ * @version $Id$
+ */
+public interface IMetric
+{
+    /**
+     * @return The name of the metric, e.g., <code>rest.GET /wikis/{wiki}/spaces</code>.
+     */
+    String getName();
+
+    /**
+     * @return The current values of the metric, by value name (e.g., count, mean), in display order.
+     */
+    Map<String, Number> getValues();
+
+    /**
+     * Reset the metric to its initial state.
+     */
+    void reset();
+}
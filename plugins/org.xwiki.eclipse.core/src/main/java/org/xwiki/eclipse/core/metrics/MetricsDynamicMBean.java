@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes the metrics of a {@link MetricsRegistry} through JMX. Each value of each metric is a read-only attribute
+ * named <code>&lt;metric name&gt;.&lt;value name&gt;</code>, e.g., <code>rest.GET /wikis.p90</code>. The metrics are
+ * created on first use, so the attributes are listed again each time the MBean info is requested. The
+ * <code>reset</code> and <code>dump</code> operations reset the metrics and write their report to a file.
+ * 
+ * @version $Id$
+ */
+public class MetricsDynamicMBean implements DynamicMBean
+{
+    /**
+     * The object name the MBean is registered with.
+     */
+    public static final String OBJECT_NAME = "org.xwiki.eclipse:type=Metrics"; //$NON-NLS-1$
+
+    private static final String RESET = "reset"; //$NON-NLS-1$
+
+    private static final String DUMP = "dump"; //$NON-NLS-1$
+
+    private final MetricsRegistry registry;
+
+    public MetricsDynamicMBean(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        int separator = attribute.lastIndexOf('.');
+        if (separator > 0) {
+            IMetric metric = registry.getMetric(attribute.substring(0, separator));
+            if (metric != null) {
+                Number value = metric.getValues().get(attribute.substring(separator + 1));
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList result = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                result.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Skip it, as required by the specification.
+            }
+        }
+
+        return result;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(String.format("%s is read-only", attribute.getName()));
+    }
+
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws MBeanException, ReflectionException
+    {
+        if (RESET.equals(actionName)) {
+            registry.reset();
+
+            return null;
+        }
+
+        if (DUMP.equals(actionName) && params != null && params.length == 1 && params[0] instanceof String) {
+            try {
+                registry.dump(new File((String) params[0]));
+            } catch (Exception e) {
+                throw new MBeanException(e);
+            }
+
+            return null;
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    public MBeanInfo getMBeanInfo()
+    {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (IMetric metric : registry.getMetrics()) {
+            for (Map.Entry<String, Number> value : metric.getValues().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(String.format("%s.%s", metric.getName(), value.getKey()),
+                    value.getValue().getClass().getName(), metric.getName(), true, false, false));
+            }
+        }
+
+        MBeanOperationInfo[] operations =
+            new MBeanOperationInfo[] {
+            new MBeanOperationInfo(RESET, "Reset all the metrics", new MBeanParameterInfo[0], "void",
+                MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo(DUMP, "Write the report of all the metrics to a file",
+                new MBeanParameterInfo[] {new MBeanParameterInfo("path", String.class.getName(), "The file path")},
+                "void", MBeanOperationInfo.ACTION)};
+
+        return new MBeanInfo(getClass().getName(), "XWiki Eclipse metrics",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, operations, null);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A singleton recording the metrics of the plugins: REST latencies and bytes transferred, local storage timings, cache
+ * hit ratios, event dispatch times, etc. Metrics are created on first use and identified by their name; by convention
+ * the name starts with the area the metric belongs to (<code>rest.</code>, <code>storage.</code>,
+ * <code>cache.</code>, <code>notification.</code>).
+ * <p>
+ * Recording is lock-free and cheap enough to be always on. The metrics can be read through {@link #getMetrics()},
+ * through JMX (see {@link MetricsDynamicMBean}) and dumped to a file.
+ * 
+ * @version $Id$
+ */
+public class MetricsRegistry
+{
+    private static MetricsRegistry sharedInstance;
+
+    private final ConcurrentMap<String, IMetric> metrics = new ConcurrentHashMap<String, IMetric>();
+
+    private volatile long resetTime = System.currentTimeMillis();
+
+    private MetricsRegistry()
+    {
+    }
+
+    /**
+     * @return The shared instance.
+     */
+    public synchronized static MetricsRegistry getDefault()
+    {
+        if (sharedInstance == null) {
+            sharedInstance = new MetricsRegistry();
+        }
+
+        return sharedInstance;
+    }
+
+    public Timer getTimer(String name)
+    {
+        IMetric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new Timer(name));
+            metric = metrics.get(name);
+        }
+
+        return (Timer) metric;
+    }
+
+    public Counter getCounter(String name)
+    {
+        IMetric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new Counter(name));
+            metric = metrics.get(name);
+        }
+
+        return (Counter) metric;
+    }
+
+    public HitRatio getHitRatio(String name)
+    {
+        IMetric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new HitRatio(name));
+            metric = metrics.get(name);
+        }
+
+        return (HitRatio) metric;
+    }
+
+    /**
+     * @param name The name of a metric.
+     * @return The metric with the given name, or null if it has not been recorded.
+     */
+    public IMetric getMetric(String name)
+    {
+        return metrics.get(name);
+    }
+
+    /**
+     * @return All the metrics, sorted by name.
+     */
+    public List<IMetric> getMetrics()
+    {
+        List<IMetric> result = new ArrayList<IMetric>(metrics.values());
+        Collections.sort(result, new Comparator<IMetric>()
+        {
+            public int compare(IMetric metric1, IMetric metric2)
+            {
+                return metric1.getName().compareTo(metric2.getName());
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Reset all the metrics.
+     */
+    public void reset()
+    {
+        for (IMetric metric : metrics.values()) {
+            metric.reset();
+        }
+        resetTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return A plain text report of all the metrics, one metric per line. Durations are in milliseconds.
+     */
+    public String getReport()
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"); //$NON-NLS-1$
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("XWiki Eclipse statistics from %s to %s (durations in ms)\n",
+            dateFormat.format(new Date(resetTime)), dateFormat.format(new Date())));
+
+        for (IMetric metric : getMetrics()) {
+            report.append(metric.getName());
+            for (Map.Entry<String, Number> value : metric.getValues().entrySet()) {
+                report.append(' ').append(value.getKey()).append('=').append(format(value.getValue()));
+            }
+            report.append('\n');
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Write the report of all the metrics to a file.
+     * 
+     * @param file The file, overwritten if it exists.
+     * @throws IOException If the file cannot be written.
+     * @see #getReport()
+     */
+    public void dump(File file) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8"); //$NON-NLS-1$
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param value A value of a metric.
+     * @return The value formatted for display: integers as they are, decimals with 3 digits.
+     */
+    public static String format(Number value)
+    {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format("%.3f", value.doubleValue()); //$NON-NLS-1$
+        }
+
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A metric recording the distribution of the duration of an operation in a histogram. The buckets grow exponentially,
+ * from 1 microsecond to about a minute, so recording is lock-free and constant time and the percentiles are accurate
+ * within a factor of 2.
+ * 
+ * @version $Id$
+ */
+public class Timer implements IMetric
+{
+    /**
+     * The number of buckets: bucket <code>i</code> holds the durations shorter than <code>2^i</code> microseconds, the
+     * last one holds all the longer durations.
+     */
+    private static final int BUCKET_COUNT = 27;
+
+    private final String name;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    Timer(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos The duration of an operation, in nanoseconds.
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0) {
+            return;
+        }
+
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since the given start time.
+     * 
+     * @param start The start time of the operation, as returned by {@link System#nanoTime()}.
+     */
+    public void recordSince(long start)
+    {
+        record(System.nanoTime() - start);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return The mean duration, in milliseconds.
+     */
+    public double getMean()
+    {
+        long n = count.get();
+
+        return n > 0 ? total.get() / 1e6 / n : 0;
+    }
+
+    /**
+     * @return The longest duration, in milliseconds.
+     */
+    public double getMax()
+    {
+        return max.get() / 1e6;
+    }
+
+    /**
+     * @param percentile A percentile, between 0 and 100.
+     * @return An upper bound of the duration at the given percentile, in milliseconds.
+     */
+    public double getPercentile(double percentile)
+    {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                /* The upper bound of the bucket, but never more than the longest duration recorded */
+                return Math.min((1L << i) / 1e3, getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Map<String, Number> getValues()
+    {
+        Map<String, Number> values = new LinkedHashMap<String, Number>();
+        values.put("count", getCount()); //$NON-NLS-1$
+        values.put("mean", getMean()); //$NON-NLS-1$
+        values.put("p50", getPercentile(50)); //$NON-NLS-1$
+        values.put("p90", getPercentile(90)); //$NON-NLS-1$
+        values.put("p99", getPercentile(99)); //$NON-NLS-1$
+        values.put("max", getMax()); //$NON-NLS-1$
+
+        return values;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
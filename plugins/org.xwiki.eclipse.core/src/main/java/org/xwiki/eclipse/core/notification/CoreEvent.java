@@ -38,8 +38,11 @@
         DATA_MANAGER_UNREGISTERED,
         DATA_MANAGER_CONNECTED,
         DATA_MANAGER_DISCONNECTED,
+        DATA_MANAGER_SYNCHRONIZED,
         PAGE_STORED,
+        PAGES_STORED,
         OBJECT_STORED,
+        OBJECTS_STORED,
         PAGE_REMOVED,
         OBJECT_REMOVED,
         PAGE_SELECTED,
@@ -20,14 +20,30 @@
  */
 package org.xwiki.eclipse.core.notification;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.runtime.Assert;
-import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
 
 /**
  * A singleton implementing a notification manager. XWiki Core classes should use this singleton for publishing events.
+ * <p>
+ * Listeners are either synchronous, and are notified in the thread that fires the event, or asynchronous, and are
+ * notified in order by a background job, so that the thread firing the event never waits for them. Consecutive
+ * {@link CoreEvent.Type#PAGE_STORED} (resp. {@link CoreEvent.Type#OBJECT_STORED}) events from the same source that are
+ * waiting to be delivered to asynchronous listeners are coalesced into a single {@link CoreEvent.Type#PAGES_STORED}
+ * (resp. {@link CoreEvent.Type#OBJECTS_STORED}) event whose data is the list of the stored elements.
  * 
  * @version $Id$
  */
@@ -35,43 +51,41 @@
 {
     private static NotificationManager sharedInstance;
 
-    private ListenerList listenerList;
+    /**
+     * The synchronous listeners, indexed by the event types they are interested in. The lists are copied on write, so
+     * that events can be fired while listeners are added or removed.
+     */
+    private final Map<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>> synchronousListeners;
 
     /**
-     * A private class that contains information about a listener and the even type it is interested in.
+     * The asynchronous listeners, indexed by the event types they are interested in.
      */
-    static private class ListenerEntry
-    {
-        private Set<CoreEvent.Type> eventTypes;
+    private final Map<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>> asynchronousListeners;
 
-        private ICoreEventListener listener;
+    /**
+     * The events waiting to be delivered to the asynchronous listeners.
+     */
+    private final Queue<CoreEvent> eventQueue;
 
-        public ListenerEntry(ICoreEventListener listener, CoreEvent.Type[] eventTypes)
-        {
-            Assert.isNotNull(listener);
-            this.listener = listener;
+    private final Job dispatchJob;
 
-            Assert.isNotNull(eventTypes);
-            this.eventTypes = new HashSet<CoreEvent.Type>();
-            for (CoreEvent.Type type : eventTypes) {
-                this.eventTypes.add(type);
-            }
-        }
-
-        public Set<CoreEvent.Type> getEventTypes()
-        {
-            return new HashSet<CoreEvent.Type>(eventTypes);
-        }
+    private NotificationManager()
+    {
+        synchronousListeners = createListenerIndex();
+        asynchronousListeners = createListenerIndex();
+        eventQueue = new ConcurrentLinkedQueue<CoreEvent>();
 
-        public ICoreEventListener getListener()
+        dispatchJob = new Job("Dispatching XWiki Eclipse events")
         {
-            return listener;
-        }
-    }
+            @Override
+            protected IStatus run(IProgressMonitor monitor)
+            {
+                dispatchQueuedEvents();
 
-    private NotificationManager()
-    {
-        listenerList = new ListenerList();
+                return Status.OK_STATUS;
+            }
+        };
+        dispatchJob.setSystem(true);
     }
 
     /**
@@ -87,7 +101,7 @@ public synchronized static NotificationManager getDefault()
     }
 
     /**
-     * Add a listener to core events.
+     * Add a synchronous listener to core events.
      * 
      * @param listener The listener.
      * @param eventTypes An array containing the event types the listener is interested in.
@@ -95,7 +109,30 @@ public synchronized static NotificationManager getDefault()
      */
     public void addListener(ICoreEventListener listener, CoreEvent.Type[] eventTypes)
     {
-        listenerList.add(new ListenerEntry(listener, eventTypes));
+        addListener(listener, eventTypes, false);
+    }
+
+    /**
+     * Add a listener to core events.
+     * 
+     * @param listener The listener.
+     * @param eventTypes An array containing the event types the listener is interested in.
+     * @param asynchronous True if the listener must be notified in the background. An asynchronous listener interested
+     *            in {@link CoreEvent.Type#PAGE_STORED} (resp. {@link CoreEvent.Type#OBJECT_STORED}) events must also
+     *            handle {@link CoreEvent.Type#PAGES_STORED} (resp. {@link CoreEvent.Type#OBJECTS_STORED}) events, as
+     *            bursts are coalesced.
+     * @see CoreEvent.Type
+     */
+    public void addListener(ICoreEventListener listener, CoreEvent.Type[] eventTypes, boolean asynchronous)
+    {
+        Assert.isNotNull(listener);
+        Assert.isNotNull(eventTypes);
+
+        Map<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>> listeners =
+            asynchronous ? asynchronousListeners : synchronousListeners;
+        for (CoreEvent.Type type : eventTypes) {
+            listeners.get(type).addIfAbsent(listener);
+        }
     }
 
     /**
@@ -105,13 +142,12 @@ public void addListener(ICoreEventListener listener, CoreEvent.Type[] eventTypes
      */
     public void removeListener(ICoreEventListener listener)
     {
-        Object[] objects = listenerList.getListeners();
-        for (Object object : objects) {
-            ListenerEntry listenerEntry = (ListenerEntry) object;
-            if (listenerEntry.getListener().equals(listener)) {
-                listenerList.remove(listenerEntry);
-                break;
-            }
+        for (List<ICoreEventListener> listenerList : synchronousListeners.values()) {
+            listenerList.remove(listener);
+        }
+
+        for (List<ICoreEventListener> listenerList : asynchronousListeners.values()) {
+            listenerList.remove(listener);
         }
     }
 
@@ -122,15 +158,91 @@ public void removeListener(ICoreEventListener listener)
      * @param source The object that generated the event.
      * @param data Additional data associated to the event.
      */
-    public synchronized void fireCoreEvent(CoreEvent.Type type, Object source, Object data)
+    public void fireCoreEvent(CoreEvent.Type type, Object source, Object data)
     {
         CoreEvent coreEvent = new CoreEvent(type, source, data);
-        Object[] objects = listenerList.getListeners();
-        for (Object object : objects) {
-            ListenerEntry listenerEntry = (ListenerEntry) object;
-            if (listenerEntry.getEventTypes().contains(type)) {
-                listenerEntry.getListener().handleCoreEvent(coreEvent);
+
+        if (!asynchronousListeners.get(type).isEmpty()) {
+            eventQueue.add(coreEvent);
+            dispatchJob.schedule();
+        }
+
+        List<ICoreEventListener> listeners = synchronousListeners.get(type);
+        if (!listeners.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                for (ICoreEventListener listener : listeners) {
+                    listener.handleCoreEvent(coreEvent);
+                }
+            } finally {
+                MetricsRegistry.getDefault().getTimer("notification.sync." + type).recordSince(start); //$NON-NLS-1$
             }
         }
     }
+
+    /**
+     * Deliver the queued events to the asynchronous listeners, coalescing consecutive stored events from the same
+     * source.
+     */
+    private void dispatchQueuedEvents()
+    {
+        CoreEvent event = eventQueue.poll();
+        while (event != null) {
+            CoreEvent.Type batchType = getBatchType(event.getType());
+
+            List<Object> batch = null;
+            CoreEvent next = eventQueue.poll();
+            while (batchType != null && next != null && next.getType() == event.getType()
+                && next.getSource() == event.getSource()) {
+                if (batch == null) {
+                    batch = new ArrayList<Object>();
+                    batch.add(event.getData());
+                }
+                batch.add(next.getData());
+                next = eventQueue.poll();
+            }
+
+            /* The listeners are the ones interested in the original events */
+            List<ICoreEventListener> listeners = asynchronousListeners.get(event.getType());
+            CoreEvent coreEvent = batch == null ? event : new CoreEvent(batchType, event.getSource(), batch);
+            long start = System.nanoTime();
+            for (ICoreEventListener listener : listeners) {
+                try {
+                    listener.handleCoreEvent(coreEvent);
+                } catch (Exception e) {
+                    CoreLog.logError(String.format("Error handling %s event", coreEvent.getType()), e);
+                }
+            }
+            MetricsRegistry.getDefault().getTimer("notification.async." + coreEvent.getType()) //$NON-NLS-1$
+                .recordSince(start);
+
+            event = next;
+        }
+    }
+
+    /**
+     * @return The type of the event coalescing several events of the given type, or null if they are not coalesced.
+     */
+    private static CoreEvent.Type getBatchType(CoreEvent.Type type)
+    {
+        switch (type) {
+            case PAGE_STORED:
+                return CoreEvent.Type.PAGES_STORED;
+            case OBJECT_STORED:
+                return CoreEvent.Type.OBJECTS_STORED;
+            default:
+                return null;
+        }
+    }
+
+    private static Map<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>> createListenerIndex()
+    {
+        Map<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>> index =
+            new EnumMap<CoreEvent.Type, CopyOnWriteArrayList<ICoreEventListener>>(CoreEvent.Type.class);
+        for (CoreEvent.Type type : CoreEvent.Type.values()) {
+            index.put(type, new CopyOnWriteArrayList<ICoreEventListener>());
+        }
+
+        return index;
+    }
 }
@@ -1,18 +1,41 @@
 package org.xwiki.eclipse.storage;
 
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
 import org.xwiki.eclipse.core.notification.CoreEvent;
 import org.xwiki.eclipse.core.notification.NotificationManager;
 import org.xwiki.eclipse.model.ModelObject;
@@ -52,6 +75,32 @@
 
     protected static final String OBJECTS_STATUS = "objectsStatus.index"; //$NON-NLS-1$
 
+    /**
+     * The default number of pages that are retrieved concurrently by {@link #fetchPages}.
+     */
+    public static final int DEFAULT_FETCH_PARALLELISM = 4;
+
+    /**
+     * The default number of concurrent requests issued by {@link #getAllPageIds}.
+     */
+    public static final int DEFAULT_CRAWL_PARALLELISM = 4;
+
+    /**
+     * The default number of attachments that are transferred concurrently by {@link #downloadAttachments},
+     * {@link #uploadAttachments} and {@link #updateAttachments}.
+     */
+    public static final int DEFAULT_TRANSFER_PARALLELISM = 2;
+
+    /**
+     * The number of pages and objects that are synchronized concurrently when connecting.
+     */
+    public static final int DEFAULT_SYNCHRONIZATION_PARALLELISM = 4;
+
+    /**
+     * The amount of work reported for each attachment by the methods transferring several attachments.
+     */
+    private static final int TRANSFER_WORK = 1000;
+
     /**
      * The project associated to this data manager.
      */
@@ -75,9 +124,9 @@
     public static final QualifiedName ENDPOINT = new QualifiedName("xwiki.eclipse", "endpoint"); //$NON-NLS-1$ //$NON-NLS-2$
 
     /**
-     * The remote XWiki
+     * The remote XWiki. Operations that use it several times, possibly while disconnecting, must read it once.
      */
-    private IRemoteXWikiDataStorage remoteXWikiDataStorage;
+    private volatile IRemoteXWikiDataStorage remoteXWikiDataStorage;
 
     /**
      * A local XWiki data storage for caching XWiki elements.
@@ -88,6 +137,21 @@
 
     private LocalXWikiDataStorage conflictingPagesDataStorage;
 
+    /**
+     * The extended ids of the pages and objects being synchronized. A page or an object is synchronized by only one
+     * thread at a time, so that the background synchronization and a concurrent store don't race to the remote XWiki.
+     */
+    private final Set<String> synchronizingIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * The extended ids of the pages and objects that have been stored while being synchronized, and that must be
+     * synchronized again.
+     */
+    private final Set<String> pendingSynchronizationIds =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private Job synchronizationJob;
+
     /**
      * Constructor.
      * 
@@ -105,7 +169,7 @@ public DataManager(IProject project) throws CoreException
         /*
          * initialize LocalDataStorage
          */
-        localXWikiDataStorage = new LocalXWikiDataStorage(project.getFolder(LOCAL_STORAGE_DIRECTORY));
+        localXWikiDataStorage = new LocalXWikiDataStorage(project.getFolder(LOCAL_STORAGE_DIRECTORY), true);
 
         lastRetrievedPagesDataStorage = new LocalXWikiDataStorage(project.getFolder(LAST_RETRIEVED_PAGE_DIRECTORY));
 
@@ -181,6 +245,58 @@ public boolean isConnected()
         return remoteXWikiDataStorage != null;
     }
 
+    /**
+     * Drop the server metadata (server information, wikis and spaces) cached by the current connection, so that it is
+     * retrieved again from the server.
+     */
+    public void refreshServerMetadata()
+    {
+        IRemoteXWikiDataStorage remoteStorage = remoteXWikiDataStorage;
+        if (remoteStorage != null) {
+            remoteStorage.clearMetadataCache();
+        }
+    }
+
+    /**
+     * Search the pages cached in the local storage by their title, content and object property values. This doesn't
+     * need a connection.
+     *
+     * @param query The query: the pages containing all its words are returned, the last word being matched as a
+     *            prefix.
+     * @param maxResults The maximum number of results.
+     * @return The summaries of the matching pages, the pages matching the query in their title first.
+     * @throws XWikiEclipseStorageException
+     */
+    public List<XWikiEclipsePageSummary> searchPages(String query, int maxResults)
+        throws XWikiEclipseStorageException
+    {
+        List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
+        for (XWikiEclipsePageSummary pageSummary : localXWikiDataStorage.searchPages(query, maxResults)) {
+            XWikiEclipsePageSummary p = new XWikiEclipsePageSummary(this);
+            p.setLanguage(pageSummary.getLanguage());
+            p.setUrl(pageSummary.getUrl());
+            p.setName(pageSummary.getName());
+            p.setWiki(pageSummary.getWiki());
+            p.setSpace(pageSummary.getSpace());
+            p.setId(pageSummary.getId());
+            p.setParentId(pageSummary.getParentId());
+            p.setTitle(pageSummary.getTitle());
+            p.setSyntax(pageSummary.getSyntax());
+            result.add(p);
+        }
+
+        return result;
+    }
+
+    /**
+     * Rebuild the index used by {@link #searchPages(String, int)} in the background, from the pages and objects cached
+     * in the local storage.
+     */
+    public void rebuildSearchIndex()
+    {
+        localXWikiDataStorage.rebuildFullTextIndex();
+    }
+
     public void connect() throws CoreException, XWikiEclipseStorageException
     {
         if (isConnected()) {
@@ -189,75 +305,304 @@ public void connect() throws CoreException, XWikiEclipseStorageException
 
         remoteXWikiDataStorage = new RestRemoteXWikiDataStorage(this, getEndpoint(), getUserName(), getPassword());
 
-        /* When connected synchronize all the pages and objects */
-        synchronizePages(new HashSet<String>(pageToStatusMap.keySet()));
-        synchronizeObjects(new HashSet<String>(objectToStatusMap.keySet()));
-
         NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.DATA_MANAGER_CONNECTED, this, null);
+
+        /* When connected synchronize all the pages and objects, in the background */
+        synchronizationJob = new Job(String.format("Synchronizing %s", getName()))
+        {
+            @Override
+            protected IStatus run(IProgressMonitor monitor)
+            {
+                SynchronizationSummary summary = synchronizeAll(DEFAULT_SYNCHRONIZATION_PARALLELISM, monitor);
+                NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.DATA_MANAGER_SYNCHRONIZED,
+                    DataManager.this, summary);
+
+                return summary.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+        };
+        synchronizationJob.schedule();
     }
 
-    private void synchronizeObjects(Set<String> objectIds) throws XWikiEclipseStorageException
+    /**
+     * Synchronize all the dirty pages and objects, with up to <code>parallelism</code> of them synchronized
+     * concurrently. A page or an object that cannot be synchronized is logged and left dirty, without affecting the
+     * others.
+     * 
+     * @param parallelism The maximum number of pages and objects synchronized concurrently.
+     * @param monitor The progress monitor, can be null.
+     * @return The outcome of the synchronization.
+     */
+    private SynchronizationSummary synchronizeAll(int parallelism, IProgressMonitor monitor)
     {
-        for (String objectId : objectIds) {
-            IdProcessor parser = new IdProcessor(objectId);
-            XWikiEclipseObject object =
-                localXWikiDataStorage.getObject(parser.getWiki(), parser.getSpace(), parser.getPage(),
-                    parser.getClassName(), parser.getNumber());
-            if (object != null) {
-                synchronize(object);
+        SynchronizationSummary summary = new SynchronizationSummary();
+
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
+        List<String> pageIds = new ArrayList<String>();
+        for (String pageId : pageToStatusMap.keySet()) {
+            if (DIRTY_STATUS.equals(pageToStatusMap.get(pageId))) {
+                pageIds.add(pageId);
+            }
+        }
+
+        List<String> objectIds = new ArrayList<String>();
+        for (String objectId : objectToStatusMap.keySet()) {
+            if (DIRTY_STATUS.equals(objectToStatusMap.get(objectId))) {
+                objectIds.add(objectId);
+            }
+        }
+
+        monitor.beginTask("Synchronizing", pageIds.size() + objectIds.size());
+
+        final AtomicBoolean canceled = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+            Map<Future<String>, String> futureToId = new HashMap<Future<String>, String>();
+
+            for (final String pageId : pageIds) {
+                Future<String> future = completionService.submit(new Callable<String>()
+                {
+                    public String call() throws Exception
+                    {
+                        /* A synchronization queued when the operation was canceled doesn't start */
+                        return canceled.get() ? DIRTY_STATUS : synchronizePage(pageId);
+                    }
+                });
+                futureToId.put(future, pageId);
+            }
+
+            for (final String objectId : objectIds) {
+                Future<String> future = completionService.submit(new Callable<String>()
+                {
+                    public String call() throws Exception
+                    {
+                        return canceled.get() ? DIRTY_STATUS : synchronizeObject(objectId);
+                    }
+                });
+                futureToId.put(future, objectId);
             }
+
+            int submitted = futureToId.size();
+            while (submitted > 0) {
+                if (monitor.isCanceled() || !isConnected()) {
+                    summary.setCanceled(true);
+                    return summary;
+                }
+
+                Future<String> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+
+                submitted--;
+                String id = futureToId.get(future);
+                try {
+                    String status = future.get();
+                    if (status == null) {
+                        summary.addSynchronized(id);
+                    } else if (CONFLICTING_STATUS.equals(status)) {
+                        summary.addConflicting(id);
+                    }
+                    monitor.subTask(String.format("Synchronized %s", id));
+                } catch (ExecutionException e) {
+                    CoreLog.logError(String.format("Unable to synchronize %s", id), e.getCause());
+                    summary.addFailed(id);
+                }
+                monitor.worked(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.setCanceled(true);
+        } finally {
+            /*
+             * Don't interrupt the synchronizations in progress, as one stopped between its remote and local writes
+             * would leave its page or object dirty, but wait for them so that the remote storage is not disposed
+             * under them.
+             */
+            canceled.set(true);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            monitor.done();
         }
+
+        return summary;
     }
 
     /**
-     * @param hashSet
-     * @throws XWikiEclipseStorageException
-     * @throws CoreException
+     * @param pageId The extended id of a page.
+     * @return The status of the page after the synchronization, null if it is no longer dirty.
      */
-    private void synchronizePages(HashSet<String> pageIds) throws XWikiEclipseStorageException, CoreException
+    private String synchronizePage(String pageId) throws XWikiEclipseStorageException, CoreException
     {
-        for (String pageId : pageIds) {
-            IdProcessor parser = new IdProcessor(pageId);
-            XWikiEclipsePage page =
-                localXWikiDataStorage.getPage(parser.getWiki(), parser.getSpace(), parser.getPage(),
-                    parser.getLanguage());
-            if (page != null) {
-                synchronize(page);
-            }
+        IdProcessor parser = new IdProcessor(pageId);
+        XWikiEclipsePage page =
+            localXWikiDataStorage.getPage(parser.getWiki(), parser.getSpace(), parser.getPage(),
+                parser.getLanguage());
+        if (page != null) {
+            synchronize(page);
         }
 
+        return pageToStatusMap.get(pageId);
+    }
+
+    /**
+     * @param objectId The extended id of an object.
+     * @return The status of the object after the synchronization, null if it is no longer dirty.
+     */
+    private String synchronizeObject(String objectId) throws XWikiEclipseStorageException
+    {
+        IdProcessor parser = new IdProcessor(objectId);
+        XWikiEclipseObject object =
+            localXWikiDataStorage.getObject(parser.getWiki(), parser.getSpace(), parser.getPage(),
+                parser.getClassName(), parser.getNumber());
+        if (object != null) {
+            synchronize(object);
+        }
+
+        return objectToStatusMap.get(objectId);
     }
 
     public void disconnect()
     {
+        if (synchronizationJob != null) {
+            synchronizationJob.cancel();
+
+            /* Let the synchronizations in progress complete before the remote storage is disposed */
+            if (Job.getJobManager().currentJob() != synchronizationJob) {
+                try {
+                    synchronizationJob.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronizationJob = null;
+        }
+
         if (remoteXWikiDataStorage != null) {
             remoteXWikiDataStorage.dispose();
         }
         remoteXWikiDataStorage = null;
 
+        /* Save the pending changes of the search index, the local storage can still be used offline afterwards */
+        localXWikiDataStorage.dispose();
+
         NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.DATA_MANAGER_DISCONNECTED, this, null);
     }
 
     /**
-     * @return
+     * @return The summaries of all the pages of all the wikis.
      * @throws XWikiEclipseStorageException
+     * @see #getAllPageIds(IPageSummaryCollector, int, IProgressMonitor)
      */
     public List<XWikiEclipsePageSummary> getAllPageIds() throws XWikiEclipseStorageException
     {
-        List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
+        final List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
 
-        List<XWikiEclipseWikiSummary> wikis = getWikis();
-        for (XWikiEclipseWikiSummary wiki : wikis) {
-            List<XWikiEclipseSpaceSummary> spaces = getSpaces(wiki.getWikiId());
-            for (XWikiEclipseSpaceSummary space : spaces) {
-                List<XWikiEclipsePageSummary> pageSummaries = getPageSummaries(space.getWiki(), space.getName());
+        getAllPageIds(new IPageSummaryCollector()
+        {
+            public void collect(List<XWikiEclipsePageSummary> pageSummaries)
+            {
                 result.addAll(pageSummaries);
             }
-        }
+        }, DEFAULT_CRAWL_PARALLELISM, null);
 
         return result;
     }
 
+    /**
+     * Retrieve the summaries of all the pages of all the wikis, streaming them to a collector as they arrive. The spaces
+     * of each wiki and the pages of each space are listed concurrently, with up to <code>parallelism</code> requests in
+     * flight. A wiki or a space that cannot be listed is logged and skipped.
+     * 
+     * @param collector The collector receiving the page summaries of each space.
+     * @param parallelism The maximum number of concurrent requests.
+     * @param monitor The progress monitor, can be null. When it is canceled the retrieval stops and the pending requests
+     *            are abandoned.
+     * @throws XWikiEclipseStorageException If the wikis cannot be listed.
+     */
+    public void getAllPageIds(IPageSummaryCollector collector, int parallelism, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException
+    {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
+        List<XWikiEclipseWikiSummary> wikis = getWikis();
+
+        /* The number of spaces is only known as the crawl progresses */
+        monitor.beginTask("Retrieving pages", IProgressMonitor.UNKNOWN);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            CompletionService<CrawlResult> completionService = new ExecutorCompletionService<CrawlResult>(executor);
+
+            int submitted = 0;
+            for (final XWikiEclipseWikiSummary wiki : wikis) {
+                completionService.submit(new Callable<CrawlResult>()
+                {
+                    public CrawlResult call() throws Exception
+                    {
+                        return new CrawlResult(wiki.getWikiId(), getSpaces(wiki.getWikiId()), null);
+                    }
+                });
+                submitted++;
+            }
+
+            while (submitted > 0) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+
+                Future<CrawlResult> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+
+                submitted--;
+                monitor.worked(1);
+
+                CrawlResult crawlResult;
+                try {
+                    crawlResult = future.get();
+                } catch (ExecutionException e) {
+                    CoreLog.logError("Error retrieving page summaries", e.getCause());
+                    continue;
+                }
+
+                if (crawlResult.spaces != null) {
+                    monitor.subTask(String.format("Listed the spaces of %s", crawlResult.location));
+                    for (final XWikiEclipseSpaceSummary space : crawlResult.spaces) {
+                        completionService.submit(new Callable<CrawlResult>()
+                        {
+                            public CrawlResult call() throws Exception
+                            {
+                                return new CrawlResult(space.getId(), null, getPageSummaries(space.getWiki(), space
+                                    .getName()));
+                            }
+                        });
+                        submitted++;
+                    }
+                } else if (crawlResult.pageSummaries != null) {
+                    monitor.subTask(String.format("Listed the pages of %s", crawlResult.location));
+                    collector.collect(crawlResult.pageSummaries);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            monitor.done();
+        }
+    }
+
     /**
      * @param wiki
      * @param space
@@ -469,22 +814,7 @@ public XWikiEclipsePage getPage(String wiki, String space, String pageName, Stri
             String pageStatus = pageToStatusMap.get(IdProcessor.getExtendedPageId(page.getId(), page.getLanguage()));
             /* If our local page is either dirty or in conflict then return it */
             if (pageStatus != null) {
-                result = new XWikiEclipsePage(this);
-                result.setId(page.getId());
-                result.setFullName(page.getFullName());
-                result.setParentId(page.getParentId());
-                result.setTitle(page.getTitle());
-                result.setUrl(page.getUrl());
-                result.setContent(page.getContent());
-                result.setSpace(page.getSpace());
-                result.setWiki(page.getWiki());
-                result.setMajorVersion(page.getMajorVersion());
-                result.setMinorVersion(page.getMinorVersion());
-                result.setVersion(page.getVersion());
-                result.setName(page.getName());
-                result.setLanguage(page.getLanguage());
-
-                return result;
+                return copyLocalPage(page);
             }
         }
 
@@ -493,62 +823,33 @@ public XWikiEclipsePage getPage(String wiki, String space, String pageName, Stri
          * grab the latest version of the page and store it in the local storage.
          */
         if (isConnected()) {
-            result = remoteXWikiDataStorage.getPage(wiki, space, pageName, language);
-            XWikiEclipsePageSummary pageSummary = null;
-
-            /* store pageSummary in local storage */
-            if (language != null && !language.equals("")) {
-                /* translation page */
-                /* create a pageSummary instance, as well as space and wiki */
-                pageSummary = new XWikiEclipsePageSummary(this);
-                /* set the translation language */
-                pageSummary.setLanguage(language);
-                pageSummary.setUrl(result.getUrl());
-                pageSummary.setName(result.getName());
-                pageSummary.setWiki(result.getWiki());
-                pageSummary.setSpace(result.getSpace());
-                pageSummary.setId(result.getId());
-                pageSummary.setParentId(result.getParentId());
-                pageSummary.setTitle(result.getTitle());
-                pageSummary.setSyntax(result.getSyntax());
-                pageSummary.setFullName(result.getFullName());
-
-                localXWikiDataStorage.storePageSummary(pageSummary);
-
+            if (page != null) {
+                /*
+                 * Revalidate the cached page: when it has not changed on the server this costs a conditional request
+                 * and no local write.
+                 */
+                result = remoteXWikiDataStorage.getPageIfModified(wiki, space, pageName, language, page);
+                boolean unchanged = result == null || isSameVersion(result, page);
+                MetricsRegistry.getDefault().getHitRatio("cache.pageRevalidation").record(unchanged); //$NON-NLS-1$
+                if (result == null) {
+                    return copyLocalPage(page);
+                }
+                if (unchanged) {
+                    return result;
+                }
             } else {
-                /* default language */
-                pageSummary = new XWikiEclipsePageSummary(this);
-                pageSummary.setLanguage("");
-                pageSummary.setUrl(result.getUrl());
-                pageSummary.setName(result.getName());
-                pageSummary.setWiki(result.getWiki());
-                pageSummary.setSpace(result.getSpace());
-                pageSummary.setId(result.getId());
-                pageSummary.setParentId(result.getParentId());
-                pageSummary.setTitle(result.getTitle());
-                pageSummary.setSyntax(result.getSyntax());
-                pageSummary.setFullName(result.getFullName());
-
-                localXWikiDataStorage.storePageSummary(pageSummary);
+                result = remoteXWikiDataStorage.getPage(wiki, space, pageName, language);
             }
 
-            /* Write an additional copy of the page that can be useful for performing 3-way diffs */
-            lastRetrievedPagesDataStorage.storePage(result);
-
-            /* store wiki, space and page */
-            XWikiEclipseSpaceSummary spaceSummary = new XWikiEclipseSpaceSummary(this);
-            spaceSummary.setId(String.format("%s:%s", result.getWiki(), result.getSpace()));
-            spaceSummary.setName(result.getSpace());
-            spaceSummary.setUrl("");
-            spaceSummary.setWiki(result.getWiki());
-            localXWikiDataStorage.storeSpace(spaceSummary);
-
-            XWikiEclipseWikiSummary wikiSummary = new XWikiEclipseWikiSummary(this);
-            wikiSummary.setWikiId(result.getWiki());
-            wikiSummary.setName(result.getWiki());
-            localXWikiDataStorage.storeWiki(wikiSummary);
-
-            localXWikiDataStorage.storePage(result);
+            XWikiEclipsePageSummary pageSummary;
+            LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+            try {
+                pageSummary = cachePage(result, language);
+                cacheSpaceAndWiki(result.getWiki(), result.getSpace());
+                batch.commit();
+            } finally {
+                batch.close();
+            }
 
             NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.PAGE_STORED, this, pageSummary);
 
@@ -557,26 +858,223 @@ public XWikiEclipsePage getPage(String wiki, String space, String pageName, Stri
 
         /* must set the DataManager field */
         if (page != null) {
-            result = new XWikiEclipsePage(this);
-            result.setId(page.getId());
-            result.setFullName(page.getFullName());
-            result.setParentId(page.getParentId());
-            result.setTitle(page.getTitle());
-            result.setUrl(page.getUrl());
-            result.setContent(page.getContent());
-            result.setSpace(page.getSpace());
-            result.setWiki(page.getWiki());
-            result.setMajorVersion(page.getMajorVersion());
-            result.setMinorVersion(page.getMinorVersion());
-            result.setVersion(page.getVersion());
-            result.setName(page.getName());
-            result.setLanguage(page.getLanguage());
+            return copyLocalPage(page);
+        }
 
-            return result;
+        return null;
+    }
+
+    /**
+     * @param page A page read from the local storage.
+     * @return A copy of the page bound to this data manager.
+     */
+    private XWikiEclipsePage copyLocalPage(XWikiEclipsePage page)
+    {
+        XWikiEclipsePage result = new XWikiEclipsePage(this);
+        result.setId(page.getId());
+        result.setFullName(page.getFullName());
+        result.setParentId(page.getParentId());
+        result.setTitle(page.getTitle());
+        result.setUrl(page.getUrl());
+        result.setContent(page.getContent());
+        result.setSpace(page.getSpace());
+        result.setWiki(page.getWiki());
+        result.setMajorVersion(page.getMajorVersion());
+        result.setMinorVersion(page.getMinorVersion());
+        result.setVersion(page.getVersion());
+        result.setName(page.getName());
+        result.setLanguage(page.getLanguage());
+        result.setSyntax(page.getSyntax());
+        result.setCreated(page.getCreated());
+        result.setCreator(page.getCreator());
+        result.setModified(page.getModified());
+        result.setModifier(page.getModifier());
+
+        return result;
+    }
 
+    /**
+     * @return true if the remote page has the same version as the cached one, in which case the local storage doesn't
+     *         need to be updated.
+     */
+    private boolean isSameVersion(XWikiEclipsePage remotePage, XWikiEclipsePage cachedPage)
+    {
+        return remotePage.getMajorVersion() == cachedPage.getMajorVersion()
+            && remotePage.getMinorVersion() == cachedPage.getMinorVersion()
+            && remotePage.getTitle() != null && remotePage.getTitle().equals(cachedPage.getTitle())
+            && remotePage.getContent() != null && remotePage.getContent().equals(cachedPage.getContent());
+    }
+
+    /**
+     * Store a page retrieved from the remote storage, together with its page summary, in the local storage.
+     * 
+     * @param page The page retrieved from the remote storage.
+     * @param language The requested language, empty or null for the default one.
+     * @return The page summary that has been stored.
+     */
+    private XWikiEclipsePageSummary cachePage(XWikiEclipsePage page, String language)
+        throws XWikiEclipseStorageException
+    {
+        /* store pageSummary in local storage */
+        XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(this);
+        if (language != null && !language.equals("")) {
+            /* translation page: set the translation language */
+            pageSummary.setLanguage(language);
+        } else {
+            /* default language */
+            pageSummary.setLanguage("");
         }
+        pageSummary.setUrl(page.getUrl());
+        pageSummary.setName(page.getName());
+        pageSummary.setWiki(page.getWiki());
+        pageSummary.setSpace(page.getSpace());
+        pageSummary.setId(page.getId());
+        pageSummary.setParentId(page.getParentId());
+        pageSummary.setTitle(page.getTitle());
+        pageSummary.setSyntax(page.getSyntax());
+        pageSummary.setFullName(page.getFullName());
 
-        return null;
+        localXWikiDataStorage.storePageSummary(pageSummary);
+
+        /* Write an additional copy of the page that can be useful for performing 3-way diffs */
+        lastRetrievedPagesDataStorage.storePage(page);
+
+        localXWikiDataStorage.storePage(page);
+
+        return pageSummary;
+    }
+
+    /**
+     * Store the summaries of the given wiki and space in the local storage.
+     */
+    private void cacheSpaceAndWiki(String wiki, String space) throws XWikiEclipseStorageException
+    {
+        XWikiEclipseSpaceSummary spaceSummary = new XWikiEclipseSpaceSummary(this);
+        spaceSummary.setId(String.format("%s:%s", wiki, space));
+        spaceSummary.setName(space);
+        spaceSummary.setUrl("");
+        spaceSummary.setWiki(wiki);
+        localXWikiDataStorage.storeSpace(spaceSummary);
+
+        XWikiEclipseWikiSummary wikiSummary = new XWikiEclipseWikiSummary(this);
+        wikiSummary.setWikiId(wiki);
+        wikiSummary.setName(wiki);
+        localXWikiDataStorage.storeWiki(wikiSummary);
+    }
+
+    /**
+     * Fetch several pages from the remote storage and cache them in the local storage. Up to <code>parallelism</code>
+     * pages are retrieved concurrently, all the local writes are done in a single workspace operation and a single
+     * {@link CoreEvent.Type#PAGES_STORED} event, carrying the list of the stored page summaries, is fired at the end.
+     * Pages that are dirty or in conflict are not fetched, so that local modifications are preserved. A page that
+     * cannot be retrieved is logged and skipped. If the operation is canceled, the pages that have already been
+     * retrieved are still stored and returned.
+     * 
+     * @param pageSummaries The pages to be fetched.
+     * @param parallelism The maximum number of concurrent remote requests.
+     * @param monitor The progress monitor, can be null.
+     * @return The pages that have been fetched and stored.
+     * @throws XWikiEclipseStorageException
+     */
+    public List<XWikiEclipsePage> fetchPages(Collection<XWikiEclipsePageSummary> pageSummaries, int parallelism,
+        IProgressMonitor monitor) throws XWikiEclipseStorageException
+    {
+        final List<XWikiEclipsePage> result = new ArrayList<XWikiEclipsePage>();
+
+        /* The requested language of each fetched page, as the remote page might report a different one */
+        final List<String> languages = new ArrayList<String>();
+
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
+        monitor.beginTask("Fetching pages", pageSummaries.size() + 1);
+
+        try {
+            final IRemoteXWikiDataStorage remoteStorage = remoteXWikiDataStorage;
+            if (remoteStorage == null) {
+                return result;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+            try {
+                CompletionService<XWikiEclipsePage> completionService =
+                    new ExecutorCompletionService<XWikiEclipsePage>(executor);
+                Map<Future<XWikiEclipsePage>, String> futureToLanguage =
+                    new HashMap<Future<XWikiEclipsePage>, String>();
+
+                int submitted = 0;
+                for (final XWikiEclipsePageSummary pageSummary : pageSummaries) {
+                    String extendedPageId =
+                        IdProcessor.getExtendedPageId(pageSummary.getId(), pageSummary.getLanguage());
+                    if (pageToStatusMap.get(extendedPageId) != null) {
+                        /* Don't overwrite local modifications */
+                        monitor.worked(1);
+                        continue;
+                    }
+
+                    Future<XWikiEclipsePage> future = completionService.submit(new Callable<XWikiEclipsePage>()
+                    {
+                        public XWikiEclipsePage call() throws Exception
+                        {
+                            return remoteStorage.getPage(pageSummary.getWiki(), pageSummary.getSpace(),
+                                pageSummary.getName(), pageSummary.getLanguage());
+                        }
+                    });
+                    futureToLanguage.put(future, pageSummary.getLanguage());
+                    submitted++;
+                }
+
+                /* On cancel stop waiting, but still store the pages that have already been fetched */
+                while (submitted > 0 && !monitor.isCanceled()) {
+                    Future<XWikiEclipsePage> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                    if (future == null) {
+                        continue;
+                    }
+
+                    submitted--;
+                    try {
+                        XWikiEclipsePage page = future.get();
+                        monitor.subTask(String.format("Fetched %s", page.getId()));
+                        result.add(page);
+                        languages.add(futureToLanguage.get(future));
+                    } catch (ExecutionException e) {
+                        CoreLog.logError("Error fetching page", e.getCause());
+                    }
+                    monitor.worked(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdownNow();
+            }
+
+            /* Write everything in a single batch, so that only one resource delta is generated */
+            monitor.subTask("Storing pages");
+            List<XWikiEclipsePageSummary> storedPageSummaries = new ArrayList<XWikiEclipsePageSummary>();
+            LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+            try {
+                Set<String> cachedSpaces = new HashSet<String>();
+                for (int i = 0; i < result.size(); i++) {
+                    XWikiEclipsePage page = result.get(i);
+                    storedPageSummaries.add(cachePage(page, languages.get(i)));
+
+                    if (cachedSpaces.add(String.format("%s:%s", page.getWiki(), page.getSpace()))) {
+                        cacheSpaceAndWiki(page.getWiki(), page.getSpace());
+                    }
+                }
+                batch.commit();
+            } finally {
+                batch.close();
+            }
+            monitor.worked(1);
+
+            NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.PAGES_STORED, this, storedPageSummaries);
+
+            return result;
+        } finally {
+            monitor.done();
+        }
     }
 
     /**
@@ -645,7 +1143,49 @@ public List<XWikiEclipseObjectProperty> getObjectProperties(String wiki, String
 
     public void download(String directory, XWikiEclipseAttachment attachment) throws XWikiEclipseStorageException
     {
-        remoteXWikiDataStorage.download(directory, attachment);
+        download(directory, attachment, null);
+    }
+
+    /**
+     * Download an attachment, resuming a previous download that failed or was canceled.
+     * 
+     * @param directory The directory where to save the attachment.
+     * @param attachment The attachment.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException
+     */
+    public void download(String directory, XWikiEclipseAttachment attachment, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException
+    {
+        remoteXWikiDataStorage.download(directory, attachment, monitor);
+    }
+
+    /**
+     * Download several attachments concurrently.
+     * 
+     * @param directory The directory where to save the attachments.
+     * @param attachments The attachments.
+     * @param parallelism The maximum number of concurrent downloads.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException If some of the attachments could not be downloaded. The other ones are
+     *             downloaded anyway.
+     */
+    public void downloadAttachments(final String directory, Collection<XWikiEclipseAttachment> attachments,
+        int parallelism, IProgressMonitor monitor) throws XWikiEclipseStorageException
+    {
+        List<AttachmentTransfer> transfers = new ArrayList<AttachmentTransfer>();
+        for (final XWikiEclipseAttachment attachment : attachments) {
+            transfers.add(new AttachmentTransfer(attachment.getName())
+            {
+                @Override
+                public void run(IProgressMonitor monitor) throws XWikiEclipseStorageException
+                {
+                    download(directory, attachment, monitor);
+                }
+            });
+        }
+
+        transferAttachments("Downloading attachments", transfers, parallelism, monitor);
     }
 
     public XWikiEclipsePageSummary getPageSummary(String wiki, String space, String pageName, String language)
@@ -686,30 +1226,37 @@ public XWikiEclipseObject getObject(String wiki, String space, String pageName,
             result = remoteXWikiDataStorage.getObject(wiki, space, pageName, className, number);
             XWikiEclipseClass clazz = remoteXWikiDataStorage.getClass(wiki, className);
 
-            localXWikiDataStorage.storeClass(clazz);
-            localXWikiDataStorage.storeObject(result);
-
-            /* store wiki, space and page */
-            XWikiEclipseSpaceSummary spaceSummary = new XWikiEclipseSpaceSummary(this);
-            spaceSummary.setId(String.format("%s:%s", result.getWiki(), result.getSpace()));
-            spaceSummary.setName(result.getSpace());
-            spaceSummary.setUrl("");
-            spaceSummary.setWiki(result.getWiki());
-            localXWikiDataStorage.storeSpace(spaceSummary);
-
-            XWikiEclipseWikiSummary wikiSummary = new XWikiEclipseWikiSummary(this);
-            wikiSummary.setName(result.getWiki());
-            wikiSummary.setWikiId(result.getWiki());
-            localXWikiDataStorage.storeWiki(wikiSummary);
-
-            XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(this);
-            pageSummary.setFullName(result.getPageId());
-            pageSummary.setId(result.getPageId());
-            pageSummary.setLanguage("");
-            pageSummary.setName(result.getPageName());
-            pageSummary.setSpace(result.getSpace());
-            pageSummary.setWiki(result.getWiki());
-            localXWikiDataStorage.storePageSummary(pageSummary);
+            LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+            try {
+                localXWikiDataStorage.storeClass(clazz);
+                localXWikiDataStorage.storeObject(result);
+
+                /* store wiki, space and page */
+                XWikiEclipseSpaceSummary spaceSummary = new XWikiEclipseSpaceSummary(this);
+                spaceSummary.setId(String.format("%s:%s", result.getWiki(), result.getSpace()));
+                spaceSummary.setName(result.getSpace());
+                spaceSummary.setUrl("");
+                spaceSummary.setWiki(result.getWiki());
+                localXWikiDataStorage.storeSpace(spaceSummary);
+
+                XWikiEclipseWikiSummary wikiSummary = new XWikiEclipseWikiSummary(this);
+                wikiSummary.setName(result.getWiki());
+                wikiSummary.setWikiId(result.getWiki());
+                localXWikiDataStorage.storeWiki(wikiSummary);
+
+                XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(this);
+                pageSummary.setFullName(result.getPageId());
+                pageSummary.setId(result.getPageId());
+                pageSummary.setLanguage("");
+                pageSummary.setName(result.getPageName());
+                pageSummary.setSpace(result.getSpace());
+                pageSummary.setWiki(result.getWiki());
+                localXWikiDataStorage.storePageSummary(pageSummary);
+
+                batch.commit();
+            } finally {
+                batch.close();
+            }
 
             /* Fire the stored notification to communicate that the object has been stored in the local storage */
             NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.OBJECT_STORED, this, result);
@@ -749,12 +1296,22 @@ public XWikiEclipseObject getObject(String wiki, String space, String pageName,
     }
 
     /**
-     * @param spaceSummary
+     * Remove a space by removing all its pages, the REST API having no way to remove a space at once.
+     * 
+     * @param spaceSummary The space to remove.
+     * @throws XWikiEclipseStorageException
      */
-    public void removeSpace(XWikiEclipseSpaceSummary spaceSummary)
+    public void removeSpace(XWikiEclipseSpaceSummary spaceSummary) throws XWikiEclipseStorageException
     {
-        // TODO Auto-generated method stub
+        for (XWikiEclipsePageSummary pageSummary : getPageSummaries(spaceSummary.getWiki(), spaceSummary.getName())) {
+            removePage(pageSummary);
+        }
 
+        if (isConnected()) {
+            remoteXWikiDataStorage.remove(spaceSummary);
+        }
+
+        localXWikiDataStorage.removeSpace(spaceSummary.getWiki(), spaceSummary.getName());
     }
 
     public void removePage(XWikiEclipsePageSummary pageSummary) throws XWikiEclipseStorageException
@@ -792,12 +1349,52 @@ public XWikiEclipseComment storeComment(XWikiEclipseComment c) throws XWikiEclip
     }
 
     public void uploadAttachment(XWikiEclipsePageSummary pageSummary, URL fileUrl) throws XWikiEclipseStorageException
+    {
+        uploadAttachment(pageSummary, fileUrl, null);
+    }
+
+    /**
+     * @param pageSummary The page the attachment is uploaded to.
+     * @param fileUrl The file to upload.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException
+     */
+    public void uploadAttachment(XWikiEclipsePageSummary pageSummary, URL fileUrl, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException
     {
         if (isConnected()) {
             remoteXWikiDataStorage.uploadAttachment(pageSummary.getWiki(), pageSummary.getSpace(),
-                pageSummary.getName(), fileUrl);
+                pageSummary.getName(), fileUrl, monitor);
+        }
+
+    }
+
+    /**
+     * Upload several attachments to a page concurrently.
+     * 
+     * @param pageSummary The page the attachments are uploaded to.
+     * @param fileUrls The files to upload.
+     * @param parallelism The maximum number of concurrent uploads.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException If some of the files could not be uploaded. The other ones are uploaded
+     *             anyway.
+     */
+    public void uploadAttachments(final XWikiEclipsePageSummary pageSummary, Collection<URL> fileUrls,
+        int parallelism, IProgressMonitor monitor) throws XWikiEclipseStorageException
+    {
+        List<AttachmentTransfer> transfers = new ArrayList<AttachmentTransfer>();
+        for (final URL fileUrl : fileUrls) {
+            transfers.add(new AttachmentTransfer(new Path(fileUrl.getPath()).lastSegment())
+            {
+                @Override
+                public void run(IProgressMonitor monitor) throws XWikiEclipseStorageException
+                {
+                    uploadAttachment(pageSummary, fileUrl, monitor);
+                }
+            });
         }
 
+        transferAttachments("Uploading attachments", transfers, parallelism, monitor);
     }
 
     public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWikiEclipseStorageException
@@ -808,6 +1405,9 @@ public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWiki
             result = remoteXWikiDataStorage.getSpace(wiki, space);
         } else {
             XWikiEclipseSpaceSummary spaceSummary = localXWikiDataStorage.getSpace(wiki, space);
+            if (spaceSummary == null) {
+                return null;
+            }
 
             result = new XWikiEclipseSpaceSummary(this);
             result.setId(spaceSummary.getId());
@@ -820,16 +1420,155 @@ public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWiki
     }
 
     public void updateAttachment(XWikiEclipseAttachment attachment, URL fileUrl) throws XWikiEclipseStorageException
+    {
+        updateAttachment(attachment, fileUrl, null);
+    }
+
+    /**
+     * @param attachment The attachment to update.
+     * @param fileUrl The new content of the attachment.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException
+     */
+    public void updateAttachment(XWikiEclipseAttachment attachment, URL fileUrl, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException
     {
         if (isConnected()) {
             String pageId = attachment.getPageId();
             IdProcessor parser = new IdProcessor(pageId);
             remoteXWikiDataStorage.updateAttachment(parser.getWiki(), parser.getSpace(), parser.getPage(),
-                attachment.getName(), fileUrl);
+                attachment.getName(), fileUrl, monitor);
         }
 
     }
 
+    /**
+     * Update several attachments concurrently.
+     * 
+     * @param attachmentToFileUrlMap The attachments to update, with their new content.
+     * @param parallelism The maximum number of concurrent uploads.
+     * @param monitor The progress monitor, can be null.
+     * @throws XWikiEclipseStorageException If some of the attachments could not be updated. The other ones are
+     *             updated anyway.
+     */
+    public void updateAttachments(Map<XWikiEclipseAttachment, URL> attachmentToFileUrlMap, int parallelism,
+        IProgressMonitor monitor) throws XWikiEclipseStorageException
+    {
+        List<AttachmentTransfer> transfers = new ArrayList<AttachmentTransfer>();
+        for (final Map.Entry<XWikiEclipseAttachment, URL> entry : attachmentToFileUrlMap.entrySet()) {
+            transfers.add(new AttachmentTransfer(entry.getKey().getName())
+            {
+                @Override
+                public void run(IProgressMonitor monitor) throws XWikiEclipseStorageException
+                {
+                    updateAttachment(entry.getKey(), entry.getValue(), monitor);
+                }
+            });
+        }
+
+        transferAttachments("Updating attachments", transfers, parallelism, monitor);
+    }
+
+    /**
+     * Run attachment transfers concurrently, with up to <code>parallelism</code> transfers in flight. The progress of
+     * the transfers is collected from the worker threads and reported to the monitor from the calling thread, as
+     * progress monitors are not thread-safe.
+     */
+    private void transferAttachments(String taskName, List<AttachmentTransfer> transfers, int parallelism,
+        IProgressMonitor monitor) throws XWikiEclipseStorageException
+    {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
+        monitor.beginTask(taskName, transfers.size() * TRANSFER_WORK);
+
+        final AtomicInteger worked = new AtomicInteger();
+        final AtomicBoolean canceled = new AtomicBoolean();
+
+        List<String> failures = new ArrayList<String>();
+        Throwable firstFailure = null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            CompletionService<AttachmentTransfer> completionService =
+                new ExecutorCompletionService<AttachmentTransfer>(executor);
+            Map<Future<AttachmentTransfer>, AttachmentTransfer> futureToTransfer =
+                new HashMap<Future<AttachmentTransfer>, AttachmentTransfer>();
+
+            for (final AttachmentTransfer transfer : transfers) {
+                Future<AttachmentTransfer> future = completionService.submit(new Callable<AttachmentTransfer>()
+                {
+                    public AttachmentTransfer call() throws Exception
+                    {
+                        /* A transfer queued when the operation was canceled doesn't start */
+                        if (canceled.get()) {
+                            throw new InterruptedIOException(String.format("Transfer of %s canceled", transfer.name));
+                        }
+
+                        TransferMonitor transferMonitor = new TransferMonitor(worked, canceled);
+                        try {
+                            transfer.run(transferMonitor);
+                        } finally {
+                            transferMonitor.finish();
+                        }
+
+                        return transfer;
+                    }
+                });
+                futureToTransfer.put(future, transfer);
+            }
+
+            int submitted = transfers.size();
+            int reported = 0;
+            while (submitted > 0) {
+                if (monitor.isCanceled()) {
+                    /* Let the running transfers stop where they are, so that downloads can be resumed */
+                    canceled.set(true);
+                    return;
+                }
+
+                Future<AttachmentTransfer> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+
+                int currentlyWorked = worked.get();
+                monitor.worked(currentlyWorked - reported);
+                reported = currentlyWorked;
+
+                if (future == null) {
+                    continue;
+                }
+
+                submitted--;
+                AttachmentTransfer transfer = futureToTransfer.get(future);
+                try {
+                    future.get();
+                    monitor.subTask(String.format("Transferred %s", transfer.name));
+                } catch (ExecutionException e) {
+                    CoreLog.logError(String.format("Error transferring attachment %s", transfer.name), e.getCause());
+                    failures.add(transfer.name);
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            canceled.set(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (canceled.get()) {
+                /* Drop the queued transfers, the running ones stop on their own */
+                executor.shutdownNow();
+            } else {
+                executor.shutdown();
+            }
+            monitor.done();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new XWikiEclipseStorageException(String.format("Unable to transfer %s", failures), firstFailure);
+        }
+    }
+
     public List<XWikiEclipseTag> getAllTagsInWiki(String wiki) throws XWikiEclipseStorageException
     {
         List<XWikiEclipseTag> result = remoteXWikiDataStorage.getAllTagsInWiki(wiki);
@@ -928,23 +1667,6 @@ public XWikiEclipsePage storePage(XWikiEclipsePage xwikiPage) throws XWikiEclips
 
         XWikiEclipsePage storedPage = localXWikiDataStorage.storePage(xwikiPage);
 
-        /*
-         * check for local files of wiki and summary are created or not
-         */
-        if (!localXWikiDataStorage.wikiExists(xwikiPage.getWiki())) {
-            XWikiEclipseWikiSummary wiki = getWiki(xwikiPage.getWiki());
-            if (wiki != null) {
-                localXWikiDataStorage.storeWiki(wiki);
-            }
-        }
-
-        if (!localXWikiDataStorage.spaceExists(xwikiPage.getWiki(), xwikiPage.getSpace())) {
-            XWikiEclipseSpaceSummary space = getSpace(xwikiPage.getWiki(), xwikiPage.getSpace());
-            if (space != null) {
-                localXWikiDataStorage.storeSpace(space);
-            }
-        }
-
         /*
          * Set the dirty flag only if the page has no status. In fact it might be already dirty (should not be possible
          * though) or in conflict
@@ -954,6 +1676,16 @@ public XWikiEclipsePage storePage(XWikiEclipsePage xwikiPage) throws XWikiEclips
             pageToStatusMap.put(extendedPageId, DIRTY_STATUS);
         }
 
+        /*
+         * Store the wiki and the space if they are not cached yet. They may have to be retrieved from the server, so
+         * this is done once the page is safely stored, and a failure doesn't lose the page.
+         */
+        try {
+            cachePageContainers(xwikiPage);
+        } catch (XWikiEclipseStorageException e) {
+            CoreLog.logError(String.format("Unable to store the space of %s", extendedPageId), e);
+        }
+
         xwikiPage = synchronize(storedPage);
 
         NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.PAGE_STORED, this, xwikiPage);
@@ -961,6 +1693,36 @@ public XWikiEclipsePage storePage(XWikiEclipsePage xwikiPage) throws XWikiEclips
         return xwikiPage;
     }
 
+    /**
+     * Store the wiki and the space of a page, in a single batch, if they are not cached yet.
+     */
+    private void cachePageContainers(XWikiEclipsePage page) throws XWikiEclipseStorageException
+    {
+        XWikiEclipseWikiSummary wikiSummary = null;
+        if (!localXWikiDataStorage.wikiExists(page.getWiki())) {
+            wikiSummary = getWiki(page.getWiki());
+        }
+
+        XWikiEclipseSpaceSummary spaceSummary = null;
+        if (!localXWikiDataStorage.spaceExists(page.getWiki(), page.getSpace())) {
+            spaceSummary = getSpace(page.getWiki(), page.getSpace());
+        }
+
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            if (wikiSummary != null) {
+                localXWikiDataStorage.storeWiki(wikiSummary);
+            }
+            if (spaceSummary != null) {
+                localXWikiDataStorage.storeSpace(spaceSummary);
+            }
+
+            batch.commit();
+        } finally {
+            batch.close();
+        }
+    }
+
     private XWikiEclipsePage synchronize(XWikiEclipsePage page) throws XWikiEclipseStorageException, CoreException
     {
         /* If we are not connected then do nothing */
@@ -968,6 +1730,61 @@ private XWikiEclipsePage synchronize(XWikiEclipsePage page) throws XWikiEclipseS
             return page;
         }
 
+        String extendedPageId = IdProcessor.getExtendedPageId(page.getId(), page.getLanguage());
+        if (!claimSynchronization(extendedPageId)) {
+            /* It will be synchronized again, with the content just stored, by the thread synchronizing it */
+            return page;
+        }
+
+        try {
+            page = doSynchronize(page);
+        } finally {
+            synchronizingIds.remove(extendedPageId);
+        }
+
+        if (pendingSynchronizationIds.remove(extendedPageId)) {
+            XWikiEclipsePage storedPage =
+                localXWikiDataStorage.getPage(page.getWiki(), page.getSpace(), page.getName(), page.getLanguage());
+            if (storedPage != null) {
+                page = synchronize(storedPage);
+            }
+        }
+
+        return page;
+    }
+
+    /**
+     * Make the calling thread the one synchronizing a page or an object. If another thread is already synchronizing
+     * it, ask that thread to synchronize it again when done instead.
+     * 
+     * @param id The extended id of the page or object.
+     * @return true if the calling thread must synchronize the page or object.
+     */
+    private boolean claimSynchronization(String id)
+    {
+        if (synchronizingIds.add(id)) {
+            return true;
+        }
+
+        pendingSynchronizationIds.add(id);
+
+        /* The other thread might have finished before noticing the request */
+        if (synchronizingIds.add(id)) {
+            pendingSynchronizationIds.remove(id);
+            return true;
+        }
+
+        return false;
+    }
+
+    private XWikiEclipsePage doSynchronize(XWikiEclipsePage page) throws XWikiEclipseStorageException, CoreException
+    {
+        /* If we are not connected then do nothing. Otherwise keep using the same remote storage until done */
+        IRemoteXWikiDataStorage remoteStorage = remoteXWikiDataStorage;
+        if (remoteStorage == null) {
+            return page;
+        }
+
         /*
          * If the page is not dirty (i.e., is in conflict or has no status associated) then do nothing
          */
@@ -976,13 +1793,12 @@ private XWikiEclipsePage synchronize(XWikiEclipsePage page) throws XWikiEclipseS
             return page;
         }
 
-        Assert.isTrue(isConnected());
         Assert.isTrue(DIRTY_STATUS.equals(pageToStatusMap.get(extendedPageId)));
 
         XWikiEclipsePage remotePage = null;
         try {
             remotePage =
-                remoteXWikiDataStorage.getPage(page.getWiki(), page.getSpace(), page.getName(), page.getLanguage());
+                remoteStorage.getPage(page.getWiki(), page.getSpace(), page.getName(), page.getLanguage());
 
             if (remotePage.getLanguage() != null && !remotePage.getLanguage().equals(page.getLanguage())) {
                 /*
@@ -1000,7 +1816,7 @@ private XWikiEclipsePage synchronize(XWikiEclipsePage page) throws XWikiEclipseS
 
         if (remotePage == null) {
             /* If we are here the page or its translation don't exist. Create it! */
-            page = remoteXWikiDataStorage.storePage(page);
+            page = remoteStorage.storePage(page);
 
             localXWikiDataStorage.storePage(page);
 
@@ -1012,10 +1828,10 @@ private XWikiEclipsePage synchronize(XWikiEclipsePage page) throws XWikiEclipseS
                 if (remotePage.getContent().equals(page.getContent())) {
                     page = remotePage;
                 } else {
-                    page = remoteXWikiDataStorage.storePage(page);
+                    page = remoteStorage.storePage(page);
                 }
             } else {
-                page = remoteXWikiDataStorage.storePage(page);
+                page = remoteStorage.storePage(page);
             }
 
             localXWikiDataStorage.storePage(page);
@@ -1121,6 +1937,7 @@ public void storeObject(ModelObject object) throws XWikiEclipseStorageException
 
             localXWikiDataStorage.storeObject(o);
 
+            /* Mark the object as dirty once it has actually been written, so that it is not synchronized before */
             String objectId = IdProcessor.getExtendedObjectId(o.getPageId(), o.getClassName(), o.getNumber());
 
             try {
@@ -1129,17 +1946,15 @@ public void storeObject(ModelObject object) throws XWikiEclipseStorageException
                 throw new XWikiEclipseStorageException(e);
             }
 
-            /* store wiki, space and page */
-            IdProcessor parser = new IdProcessor(o.getPageId());
-            XWikiEclipseSpaceSummary spaceSummary = getSpace(parser.getWiki(), parser.getSpace());
-            localXWikiDataStorage.storeSpace(spaceSummary);
-
-            XWikiEclipseWikiSummary wikiSummary = getWiki(parser.getWiki());
-            localXWikiDataStorage.storeWiki(wikiSummary);
-
-            XWikiEclipsePageSummary pageSummary =
-                getPageSummary(parser.getWiki(), parser.getSpace(), parser.getPage(), "");
-            localXWikiDataStorage.storePageSummary(pageSummary);
+            /*
+             * Store wiki, space and page. They may have to be retrieved from the server, so this is done once the object
+             * is safely stored, and a failure doesn't lose the object.
+             */
+            try {
+                cacheObjectContainers(o);
+            } catch (XWikiEclipseStorageException e) {
+                CoreLog.logError(String.format("Unable to store the page of %s", objectId), e);
+            }
 
             o = synchronize(o);
 
@@ -1148,6 +1963,34 @@ public void storeObject(ModelObject object) throws XWikiEclipseStorageException
 
     }
 
+    /**
+     * Store the wiki, the space and the page summary of an object, in a single batch.
+     */
+    private void cacheObjectContainers(XWikiEclipseObject object) throws XWikiEclipseStorageException
+    {
+        IdProcessor parser = new IdProcessor(object.getPageId());
+        XWikiEclipseSpaceSummary spaceSummary = getSpace(parser.getWiki(), parser.getSpace());
+        XWikiEclipseWikiSummary wikiSummary = getWiki(parser.getWiki());
+        XWikiEclipsePageSummary pageSummary = getPageSummary(parser.getWiki(), parser.getSpace(), parser.getPage(), "");
+
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            if (spaceSummary != null) {
+                localXWikiDataStorage.storeSpace(spaceSummary);
+            }
+            if (wikiSummary != null) {
+                localXWikiDataStorage.storeWiki(wikiSummary);
+            }
+            if (pageSummary != null) {
+                localXWikiDataStorage.storePageSummary(pageSummary);
+            }
+
+            batch.commit();
+        } finally {
+            batch.close();
+        }
+    }
+
     /**
      * @param object
      * @return
@@ -1160,6 +2003,42 @@ private XWikiEclipseObject synchronize(XWikiEclipseObject object) throws XWikiEc
             return object;
         }
 
+        String objectId =
+            IdProcessor.getExtendedObjectId(object.getPageId(), object.getClassName(), object.getNumber());
+        if (!claimSynchronization(objectId)) {
+            /* It will be synchronized again, with the content just stored, by the thread synchronizing it */
+            return object;
+        }
+
+        IdProcessor parser = new IdProcessor(object.getPageId());
+        String className = object.getClassName();
+        int number = object.getNumber();
+        try {
+            object = doSynchronize(object);
+        } finally {
+            synchronizingIds.remove(objectId);
+        }
+
+        if (pendingSynchronizationIds.remove(objectId)) {
+            XWikiEclipseObject storedObject =
+                localXWikiDataStorage.getObject(parser.getWiki(), parser.getSpace(), parser.getPage(), className,
+                    number);
+            if (storedObject != null) {
+                object = synchronize(storedObject);
+            }
+        }
+
+        return object;
+    }
+
+    private XWikiEclipseObject doSynchronize(XWikiEclipseObject object) throws XWikiEclipseStorageException
+    {
+        /* If we are not connected then do nothing. Otherwise keep using the same remote storage until done */
+        IRemoteXWikiDataStorage remoteStorage = remoteXWikiDataStorage;
+        if (remoteStorage == null) {
+            return object;
+        }
+
         /*
          * If the page is not dirty (i.e., is in conflict or has no status associated) then do nothing
          */
@@ -1169,7 +2048,6 @@ private XWikiEclipseObject synchronize(XWikiEclipseObject object) throws XWikiEc
             return object;
         }
 
-        Assert.isTrue(isConnected());
         Assert.isTrue(DIRTY_STATUS.equals(objectToStatusMap.get(objectId)));
 
         if (object.getNumber() == -1) {
@@ -1184,7 +2062,7 @@ private XWikiEclipseObject synchronize(XWikiEclipseObject object) throws XWikiEc
              */
             XWikiEclipseObject previousObject = object;
 
-            object = remoteXWikiDataStorage.storeObject(object);
+            object = remoteStorage.storeObject(object);
             localXWikiDataStorage.storeObject(object);
             try {
                 objectToStatusMap.remove(objectId);
@@ -1205,7 +2083,7 @@ private XWikiEclipseObject synchronize(XWikiEclipseObject object) throws XWikiEc
                 throw new XWikiEclipseStorageException(e);
             }
         } else {
-            object = remoteXWikiDataStorage.storeObject(object);
+            object = remoteStorage.storeObject(object);
             localXWikiDataStorage.storeObject(object);
 
             try {
@@ -1291,4 +2169,102 @@ public Hints getAutoCompleteHints(String content, int offset, String syntax)
     	}
     }
     
+
+    /**
+     * The outcome of a step of {@link #getAllPageIds(IPageSummaryCollector, int, IProgressMonitor)}: either the spaces
+     * of a wiki or the page summaries of a space.
+     */
+    private static class CrawlResult
+    {
+        private final String location;
+
+        private final List<XWikiEclipseSpaceSummary> spaces;
+
+        private final List<XWikiEclipsePageSummary> pageSummaries;
+
+        public CrawlResult(String location, List<XWikiEclipseSpaceSummary> spaces,
+            List<XWikiEclipsePageSummary> pageSummaries)
+        {
+            this.location = location;
+            this.spaces = spaces;
+            this.pageSummaries = pageSummaries;
+        }
+    }
+
+    /**
+     * An attachment transfer run by {@link #transferAttachments}.
+     */
+    private abstract static class AttachmentTransfer
+    {
+        private final String name;
+
+        public AttachmentTransfer(String name)
+        {
+            this.name = name;
+        }
+
+        public abstract void run(IProgressMonitor monitor) throws XWikiEclipseStorageException;
+    }
+
+    /**
+     * The progress monitor given to a single transfer running on a worker thread. It scales the work of the transfer
+     * to {@link #TRANSFER_WORK} and adds it to a shared counter, and reports the cancellation of the whole operation.
+     */
+    private static class TransferMonitor extends NullProgressMonitor
+    {
+        private final AtomicInteger worked;
+
+        private final AtomicBoolean canceled;
+
+        private int totalWork;
+
+        private long done;
+
+        private int reported;
+
+        public TransferMonitor(AtomicInteger worked, AtomicBoolean canceled)
+        {
+            this.worked = worked;
+            this.canceled = canceled;
+        }
+
+        @Override
+        public void beginTask(String name, int totalWork)
+        {
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void worked(int work)
+        {
+            if (totalWork <= 0) {
+                return;
+            }
+
+            done = Math.min(done + work, totalWork);
+            report((int) (done * TRANSFER_WORK / totalWork));
+        }
+
+        @Override
+        public boolean isCanceled()
+        {
+            return canceled.get();
+        }
+
+        /**
+         * Report the work that is left, e.g., when the size of the transfer was unknown.
+         */
+        public void finish()
+        {
+            report(TRANSFER_WORK);
+        }
+
+        private void report(int scaledWork)
+        {
+            if (scaledWork > reported) {
+                worked.addAndGet(scaledWork - reported);
+                reported = scaledWork;
+            }
+        }
+    }
 }
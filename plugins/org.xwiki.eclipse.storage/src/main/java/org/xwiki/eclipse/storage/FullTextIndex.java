@@ -0,0 +1,664 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.model.XWikiEclipseObject;
+import org.xwiki.eclipse.model.XWikiEclipseObjectProperty;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.storage.utils.IdProcessor;
+import org.xwiki.eclipse.storage.utils.PersistentMap;
+import org.xwiki.eclipse.storage.utils.StorageUtils;
+
+/**
+ * A persistent full-text index of the pages stored in a {@link LocalXWikiDataStorage}, covering their titles, their
+ * content and the property values of their objects, so that the cached pages can be searched without a connection.
+ * <p>
+ * Each page and each object is a document of the index. The terms of the documents are persisted in a
+ * {@link PersistentMap} associating each document key to its title terms and its other terms; the inverted index (term
+ * to documents) is built in memory from it when the index is loaded, and both are updated incrementally when a page or
+ * an object is stored or removed. The terms are the lower-cased sequences of letters and digits; a document keeps at
+ * most {@link #MAX_TERMS_PER_DOCUMENT} distinct terms, which bounds the memory used by large pages.
+ * <p>
+ * Only the document to terms map is on the disk, not the inverted index itself. This is deliberate: the
+ * {@link PersistentMap} serves all its reads from memory anyway, so persisting the postings as well would double the
+ * disk writes of each update without saving any memory, and an inverted index read from the disk on demand would cost
+ * a disk access on each keystroke of a search as you type. The memory used is proportional to the number of distinct
+ * terms of the cached pages and objects, capped per document as above, and is only allocated when the index is first
+ * searched or updated.
+ * <p>
+ * If the index does not exist when it is loaded, e.g., for a local storage written by an older version, it is rebuilt
+ * in the background. A rebuild reads the stored pages and objects one at a time, so its memory use does not depend on
+ * the size of the local storage.
+ *
+ * @version $Id$
+ */
+class FullTextIndex
+{
+    /**
+     * The delay after which index changes are written to the disk. A lost change only affects search results and is
+     * recovered by a rebuild.
+     */
+    private static final long WRITE_BEHIND_DELAY = 1000;
+
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final int MAX_TERMS_PER_DOCUMENT = 2000;
+
+    /**
+     * The number of files read by a rebuild in a single workspace operation.
+     */
+    private static final int REBUILD_CHUNK_SIZE = 50;
+
+    /**
+     * The separator of the parts of a document key, which cannot appear in page and class names.
+     */
+    private static final char KEY_SEPARATOR = '\t';
+
+    private static final String PAGE_DOCUMENT = "page"; //$NON-NLS-1$
+
+    private static final String OBJECT_DOCUMENT = "object"; //$NON-NLS-1$
+
+    /**
+     * Stands for all the languages of a page when matching the query terms per page. It is not a valid language.
+     */
+    private static final String ANY_LANGUAGE = "*"; //$NON-NLS-1$
+
+    private IFile indexFile;
+
+    private IFolder pagesFolder;
+
+    private IFolder objectsFolder;
+
+    private String pageFileExtension;
+
+    private String objectFileExtension;
+
+    /**
+     * The persistent document key to terms map. Null until the index is loaded.
+     */
+    private volatile PersistentMap documents;
+
+    /**
+     * The in-memory inverted index: term to the keys of the documents containing it.
+     */
+    private TreeMap<String, Set<String>> postings;
+
+    /**
+     * The in-memory inverted index of the title terms only, used to rank the results.
+     */
+    private Map<String, Set<String>> titlePostings;
+
+    /**
+     * The documents updated since the current rebuild started, null if the index is not being rebuilt.
+     */
+    private Set<String> updatedDocuments;
+
+    private Job rebuildJob;
+
+    /**
+     * Constructor.
+     *
+     * @param indexFile The file where the index is persisted.
+     * @param pagesFolder The folder containing the page files.
+     * @param pageFileExtension The extension of the page files.
+     * @param objectsFolder The folder containing the object files.
+     * @param objectFileExtension The extension of the object files.
+     */
+    public FullTextIndex(IFile indexFile, IFolder pagesFolder, String pageFileExtension, IFolder objectsFolder,
+        String objectFileExtension)
+    {
+        this.indexFile = indexFile;
+        this.pagesFolder = pagesFolder;
+        this.pageFileExtension = pageFileExtension;
+        this.objectsFolder = objectsFolder;
+        this.objectFileExtension = objectFileExtension;
+
+        rebuildJob = new Job("Rebuilding the XWiki search index")
+        {
+            @Override
+            protected IStatus run(IProgressMonitor monitor)
+            {
+                try {
+                    rebuild(monitor);
+                } catch (CoreException e) {
+                    CoreLog.logError(String.format("Unable to rebuild %s", FullTextIndex.this.indexFile.getName()), e);
+                }
+
+                return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+        };
+    }
+
+    /**
+     * Index a page, replacing its previously indexed content.
+     *
+     * @param page The page.
+     * @throws CoreException
+     */
+    public void add(XWikiEclipsePage page) throws CoreException
+    {
+        Set<String> titleTerms = new LinkedHashSet<String>();
+        tokenize(page.getTitle(), titleTerms);
+        Set<String> terms = new LinkedHashSet<String>(titleTerms);
+        tokenize(page.getContent(), terms);
+
+        update(getPageKey(page.getId(), page.getLanguage()), titleTerms, terms);
+    }
+
+    /**
+     * Index the property values of an object, replacing its previously indexed content.
+     *
+     * @param object The object.
+     * @throws CoreException
+     */
+    public void add(XWikiEclipseObject object) throws CoreException
+    {
+        Set<String> terms = new LinkedHashSet<String>();
+        if (object.getProperties() != null) {
+            for (XWikiEclipseObjectProperty property : object.getProperties()) {
+                tokenize(property.getValue(), terms);
+            }
+        }
+
+        update(getObjectKey(object.getPageId(), object.getClassName(), object.getNumber()),
+            Collections.<String> emptySet(), terms);
+    }
+
+    /**
+     * Remove a page from the index.
+     *
+     * @param pageId The id of the page (wiki:space.page).
+     * @param language The language of the page.
+     * @throws CoreException
+     */
+    public void removePage(String pageId, String language) throws CoreException
+    {
+        update(getPageKey(pageId, language), null, null);
+    }
+
+    /**
+     * Remove an object from the index.
+     *
+     * @param pageId The id of the page of the object (wiki:space.page).
+     * @param className The class of the object.
+     * @param number The number of the object.
+     * @throws CoreException
+     */
+    public void removeObject(String pageId, String className, int number) throws CoreException
+    {
+        update(getObjectKey(pageId, className, number), null, null);
+    }
+
+    /**
+     * Search the pages matching all the terms of a query, in their title, their content or the properties of their
+     * objects. The terms are matched per page, so they can be split between the content and the objects of a page.
+     * The last term of the query is also matched as a prefix, unless the query ends with a white space, so that the
+     * query can be run as it is typed. The pages matching the query in their title come first.
+     *
+     * @param query The query.
+     * @param maxResults The maximum number of results.
+     * @return The extended ids (wiki:space.page[.language]) of the matching pages; a page matching only through its
+     *         objects is returned in its default language.
+     * @throws CoreException
+     */
+    public List<String> search(String query, int maxResults) throws CoreException
+    {
+        Set<String> queryTerms = new LinkedHashSet<String>();
+        tokenize(query, queryTerms);
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<String>();
+        }
+
+        String prefix = null;
+        if (!Character.isWhitespace(query.charAt(query.length() - 1))) {
+            List<String> terms = new ArrayList<String>(queryTerms);
+            prefix = terms.get(terms.size() - 1);
+        }
+
+        load();
+
+        final Map<String, Integer> scores = new HashMap<String, Integer>();
+        synchronized (this) {
+            /*
+             * The terms are matched per page rather than per document, so that a page matches even if the query terms
+             * are split between its content and its objects: the page id to the languages of the versions matching
+             * all the query terms so far.
+             */
+            Map<String, Set<String>> matchingPages = null;
+            Map<String, Integer> titleMatches = new HashMap<String, Integer>();
+            for (String queryTerm : queryTerms) {
+                /* The documents matching this query term, and the ones matching it in their title */
+                Set<String> documentsMatchingTerm = new HashSet<String>();
+                Set<String> titlesMatchingTerm = new HashSet<String>();
+                for (String term : queryTerm.equals(prefix) ? getTermsStartingWith(prefix) : Collections
+                    .singleton(queryTerm)) {
+                    addAll(documentsMatchingTerm, postings.get(term));
+                    addAll(titlesMatchingTerm, titlePostings.get(term));
+                }
+
+                Map<String, Set<String>> pagesMatchingTerm = new HashMap<String, Set<String>>();
+                for (String document : documentsMatchingTerm) {
+                    String[] parts = getKeyParts(document);
+                    addPosting(pagesMatchingTerm, parts[1], PAGE_DOCUMENT.equals(parts[0]) ? parts[2] : ANY_LANGUAGE);
+                }
+
+                matchingPages = matchingPages == null ? pagesMatchingTerm : retainAll(matchingPages, pagesMatchingTerm);
+                if (matchingPages.isEmpty()) {
+                    return new ArrayList<String>();
+                }
+
+                for (String document : titlesMatchingTerm) {
+                    String page = getExtendedPageId(document);
+                    Integer count = titleMatches.get(page);
+                    titleMatches.put(page, count == null ? 1 : count + 1);
+                }
+            }
+
+            for (Map.Entry<String, Set<String>> matchingPage : matchingPages.entrySet()) {
+                for (String language : matchingPage.getValue()) {
+                    /* A page matching only through its objects is returned in its default language */
+                    String page =
+                        IdProcessor.getExtendedPageId(matchingPage.getKey(), ANY_LANGUAGE.equals(language) ? ""
+                            : language);
+                    Integer titleScore = titleMatches.get(page);
+                    scores.put(page, titleScore != null ? titleScore : 0);
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<String>(scores.keySet());
+        Collections.sort(result, new Comparator<String>()
+        {
+            public int compare(String page1, String page2)
+            {
+                int comparison = scores.get(page2) - scores.get(page1);
+
+                return comparison != 0 ? comparison : page1.compareTo(page2);
+            }
+        });
+
+        return result.size() > maxResults ? new ArrayList<String>(result.subList(0, maxResults)) : result;
+    }
+
+    /**
+     * Schedule a rebuild of the index in the background.
+     */
+    public void scheduleRebuild()
+    {
+        rebuildJob.schedule();
+    }
+
+    /**
+     * Rebuild the index from the pages and objects currently stored. The index can still be searched and updated
+     * while it is rebuilt.
+     */
+    private void rebuild(IProgressMonitor monitor) throws CoreException
+    {
+        load();
+
+        List<IFile> files = new ArrayList<IFile>();
+        collectFiles(pagesFolder, pageFileExtension, files);
+        collectFiles(objectsFolder, objectFileExtension, files);
+
+        monitor.beginTask(rebuildJob.getName(), files.size());
+        synchronized (this) {
+            updatedDocuments = new HashSet<String>();
+        }
+        try {
+            for (int i = 0; i < files.size() && !monitor.isCanceled(); i += REBUILD_CHUNK_SIZE) {
+                final List<IFile> chunk = files.subList(i, Math.min(files.size(), i + REBUILD_CHUNK_SIZE));
+
+                /* Read the files in a workspace operation so that they are not written at the same time */
+                ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+                {
+                    public void run(IProgressMonitor monitor) throws CoreException
+                    {
+                        for (IFile file : chunk) {
+                            reindex(file);
+                        }
+                    }
+                }, indexFile.getParent(), 0, null);
+
+                monitor.worked(chunk.size());
+            }
+
+            if (!monitor.isCanceled()) {
+                /* Drop the documents that have been neither read again nor updated: their file no longer exists */
+                synchronized (this) {
+                    for (String document : new ArrayList<String>(documents.keySet())) {
+                        if (!updatedDocuments.contains(document)) {
+                            unindex(document);
+                            documents.remove(document);
+                        }
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                updatedDocuments = null;
+            }
+            monitor.done();
+        }
+    }
+
+    /**
+     * Write the pending changes of the index to the disk.
+     *
+     * @throws CoreException
+     */
+    public void flush() throws CoreException
+    {
+        if (documents != null) {
+            documents.flush();
+        }
+    }
+
+    private void reindex(IFile file)
+    {
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            if (pageFileExtension.equals(file.getFileExtension())) {
+                add((XWikiEclipsePage) StorageUtils.readFromJSON(file, XWikiEclipsePage.class.getCanonicalName()));
+            } else {
+                add((XWikiEclipseObject) StorageUtils.readFromJSON(file, XWikiEclipseObject.class.getCanonicalName()));
+            }
+        } catch (Exception e) {
+            CoreLog.logError(String.format("Unable to index %s", file.getName()), e);
+        }
+    }
+
+    private void collectFiles(IFolder folder, String fileExtension, List<IFile> files) throws CoreException
+    {
+        if (folder.exists()) {
+            for (IResource resource : folder.members()) {
+                if (resource instanceof IFile && fileExtension.equals(resource.getFileExtension())) {
+                    files.add((IFile) resource);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the terms of a document.
+     *
+     * @param document The document key.
+     * @param titleTerms The title terms of the document, null to remove the document.
+     * @param terms All the terms of the document, including the title terms, null to remove the document.
+     */
+    private void update(String document, Set<String> titleTerms, Set<String> terms) throws CoreException
+    {
+        load();
+
+        synchronized (this) {
+            unindex(document);
+
+            if (terms == null || terms.isEmpty()) {
+                documents.remove(document);
+            } else {
+                StringBuilder value = new StringBuilder();
+                appendTerms(value, titleTerms);
+                value.append('\n');
+                appendTerms(value, terms);
+
+                documents.put(document, value.toString());
+                index(document, value.toString());
+            }
+
+            if (updatedDocuments != null) {
+                updatedDocuments.add(document);
+            }
+        }
+    }
+
+    /**
+     * Load the index. The workspace lock is acquired first, as for all the changes made to the index, because the
+     * persistent map may write to the workspace when it is loaded.
+     */
+    private void load() throws CoreException
+    {
+        if (documents != null) {
+            return;
+        }
+
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+        {
+            public void run(IProgressMonitor monitor) throws CoreException
+            {
+                synchronized (FullTextIndex.this) {
+                    if (documents != null) {
+                        return;
+                    }
+
+                    boolean exists = indexFile.exists();
+
+                    PersistentMap map = new PersistentMap(indexFile, WRITE_BEHIND_DELAY);
+                    postings = new TreeMap<String, Set<String>>();
+                    titlePostings = new HashMap<String, Set<String>>();
+                    for (String document : map.keySet()) {
+                        index(document, map.get(document));
+                    }
+                    documents = map;
+
+                    if (!exists && pagesFolder.exists()) {
+                        scheduleRebuild();
+                    }
+                }
+            }
+        }, null);
+    }
+
+    private void index(String document, String value)
+    {
+        if (value == null) {
+            return;
+        }
+
+        int separator = value.indexOf('\n');
+        for (String term : split(value.substring(0, separator))) {
+            addPosting(titlePostings, term, document);
+        }
+        for (String term : split(value.substring(separator + 1))) {
+            addPosting(postings, term, document);
+        }
+    }
+
+    private void unindex(String document)
+    {
+        String value = documents.get(document);
+        if (value == null) {
+            return;
+        }
+
+        int separator = value.indexOf('\n');
+        for (String term : split(value.substring(0, separator))) {
+            removePosting(titlePostings, term, document);
+        }
+        for (String term : split(value.substring(separator + 1))) {
+            removePosting(postings, term, document);
+        }
+    }
+
+    private Set<String> getTermsStartingWith(String prefix)
+    {
+        SortedMap<String, Set<String>> terms = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+
+        return terms.keySet();
+    }
+
+    private static void addPosting(Map<String, Set<String>> postings, String term, String document)
+    {
+        Set<String> documents = postings.get(term);
+        if (documents == null) {
+            documents = new HashSet<String>();
+            postings.put(term, documents);
+        }
+
+        documents.add(document);
+    }
+
+    private static void removePosting(Map<String, Set<String>> postings, String term, String document)
+    {
+        Set<String> documents = postings.get(term);
+        if (documents != null) {
+            documents.remove(document);
+            if (documents.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Intersect two maps of matching page versions.
+     *
+     * @param pages The page id to the languages of the versions matching some terms, {@link #ANY_LANGUAGE} standing
+     *            for all the versions.
+     * @param otherPages The page id to the languages of the versions matching other terms.
+     * @return The page id to the languages of the versions matching both the terms.
+     */
+    private static Map<String, Set<String>> retainAll(Map<String, Set<String>> pages,
+        Map<String, Set<String>> otherPages)
+    {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> page : pages.entrySet()) {
+            Set<String> languages = page.getValue();
+            Set<String> otherLanguages = otherPages.get(page.getKey());
+            if (otherLanguages == null) {
+                continue;
+            }
+
+            Set<String> matchingLanguages = new HashSet<String>();
+            for (String language : languages) {
+                if (otherLanguages.contains(language) || otherLanguages.contains(ANY_LANGUAGE)) {
+                    matchingLanguages.add(language);
+                }
+            }
+            if (languages.contains(ANY_LANGUAGE)) {
+                matchingLanguages.addAll(otherLanguages);
+            }
+
+            if (!matchingLanguages.isEmpty()) {
+                result.put(page.getKey(), matchingLanguages);
+            }
+        }
+
+        return result;
+    }
+
+    private static void addAll(Set<String> set, Set<String> elements)
+    {
+        if (elements != null) {
+            set.addAll(elements);
+        }
+    }
+
+    /**
+     * Add the terms of a text to a set, up to {@link #MAX_TERMS_PER_DOCUMENT} terms.
+     */
+    private static void tokenize(String text, Set<String> terms)
+    {
+        if (text == null) {
+            return;
+        }
+
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length() && terms.size() < MAX_TERMS_PER_DOCUMENT; i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+            } else if (term.length() > 0) {
+                if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                    terms.add(term.toString());
+                }
+                term.setLength(0);
+            }
+        }
+    }
+
+    private static void appendTerms(StringBuilder value, Set<String> terms)
+    {
+        for (String term : terms) {
+            if (value.length() > 0 && value.charAt(value.length() - 1) != '\n') {
+                value.append(' ');
+            }
+            value.append(term);
+        }
+    }
+
+    private static String[] split(String terms)
+    {
+        return terms.length() > 0 ? terms.split(" ") : new String[0]; //$NON-NLS-1$
+    }
+
+    private static String getPageKey(String pageId, String language)
+    {
+        String key = PAGE_DOCUMENT + KEY_SEPARATOR + pageId + KEY_SEPARATOR;
+
+        return language != null ? key + language : key;
+    }
+
+    private static String getObjectKey(String pageId, String className, int number)
+    {
+        return OBJECT_DOCUMENT + KEY_SEPARATOR + pageId + KEY_SEPARATOR + className + KEY_SEPARATOR + number;
+    }
+
+    private static String[] getKeyParts(String document)
+    {
+        return document.split(String.valueOf(KEY_SEPARATOR), -1);
+    }
+
+    /**
+     * @return The extended id of the page a document belongs to.
+     */
+    private static String getExtendedPageId(String document)
+    {
+        String[] parts = getKeyParts(document);
+        String language = PAGE_DOCUMENT.equals(parts[0]) ? parts[2] : ""; //$NON-NLS-1$
+
+        return IdProcessor.getExtendedPageId(parts[1], language);
+    }
+}
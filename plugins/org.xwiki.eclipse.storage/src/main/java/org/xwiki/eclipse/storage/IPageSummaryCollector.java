@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.List;
+
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+
+/**
+ * A callback receiving the page summaries retrieved by {@link DataManager#getAllPageIds(IPageSummaryCollector, int,
+ * org.eclipse.core.runtime.IProgressMonitor)} as they arrive.
+ * 
+ * @version $Id$
+ */
+public interface IPageSummaryCollector
+{
+    /**
+     * Called with the page summaries of each space. Calls are made from the thread that started the retrieval, one at a
+     * time.
+     * 
+     * @param pageSummaries The page summaries of a space.
+     */
+    void collect(List<XWikiEclipsePageSummary> pageSummaries);
+}
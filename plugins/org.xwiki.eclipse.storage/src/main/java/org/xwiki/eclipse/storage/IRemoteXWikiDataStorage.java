@@ -22,6 +22,7 @@
 import java.net.URL;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.xwiki.eclipse.model.ModelObject;
 import org.xwiki.eclipse.model.XWikiEclipseAttachment;
 import org.xwiki.eclipse.model.XWikiEclipseClass;
@@ -48,6 +49,12 @@
 {
     void dispose();
 
+    /**
+     * Drop the cached server metadata (server information, wikis and spaces), so that it is retrieved again from the
+     * server the next time it is requested.
+     */
+    void clearMetadataCache();
+
     /* retrieval */
     XWikiEclipseServerInfo getServerInfo() throws XWikiEclipseStorageException;
 
@@ -77,6 +84,15 @@ List<XWikiEclipseObjectProperty> getObjectProperties(String wiki, String space,
     XWikiEclipsePage getPage(String wiki, String space, String pageName, String language)
         throws XWikiEclipseStorageException;
 
+    /**
+     * Retrieve a page only if it has changed since the given copy was retrieved.
+     * 
+     * @param cachedPage The copy of the page held by the caller.
+     * @return The page, or null if the remote storage reports that it has not changed.
+     */
+    XWikiEclipsePage getPageIfModified(String wiki, String space, String pageName, String language,
+        XWikiEclipsePage cachedPage) throws XWikiEclipseStorageException;
+
     XWikiEclipseObject getObject(String wiki, String space, String pageName, String className, int number) throws XWikiEclipseStorageException;
 
     XWikiEclipsePageSummary getPageSummary(String wiki, String space, String pageName, String language) throws XWikiEclipseStorageException;
@@ -92,13 +108,16 @@ XWikiEclipsePage getPage(String wiki, String space, String pageName, String lang
     /* store */
     XWikiEclipseTag addTag(String wiki, String space, String pageName, String tagName) throws XWikiEclipseStorageException;
 
-    void download(String directory, XWikiEclipseAttachment attachment) throws XWikiEclipseStorageException;
+    void download(String directory, XWikiEclipseAttachment attachment, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException;
 
     XWikiEclipseComment storeComment(XWikiEclipseComment c) throws XWikiEclipseStorageException;
 
-    void uploadAttachment(String wiki, String space, String pageName, URL fileUrl) throws XWikiEclipseStorageException;
+    void uploadAttachment(String wiki, String space, String pageName, URL fileUrl, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException;
 
-    void updateAttachment(String wiki, String space, String pageName, String attachmentName, URL fileUrl) throws XWikiEclipseStorageException;
+    void updateAttachment(String wiki, String space, String pageName, String attachmentName, URL fileUrl,
+        IProgressMonitor monitor) throws XWikiEclipseStorageException;
 
     /* delete */
     //FIXME: REFACTORING: Check this... Delete a model object?
@@ -17,6 +17,7 @@
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
 import org.xwiki.eclipse.model.XWikiEclipseClass;
 import org.xwiki.eclipse.model.XWikiEclipseObject;
 import org.xwiki.eclipse.model.XWikiEclipseObjectSummary;
@@ -51,6 +52,8 @@
  * + classes
  *   |- Class1.xec (the actual class information)
  *   |- ...
+ * |- pages.index (the index of the page summaries by space)
+ * |- fulltext.index (the full-text index of the pages and objects, if enabled)
  * </pre>
  * 
  * All xe* files contains an JSON serialization of the corresponding XWiki Eclipse elements.
@@ -83,16 +86,158 @@
 
     private IPath CLASSES_DIRECTORY = new Path("classes"); //$NON-NLS-1$
 
+    private IPath PAGE_SUMMARIES_INDEX = new Path("pages.index"); //$NON-NLS-1$
+
+    private IPath FULL_TEXT_INDEX = new Path("fulltext.index"); //$NON-NLS-1$
+
     private IContainer baseFolder;
 
+    private PageSummaryIndex pageSummaryIndex;
+
+    /**
+     * The full-text index of the stored pages and objects, null if it is not enabled.
+     */
+    private FullTextIndex fullTextIndex;
+
+    /**
+     * The changes buffered by the batch open on each thread, if any.
+     */
+    private static final ThreadLocal<List<IWorkspaceRunnable>> batchWrites =
+        new ThreadLocal<List<IWorkspaceRunnable>>();
+
     public LocalXWikiDataStorage(IContainer baseFolder)
+    {
+        this(baseFolder, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param baseFolder The folder where the local storage is rooted.
+     * @param fullTextIndexed true to maintain a full-text index of the stored pages and objects, see
+     *            {@link #searchPages(String, int)}.
+     */
+    public LocalXWikiDataStorage(IContainer baseFolder, boolean fullTextIndexed)
     {
         this.baseFolder = baseFolder;
+        this.pageSummaryIndex =
+            new PageSummaryIndex(baseFolder.getFile(PAGE_SUMMARIES_INDEX), baseFolder.getFolder(PAGES_DIRECTORY),
+                PAGE_SUMMARY_FILE_EXTENSION);
+        if (fullTextIndexed) {
+            this.fullTextIndex =
+                new FullTextIndex(baseFolder.getFile(FULL_TEXT_INDEX), baseFolder.getFolder(PAGES_DIRECTORY),
+                    PAGE_FILE_EXTENSION, baseFolder.getFolder(OBJECTS_DIRECTORY), (String) OBJECT_FILE_EXTENSION);
+        }
     }
 
+    /**
+     * Write the changes of the indexes that are waiting for their write-behind delay to the disk. The storage can still
+     * be used afterwards.
+     */
     public void dispose()
     {
-        // Do nothing.
+        try {
+            pageSummaryIndex.flush();
+        } catch (CoreException e) {
+            CoreLog.logError("Unable to save the page summary index", e);
+        }
+
+        if (fullTextIndex != null) {
+            try {
+                fullTextIndex.flush();
+            } catch (CoreException e) {
+                CoreLog.logError("Unable to save the search index", e);
+            }
+        }
+    }
+
+    /**
+     * Search the stored pages by their title, content and object property values, see
+     * {@link FullTextIndex#search(String, int)}.
+     *
+     * @param query The query.
+     * @param maxResults The maximum number of results.
+     * @return The summaries of the matching pages, the best matches first. Empty if the full-text index is not
+     *         enabled.
+     * @throws XWikiEclipseStorageException
+     */
+    public List<XWikiEclipsePageSummary> searchPages(String query, int maxResults) throws XWikiEclipseStorageException
+    {
+        List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
+        if (fullTextIndex == null) {
+            return result;
+        }
+
+        try {
+            for (String extendedPageId : fullTextIndex.search(query, maxResults)) {
+                IdProcessor parser = new IdProcessor(extendedPageId);
+                XWikiEclipsePageSummary pageSummary =
+                    getPageSummary(parser.getWiki(), parser.getSpace(), parser.getPage(), parser.getLanguage());
+                if (pageSummary != null) {
+                    result.add(pageSummary);
+                }
+            }
+        } catch (Exception e) {
+            throw new XWikiEclipseStorageException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Rebuild the full-text index in the background, if it is enabled.
+     */
+    public void rebuildFullTextIndex()
+    {
+        if (fullTextIndex != null) {
+            fullTextIndex.scheduleRebuild();
+        }
+    }
+
+    /**
+     * Start a batch of writes. Until the batch is committed, the changes made by the calling thread to any local
+     * storage are buffered instead of being written, then they are all applied in a single workspace operation, which
+     * generates a single resource delta. Buffered changes are not visible to reads until the batch is committed, and
+     * are discarded if the batch is closed without being committed. A batch started while another one is open on the
+     * same thread is part of it: only the outermost batch applies or discards the changes.
+     * <p>
+     * Usage:
+     * 
+     * <pre>
+     * LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+     * try {
+     *     ...
+     *     batch.commit();
+     * } finally {
+     *     batch.close();
+     * }
+     * </pre>
+     * 
+     * @return The batch.
+     */
+    public static Batch beginBatch()
+    {
+        if (batchWrites.get() != null) {
+            return new Batch(null);
+        }
+
+        List<IWorkspaceRunnable> writes = new ArrayList<IWorkspaceRunnable>();
+        batchWrites.set(writes);
+
+        return new Batch(writes);
+    }
+
+    /**
+     * Apply a change to the local storage, or buffer it if a batch is open on the calling thread.
+     */
+    private void run(IWorkspaceRunnable write) throws CoreException
+    {
+        List<IWorkspaceRunnable> writes = batchWrites.get();
+        if (writes != null) {
+            writes.add(write);
+        } else {
+            ResourcesPlugin.getWorkspace().run(write, null);
+        }
     }
 
     public XWikiEclipsePage getPage(String wiki, String space, String pageName, String language)
@@ -168,7 +313,8 @@ public List<XWikiEclipseWikiSummary> getWikiSummaries() throws XWikiEclipseStora
     public XWikiEclipseWikiSummary storeWiki(final XWikiEclipseWikiSummary wiki) throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] content = StorageUtils.serialize(wiki);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
@@ -180,11 +326,11 @@ public void run(IProgressMonitor monitor) throws CoreException
                     // wikiSummary.setVersion(wiki.getVersion());
                     // wikiSummary.setWikiId(wiki.getWikiId());
 
-                    StorageUtils.writeToJson(
+                    StorageUtils.writeToFile(
                         baseFolder.getFolder(WIKIS_DIRECTORY).getFile(getFileNameForWikiSummary(wiki.getWikiId())),
-                        wiki);
+                        content);
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -221,22 +367,28 @@ public List<XWikiEclipseSpaceSummary> getSpaces(String wikiId) throws XWikiEclip
         return result;
     }
 
-    public void removeSpace(String wiki, String space) throws XWikiEclipseStorageException
+    public void removeSpace(final String wiki, final String space) throws XWikiEclipseStorageException
     {
         // Delete space summary file
         try {
-            final IFolder spaceFolder = StorageUtils.createFolder(baseFolder.getFolder(SPACES_DIRECTORY));
-
-            List<IResource> spacesFolderResources = getChildResources(spaceFolder, IResource.DEPTH_ONE);
-            for (IResource spacesFolderResource : spacesFolderResources) {
-                if (spacesFolderResource instanceof IFile) {
-                    IFile spaceFile = (IFile) spacesFolderResource;
-                    if (spaceFile.getName().equals(getFileNameForSpaceSummary(wiki, space))) {
-                        spaceFile.delete(true, null);
-                        break;
+            run(new IWorkspaceRunnable()
+            {
+                public void run(IProgressMonitor monitor) throws CoreException
+                {
+                    final IFolder spaceFolder = StorageUtils.createFolder(baseFolder.getFolder(SPACES_DIRECTORY));
+
+                    List<IResource> spacesFolderResources = getChildResources(spaceFolder, IResource.DEPTH_ONE);
+                    for (IResource spacesFolderResource : spacesFolderResources) {
+                        if (spacesFolderResource instanceof IFile) {
+                            IFile spaceFile = (IFile) spacesFolderResource;
+                            if (spaceFile.getName().equals(getFileNameForSpaceSummary(wiki, space))) {
+                                spaceFile.delete(true, null);
+                                break;
+                            }
+                        }
                     }
                 }
-            }
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -245,7 +397,8 @@ public void removeSpace(String wiki, String space) throws XWikiEclipseStorageExc
     public XWikiEclipsePage storePage(final XWikiEclipsePage page) throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] content = StorageUtils.serialize(page);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
@@ -268,9 +421,12 @@ public void run(IProgressMonitor monitor) throws CoreException
                     /* Write the page, considering the translation language */
                     String fileName =
                         getFileNameForPage(page.getWiki(), page.getSpace(), page.getName(), page.getLanguage());
-                    StorageUtils.writeToJson(baseFolder.getFolder(PAGES_DIRECTORY).getFile(fileName), page);
+                    StorageUtils.writeToFile(baseFolder.getFolder(PAGES_DIRECTORY).getFile(fileName), content);
+                    if (fullTextIndex != null) {
+                        fullTextIndex.add(page);
+                    }
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -318,34 +474,40 @@ public XWikiEclipseObject getObject(String wiki, String space, String page, Stri
 
     public XWikiEclipseObject storeObject(final XWikiEclipseObject object) throws XWikiEclipseStorageException
     {
+        final XWikiEclipseObjectSummary objectSummary = new XWikiEclipseObjectSummary(object.getDataManager());
+        objectSummary.setClassName(object.getClassName());
+        objectSummary.setWiki(object.getWiki());
+        objectSummary.setSpace(object.getSpace());
+        objectSummary.setPageName(object.getPageName());
+        objectSummary.setPageId(object.getPageId());
+
+        objectSummary.setId(object.getId());
+        objectSummary.setNumber(object.getNumber());
+
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] objectSummaryContent = StorageUtils.serialize(objectSummary);
+            final byte[] objectContent = StorageUtils.serialize(object);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
                     /* Write the objectSummary */
-                    XWikiEclipseObjectSummary objectSummary = new XWikiEclipseObjectSummary(object.getDataManager());
-                    objectSummary.setClassName(object.getClassName());
-                    objectSummary.setWiki(object.getWiki());
-                    objectSummary.setSpace(object.getSpace());
-                    objectSummary.setPageName(object.getPageName());
-                    objectSummary.setPageId(object.getPageId());
-
-                    objectSummary.setId(object.getId());
-                    objectSummary.setNumber(object.getNumber());
-
                     String fileName =
                         getFileNameForObjectSummary(objectSummary.getWiki(), objectSummary.getSpace(),
                             objectSummary.getPageName(), objectSummary.getClassName(), objectSummary.getNumber());
-                    StorageUtils.writeToJson(baseFolder.getFolder(OBJECTS_DIRECTORY).getFile(fileName), objectSummary);
+                    StorageUtils.writeToFile(baseFolder.getFolder(OBJECTS_DIRECTORY).getFile(fileName),
+                        objectSummaryContent);
 
                     /* Write the object */
                     fileName =
                         getFileNameForObject(objectSummary.getWiki(), objectSummary.getSpace(),
                             objectSummary.getPageName(), objectSummary.getClassName(), objectSummary.getNumber());
-                    StorageUtils.writeToJson(baseFolder.getFolder(OBJECTS_DIRECTORY).getFile(fileName), object);
+                    StorageUtils.writeToFile(baseFolder.getFolder(OBJECTS_DIRECTORY).getFile(fileName), objectContent);
+                    if (fullTextIndex != null) {
+                        fullTextIndex.add(object);
+                    }
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -450,7 +612,7 @@ public boolean removeObject(final String wiki, final String space, final String
         final int number) throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
@@ -467,8 +629,12 @@ public void run(IProgressMonitor monitor) throws CoreException
                     if (file.exists()) {
                         file.delete(true, null);
                     }
+
+                    if (fullTextIndex != null) {
+                        fullTextIndex.removeObject(new IdProcessor(wiki, space, page).getPageId(), className, number);
+                    }
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             new XWikiEclipseStorageException(e);
         }
@@ -489,7 +655,8 @@ public XWikiEclipseSpaceSummary storeSpace(final XWikiEclipseSpaceSummary spaceS
         throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] content = StorageUtils.serialize(spaceSummary);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
@@ -501,9 +668,9 @@ public void run(IProgressMonitor monitor) throws CoreException
                     // space.setId(spaceSummary.getId());
 
                     String fileName = getFileNameForSpaceSummary(spaceSummary.getWiki(), spaceSummary.getName());
-                    StorageUtils.writeToJson(baseFolder.getFolder(SPACES_DIRECTORY).getFile(fileName), spaceSummary);
+                    StorageUtils.writeToFile(baseFolder.getFolder(SPACES_DIRECTORY).getFile(fileName), content);
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -519,7 +686,8 @@ public XWikiEclipsePageSummary storePageSummary(final XWikiEclipsePageSummary pa
         throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] content = StorageUtils.serialize(pageSummary);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
@@ -539,9 +707,10 @@ public void run(IProgressMonitor monitor) throws CoreException
                         getFileNameForPageSummary(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName(),
                             pageSummary.getLanguage());
 
-                    StorageUtils.writeToJson(baseFolder.getFolder(PAGES_DIRECTORY).getFile(fileName), pageSummary);
+                    StorageUtils.writeToFile(baseFolder.getFolder(PAGES_DIRECTORY).getFile(fileName), content);
+                    pageSummaryIndex.add(pageSummary.getWiki(), pageSummary.getSpace(), fileName);
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -560,22 +729,13 @@ public List<XWikiEclipsePageSummary> getPageSummaries(String wiki, String space)
         final List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
 
         try {
-            final IFolder pagesFolder = StorageUtils.createFolder(baseFolder.getFolder(PAGES_DIRECTORY));
-
-            List<IResource> pageFolderResources = getChildResources(pagesFolder, IResource.DEPTH_ONE);
-            for (IResource pageFolderResource : pageFolderResources) {
-                if (pageFolderResource instanceof IFile) {
-                    IFile file = (IFile) pageFolderResource;
-                    if (file.getFileExtension().equals(PAGE_SUMMARY_FILE_EXTENSION)) {
-                        IFile pageSummaryFile = (IFile) pageFolderResource;
-                        XWikiEclipsePageSummary pageSummary =
-                            (XWikiEclipsePageSummary) StorageUtils.readFromJSON(pageSummaryFile,
-                                XWikiEclipsePageSummary.class.getCanonicalName());
-                        if (pageSummary.getWiki().equals(wiki) && pageSummary.getSpace().equals(space)) {
-                            result.add(pageSummary);
-                        }
-
-                    }
+            /* Only read the page summaries that the index associates to the space */
+            for (IFile pageSummaryFile : pageSummaryIndex.getPageSummaryFiles(wiki, space)) {
+                XWikiEclipsePageSummary pageSummary =
+                    (XWikiEclipsePageSummary) StorageUtils.readFromJSON(pageSummaryFile,
+                        XWikiEclipsePageSummary.class.getCanonicalName());
+                if (pageSummary.getWiki().equals(wiki) && pageSummary.getSpace().equals(space)) {
+                    result.add(pageSummary);
                 }
             }
         } catch (Exception e) {
@@ -603,7 +763,7 @@ public List<XWikiEclipsePageHistorySummary> getPageHistorySummaries(String wiki,
     public void removePage(final String pageId) throws CoreException
     {
 
-        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+        run(new IWorkspaceRunnable()
         {
 
             @Override
@@ -619,6 +779,10 @@ public void run(IProgressMonitor monitor) throws CoreException
                 if (pageFile.exists()) {
                     pageFile.delete(true, null);
                 }
+                if (fullTextIndex != null) {
+                    fullTextIndex.removePage(new IdProcessor(parser.getWiki(), parser.getSpace(), parser.getPage())
+                        .getPageId(), parser.getLanguage());
+                }
 
                 IFile pageSummaryFile =
                     pageFolder.getFile(getFileNameForPageSummary(parser.getWiki(), parser.getSpace(), parser.getPage(),
@@ -626,6 +790,7 @@ public void run(IProgressMonitor monitor) throws CoreException
                 if (pageSummaryFile.exists()) {
                     pageSummaryFile.delete(true, null);
                 }
+                pageSummaryIndex.remove(pageSummaryFile.getName());
 
                 try {
                     // remove the objects of this page as well
@@ -649,7 +814,7 @@ public void run(IProgressMonitor monitor) throws CoreException
                 }
 
             }
-        }, null);
+        });
 
     }
 
@@ -676,15 +841,16 @@ public XWikiEclipseClass getClass(String wiki, String className) throws Exceptio
     public void storeClass(final XWikiEclipseClass xwikiClass) throws XWikiEclipseStorageException
     {
         try {
-            ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+            final byte[] content = StorageUtils.serialize(xwikiClass);
+            run(new IWorkspaceRunnable()
             {
                 public void run(IProgressMonitor monitor) throws CoreException
                 {
-                    StorageUtils.writeToJson(
+                    StorageUtils.writeToFile(
                         baseFolder.getFolder(CLASSES_DIRECTORY).getFile(
-                            getFileNameForClass(xwikiClass.getWiki(), xwikiClass.getId())), xwikiClass);
+                            getFileNameForClass(xwikiClass.getWiki(), xwikiClass.getId())), content);
                 }
-            }, null);
+            });
         } catch (CoreException e) {
             new XWikiEclipseStorageException(e);
         }
@@ -739,4 +905,74 @@ public XWikiEclipsePageSummary getPageSummary(String wiki, String space, String
         }
         return null;
     }
+
+    /**
+     * A batch of writes to the local storages, see {@link LocalXWikiDataStorage#beginBatch()}.
+     */
+    public static class Batch
+    {
+        /**
+         * The buffered changes, null if this batch is nested in another one.
+         */
+        private final List<IWorkspaceRunnable> writes;
+
+        private boolean closed;
+
+        private Batch(List<IWorkspaceRunnable> writes)
+        {
+            this.writes = writes;
+        }
+
+        /**
+         * Apply all the changes buffered by the batch in a single workspace operation. Does nothing for a nested
+         * batch, whose changes are applied with the outermost one.
+         * 
+         * @throws XWikiEclipseStorageException
+         */
+        public void commit() throws XWikiEclipseStorageException
+        {
+            if (closed) {
+                throw new IllegalStateException("The batch is already closed");
+            }
+
+            closed = true;
+            if (writes == null) {
+                return;
+            }
+
+            /* The changes are applied as if no batch was open, so that changes made while applying them are direct */
+            batchWrites.remove();
+            long start = System.nanoTime();
+            try {
+                ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+                {
+                    public void run(IProgressMonitor monitor) throws CoreException
+                    {
+                        for (IWorkspaceRunnable write : writes) {
+                            write.run(monitor);
+                        }
+                    }
+                }, null);
+            } catch (CoreException e) {
+                throw new XWikiEclipseStorageException(e);
+            } finally {
+                MetricsRegistry.getDefault().getTimer("storage.batchCommit").recordSince(start); //$NON-NLS-1$
+            }
+        }
+
+        /**
+         * Discard the changes buffered by the batch if it has not been committed. Does nothing if it has been.
+         */
+        public void close()
+        {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            if (writes != null) {
+                batchWrites.remove();
+            }
+        }
+    }
 }
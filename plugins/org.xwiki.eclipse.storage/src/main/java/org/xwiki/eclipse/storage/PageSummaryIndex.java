@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.utils.PersistentMap;
+import org.xwiki.eclipse.storage.utils.StorageUtils;
+
+/**
+ * A persistent secondary index of the page summaries stored in a {@link LocalXWikiDataStorage}, which maps each space
+ * to the page summary files it contains. This allows to retrieve the pages of a space without reading all the page
+ * summaries of the local storage.
+ * <p>
+ * The index is persisted in a {@link PersistentMap} associating each page summary file name to the id of its space
+ * (wiki:space). It is loaded lazily and, when loaded, it is reconciled with the content of the pages folder: files
+ * that are not indexed (e.g., because the index is missing) are read and added, indexed files that no longer exist are
+ * dropped.
+ *
+ * @version $Id$
+ */
+class PageSummaryIndex
+{
+    /**
+     * The delay after which index changes are written to the disk. A lost change is recovered when the index is
+     * reconciled with the pages folder, so there is no need to write each of them synchronously.
+     */
+    private static final long WRITE_BEHIND_DELAY = 1000;
+
+    private IFile indexFile;
+
+    private IFolder pagesFolder;
+
+    private String pageSummaryFileExtension;
+
+    /**
+     * The persistent page summary file name to space id map. Null until the index is loaded.
+     */
+    private PersistentMap fileToSpaceMap;
+
+    /**
+     * The in-memory reverse index: space id to page summary file names.
+     */
+    private Map<String, Set<String>> spaceToFilesMap;
+
+    /**
+     * Constructor.
+     *
+     * @param indexFile The file where the index is persisted.
+     * @param pagesFolder The folder containing the page summary files.
+     * @param pageSummaryFileExtension The extension of the page summary files.
+     */
+    public PageSummaryIndex(IFile indexFile, IFolder pagesFolder, String pageSummaryFileExtension)
+    {
+        this.indexFile = indexFile;
+        this.pagesFolder = pagesFolder;
+        this.pageSummaryFileExtension = pageSummaryFileExtension;
+    }
+
+    /**
+     * Index a page summary file.
+     *
+     * @param wiki The wiki of the page.
+     * @param space The space of the page.
+     * @param fileName The name of the page summary file.
+     * @throws CoreException
+     */
+    public synchronized void add(String wiki, String space, String fileName) throws CoreException
+    {
+        load();
+
+        String spaceId = getSpaceId(wiki, space);
+        if (!spaceId.equals(fileToSpaceMap.get(fileName))) {
+            unindex(fileName);
+            fileToSpaceMap.put(fileName, spaceId);
+            index(fileName, spaceId);
+        }
+    }
+
+    /**
+     * Remove a page summary file from the index.
+     *
+     * @param fileName The name of the page summary file.
+     * @throws CoreException
+     */
+    public synchronized void remove(String fileName) throws CoreException
+    {
+        load();
+
+        if (fileToSpaceMap.get(fileName) != null) {
+            unindex(fileName);
+            fileToSpaceMap.remove(fileName);
+        }
+    }
+
+    /**
+     * @param wiki The wiki.
+     * @param space The space.
+     * @return The existing page summary files of the given space.
+     * @throws CoreException
+     */
+    public synchronized List<IFile> getPageSummaryFiles(String wiki, String space) throws CoreException
+    {
+        load();
+
+        List<IFile> result = new ArrayList<IFile>();
+
+        Set<String> fileNames = spaceToFilesMap.get(getSpaceId(wiki, space));
+        if (fileNames != null) {
+            for (String fileName : new ArrayList<String>(fileNames)) {
+                IFile file = pagesFolder.getFile(fileName);
+                if (file.exists()) {
+                    result.add(file);
+                } else {
+                    /* Stale entry, the file has been removed behind our back */
+                    remove(fileName);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the index changes that are waiting for the write-behind delay to the disk.
+     *
+     * @throws CoreException
+     */
+    public void flush() throws CoreException
+    {
+        /* Not synchronized: the map acquires the workspace lock, which must be acquired before the lock on the index */
+        PersistentMap map;
+        synchronized (this) {
+            map = fileToSpaceMap;
+        }
+
+        if (map != null) {
+            map.flush();
+        }
+    }
+
+    private void load() throws CoreException
+    {
+        if (fileToSpaceMap != null) {
+            return;
+        }
+
+        fileToSpaceMap = new PersistentMap(indexFile, WRITE_BEHIND_DELAY);
+        spaceToFilesMap = new HashMap<String, Set<String>>();
+        for (String fileName : fileToSpaceMap.keySet()) {
+            index(fileName, fileToSpaceMap.get(fileName));
+        }
+
+        reconcile();
+    }
+
+    /**
+     * Bring the index up to date with the content of the pages folder. Only the page summary files that are not
+     * indexed are read.
+     */
+    private void reconcile() throws CoreException
+    {
+        Set<String> existingFileNames = new HashSet<String>();
+
+        if (pagesFolder.exists()) {
+            for (IResource resource : pagesFolder.members()) {
+                if (resource instanceof IFile && pageSummaryFileExtension.equals(resource.getFileExtension())) {
+                    existingFileNames.add(resource.getName());
+
+                    if (fileToSpaceMap.get(resource.getName()) == null) {
+                        try {
+                            XWikiEclipsePageSummary pageSummary =
+                                (XWikiEclipsePageSummary) StorageUtils.readFromJSON((IFile) resource,
+                                    XWikiEclipsePageSummary.class.getCanonicalName());
+                            add(pageSummary.getWiki(), pageSummary.getSpace(), resource.getName());
+                        } catch (Exception e) {
+                            CoreLog.logError(String.format("Unable to index page summary %s", resource.getName()), e);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (String fileName : new ArrayList<String>(fileToSpaceMap.keySet())) {
+            if (!existingFileNames.contains(fileName)) {
+                remove(fileName);
+            }
+        }
+    }
+
+    private void index(String fileName, String spaceId)
+    {
+        Set<String> fileNames = spaceToFilesMap.get(spaceId);
+        if (fileNames == null) {
+            fileNames = new HashSet<String>();
+            spaceToFilesMap.put(spaceId, fileNames);
+        }
+
+        fileNames.add(fileName);
+    }
+
+    private void unindex(String fileName)
+    {
+        String spaceId = fileToSpaceMap.get(fileName);
+        if (spaceId != null) {
+            Set<String> fileNames = spaceToFilesMap.get(spaceId);
+            if (fileNames != null) {
+                fileNames.remove(fileName);
+                if (fileNames.isEmpty()) {
+                    spaceToFilesMap.remove(spaceId);
+                }
+            }
+        }
+    }
+
+    private String getSpaceId(String wiki, String space)
+    {
+        return String.format("%s:%s", wiki, space); //$NON-NLS-1$
+    }
+}
@@ -21,14 +21,16 @@
 
 import java.io.File;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.xwiki.eclipse.model.ModelObject;
 import org.xwiki.eclipse.model.XWikiEclipseAttachment;
 import org.xwiki.eclipse.model.XWikiEclipseClass;
@@ -45,6 +47,7 @@
 import org.xwiki.eclipse.model.XWikiEclipseTag;
 import org.xwiki.eclipse.model.XWikiEclipseWikiSummary;
 import org.xwiki.eclipse.storage.rest.Hints;
+import org.xwiki.eclipse.storage.rest.IElementHandler;
 import org.xwiki.eclipse.storage.rest.XWikiRestClient;
 import org.xwiki.eclipse.storage.utils.IdProcessor;
 import org.xwiki.rest.model.jaxb.Attachment;
@@ -77,6 +80,13 @@ public class RestRemoteXWikiDataStorage implements IRemoteXWikiDataStorage
 
     private String username;
 
+    private final ServerMetadataCache metadataCache = new ServerMetadataCache();
+
+    /**
+     * Coalesces the concurrent requests for the same resource, so that they share a single HTTP call.
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
     public RestRemoteXWikiDataStorage(DataManager dataManager, String endpoint, String userName, String password)
         throws XWikiEclipseStorageException
     {
@@ -90,18 +100,33 @@ public RestRemoteXWikiDataStorage(DataManager dataManager, String endpoint, Stri
             //FIXME: REFACTORING: Is this needed?
             XWikiEclipseServerInfo serverInfo = getServerInfo();
         } catch (Exception e) {
+            if (restClient != null) {
+                restClient.dispose();
+            }
+
             throw new XWikiEclipseStorageException(e);
         }
     }
 
     public List<XWikiEclipseWikiSummary> getWikiSummaries() throws XWikiEclipseStorageException
     {
+        List<XWikiEclipseWikiSummary> cachedResult = metadataCache.getWikiSummaries();
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
         try {
             XWikiEclipseServerInfo serverInfo = getServerInfo();
 
             List<XWikiEclipseWikiSummary> result = new ArrayList<XWikiEclipseWikiSummary>();
 
-            List<Wiki> wikis = restClient.getWikis();
+            List<Wiki> wikis = singleFlight.execute(SingleFlight.key("wikis"), new Callable<List<Wiki>>() //$NON-NLS-1$
+            {
+                public List<Wiki> call() throws Exception
+                {
+                    return restClient.getWikis();
+                }
+            });
             for (Wiki wiki : wikis) {
                 XWikiEclipseWikiSummary wikiSummary = new XWikiEclipseWikiSummary(dataManager);
                 wikiSummary.setWikiId(wiki.getId());
@@ -113,6 +138,8 @@ public List<XWikiEclipseWikiSummary> getWikiSummaries() throws XWikiEclipseStora
                 result.add(wikiSummary);
             }
 
+            metadataCache.putWikiSummaries(result);
+
             return result;
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
@@ -127,22 +154,26 @@ public List<XWikiEclipseWikiSummary> getWikiSummaries() throws XWikiEclipseStora
     @Override
     public List<XWikiEclipseSpaceSummary> getSpaceSummaries(String wikiId) throws XWikiEclipseStorageException
     {
+        List<XWikiEclipseSpaceSummary> cachedResult = metadataCache.getSpaceSummaries(wikiId);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
         List<XWikiEclipseSpaceSummary> result = new ArrayList<XWikiEclipseSpaceSummary>();
 
         try {
-            List<Space> spaces = this.restClient.getSpaces(wikiId);
-            if (spaces != null) {
-                for (Space space : spaces) {
-                    XWikiEclipseSpaceSummary summary = new XWikiEclipseSpaceSummary(dataManager);
-                    summary.setId(space.getId());
-                    summary.setName(space.getName());
-                    summary.setUrl(space.getXwikiAbsoluteUrl());
-                    summary.setWiki(space.getWiki());
-
-                    result.add(summary);
-                }
+            for (Space space : fetchSpaces(wikiId)) {
+                XWikiEclipseSpaceSummary summary = new XWikiEclipseSpaceSummary(dataManager);
+                summary.setId(space.getId());
+                summary.setName(space.getName());
+                summary.setUrl(space.getXwikiAbsoluteUrl());
+                summary.setWiki(space.getWiki());
+
+                result.add(summary);
             }
 
+            metadataCache.putSpaceSummaries(wikiId, result);
+
             return result;
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
@@ -157,7 +188,19 @@ public List<XWikiEclipseSpaceSummary> getSpaceSummaries(String wikiId) throws XW
     @Override
     public void dispose()
     {
-        // TODO Auto-generated method stub
+        metadataCache.clear();
+        restClient.dispose();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.xwiki.eclipse.storage.IRemoteXWikiDataStorage#clearMetadataCache()
+     */
+    @Override
+    public void clearMetadataCache()
+    {
+        metadataCache.clear();
     }
 
     /**
@@ -169,33 +212,50 @@ public void dispose()
     @Override
     public XWikiEclipseServerInfo getServerInfo() throws XWikiEclipseStorageException
     {
-        XWikiEclipseServerInfo serverInfo = new XWikiEclipseServerInfo();
+        XWikiEclipseServerInfo cachedServerInfo = metadataCache.getServerInfo();
+        if (cachedServerInfo != null) {
+            return cachedServerInfo;
+        }
 
-        Xwiki xwiki;
         try {
-            xwiki = this.restClient.getServerInfo();
-            Syntaxes syntaxes = this.restClient.getSyntaxes();
-            List<String> syntaxeList = syntaxes.getSyntaxes();
-            serverInfo.setSyntaxes(syntaxeList);
+            return singleFlight.execute(SingleFlight.key("serverInfo"), //$NON-NLS-1$
+                new Callable<XWikiEclipseServerInfo>()
+                {
+                    public XWikiEclipseServerInfo call() throws Exception
+                    {
+                        return fetchServerInfo();
+                    }
+                });
+        } catch (Exception e) {
+            throw new XWikiEclipseStorageException(e);
+        }
+    }
 
-            // TODO: Improve this
-            String versionStr = xwiki.getVersion(); // e.g., 3.1-rc-1
-            serverInfo.setVersion(versionStr);
-            StringTokenizer tokenizer = new StringTokenizer(versionStr, "-");
+    private XWikiEclipseServerInfo fetchServerInfo() throws Exception
+    {
+        XWikiEclipseServerInfo serverInfo = new XWikiEclipseServerInfo();
 
-            String v = tokenizer.nextToken();
+        Xwiki xwiki = this.restClient.getServerInfo();
+        Syntaxes syntaxes = this.restClient.getSyntaxes();
+        List<String> syntaxeList = syntaxes.getSyntaxes();
+        serverInfo.setSyntaxes(syntaxeList);
 
-            tokenizer = new StringTokenizer(v, ".");
-            serverInfo.setMajorVersion(Integer.parseInt(tokenizer.nextToken()));
-            serverInfo.setMinorVersion(Integer.parseInt(tokenizer.nextToken()));
+        // TODO: Improve this
+        String versionStr = xwiki.getVersion(); // e.g., 3.1-rc-1
+        serverInfo.setVersion(versionStr);
+        StringTokenizer tokenizer = new StringTokenizer(versionStr, "-");
 
-            serverInfo.setBaseUrl(endpoint);
+        String v = tokenizer.nextToken();
 
-            return serverInfo;
+        tokenizer = new StringTokenizer(v, ".");
+        serverInfo.setMajorVersion(Integer.parseInt(tokenizer.nextToken()));
+        serverInfo.setMinorVersion(Integer.parseInt(tokenizer.nextToken()));
 
-        } catch (Exception e) {
-            throw new XWikiEclipseStorageException(e);
-        }
+        serverInfo.setBaseUrl(endpoint);
+
+        metadataCache.putServerInfo(serverInfo);
+
+        return serverInfo;
     }
 
     /**
@@ -210,49 +270,8 @@ public List<XWikiEclipsePageSummary> getPageSummaries(String wiki, String space)
         try {
             List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
 
-            List<PageSummary> pages = restClient.getPages(wiki, space);
-            if (pages != null) {
-
-                for (PageSummary pageSummary : pages) {
-                    List<XWikiEclipsePageSummary.Data> data = new ArrayList<XWikiEclipsePageSummary.Data>();
-                    for (Link link : pageSummary.getLinks()) {
-                        if ("http://www.xwiki.org/rel/objects".equals(link.getRel())) {
-                            data.add(XWikiEclipsePageSummary.Data.OBJECTS);
-                        } else if ("http://www.xwiki.org/rel/comments".equals(link.getRel())) {
-                            data.add(XWikiEclipsePageSummary.Data.COMMENTS);
-                        } else if ("http://www.xwiki.org/rel/attachments".equals(link.getRel())) {
-                            data.add(XWikiEclipsePageSummary.Data.ATTACHMENTS);
-                        } else if ("http://www.xwiki.org/rel/tags".equals(link.getRel())) {
-                            data.add(XWikiEclipsePageSummary.Data.TAGS);
-                        }
-                    }
-
-                    XWikiEclipsePageSummary page =
-                        new XWikiEclipsePageSummary(dataManager, data.toArray(new XWikiEclipsePageSummary.Data[0]));
-                    page.setId(pageSummary.getId());
-                    page.setName(pageSummary.getName());
-                    page.setFullName(pageSummary.getFullName());
-
-                    page.setParentId(pageSummary.getParentId());
-                    page.setSpace(pageSummary.getSpace());
-                    page.setTitle(pageSummary.getTitle());
-                    page.setUrl(pageSummary.getXwikiAbsoluteUrl());
-                    page.setWiki(pageSummary.getWiki());
-                    page.setSyntax(pageSummary.getSyntax());
-
-                    String defaultLanguage = pageSummary.getTranslations().getDefault();
-                    List<Translation> translations = pageSummary.getTranslations().getTranslations();
-                    if (translations != null && translations.size() > 0) {
-                        for (Translation translation : translations) {
-                            XWikiEclipsePageTranslationSummary t = new XWikiEclipsePageTranslationSummary(dataManager);
-                            t.setLanguage(translation.getLanguage());
-                            t.setDefaultLanguage(defaultLanguage);
-                            page.getTranslations().add(t);
-                        }
-                    }
-
-                    result.add(page);
-                }
+            for (PageSummary pageSummary : fetchPageSummaries(wiki, space)) {
+                result.add(toPageSummary(pageSummary));
             }
 
             return result;
@@ -261,6 +280,48 @@ public List<XWikiEclipsePageSummary> getPageSummaries(String wiki, String space)
         }
     }
 
+    private XWikiEclipsePageSummary toPageSummary(PageSummary pageSummary)
+    {
+        List<XWikiEclipsePageSummary.Data> data = new ArrayList<XWikiEclipsePageSummary.Data>();
+        for (Link link : pageSummary.getLinks()) {
+            if ("http://www.xwiki.org/rel/objects".equals(link.getRel())) {
+                data.add(XWikiEclipsePageSummary.Data.OBJECTS);
+            } else if ("http://www.xwiki.org/rel/comments".equals(link.getRel())) {
+                data.add(XWikiEclipsePageSummary.Data.COMMENTS);
+            } else if ("http://www.xwiki.org/rel/attachments".equals(link.getRel())) {
+                data.add(XWikiEclipsePageSummary.Data.ATTACHMENTS);
+            } else if ("http://www.xwiki.org/rel/tags".equals(link.getRel())) {
+                data.add(XWikiEclipsePageSummary.Data.TAGS);
+            }
+        }
+
+        XWikiEclipsePageSummary page =
+            new XWikiEclipsePageSummary(dataManager, data.toArray(new XWikiEclipsePageSummary.Data[0]));
+        page.setId(pageSummary.getId());
+        page.setName(pageSummary.getName());
+        page.setFullName(pageSummary.getFullName());
+
+        page.setParentId(pageSummary.getParentId());
+        page.setSpace(pageSummary.getSpace());
+        page.setTitle(pageSummary.getTitle());
+        page.setUrl(pageSummary.getXwikiAbsoluteUrl());
+        page.setWiki(pageSummary.getWiki());
+        page.setSyntax(pageSummary.getSyntax());
+
+        String defaultLanguage = pageSummary.getTranslations().getDefault();
+        List<Translation> translations = pageSummary.getTranslations().getTranslations();
+        if (translations != null && translations.size() > 0) {
+            for (Translation translation : translations) {
+                XWikiEclipsePageTranslationSummary t = new XWikiEclipsePageTranslationSummary(dataManager);
+                t.setLanguage(translation.getLanguage());
+                t.setDefaultLanguage(defaultLanguage);
+                page.getTranslations().add(t);
+            }
+        }
+
+        return page;
+    }
+
     @Override
     public List<XWikiEclipseObjectSummary> getObjectSummaries(String wiki, String space, String pageName)
         throws XWikiEclipseStorageException
@@ -268,7 +329,7 @@ public List<XWikiEclipseObjectSummary> getObjectSummaries(String wiki, String sp
         try {
             List<XWikiEclipseObjectSummary> result = new ArrayList<XWikiEclipseObjectSummary>();
 
-            List<ObjectSummary> objects = restClient.getObjects(wiki, space, pageName);
+            List<ObjectSummary> objects = fetchObjectSummaries(wiki, space, pageName);
 
             if (objects != null) {
                 for (ObjectSummary objectSummary : objects) {
@@ -299,7 +360,7 @@ public List<XWikiEclipseAttachment> getAttachments(String wiki, String space, St
         try {
             List<XWikiEclipseAttachment> result = new ArrayList<XWikiEclipseAttachment>();
 
-            List<Attachment> attachments = restClient.getAttachments(wiki, space, pageName);
+            List<Attachment> attachments = fetchAttachments(wiki, space, pageName);
             if (attachments != null) {
                 for (Attachment attachment : attachments) {
                     XWikiEclipseAttachment a = new XWikiEclipseAttachment(dataManager);
@@ -495,56 +556,73 @@ public List<XWikiEclipseObjectProperty> getObjectProperties(String wiki, String
     }
 
     @Override
-    public void download(String dir, XWikiEclipseAttachment attachment) throws XWikiEclipseStorageException
+    public void download(String dir, XWikiEclipseAttachment attachment, IProgressMonitor monitor)
+        throws XWikiEclipseStorageException
     {
         try {
             if (attachment != null) {
                 URI absoluteURI = new URI(attachment.getAbsoluteUrl());
-                restClient.download(dir, absoluteURI, attachment.getName());
+                restClient.download(new File(dir, attachment.getName()), absoluteURI, monitor);
             }
-        } catch (URISyntaxException e) {
+        } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
         }
     }
 
     @Override
-    public synchronized XWikiEclipsePage getPage(String wiki, String space, String pageName, String language)
+    public XWikiEclipsePage getPage(String wiki, String space, String pageName, String language)
         throws XWikiEclipseStorageException
     {
         try {
-            Page page = restClient.getPage(wiki, space, pageName, language);
-            XWikiEclipsePage result = new XWikiEclipsePage(dataManager);
-            result.setFullName(page.getFullName());
-            result.setId(page.getId());
-            result.setName(page.getName());
-            result.setSpace(page.getSpace());
-            result.setSyntax(page.getSyntax());
-            result.setTitle(page.getTitle());
-            result.setWiki(page.getWiki());
-            result.setContent(page.getContent());
-            result.setCreated(page.getCreated());
-            result.setCreator(page.getCreator());
-            result.setLanguage(page.getLanguage());
-            result.setMajorVersion(page.getMajorVersion());
-            result.setMinorVersion(page.getMinorVersion());
-            result.setModified(page.getModified());
-            result.setModifier(page.getModifier());
-            result.setParentId(page.getParentId());
-            result.setVersion(page.getVersion());
-
-            if (language != null && !language.equals("")) {
-                result.setUrl(page.getXwikiAbsoluteUrl() + "?language=" + language);
-            } else {
-                result.setUrl(page.getXwikiAbsoluteUrl() + "?language=default");
-            }
+            return toPage(fetchPage(wiki, space, pageName, language), language);
+        } catch (Exception e) {
+            throw new XWikiEclipseStorageException(e);
+        }
+    }
 
-            return result;
+    @Override
+    public XWikiEclipsePage getPageIfModified(String wiki, String space, String pageName, String language,
+        XWikiEclipsePage cachedPage) throws XWikiEclipseStorageException
+    {
+        try {
+            Page page = fetchPageIfModified(wiki, space, pageName, language, cachedPage.getModified());
 
+            return page != null ? toPage(page, language) : null;
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
         }
     }
 
+    private XWikiEclipsePage toPage(Page page, String language)
+    {
+        XWikiEclipsePage result = new XWikiEclipsePage(dataManager);
+        result.setFullName(page.getFullName());
+        result.setId(page.getId());
+        result.setName(page.getName());
+        result.setSpace(page.getSpace());
+        result.setSyntax(page.getSyntax());
+        result.setTitle(page.getTitle());
+        result.setWiki(page.getWiki());
+        result.setContent(page.getContent());
+        result.setCreated(page.getCreated());
+        result.setCreator(page.getCreator());
+        result.setLanguage(page.getLanguage());
+        result.setMajorVersion(page.getMajorVersion());
+        result.setMinorVersion(page.getMinorVersion());
+        result.setModified(page.getModified());
+        result.setModifier(page.getModifier());
+        result.setParentId(page.getParentId());
+        result.setVersion(page.getVersion());
+
+        if (language != null && !language.equals("")) {
+            result.setUrl(page.getXwikiAbsoluteUrl() + "?language=" + language);
+        } else {
+            result.setUrl(page.getXwikiAbsoluteUrl() + "?language=default");
+        }
+
+        return result;
+    }
+
     @Override
     public XWikiEclipseObject getObject(String wiki, String space, String pageName, String className, int number)
         throws XWikiEclipseStorageException
@@ -552,7 +630,7 @@ public XWikiEclipseObject getObject(String wiki, String space, String pageName,
         try {
             XWikiEclipseObject result = new XWikiEclipseObject(dataManager);
 
-            org.xwiki.rest.model.jaxb.Object object = restClient.getObject(wiki, space, pageName, className, number);
+            org.xwiki.rest.model.jaxb.Object object = fetchObject(wiki, space, pageName, className, number);
             result.setName(object.getId());
             result.setClassName(object.getClassName());
             result.setId(object.getId());
@@ -624,7 +702,7 @@ public XWikiEclipsePageSummary getPageSummary(String wiki, String space, String
         throws XWikiEclipseStorageException
     {
         try {
-            Page page = restClient.getPage(wiki, space, pageName, language);
+            Page page = fetchPage(wiki, space, pageName, language);
 
             List<XWikiEclipsePageSummary.Data> data = new ArrayList<XWikiEclipsePageSummary.Data>();
             for (Link link : page.getLinks()) {
@@ -671,12 +749,13 @@ public XWikiEclipsePageSummary getPageSummary(String wiki, String space, String
     }
 
     @Override
-    public void uploadAttachment(String wiki, String space, String pageName, URL fileUrl)
+    public void uploadAttachment(String wiki, String space, String pageName, URL fileUrl, IProgressMonitor monitor)
         throws XWikiEclipseStorageException
     {
         try {
             File f = new File(fileUrl.toURI());
-            restClient.uploadAttachment(wiki, space, pageName, f.getName(), fileUrl);
+            restClient.uploadAttachment(wiki, space, pageName, f.getName(), fileUrl, monitor);
+            singleFlight.invalidate("attachments", wiki, space, pageName); //$NON-NLS-1$
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
         }
@@ -685,8 +764,13 @@ public void uploadAttachment(String wiki, String space, String pageName, URL fil
     @Override
     public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWikiEclipseStorageException
     {
+        XWikiEclipseSpaceSummary cachedResult = metadataCache.getSpaceSummary(wiki, space);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
         try {
-            Space s = restClient.getSpace(wiki, space);
+            Space s = fetchSpace(wiki, space);
             XWikiEclipseSpaceSummary result = new XWikiEclipseSpaceSummary(dataManager);
 
             result.setId(s.getId());
@@ -694,6 +778,8 @@ public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWiki
             result.setUrl(s.getXwikiAbsoluteUrl());
             result.setWiki(s.getWiki());
 
+            metadataCache.putSpaceSummary(wiki, space, result);
+
             return result;
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
@@ -701,32 +787,36 @@ public XWikiEclipseSpaceSummary getSpace(String wiki, String space) throws XWiki
     }
 
     @Override
-    public void updateAttachment(String wiki, String space, String pageName, String attachmentName, URL fileUrl)
-        throws XWikiEclipseStorageException
+    public void updateAttachment(String wiki, String space, String pageName, String attachmentName, URL fileUrl,
+        IProgressMonitor monitor) throws XWikiEclipseStorageException
     {
         try {
-            restClient.uploadAttachment(wiki, space, pageName, attachmentName, fileUrl);
+            restClient.uploadAttachment(wiki, space, pageName, attachmentName, fileUrl, monitor);
+            singleFlight.invalidate("attachments", wiki, space, pageName); //$NON-NLS-1$
         } catch (Exception e) {
             throw new XWikiEclipseStorageException(e);
         }
     }
 
     @Override
-    public List<XWikiEclipseTag> getAllTagsInWiki(String wiki) throws XWikiEclipseStorageException
+    public List<XWikiEclipseTag> getAllTagsInWiki(final String wiki) throws XWikiEclipseStorageException
     {
         // FIXME: REFACTORING: Change the name of this method to getAllTags
         try {
-            List<XWikiEclipseTag> result = new ArrayList<XWikiEclipseTag>();
+            final List<XWikiEclipseTag> result = new ArrayList<XWikiEclipseTag>();
 
-            List<Tag> tags = restClient.getAllTags(wiki);
-            for (Tag tag : tags) {
-                XWikiEclipseTag t = new XWikiEclipseTag(dataManager);
+            restClient.getAllTags(wiki, new IElementHandler<Tag>()
+            {
+                public void handle(Tag tag)
+                {
+                    XWikiEclipseTag t = new XWikiEclipseTag(dataManager);
 
-                t.setName(tag.getName());
-                t.setWiki(wiki);
+                    t.setName(tag.getName());
+                    t.setWiki(wiki);
 
-                result.add(t);
-            }
+                    result.add(t);
+                }
+            });
 
             return result;
         } catch (Exception e) {
@@ -850,6 +940,7 @@ public void remove(ModelObject o) throws XWikiEclipseStorageException
             try {
                 restClient.removeObject(objectSummary.getWiki(), objectSummary.getSpace(), objectSummary.getPageName(),
                     objectSummary.getClassName(), objectSummary.getNumber());
+                invalidateObjects(objectSummary.getWiki(), objectSummary.getSpace(), objectSummary.getPageName());
             } catch (Exception e) {
                 throw new XWikiEclipseStorageException(e);
             }
@@ -860,11 +951,27 @@ public void remove(ModelObject o) throws XWikiEclipseStorageException
             try {
                 restClient.removePage(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName(),
                     pageSummary.getLanguage());
+                invalidatePage(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName());
+                invalidateObjects(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName());
+                /* The space is gone if it was its last page */
+                metadataCache.removeSpaceSummary(pageSummary.getWiki(), pageSummary.getSpace());
+                singleFlight.invalidate("attachments", pageSummary.getWiki(), pageSummary.getSpace(), //$NON-NLS-1$
+                    pageSummary.getName());
             } catch (Exception e) {
                 throw new XWikiEclipseStorageException(e);
             }
         }
 
+        if (o instanceof XWikiEclipseSpaceSummary) {
+            /*
+             * current REST API does not provide a Url for space deletion, the space is gone once its pages are removed
+             */
+            XWikiEclipseSpaceSummary spaceSummary = (XWikiEclipseSpaceSummary) o;
+            singleFlight.invalidate("space", spaceSummary.getWiki(), spaceSummary.getName()); //$NON-NLS-1$
+            singleFlight.invalidate("spaces", spaceSummary.getWiki()); //$NON-NLS-1$
+            metadataCache.removeSpaceSummary(spaceSummary.getWiki(), spaceSummary.getName());
+        }
+
         if (o instanceof XWikiEclipseComment) {
             /*
              * current REST API does not provide a Url for comment deletion, use the object Url instead
@@ -875,6 +982,7 @@ public void remove(ModelObject o) throws XWikiEclipseStorageException
             try {
                 restClient.removeObject(parser.getWiki(), parser.getSpace(), parser.getPage(), commentClassName,
                     comment.getId());
+                invalidateObjects(parser.getWiki(), parser.getSpace(), parser.getPage());
             } catch (Exception e) {
                 throw new XWikiEclipseStorageException(e);
             }
@@ -898,6 +1006,8 @@ public void remove(ModelObject o) throws XWikiEclipseStorageException
             try {
                 restClient
                     .removeAttachment(parser.getWiki(), parser.getSpace(), parser.getPage(), attachment.getName());
+                singleFlight.invalidate("attachments", parser.getWiki(), parser.getSpace(), //$NON-NLS-1$
+                    parser.getPage());
             } catch (Exception e) {
                 throw new XWikiEclipseStorageException(e);
             }
@@ -950,6 +1060,8 @@ public XWikiEclipsePage storePage(XWikiEclipsePage page) throws XWikiEclipseStor
             pageToBeStored.setWiki(page.getWiki());
 
             Page storedPage = restClient.storePage(pageToBeStored);
+            invalidatePage(page.getWiki(), page.getSpace(), page.getName());
+            metadataCache.pageStored(page.getWiki(), page.getSpace());
 
             XWikiEclipsePage result = new XWikiEclipsePage(dataManager);
             result.setContent(storedPage.getContent());
@@ -1041,6 +1153,7 @@ public XWikiEclipseObject storeObject(XWikiEclipseObject o) throws XWikiEclipseS
             }
 
             object = restClient.storeObject(object);
+            invalidateObjects(o.getWiki(), o.getSpace(), o.getPageName());
 
             XWikiEclipseObject result = new XWikiEclipseObject(dataManager);
 
@@ -1100,6 +1213,8 @@ public XWikiEclipsePage copyPage(XWikiEclipsePage sourcePage, String newWiki, St
 
             Page page =
                 restClient.copyPage(sourcePageToBeCopied, newWiki, newSpace, newPageName, sourcePage.getLanguage());
+            invalidatePage(newWiki, newSpace, newPageName);
+            metadataCache.pageStored(newWiki, newSpace);
 
             XWikiEclipsePage result = new XWikiEclipsePage(dataManager);
             result.setContent(page.getContent());
@@ -1152,6 +1267,11 @@ public XWikiEclipsePage movePage(XWikiEclipsePage sourcePage, String newWiki, St
 
             // FIXME: REFACTORING: Check language handling.
             Page page = restClient.renamePage(sourcePageToBeMoved, newWiki, newSpace, newPageName, null);
+            invalidatePage(sourcePage.getWiki(), sourcePage.getSpace(), sourcePage.getName());
+            invalidatePage(newWiki, newSpace, newPageName);
+            /* The source space is gone if it was its last page */
+            metadataCache.removeSpaceSummary(sourcePage.getWiki(), sourcePage.getSpace());
+            metadataCache.pageStored(newWiki, newSpace);
             if (page != null) {
                 XWikiEclipsePage result = new XWikiEclipsePage(dataManager);
                 result.setContent(page.getContent());
@@ -1186,4 +1306,134 @@ public Hints getAutoCompleteHints(String content, int offset, String syntax)
     {
     	return restClient.getAutoCompleteHints(content, offset, syntax);
     }
+
+    /**
+     * Make sure that the requests for a page made from now on don't share a call started before the page was modified.
+     * The listings of its space and wiki are invalidated too, since the page may have been created or removed.
+     */
+    private void invalidatePage(String wiki, String space, String pageName)
+    {
+        singleFlight.invalidate("page", wiki, space, pageName); //$NON-NLS-1$
+        singleFlight.invalidate("pageIfModified", wiki, space, pageName); //$NON-NLS-1$
+        singleFlight.invalidate("pages", wiki, space); //$NON-NLS-1$
+        singleFlight.invalidate("space", wiki, space); //$NON-NLS-1$
+        singleFlight.invalidate("spaces", wiki); //$NON-NLS-1$
+    }
+
+    /**
+     * Make sure that the requests for the objects of a page made from now on don't share a call started before they
+     * were modified.
+     */
+    private void invalidateObjects(String wiki, String space, String pageName)
+    {
+        singleFlight.invalidate("objects", wiki, space, pageName); //$NON-NLS-1$
+        singleFlight.invalidate("object", wiki, space, pageName); //$NON-NLS-1$
+    }
+
+    /*
+     * Coalesced retrieval of the REST resources: concurrent requests for the same resource share one HTTP call and its
+     * (unmodified) JAXB result, which each caller then converts to its own model objects.
+     */
+    private List<Space> fetchSpaces(final String wiki) throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("spaces", wiki), new Callable<List<Space>>() //$NON-NLS-1$
+        {
+            public List<Space> call() throws Exception
+            {
+                return restClient.getSpaces(wiki);
+            }
+        });
+    }
+
+    private Space fetchSpace(final String wiki, final String space) throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("space", wiki, space), new Callable<Space>() //$NON-NLS-1$
+        {
+            public Space call() throws Exception
+            {
+                return restClient.getSpace(wiki, space);
+            }
+        });
+    }
+
+    private List<PageSummary> fetchPageSummaries(final String wiki, final String space) throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("pages", wiki, space), //$NON-NLS-1$
+            new Callable<List<PageSummary>>()
+            {
+                public List<PageSummary> call() throws Exception
+                {
+                    return restClient.getPages(wiki, space);
+                }
+            });
+    }
+
+    private Page fetchPage(final String wiki, final String space, final String pageName, final String language)
+        throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("page", wiki, space, pageName, language), //$NON-NLS-1$
+            new Callable<Page>()
+            {
+                public Page call() throws Exception
+                {
+                    return restClient.getPage(wiki, space, pageName, language);
+                }
+            });
+    }
+
+    private Page fetchPageIfModified(final String wiki, final String space, final String pageName,
+        final String language, final Calendar modified) throws Exception
+    {
+        /* Only revalidations of the same cached version can share their answer */
+        String key =
+            SingleFlight.key("pageIfModified", wiki, space, pageName, language, //$NON-NLS-1$
+                modified != null ? modified.getTimeInMillis() : null);
+
+        return singleFlight.execute(key, new Callable<Page>()
+        {
+            public Page call() throws Exception
+            {
+                return restClient.getPageIfModified(wiki, space, pageName, language, modified);
+            }
+        });
+    }
+
+    private List<ObjectSummary> fetchObjectSummaries(final String wiki, final String space, final String pageName)
+        throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("objects", wiki, space, pageName), //$NON-NLS-1$
+            new Callable<List<ObjectSummary>>()
+            {
+                public List<ObjectSummary> call() throws Exception
+                {
+                    return restClient.getObjects(wiki, space, pageName);
+                }
+            });
+    }
+
+    private org.xwiki.rest.model.jaxb.Object fetchObject(final String wiki, final String space, final String pageName,
+        final String className, final int number) throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("object", wiki, space, pageName, className, number), //$NON-NLS-1$
+            new Callable<org.xwiki.rest.model.jaxb.Object>()
+            {
+                public org.xwiki.rest.model.jaxb.Object call() throws Exception
+                {
+                    return restClient.getObject(wiki, space, pageName, className, number);
+                }
+            });
+    }
+
+    private List<Attachment> fetchAttachments(final String wiki, final String space, final String pageName)
+        throws Exception
+    {
+        return singleFlight.execute(SingleFlight.key("attachments", wiki, space, pageName), //$NON-NLS-1$
+            new Callable<List<Attachment>>()
+            {
+                public List<Attachment> call() throws Exception
+                {
+                    return restClient.getAttachments(wiki, space, pageName);
+                }
+            });
+    }
 }
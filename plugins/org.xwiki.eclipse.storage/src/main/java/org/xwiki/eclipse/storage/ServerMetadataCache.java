@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.eclipse.core.metrics.HitRatio;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
+import org.xwiki.eclipse.model.XWikiEclipseServerInfo;
+import org.xwiki.eclipse.model.XWikiEclipseSpaceSummary;
+import org.xwiki.eclipse.model.XWikiEclipseWikiSummary;
+
+/**
+ * A cache of the metadata of an XWiki server that rarely changes during a connection: the server information (version
+ * and syntaxes), the list of the wikis, the list of the spaces of each wiki and the summaries of the spaces. It is owned
+ * by a
+ * {@link RestRemoteXWikiDataStorage}, so it lives as long as the connection it caches the metadata of.
+ * <p>
+ * Entries expire after {@link #TIME_TO_LIVE} milliseconds and can be dropped explicitly with {@link #clear()}. The
+ * owner keeps the spaces up to date with the changes made through the connection: see
+ * {@link #removeSpaceSummary(String, String)} and {@link #pageStored(String, String)}.
+ *
+ * @version $Id$
+ */
+class ServerMetadataCache
+{
+    /**
+     * The time, in milliseconds, after which a cached entry is considered stale.
+     */
+    static final long TIME_TO_LIVE = 5 * 60 * 1000;
+
+    private static final HitRatio HIT_RATIO =
+        MetricsRegistry.getDefault().getHitRatio("cache.serverMetadata"); //$NON-NLS-1$
+
+    private Entry<XWikiEclipseServerInfo> serverInfo;
+
+    private Entry<List<XWikiEclipseWikiSummary>> wikiSummaries;
+
+    /**
+     * The cached space summaries, by space id (wiki:space).
+     */
+    private final Map<String, Entry<XWikiEclipseSpaceSummary>> spaceSummaries =
+        new HashMap<String, Entry<XWikiEclipseSpaceSummary>>();
+
+    /**
+     * The cached lists of the spaces, by wiki.
+     */
+    private final Map<String, Entry<List<XWikiEclipseSpaceSummary>>> spaceLists =
+        new HashMap<String, Entry<List<XWikiEclipseSpaceSummary>>>();
+
+    public synchronized XWikiEclipseServerInfo getServerInfo()
+    {
+        return get(serverInfo);
+    }
+
+    public synchronized void putServerInfo(XWikiEclipseServerInfo serverInfo)
+    {
+        this.serverInfo = new Entry<XWikiEclipseServerInfo>(serverInfo);
+    }
+
+    /**
+     * @return A copy of the cached list of the wikis, or null if it is not cached.
+     */
+    public synchronized List<XWikiEclipseWikiSummary> getWikiSummaries()
+    {
+        List<XWikiEclipseWikiSummary> result = get(wikiSummaries);
+
+        return result != null ? new ArrayList<XWikiEclipseWikiSummary>(result) : null;
+    }
+
+    public synchronized void putWikiSummaries(List<XWikiEclipseWikiSummary> wikiSummaries)
+    {
+        this.wikiSummaries =
+            new Entry<List<XWikiEclipseWikiSummary>>(new ArrayList<XWikiEclipseWikiSummary>(wikiSummaries));
+    }
+
+    public synchronized XWikiEclipseSpaceSummary getSpaceSummary(String wiki, String space)
+    {
+        return get(spaceSummaries.get(getSpaceId(wiki, space)));
+    }
+
+    public synchronized void putSpaceSummary(String wiki, String space, XWikiEclipseSpaceSummary spaceSummary)
+    {
+        spaceSummaries.put(getSpaceId(wiki, space), new Entry<XWikiEclipseSpaceSummary>(spaceSummary));
+    }
+
+    /**
+     * @return A copy of the cached list of the spaces of a wiki, or null if it is not cached.
+     */
+    public synchronized List<XWikiEclipseSpaceSummary> getSpaceSummaries(String wiki)
+    {
+        List<XWikiEclipseSpaceSummary> result = get(spaceLists.get(wiki));
+
+        return result != null ? new ArrayList<XWikiEclipseSpaceSummary>(result) : null;
+    }
+
+    public synchronized void putSpaceSummaries(String wiki, List<XWikiEclipseSpaceSummary> spaceSummaries)
+    {
+        spaceLists.put(wiki, new Entry<List<XWikiEclipseSpaceSummary>>(new ArrayList<XWikiEclipseSpaceSummary>(
+            spaceSummaries)));
+    }
+
+    /**
+     * Drop a space, and the list of the spaces of its wiki, e.g., after the space or one of its pages has been removed,
+     * which removes the space if it was the last one.
+     */
+    public synchronized void removeSpaceSummary(String wiki, String space)
+    {
+        spaceSummaries.remove(getSpaceId(wiki, space));
+        spaceLists.remove(wiki);
+    }
+
+    /**
+     * Drop the list of the spaces of a wiki if a page has been stored in a space it does not contain, i.e., in a new
+     * space.
+     */
+    public synchronized void pageStored(String wiki, String space)
+    {
+        Entry<List<XWikiEclipseSpaceSummary>> entry = spaceLists.get(wiki);
+        if (entry != null) {
+            for (XWikiEclipseSpaceSummary spaceSummary : entry.value) {
+                if (spaceSummary.getName().equals(space)) {
+                    return;
+                }
+            }
+
+            spaceLists.remove(wiki);
+        }
+    }
+
+    /**
+     * Drop all the cached metadata, so that it is retrieved again from the server.
+     */
+    public synchronized void clear()
+    {
+        serverInfo = null;
+        wikiSummaries = null;
+        spaceSummaries.clear();
+        spaceLists.clear();
+    }
+
+    private static <T> T get(Entry<T> entry)
+    {
+        if (entry == null || System.currentTimeMillis() - entry.timestamp > TIME_TO_LIVE) {
+            HIT_RATIO.miss();
+            return null;
+        }
+
+        HIT_RATIO.hit();
+        return entry.value;
+    }
+
+    private static String getSpaceId(String wiki, String space)
+    {
+        return String.format("%s:%s", wiki, space); //$NON-NLS-1$
+    }
+
+    private static class Entry<T>
+    {
+        private final T value;
+
+        private final long timestamp = System.currentTimeMillis();
+
+        public Entry(T value)
+        {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces concurrent calls for the same resource into a single call. The first caller asking for a key runs the
+ * call in its own thread; the callers asking for the same key while it is in flight wait for it and share its result
+ * or its failure. Calls for different keys run in parallel. Nothing is cached: once a call completes, the next caller
+ * asking for the same key triggers a new one.
+ * <p>
+ * A call started before a resource is modified may return the resource as it was before the modification, so the
+ * writers must {@link #invalidate(Object...)} the keys of the resources they modify: the callers asking for them once
+ * the modification is done don't join the calls already in flight.
+ * <p>
+ * The shared result is handed to all the waiting callers, so it should not be modified by them.
+ *
+ * @version $Id$
+ */
+public class SingleFlight
+{
+    private final ConcurrentMap<String, FutureTask< ? >> calls = new ConcurrentHashMap<String, FutureTask< ? >>();
+
+    /**
+     * @param key The key identifying the resource.
+     * @param callable The call retrieving the resource, run only if no call is in flight for the same key.
+     * @return The result of the call.
+     * @throws Exception The exception thrown by the call.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Callable<V> callable) throws Exception
+    {
+        FutureTask<V> task = new FutureTask<V>(callable);
+        FutureTask<V> inFlight = (FutureTask<V>) calls.putIfAbsent(key, task);
+        if (inFlight == null) {
+            try {
+                task.run();
+            } finally {
+                calls.remove(key, task);
+            }
+
+            inFlight = task;
+        }
+
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Stop sharing the calls in flight for the resources whose key starts with the given parts: the callers asking for
+     * them afterwards trigger a new call. The callers already waiting for a call still get its result.
+     *
+     * @param parts The first parts of the keys of the resources, as given to {@link #key(Object...)}.
+     */
+    public void invalidate(Object... parts)
+    {
+        String prefix = key(parts);
+        for (Map.Entry<String, FutureTask< ? >> call : calls.entrySet()) {
+            if (call.getKey().startsWith(prefix)) {
+                calls.remove(call.getKey(), call.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param parts The parts identifying a resource.
+     * @return A key made of the given parts.
+     */
+    public static String key(Object... parts)
+    {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            /* Separate the parts with a character that cannot appear in a name */
+            key.append(part).append('\u0000');
+        }
+
+        return key.toString();
+    }
+}
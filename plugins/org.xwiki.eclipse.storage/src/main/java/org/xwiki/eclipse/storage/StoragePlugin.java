@@ -20,8 +20,13 @@
  */
 package org.xwiki.eclipse.storage;
 
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
 import org.osgi.framework.BundleContext;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.storage.utils.ISerializer;
+import org.xwiki.eclipse.storage.utils.JsonSerializer;
+import org.xwiki.eclipse.storage.utils.StorageUtils;
 
 /**
  * @version $Id$
@@ -31,6 +36,12 @@ public class StoragePlugin extends Plugin
     // The plug-in ID
     public static final String PLUGIN_ID = "org.xwiki.eclipse.storage"; //$NON-NLS-1$
 
+    /**
+     * The preference holding the name of the format the local storage is written with: "json" (the default),
+     * "binary" or "binary-compressed". It can be set, e.g., in the plugin customization file.
+     */
+    public static final String STORAGE_FORMAT_PREFERENCE = "storageFormat"; //$NON-NLS-1$
+
     // The shared instance
     private static StoragePlugin plugin;
 
@@ -49,6 +60,15 @@ public void start(BundleContext context) throws Exception
     {
         super.start(context);
         plugin = this;
+
+        String format =
+            Platform.getPreferencesService().getString(PLUGIN_ID, STORAGE_FORMAT_PREFERENCE, JsonSerializer.NAME, null);
+        ISerializer serializer = StorageUtils.getSerializer(format);
+        if (serializer != null) {
+            StorageUtils.setSerializer(serializer);
+        } else {
+            CoreLog.logWarning(String.format("Unknown storage format %s, using %s", format, JsonSerializer.NAME));
+        }
     }
 
     /*
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of the background synchronization of the locally modified pages and objects that is started when a data
+ * manager connects. It is the data of the DATA_MANAGER_SYNCHRONIZED core event.
+ *
+ * @version $Id$
+ */
+public class SynchronizationSummary
+{
+    private final List<String> synchronizedIds = new ArrayList<String>();
+
+    private final List<String> conflictingIds = new ArrayList<String>();
+
+    private final List<String> failedIds = new ArrayList<String>();
+
+    private boolean canceled;
+
+    void addSynchronized(String id)
+    {
+        synchronizedIds.add(id);
+    }
+
+    void addConflicting(String id)
+    {
+        conflictingIds.add(id);
+    }
+
+    void addFailed(String id)
+    {
+        failedIds.add(id);
+    }
+
+    void setCanceled(boolean canceled)
+    {
+        this.canceled = canceled;
+    }
+
+    /**
+     * @return The extended ids of the pages and objects that have been stored remotely.
+     */
+    public List<String> getSynchronizedIds()
+    {
+        return Collections.unmodifiableList(synchronizedIds);
+    }
+
+    /**
+     * @return The extended ids of the pages found in conflict with their remote version.
+     */
+    public List<String> getConflictingIds()
+    {
+        return Collections.unmodifiableList(conflictingIds);
+    }
+
+    /**
+     * @return The extended ids of the pages and objects that could not be synchronized. They are still dirty and will
+     *         be synchronized again at the next connection.
+     */
+    public List<String> getFailedIds()
+    {
+        return Collections.unmodifiableList(failedIds);
+    }
+
+    /**
+     * @return true if the synchronization was canceled, e.g., because the data manager has been disconnected, before
+     *         all the pages and objects were synchronized.
+     */
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+}
@@ -32,4 +32,14 @@ public XWikiEclipseStorageException(Throwable e)
     {
         super(e);
     }
+
+    public XWikiEclipseStorageException(String message)
+    {
+        super(message);
+    }
+
+    public XWikiEclipseStorageException(String message, Throwable e)
+    {
+        super(message, e);
+    }
 }
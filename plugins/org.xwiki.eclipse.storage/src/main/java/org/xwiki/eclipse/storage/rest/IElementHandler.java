@@ -0,0 +1,36 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.rest;
+
+/**
+ * A callback receiving the elements of a list resource one by one, as they are read from the response. This allows to
+ * process large listings without building the whole list in memory.
+ *
+ * @param <T> The type of the elements.
+ * @version $Id$
+ */
+public interface IElementHandler<T>
+{
+    /**
+     * @param element The element that has just been read.
+     * @throws Exception If the element cannot be processed. Reading the list is aborted.
+     */
+    void handle(T element) throws Exception;
+}
@@ -21,23 +21,40 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.print.URIException;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -45,10 +62,20 @@
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.xwiki.eclipse.core.CoreLog;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.xwiki.eclipse.core.metrics.Counter;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
 import org.xwiki.eclipse.storage.utils.StorageUtils;
 import org.xwiki.rest.model.jaxb.Attachment;
 import org.xwiki.rest.model.jaxb.Attachments;
@@ -64,11 +91,9 @@
 import org.xwiki.rest.model.jaxb.Objects;
 import org.xwiki.rest.model.jaxb.Page;
 import org.xwiki.rest.model.jaxb.PageSummary;
-import org.xwiki.rest.model.jaxb.Pages;
 import org.xwiki.rest.model.jaxb.Properties;
 import org.xwiki.rest.model.jaxb.Property;
 import org.xwiki.rest.model.jaxb.Space;
-import org.xwiki.rest.model.jaxb.Spaces;
 import org.xwiki.rest.model.jaxb.Syntaxes;
 import org.xwiki.rest.model.jaxb.Tag;
 import org.xwiki.rest.model.jaxb.Tags;
@@ -84,11 +109,79 @@
  */
 public class XWikiRestClient
 {
-    private URI serverURI;
+    /**
+     * The default number of pooled connections that can be kept open towards the XWiki server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 4;
+
+    /**
+     * Time after which an unused pooled connection is closed.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT = 30000;
+
+    /**
+     * The size of the buffer used to stream attachments.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The extension of the file an attachment is downloaded to, until the download is complete.
+     */
+    private static final String PARTIAL_FILE_EXTENSION = ".part"; //$NON-NLS-1$
+
+    /**
+     * The extension of the file holding the validator (ETag or Last-Modified date) of the content of a partial file,
+     * sent in the If-Range header so that a download is only resumed if the file has not changed.
+     */
+    private static final String VALIDATOR_FILE_EXTENSION = ".validator"; //$NON-NLS-1$
+
+    private static final String JAXB_CONTEXT_PATH = "org.xwiki.rest.model.jaxb"; //$NON-NLS-1$
+
+    /**
+     * The JAXB context of the REST model, shared by all the clients. Creating it is expensive, while it is
+     * thread-safe.
+     */
+    private static JAXBContext context;
+
+    /**
+     * Marshallers and unmarshallers are not thread-safe but are cheap to reuse, so each request borrows one from these
+     * pools and gives it back when done.
+     */
+    private static final Queue<Marshaller> marshallerPool = new ConcurrentLinkedQueue<Marshaller>();
 
-    protected Marshaller marshaller;
+    private static final Queue<Unmarshaller> unmarshallerPool = new ConcurrentLinkedQueue<Unmarshaller>();
 
-    protected Unmarshaller unmarshaller;
+    private static final XMLInputFactory xmlInputFactory = createXMLInputFactory();
+
+    private static final String OBJECT_CLASS_PLACEHOLDER = "{objectClass}"; //$NON-NLS-1$
+
+    /**
+     * The resource collections of the REST API, with the placeholder used in the metric names for the path segment
+     * that follows them.
+     */
+    private static final Map<String, String> ENDPOINT_PLACEHOLDERS = new HashMap<String, String>();
+
+    static {
+        ENDPOINT_PLACEHOLDERS.put("wikis", "{wiki}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("spaces", "{space}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("pages", "{page}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("translations", "{language}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("history", "{version}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("attachments", "{attachment}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("comments", "{comment}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("classes", "{class}"); //$NON-NLS-1$ //$NON-NLS-2$
+        ENDPOINT_PLACEHOLDERS.put("objects", OBJECT_CLASS_PLACEHOLDER); //$NON-NLS-1$
+        ENDPOINT_PLACEHOLDERS.put("properties", "{property}"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static final Counter BYTES_SENT = MetricsRegistry.getDefault().getCounter("rest.bytesSent"); //$NON-NLS-1$
+
+    private static final Counter BYTES_RECEIVED =
+        MetricsRegistry.getDefault().getCounter("rest.bytesReceived"); //$NON-NLS-1$
+
+    private static final Counter ERRORS = MetricsRegistry.getDefault().getCounter("rest.errors"); //$NON-NLS-1$
+
+    private URI serverURI;
 
     protected ObjectFactory objectFactory;
 
@@ -96,24 +189,70 @@
 
     private String password;
 
+    /**
+     * The pool of keep-alive connections shared by all the requests issued by this client.
+     */
+    private ThreadSafeClientConnManager connectionManager;
+
+    private DefaultHttpClient httpClient;
+
+    /**
+     * The Basic authentication header, computed once and sent preemptively with every request.
+     */
+    private Header authorizationHeader;
+
+    private IdleConnectionEvictor idleConnectionEvictor;
+
+    /**
+     * The entity tags sent by the server with the pages retrieved through
+     * {@link #getPageIfModified(String, String, String, String, Calendar)}, by page URI.
+     */
+    private final Map<URI, String> pageETags = new ConcurrentHashMap<URI, String>();
+
     public XWikiRestClient(String serverURLAsString, String username, String password) throws Exception
+    {
+        this(serverURLAsString, username, password, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    }
+
+    public XWikiRestClient(String serverURLAsString, String username, String password, int maxConnectionsPerRoute)
+        throws Exception
     {
 
         this.serverURI = new URI(serverURLAsString);
         this.username = username;
         this.password = password;
 
-        JAXBContext context = JAXBContext.newInstance("org.xwiki.rest.model.jaxb");
-        marshaller = context.createMarshaller();
-        unmarshaller = context.createUnmarshaller();
+        /* Fail early if the REST model cannot be loaded */
+        getContext();
 
         objectFactory = new ObjectFactory();
+
+        connectionManager = new ThreadSafeClientConnManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(2 * maxConnectionsPerRoute);
+        httpClient = new DefaultHttpClient(connectionManager);
+
+        authorizationHeader =
+            BasicScheme.authenticate(new UsernamePasswordCredentials(username, password), "UTF-8", false);
+
+        idleConnectionEvictor = new IdleConnectionEvictor(connectionManager, IDLE_CONNECTION_TIMEOUT);
+        idleConnectionEvictor.start();
+    }
+
+    /**
+     * Release the pooled connections held by this client. The client cannot be used anymore afterwards.
+     */
+    public void dispose()
+    {
+        idleConnectionEvictor.shutdown();
+        connectionManager.shutdown();
     }
 
     public boolean login(String username, String password) throws Exception
     {
         try {
             HttpResponse loginResponse = executeGet(serverURI);
+            release(loginResponse);
 
             int statusCode = loginResponse.getStatusLine().getStatusCode();
 
@@ -137,95 +276,257 @@ public boolean logout()
         // do nothing
         return true;
     }
-    
-    protected HttpResponse executeGet(URI uri) throws Exception
+
+    /**
+     * Execute a request, recording its latency (up to the reception of the response headers) per endpoint, the bytes
+     * sent and received and the failed requests.
+     */
+    protected HttpResponse execute(HttpUriRequest request) throws Exception
     {
-        DefaultHttpClient httpClient = new DefaultHttpClient();
+        request.addHeader(authorizationHeader);
 
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentLength() > 0) {
+                BYTES_SENT.add(entity.getContentLength());
+            }
+        }
 
-        HttpGet request = new HttpGet(uri);
-        request.addHeader(new BasicScheme().authenticate(creds, request));
-        HttpResponse response = httpClient.execute(request);
+        long start = System.nanoTime();
+        HttpResponse response;
+        try {
+            response = httpClient.execute(request);
+        } catch (Exception e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            MetricsRegistry.getDefault().getTimer(getEndpointName(request)).recordSince(start);
+        }
+
+        if (response.getStatusLine().getStatusCode() >= HttpStatus.SC_BAD_REQUEST) {
+            ERRORS.increment();
+        }
+
+        if (response.getEntity() != null) {
+            response.setEntity(new CountingEntity(response.getEntity()));
+        }
 
         return response;
     }
 
-    protected HttpResponse executePostXml(URI uri, java.lang.Object object) throws Exception
+    /**
+     * @return The name of the latency metric of the request: its method and its path relative to the REST root, with
+     *         the resource names replaced by placeholders (e.g., <code>rest.GET /wikis/{wiki}/spaces/{space}</code>).
+     */
+    private String getEndpointName(HttpUriRequest request)
     {
-        DefaultHttpClient httpClient = new DefaultHttpClient();
+        String path = request.getURI().getPath();
+        String basePath = serverURI.getPath();
+        if (path == null || basePath == null || !path.startsWith(basePath)) {
+            /* E.g., an attachment downloaded from its absolute URL */
+            return String.format("rest.%s {external}", request.getMethod()); //$NON-NLS-1$
+        }
+
+        StringBuilder template = new StringBuilder();
+        String placeholder = null;
+        for (String segment : path.substring(basePath.length()).split("/")) { //$NON-NLS-1$
+            if (segment.length() == 0) {
+                continue;
+            }
+
+            template.append('/');
+            if (placeholder != null) {
+                template.append(placeholder);
+                /* An object is identified by its class name and its number */
+                placeholder = OBJECT_CLASS_PLACEHOLDER.equals(placeholder) ? "{number}" : null; //$NON-NLS-1$
+            } else {
+                template.append(segment);
+                placeholder = ENDPOINT_PLACEHOLDERS.get(segment);
+            }
+        }
+
+        if (template.length() == 0) {
+            template.append('/');
+        }
 
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
+        return String.format("rest.%s %s", request.getMethod(), template); //$NON-NLS-1$
+    }
+
+    protected HttpResponse executeGet(URI uri) throws Exception
+    {
+        HttpGet request = new HttpGet(uri);
+        HttpResponse response = execute(request);
 
+        return response;
+    }
+
+    protected HttpResponse executePostXml(URI uri, java.lang.Object object) throws Exception
+    {
         HttpPost request = new HttpPost(uri);
-        request.addHeader(new BasicScheme().authenticate(creds, request));
         request.addHeader("Content-type", "text/xml; charset=UTF-8");
         request.addHeader("Accept", MediaType.APPLICATION_XML);
 
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        marshaller.marshal(object, os);
-        HttpEntity entity = new ByteArrayEntity(os.toByteArray());
+        HttpEntity entity = new ByteArrayEntity(marshal(object));
         request.setEntity(entity);
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response = execute(request);
 
         return response;
     }
 
     protected HttpResponse executePostString(URI uri, String content) throws Exception
     {
-        DefaultHttpClient httpClient = new DefaultHttpClient();
-
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
-
         HttpPost request = new HttpPost(uri);
-        request.addHeader(new BasicScheme().authenticate(creds, request));
         request.addHeader("Content-type", "text/plain; charset=UTF-8");
         request.addHeader("Accept", MediaType.APPLICATION_XML);
 
         HttpEntity entity = new ByteArrayEntity(content.getBytes());
         request.setEntity(entity);
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response = execute(request);
 
         return response;
     }
+
     protected HttpResponse executePutXml(URI uri, java.lang.Object object) throws Exception
     {
-        DefaultHttpClient httpClient = new DefaultHttpClient();
-
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
-
         HttpPut request = new HttpPut(uri);
-        request.addHeader(new BasicScheme().authenticate(creds, request));
         request.addHeader("Content-type", "text/xml; charset=UTF-8");
         request.addHeader("Accept", MediaType.APPLICATION_XML);
 
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        marshaller.marshal(object, os);
-        HttpEntity entity = new ByteArrayEntity(os.toByteArray());
+        HttpEntity entity = new ByteArrayEntity(marshal(object));
         request.setEntity(entity);
 
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response = execute(request);
 
         return response;
     }
 
     protected HttpResponse executeDelete(URI uri) throws Exception
     {
-        DefaultHttpClient httpClient = new DefaultHttpClient();
-
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
-
         HttpDelete request = new HttpDelete(uri);
-        request.addHeader(new BasicScheme().authenticate(creds, request));
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response = execute(request);
+        release(response);
 
         return response;
     }
 
+    private static synchronized JAXBContext getContext() throws JAXBException
+    {
+        if (context == null) {
+            context = JAXBContext.newInstance(JAXB_CONTEXT_PATH);
+        }
+
+        return context;
+    }
+
+    private static XMLInputFactory createXMLInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        /* REST responses never need a DTD, and resolving external entities would be a security hole */
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        return factory;
+    }
+
+    private static Marshaller borrowMarshaller() throws JAXBException
+    {
+        Marshaller marshaller = marshallerPool.poll();
+
+        return marshaller != null ? marshaller : getContext().createMarshaller();
+    }
+
+    private static Unmarshaller borrowUnmarshaller() throws JAXBException
+    {
+        Unmarshaller unmarshaller = unmarshallerPool.poll();
+
+        return unmarshaller != null ? unmarshaller : getContext().createUnmarshaller();
+    }
+
+    /**
+     * Marshal an object to XML.
+     */
+    protected byte[] marshal(java.lang.Object object) throws JAXBException
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        Marshaller marshaller = borrowMarshaller();
+        try {
+            marshaller.marshal(object, os);
+        } finally {
+            marshallerPool.offer(marshaller);
+        }
+
+        return os.toByteArray();
+    }
+
+    /**
+     * Unmarshal the response body, as it is received, and give the underlying connection back to the pool.
+     */
+    protected java.lang.Object unmarshal(HttpResponse response) throws Exception
+    {
+        Unmarshaller unmarshaller = borrowUnmarshaller();
+        try {
+            return unmarshaller.unmarshal(response.getEntity().getContent());
+        } finally {
+            unmarshallerPool.offer(unmarshaller);
+            release(response);
+        }
+    }
+
+    /**
+     * Read a list resource with a streaming parser, unmarshalling its elements one at a time, so that the whole
+     * document is never held in memory. The underlying connection is given back to the pool afterwards.
+     *
+     * @param response The response whose body is the list resource.
+     * @param elementName The local name of the elements of the list, i.e., of the children of the root element.
+     * @param elementType The type the elements are unmarshalled to.
+     * @param handler The handler receiving the elements.
+     */
+    protected <T> void unmarshalList(HttpResponse response, String elementName, java.lang.Class<T> elementType,
+        IElementHandler<T> handler) throws Exception
+    {
+        Unmarshaller unmarshaller = borrowUnmarshaller();
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(response.getEntity().getContent());
+
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.getEventType();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == 1 && elementName.equals(reader.getLocalName())) {
+                        /* This leaves the reader right after the end of the element */
+                        handler.handle(unmarshaller.unmarshal(reader, elementType).getValue());
+                        continue;
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+
+                reader.next();
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            unmarshallerPool.offer(unmarshaller);
+            release(response);
+        }
+    }
+
+    /**
+     * Consume whatever is left of the response body so that the connection can be reused.
+     */
+    protected void release(HttpResponse response) throws IOException
+    {
+        EntityUtils.consume(response.getEntity());
+    }
+
     public Xwiki getServerInfo() throws Exception
     {
         HttpResponse response = executeGet(serverURI);
-        Xwiki xwiki = (Xwiki) unmarshaller.unmarshal(response.getEntity().getContent());
+        Xwiki xwiki = (Xwiki) unmarshal(response);
 
         return xwiki;
     }
@@ -244,29 +545,50 @@ public List<Wiki> getWikis() throws Exception
         URI wikisURI = getURI(String.format("/wikis"));
 
         HttpResponse response = executeGet(wikisURI);
-        Wikis wikis = (Wikis) unmarshaller.unmarshal(response.getEntity().getContent());
+        Wikis wikis = (Wikis) unmarshal(response);
 
         return wikis.getWikis();
     }
 
     public List<Space> getSpaces(String wiki) throws Exception
+    {
+        List<Space> result = new ArrayList<Space>();
+        getSpaces(wiki, new ElementList<Space>(result));
+
+        return result;
+    }
+
+    /**
+     * @param wiki The wiki.
+     * @param handler The handler receiving the spaces as they are read.
+     */
+    public void getSpaces(String wiki, IElementHandler<Space> handler) throws Exception
     {
         URI spacesURI = getURI(String.format("/wikis/%s/spaces", wiki));
 
         HttpResponse response = executeGet(spacesURI);
-        Spaces spaces = (Spaces) unmarshaller.unmarshal(response.getEntity().getContent());
-
-        return spaces.getSpaces();
+        unmarshalList(response, "space", Space.class, handler); //$NON-NLS-1$
     }
 
     public List<PageSummary> getPages(String wiki, String space) throws Exception
+    {
+        List<PageSummary> result = new ArrayList<PageSummary>();
+        getPages(wiki, space, new ElementList<PageSummary>(result));
+
+        return result;
+    }
+
+    /**
+     * @param wiki The wiki.
+     * @param space The space.
+     * @param handler The handler receiving the page summaries as they are read.
+     */
+    public void getPages(String wiki, String space, IElementHandler<PageSummary> handler) throws Exception
     {
         URI pagesURI = getURI(String.format("/wikis/%s/spaces/%s/pages", wiki, space));
 
         HttpResponse response = executeGet(pagesURI);
-        Pages pages = (Pages) unmarshaller.unmarshal(response.getEntity().getContent());
-
-        return pages.getPageSummaries();
+        unmarshalList(response, "pageSummary", PageSummary.class, handler); //$NON-NLS-1$
     }
 
     public List<ObjectSummary> getObjects(String wiki, String space, String page) throws Exception
@@ -274,7 +596,7 @@ public List<ObjectSummary> getObjects(String wiki, String space, String page) th
         URI objectsURI = getURI(String.format("/wikis/%s/spaces/%s/pages/%s/objects", wiki, space, page));
 
         HttpResponse response = executeGet(objectsURI);
-        Objects objects = (Objects) unmarshaller.unmarshal(response.getEntity().getContent());
+        Objects objects = (Objects) unmarshal(response);
 
         return objects.getObjectSummaries();
     }
@@ -285,7 +607,7 @@ public List<Attachment> getAttachments(String wiki, String space, String page) t
             getURI(String.format("/wikis/%s/spaces/%s/pages/%s/attachments", wiki, space, page));
 
         HttpResponse response = executeGet(attachmentsURI);
-        Attachments attachments = (Attachments) unmarshaller.unmarshal(response.getEntity().getContent());
+        Attachments attachments = (Attachments) unmarshal(response);
 
         return attachments.getAttachments();
     }
@@ -295,27 +617,72 @@ public Syntaxes getSyntaxes() throws Exception
         URI syntaxesURI = getURI(String.format("/syntaxes"));
 
         HttpResponse response = executeGet(syntaxesURI);
-        Syntaxes syntaxes = (Syntaxes) unmarshaller.unmarshal(response.getEntity().getContent());
+        Syntaxes syntaxes = (Syntaxes) unmarshal(response);
 
         return syntaxes;
     }
 
     public Page getPage(String wiki, String space, String page, String language) throws Exception
     {
-        URI pageURI;
+        URI pageURI = getPageURI(wiki, space, page, language);
 
-        if (language == null || language.equals("")) {
-            pageURI = getURI(String.format("/wikis/%s/spaces/%s/pages/%s", wiki, space, page));
+        HttpResponse response = executeGet(pageURI);
+        Page result = (Page) unmarshal(response);
+
+        return result;
+    }
+
+    /**
+     * Retrieve a page only if it has changed since it was last retrieved with this method, or since the given
+     * modification date. The request is sent with the <code>If-None-Match</code> and <code>If-Modified-Since</code>
+     * headers, so that a server supporting them answers with a body-less 304 when the page has not changed.
+     * 
+     * @param wiki The wiki.
+     * @param space The space.
+     * @param page The page name.
+     * @param language The language, empty or null for the default one.
+     * @param modified The modification date of the copy of the page held by the caller, can be null.
+     * @return The page, or null if the server reports that it has not been modified.
+     * @throws Exception
+     */
+    public Page getPageIfModified(String wiki, String space, String page, String language, Calendar modified)
+        throws Exception
+    {
+        URI pageURI = getPageURI(wiki, space, page, language);
+
+        HttpGet request = new HttpGet(pageURI);
+        String eTag = pageETags.get(pageURI);
+        if (eTag != null) {
+            request.addHeader("If-None-Match", eTag); //$NON-NLS-1$
+        }
+        if (modified != null) {
+            request.addHeader("If-Modified-Since", DateUtils.formatDate(modified.getTime())); //$NON-NLS-1$
+        }
+
+        HttpResponse response = execute(request);
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            release(response);
+
+            return null;
+        }
+
+        Header eTagHeader = response.getFirstHeader("ETag"); //$NON-NLS-1$
+        if (eTagHeader != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+            pageETags.put(pageURI, eTagHeader.getValue());
         } else {
-            pageURI =
-                getURI(String.format("/wikis/%s/spaces/%s/pages/%s/translations/%s", wiki, space, page,
-                    language));
+            pageETags.remove(pageURI);
         }
 
-        HttpResponse response = executeGet(pageURI);
-        Page result = (Page) unmarshaller.unmarshal(response.getEntity().getContent());
+        return (Page) unmarshal(response);
+    }
 
-        return result;
+    private URI getPageURI(String wiki, String space, String page, String language) throws URISyntaxException
+    {
+        if (language == null || language.equals("")) {
+            return getURI(String.format("/wikis/%s/spaces/%s/pages/%s", wiki, space, page));
+        }
+
+        return getURI(String.format("/wikis/%s/spaces/%s/pages/%s/translations/%s", wiki, space, page, language));
     }
 
     public Page getPageVersion(String wiki, String space, String page, String language, int majorVersion,
@@ -334,7 +701,7 @@ public Page getPageVersion(String wiki, String space, String page, String langua
         }
 
         HttpResponse response = executeGet(pageURI);
-        Page result = (Page) unmarshaller.unmarshal(response.getEntity().getContent());
+        Page result = (Page) unmarshal(response);
 
         return result;
     }
@@ -353,7 +720,7 @@ public List<HistorySummary> getPageHistory(String wiki, String space, String pag
         }
 
         HttpResponse response = executeGet(historyURI);
-        History history = (History) unmarshaller.unmarshal(response.getEntity().getContent());
+        History history = (History) unmarshal(response);
 
         return history.getHistorySummaries();
     }
@@ -363,7 +730,7 @@ public org.xwiki.rest.model.jaxb.Class getClass(String wiki, String className) t
         URI classURI = getURI(String.format("/wikis/%s/classes/%s", wiki, className));
 
         HttpResponse response = executeGet(classURI);
-        org.xwiki.rest.model.jaxb.Class clazz = (Class) unmarshaller.unmarshal(response.getEntity().getContent());
+        org.xwiki.rest.model.jaxb.Class clazz = (Class) unmarshal(response);
 
         return clazz;
 
@@ -374,7 +741,7 @@ public List<Tag> getTags(String wiki, String space, String page) throws Exceptio
         URI tagsURI = getURI(String.format("/wikis/%s/spaces/%s/pages/%s/tags", wiki, space, page));
 
         HttpResponse response = executeGet(tagsURI);
-        Tags tags = (Tags) unmarshaller.unmarshal(response.getEntity().getContent());
+        Tags tags = (Tags) unmarshal(response);
 
         return tags.getTags();
     }
@@ -385,7 +752,7 @@ public List<Comment> getComments(String wiki, String space, String page) throws
             getURI(String.format("/wikis/%s/spaces/%s/pages/%s/comments", wiki, space, page));
 
         HttpResponse response = executeGet(commentsURI);
-        Comments comments = (Comments) unmarshaller.unmarshal(response.getEntity().getContent());
+        Comments comments = (Comments) unmarshal(response);
 
         return comments.getComments();
     }
@@ -398,7 +765,7 @@ public List<Property> getObjectProperties(String wiki, String space, String page
                 page, className, number));
 
         HttpResponse response = executeGet(propertiesURI);
-        Properties properties = (Properties) unmarshaller.unmarshal(response.getEntity().getContent());
+        Properties properties = (Properties) unmarshal(response);
 
         return properties.getProperties();
     }
@@ -411,31 +778,205 @@ public Object getObject(String wiki, String space, String page, String className
 
         HttpResponse response = executeGet(objectURI);
         org.xwiki.rest.model.jaxb.Object object =
-            (org.xwiki.rest.model.jaxb.Object) unmarshaller.unmarshal(response.getEntity().getContent());
+            (org.xwiki.rest.model.jaxb.Object) unmarshal(response);
 
         return object;
     }
 
     /**
-     * @param dir
-     * @param absoluteURI
-     * @param name
+     * Download a file without progress reporting.
+     *
+     * @see #download(File, URI, IProgressMonitor)
      */
-    public void download(String dir, URI absoluteURI, String name)
+    public void download(String dir, URI absoluteURI, String name) throws Exception
     {
-        HttpResponse response;
+        download(new File(dir, name), absoluteURI, null);
+    }
+
+    /**
+     * Download a file, streaming it to the disk. The content is first written to a partial file next to the target
+     * file, which is renamed when the download is complete. If a partial file is left by a previous download that
+     * failed or was canceled, only the missing bytes are requested with an HTTP range request. The range request is
+     * conditioned, with If-Range, on the validator (ETag or Last-Modified date) of the content the partial file was
+     * started from: if the file has changed in the meantime, the server sends it entirely and the download starts
+     * over.
+     *
+     * @param file The target file.
+     * @param absoluteURI The URI of the file.
+     * @param monitor The progress monitor, can be null. The work is reported in kilobytes.
+     * @throws Exception If the server answers with an error status or the download fails. The partial file is kept
+     *             so that the download can be resumed.
+     */
+    public void download(File file, URI absoluteURI, IProgressMonitor monitor) throws Exception
+    {
+        download(file, absoluteURI, monitor == null ? new NullProgressMonitor() : monitor, true);
+    }
+
+    /**
+     * @param canRestart true if the download can be started over once when the server rejects the range requested.
+     */
+    private void download(File file, URI absoluteURI, IProgressMonitor monitor, boolean canRestart) throws Exception
+    {
+        File partialFile = new File(file.getPath() + PARTIAL_FILE_EXTENSION);
+        File validatorFile = new File(file.getPath() + PARTIAL_FILE_EXTENSION + VALIDATOR_FILE_EXTENSION);
+
+        long offset = 0;
+        String validator = validatorFile.exists() ? readValidator(validatorFile) : null;
+        if (partialFile.exists() && validator != null) {
+            offset = partialFile.length();
+        }
+
+        HttpGet request = new HttpGet(absoluteURI);
+        if (offset > 0) {
+            request.addHeader("Range", String.format("bytes=%d-", offset)); //$NON-NLS-1$ //$NON-NLS-2$
+            request.addHeader("If-Range", validator); //$NON-NLS-1$
+        }
+
+        HttpResponse response = execute(request);
+        boolean released = false;
         try {
-            response = executeGet(absoluteURI);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset > 0) {
+                /* The partial file is not a prefix of the current file: start over, but only once */
+                release(response);
+                released = true;
+                deletePartialFile(partialFile, validatorFile);
+                if (!canRestart) {
+                    throw new IOException(String.format("Unable to download %s: %s", absoluteURI,
+                        response.getStatusLine()));
+                }
+                download(file, absoluteURI, monitor, false);
+                return;
+            }
+
+            if (statusCode == HttpStatus.SC_OK) {
+                /* The server ignored the range, or the file has changed: the partial file is truncated below */
+                offset = 0;
+                deletePartialFile(partialFile, validatorFile);
+                validator = getValidator(response);
+                if (validator != null) {
+                    writeValidator(validatorFile, validator);
+                }
+            } else if (statusCode != HttpStatus.SC_PARTIAL_CONTENT || getContentRangeStart(response) != offset) {
+                throw new IOException(String.format("Unable to download %s: %s", absoluteURI,
+                    response.getStatusLine()));
+            }
+
             HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                FileOutputStream fos = new java.io.FileOutputStream(dir + File.separator + name);
-                entity.writeTo(fos);
-                fos.close();
+            long length = entity.getContentLength();
+            monitor.beginTask(String.format("Downloading %s", file.getName()),
+                length < 0 ? IProgressMonitor.UNKNOWN : TransferProgress.toKilobytes(offset + length));
+
+            TransferProgress progress = new TransferProgress(monitor);
+            progress.transferred(offset);
+
+            InputStream is = entity.getContent();
+            OutputStream os = new FileOutputStream(partialFile, offset > 0);
+            try {
+                byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    if (monitor.isCanceled()) {
+                        /* Don't read what is left of the file just to reuse the connection */
+                        request.abort();
+                        released = true;
+                        throw new InterruptedIOException(String.format("Download of %s canceled", absoluteURI));
+                    }
+
+                    os.write(buffer, 0, read);
+                    progress.transferred(read);
+                }
+            } finally {
+                os.close();
             }
-        } catch (Exception e) {
-            CoreLog.logError(String.format("Error in download %s to %s/%s", absoluteURI, dir, name), e);
+        } finally {
+            if (!released) {
+                release(response);
+            }
+            monitor.done();
+        }
+
+        if ((file.exists() && !file.delete()) || !partialFile.renameTo(file)) {
+            throw new IOException(String.format("Unable to move the downloaded file to %s", file));
+        }
+        validatorFile.delete();
+    }
+
+    /**
+     * @return The validator to send in the If-Range header to resume the download of the content of the response, or
+     *         null if the response has none. Weak ETags can't be used in If-Range.
+     */
+    private static String getValidator(HttpResponse response)
+    {
+        Header eTag = response.getFirstHeader("ETag"); //$NON-NLS-1$
+        if (eTag != null && !eTag.getValue().startsWith("W/")) { //$NON-NLS-1$
+            return eTag.getValue();
+        }
+
+        Header lastModified = response.getFirstHeader("Last-Modified"); //$NON-NLS-1$
+
+        return lastModified != null ? lastModified.getValue() : null;
+    }
+
+    /**
+     * @return The position of the first byte of a partial content response, -1 if it can't be determined.
+     */
+    private static long getContentRangeStart(HttpResponse response)
+    {
+        /* Content-Range: bytes <first>-<last>/<length> */
+        Header contentRange = response.getFirstHeader("Content-Range"); //$NON-NLS-1$
+        if (contentRange == null) {
+            return -1;
+        }
+
+        String value = contentRange.getValue().trim();
+        int begin = value.indexOf(' ');
+        int end = value.indexOf('-');
+        if (begin < 0 || end < begin) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.substring(begin + 1, end).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void deletePartialFile(File partialFile, File validatorFile) throws IOException
+    {
+        if ((partialFile.exists() && !partialFile.delete()) || (validatorFile.exists() && !validatorFile.delete())) {
+            throw new IOException(String.format("Unable to delete %s", partialFile));
         }
+    }
+
+    private static String readValidator(File validatorFile) throws IOException
+    {
+        InputStream is = new FileInputStream(validatorFile);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            String validator = content.toString("UTF-8").trim(); //$NON-NLS-1$
+
+            return validator.length() > 0 ? validator : null;
+        } finally {
+            is.close();
+        }
+    }
 
+    private static void writeValidator(File validatorFile, String validator) throws IOException
+    {
+        OutputStream os = new FileOutputStream(validatorFile);
+        try {
+            os.write(validator.getBytes("UTF-8")); //$NON-NLS-1$
+        } finally {
+            os.close();
+        }
     }
 
     public Space getSpace(String wiki, String space) throws Exception
@@ -444,7 +985,7 @@ public Space getSpace(String wiki, String space) throws Exception
 
         HttpResponse response = executeGet(spaceURI);
         org.xwiki.rest.model.jaxb.Space result =
-            (org.xwiki.rest.model.jaxb.Space) unmarshaller.unmarshal(response.getEntity().getContent());
+            (org.xwiki.rest.model.jaxb.Space) unmarshal(response);
 
         return result;
     }
@@ -455,61 +996,75 @@ public Comment storeComment(String wiki, String space, String page, Comment comm
             getURI(String.format("/wikis/%s/spaces/%s/pages/%s/comments", wiki, space, page));
 
         HttpResponse response = executePostXml(commentsURI, comment);
-        Comment result = (Comment) unmarshaller.unmarshal(response.getEntity().getContent());
+        Comment result = (Comment) unmarshal(response);
 
         return result;
     }
 
-    /**
-     * FIXME: need to return different response code so that the UI can respond correspondingly
-     */
     public void uploadAttachment(String wiki, String space, String page, String attachmentName, URL fileUrl)
         throws Exception
     {
+        uploadAttachment(wiki, space, page, attachmentName, fileUrl, null);
+    }
+
+    /**
+     * Upload an attachment, streaming the file from the disk.
+     *
+     * @param monitor The progress monitor, can be null. The work is reported in kilobytes.
+     * @throws Exception If the server doesn't accept the attachment or the upload fails.
+     */
+    public void uploadAttachment(String wiki, String space, String page, String attachmentName, URL fileUrl,
+        IProgressMonitor monitor) throws Exception
+    {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
         URI attachmentURI =
             getURI(String.format("/wikis/%s/spaces/%s/pages/%s/attachments/%s", wiki, space, page,
                 attachmentName));
 
-        DefaultHttpClient httpClient = new DefaultHttpClient();
-
-        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(username, password);
-
         HttpPut request = new HttpPut(attachmentURI);
 
-        request.addHeader(new BasicScheme().authenticate(creds, request));
         request.addHeader("Accept", MediaType.APPLICATION_XML);
 
         File file = new File(fileUrl.toURI());
-        byte[] bytes = FileUtils.readFileToByteArray(file);
-        ByteArrayEntity bin = new ByteArrayEntity(bytes);
-
-        request.setEntity(bin);
+        monitor.beginTask(String.format("Uploading %s", attachmentName), TransferProgress.toKilobytes(file.length()));
+        try {
+            request.setEntity(new ProgressFileEntity(file, monitor));
 
-        HttpResponse response = httpClient.execute(request);
+            HttpResponse response = execute(request);
+            release(response);
 
-        /* file created */
-        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_CREATED) {
-            // System.out.println("SC_CREATED");
-        }
-        /* file updated */
-        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_ACCEPTED) {
-            // System.out.println("SC_ACCEPTED");
-        }
-
-        /* user UNAUTHORIZED */
-        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
-            // System.out.println("SC_UNAUTHORIZED");
+            /* The attachment is answered with SC_CREATED when created and SC_ACCEPTED when updated */
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_CREATED && statusCode != HttpStatus.SC_ACCEPTED) {
+                throw new IOException(String.format("Unable to upload %s: %s", attachmentName,
+                    response.getStatusLine()));
+            }
+        } finally {
+            monitor.done();
         }
     }
 
     public List<Tag> getAllTags(String wiki) throws Exception
     {
-        URI allTagsURI = getURI(String.format("/wikis/%s/tags"));
+        List<Tag> result = new ArrayList<Tag>();
+        getAllTags(wiki, new ElementList<Tag>(result));
 
-        HttpResponse response = executeGet(allTagsURI);
-        Tags result = (Tags) unmarshaller.unmarshal(response.getEntity().getContent());
+        return result;
+    }
+
+    /**
+     * @param wiki The wiki.
+     * @param handler The handler receiving the tags as they are read.
+     */
+    public void getAllTags(String wiki, IElementHandler<Tag> handler) throws Exception
+    {
+        URI allTagsURI = getURI(String.format("/wikis/%s/tags", wiki));
 
-        return result.getTags();
+        HttpResponse response = executeGet(allTagsURI);
+        unmarshalList(response, "tag", Tag.class, handler); //$NON-NLS-1$
     }
 
     public List<Tag> addTag(String wiki, String space, String page, String tagName) throws Exception
@@ -526,7 +1081,7 @@ public List<Tag> addTag(String wiki, String space, String page, String tagName)
         Tags tagsElement = new Tags().withTags(tags);
 
         response = executePutXml(tagsURI, tagsElement);
-        Tags tagsResponse = (Tags) unmarshaller.unmarshal(response.getEntity().getContent());
+        Tags tagsResponse = (Tags) unmarshal(response);
 
         return tagsResponse.getTags();
     }
@@ -536,7 +1091,7 @@ public List<Class> getClasses(String wiki) throws Exception
         URI classesURI = getURI(String.format("/wikis/%s/classes", wiki));
 
         HttpResponse response = executeGet(classesURI);
-        Classes classes = (Classes) unmarshaller.unmarshal(response.getEntity().getContent());
+        Classes classes = (Classes) unmarshal(response);
 
         return classes.getClazzs();
     }
@@ -556,7 +1111,7 @@ public Page storePage(Page page) throws Exception
         }
 
         HttpResponse response = executePutXml(pageURI, page);
-        Page result = (Page) unmarshaller.unmarshal(response.getEntity().getContent());
+        Page result = (Page) unmarshal(response);
         return result;
     }
 
@@ -569,7 +1124,7 @@ public Object storeObject(Object o) throws Exception
                     o.getPageName()));
 
             HttpResponse response = executePostXml(objectURI, o);
-            Object result = (Object) unmarshaller.unmarshal(response.getEntity().getContent());
+            Object result = (Object) unmarshal(response);
             return result;
         } else {
             URI objectURI =
@@ -577,7 +1132,7 @@ public Object storeObject(Object o) throws Exception
                     o.getSpace(), o.getPageName(), o.getClassName(), o.getNumber()));
 
             HttpResponse response = executePutXml(objectURI, o);
-            Object result = (Object) unmarshaller.unmarshal(response.getEntity().getContent());
+            Object result = (Object) unmarshal(response);
             return result;
         }
     }
@@ -598,7 +1153,7 @@ public void removeTag(String wiki, String space, String page, String tagName) th
         Tags tagsElement = new Tags().withTags(tags);
 
         // FIXME: REFACTORING: Add error handling
-        executePutXml(tagsURI, tagsElement);
+        release(executePutXml(tagsURI, tagsElement));
     }
 
     public Page renamePage(Page sourcePageToBeCopied, String wiki, String space, String page, String language)
@@ -615,7 +1170,7 @@ public Page renamePage(Page sourcePageToBeCopied, String wiki, String space, Str
         }
 
         HttpResponse response = executePutXml(pageURI, sourcePageToBeCopied);
-        Page result = (Page) unmarshaller.unmarshal(response.getEntity().getContent());
+        Page result = (Page) unmarshal(response);
 
         removePage(sourcePageToBeCopied.getWiki(), sourcePageToBeCopied.getSpace(), sourcePageToBeCopied.getName(),
             sourcePageToBeCopied.getLanguage());
@@ -637,7 +1192,7 @@ public Page copyPage(Page sourcePageToBeCopied, String wiki, String space, Strin
         }
 
         HttpResponse response = executePutXml(pageURI, sourcePageToBeCopied);
-        Page result = (Page) unmarshaller.unmarshal(response.getEntity().getContent());
+        Page result = (Page) unmarshal(response);
 
         return result;
     }
@@ -693,12 +1248,247 @@ public Hints getAutoCompleteHints(String content, int offset, String syntax)
 
             HttpResponse response = executePostString(autocompletionURI, content);
             Gson gson = StorageUtils.getGson();
-            JsonReader reader = new JsonReader(new InputStreamReader(response.getEntity().getContent()));
-            Hints hints = gson.fromJson(reader, Hints.class);
-            return hints;
+            try {
+                JsonReader reader = new JsonReader(new InputStreamReader(response.getEntity().getContent()));
+                Hints hints = gson.fromJson(reader, Hints.class);
+                return hints;
+            } finally {
+                release(response);
+            }
     	} catch (Exception e) {
             e.printStackTrace();
             return null;
     	}
     }
+
+    /**
+     * Reports the bytes transferred to a progress monitor, in kilobytes.
+     */
+    private static class TransferProgress
+    {
+        private final IProgressMonitor monitor;
+
+        private long bytes;
+
+        public TransferProgress(IProgressMonitor monitor)
+        {
+            this.monitor = monitor;
+        }
+
+        public static int toKilobytes(long bytes)
+        {
+            return (int) Math.min(Integer.MAX_VALUE, bytes / 1024);
+        }
+
+        public void transferred(long count)
+        {
+            int before = toKilobytes(bytes);
+            bytes += count;
+            int worked = toKilobytes(bytes) - before;
+            if (worked > 0) {
+                monitor.worked(worked);
+            }
+        }
+
+        /**
+         * Report the bytes transferred up to the given total, ignoring the ones already reported.
+         *
+         * @param total The total number of bytes transferred.
+         */
+        public void transferredUpTo(long total)
+        {
+            if (total > bytes) {
+                transferred(total - bytes);
+            }
+        }
+    }
+
+    /**
+     * A response entity counting the bytes read from its content.
+     */
+    private static class CountingEntity extends HttpEntityWrapper
+    {
+        public CountingEntity(HttpEntity wrappedEntity)
+        {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            return new FilterInputStream(super.getContent())
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int b = super.read();
+                    if (b >= 0) {
+                        BYTES_RECEIVED.increment();
+                    }
+
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException
+                {
+                    int count = super.read(buffer, offset, length);
+                    if (count > 0) {
+                        BYTES_RECEIVED.add(count);
+                    }
+
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException
+        {
+            InputStream is = getContent();
+            try {
+                byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                int count;
+                while ((count = is.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                is.close();
+            }
+        }
+    }
+
+    /**
+     * A request entity streaming a file from the disk and reporting the progress of the upload. The file is read
+     * again if the request has to be repeated, e.g., after an authentication challenge.
+     */
+    private static class ProgressFileEntity extends AbstractHttpEntity
+    {
+        private final File file;
+
+        private final IProgressMonitor monitor;
+
+        /**
+         * The progress reported so far. When the request is repeated only the bytes beyond it are reported again, so
+         * that the progress never goes beyond the size of the file.
+         */
+        private final TransferProgress progress;
+
+        public ProgressFileEntity(File file, IProgressMonitor monitor)
+        {
+            this.file = file;
+            this.monitor = monitor;
+            this.progress = new TransferProgress(monitor);
+            setContentType("application/octet-stream"); //$NON-NLS-1$
+        }
+
+        public boolean isRepeatable()
+        {
+            return true;
+        }
+
+        public long getContentLength()
+        {
+            return file.length();
+        }
+
+        public InputStream getContent() throws IOException
+        {
+            return new FileInputStream(file);
+        }
+
+        public void writeTo(OutputStream os) throws IOException
+        {
+            /* The count starts over each time the request is sent */
+            long written = 0;
+
+            InputStream is = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    if (monitor.isCanceled()) {
+                        throw new InterruptedIOException(String.format("Upload of %s canceled", file.getName()));
+                    }
+
+                    os.write(buffer, 0, read);
+                    written += read;
+                    progress.transferredUpTo(written);
+                }
+                os.flush();
+            } finally {
+                is.close();
+            }
+        }
+
+        public boolean isStreaming()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * An element handler collecting the elements in a list.
+     */
+    private static class ElementList<T> implements IElementHandler<T>
+    {
+        private final List<T> list;
+
+        public ElementList(List<T> list)
+        {
+            this.list = list;
+        }
+
+        public void handle(T element)
+        {
+            list.add(element);
+        }
+    }
+
+    /**
+     * Periodically closes expired and idle connections of the pool, as stale connections are not detected by the pool
+     * itself until they are reused.
+     */
+    private static class IdleConnectionEvictor extends Thread
+    {
+        private final ClientConnectionManager connectionManager;
+
+        private final long idleTimeout;
+
+        private volatile boolean shutdown;
+
+        public IdleConnectionEvictor(ClientConnectionManager connectionManager, long idleTimeout)
+        {
+            super("XWiki Eclipse idle connection evictor"); //$NON-NLS-1$
+            setDaemon(true);
+
+            this.connectionManager = connectionManager;
+            this.idleTimeout = idleTimeout;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                while (!shutdown) {
+                    synchronized (this) {
+                        wait(idleTimeout / 2);
+                    }
+
+                    connectionManager.closeExpiredConnections();
+                    connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                // Terminate
+            }
+        }
+
+        public void shutdown()
+        {
+            shutdown = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
 }
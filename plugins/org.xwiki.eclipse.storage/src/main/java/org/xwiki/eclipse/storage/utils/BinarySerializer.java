@@ -0,0 +1,350 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A compact binary format for the local storage. The object is first converted to a JSON tree by
+ * {@link StorageUtils#getGson()}, so that both formats map the model in the same way, and the tree is then written in
+ * binary: numbers are variable-length encoded and each member name is written only once per file, further occurrences
+ * being replaced by an index. This avoids both the size of the JSON text and its parsing.
+ * <p>
+ * A file starts with a header made of a magic number, the version of the format and a set of flags. When compression is
+ * enabled, large files (typically the ones holding page contents) are deflated.
+ *
+ * @version $Id$
+ */
+public class BinarySerializer implements ISerializer
+{
+    public static final String NAME = "binary"; //$NON-NLS-1$
+
+    public static final String COMPRESSED_NAME = "binary-compressed"; //$NON-NLS-1$
+
+    /**
+     * The version of the format written by this class. Files written with a newer version are rejected.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'X', 'E', 'B'};
+
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+
+    /**
+     * Flag set when the content following the header is deflated.
+     */
+    private static final int FLAG_DEFLATED = 0x01;
+
+    /**
+     * The size above which the content is deflated, when compression is enabled. Smaller contents don't compress
+     * enough to be worth it.
+     */
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+    private static final int NULL = 0;
+
+    private static final int TRUE = 1;
+
+    private static final int FALSE = 2;
+
+    private static final int INTEGER = 3;
+
+    private static final int DOUBLE = 4;
+
+    private static final int STRING = 5;
+
+    private static final int ARRAY = 6;
+
+    private static final int OBJECT = 7;
+
+    private final boolean compress;
+
+    /**
+     * Constructor.
+     *
+     * @param compress true if large contents should be deflated.
+     */
+    public BinarySerializer(boolean compress)
+    {
+        this.compress = compress;
+    }
+
+    public String getName()
+    {
+        return compress ? COMPRESSED_NAME : NAME;
+    }
+
+    public boolean canRead(byte[] bytes)
+    {
+        if (bytes.length < HEADER_SIZE) {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public byte[] serialize(Object data) throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        write(out, StorageUtils.getGson().toJsonTree(data), new HashMap<String, Integer>());
+        out.flush();
+
+        int flags = 0;
+        if (compress && content.size() > COMPRESSION_THRESHOLD) {
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(content.size() / 2);
+            /* Wiki content compresses well even at the fastest level, which keeps writes cheap */
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream deflaterStream = new DeflaterOutputStream(deflated, deflater);
+                content.writeTo(deflaterStream);
+                deflaterStream.finish();
+            } finally {
+                deflater.end();
+            }
+
+            content = deflated;
+            flags |= FLAG_DEFLATED;
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(HEADER_SIZE + content.size());
+        result.write(MAGIC);
+        result.write(VERSION);
+        result.write(flags);
+        content.writeTo(result);
+
+        return result.toByteArray();
+    }
+
+    public Object deserialize(byte[] bytes, Type type) throws IOException
+    {
+        if (!canRead(bytes)) {
+            throw new IOException("Not a binary storage file");
+        }
+
+        int version = bytes[MAGIC.length];
+        if (version > VERSION) {
+            throw new IOException(String.format("Unsupported binary storage format version %d", version));
+        }
+
+        int flags = bytes[MAGIC.length + 1];
+        InputStream content = new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            content = new InflaterInputStream(content);
+        }
+
+        JsonElement tree;
+        try {
+            tree = read(new DataInputStream(content), new ArrayList<String>());
+        } finally {
+            /* Releases the native resources of the inflater */
+            content.close();
+        }
+        try {
+            return StorageUtils.getGson().fromJson(tree, type);
+        } catch (JsonParseException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void write(DataOutputStream out, JsonElement element, Map<String, Integer> names) throws IOException
+    {
+        if (element == null || element.isJsonNull()) {
+            out.writeByte(NULL);
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            out.writeByte(OBJECT);
+            writeVarInt(out, object.entrySet().size());
+            for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+                Integer index = names.get(member.getKey());
+                if (index != null) {
+                    writeVarInt(out, index);
+                } else {
+                    /* First occurrence of the name: the next index, followed by the name itself */
+                    writeVarInt(out, names.size());
+                    writeString(out, member.getKey());
+                    names.put(member.getKey(), names.size());
+                }
+                write(out, member.getValue(), names);
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            out.writeByte(ARRAY);
+            writeVarInt(out, array.size());
+            for (JsonElement item : array) {
+                write(out, item, names);
+            }
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                Number number = primitive.getAsNumber();
+                if (number instanceof Integer || number instanceof Long || number instanceof Short
+                    || number instanceof Byte) {
+                    out.writeByte(INTEGER);
+                    long value = number.longValue();
+                    /* Zig-zag encoding, so that small negative numbers are short too */
+                    writeVarLong(out, (value << 1) ^ (value >> 63));
+                } else {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(number.doubleValue());
+                }
+            } else {
+                out.writeByte(STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+    }
+
+    private JsonElement read(DataInputStream in, List<String> names) throws IOException
+    {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+
+            case TRUE:
+                return new JsonPrimitive(Boolean.TRUE);
+
+            case FALSE:
+                return new JsonPrimitive(Boolean.FALSE);
+
+            case INTEGER:
+                long value = readVarLong(in);
+                return new JsonPrimitive((value >>> 1) ^ -(value & 1));
+
+            case DOUBLE:
+                return new JsonPrimitive(in.readDouble());
+
+            case STRING:
+                return new JsonPrimitive(readString(in));
+
+            case ARRAY:
+                int size = readVarInt(in);
+                JsonArray array = new JsonArray();
+                for (int i = 0; i < size; i++) {
+                    array.add(read(in, names));
+                }
+                return array;
+
+            case OBJECT:
+                int count = readVarInt(in);
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < count; i++) {
+                    int index = readVarInt(in);
+                    if (index == names.size()) {
+                        names.add(readString(in));
+                    } else if (index > names.size()) {
+                        throw new IOException("Corrupted binary storage file");
+                    }
+                    object.add(names.get(index), read(in, names));
+                }
+                return object;
+
+            default:
+                throw new IOException(String.format("Corrupted binary storage file: unknown tag %d", tag));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        byte[] bytes = string.getBytes(ENCODING);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+
+        return new String(bytes, ENCODING);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupted binary storage file: invalid size");
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Write a value 7 bits at a time, the high bit of each byte telling whether more bytes follow.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Corrupted binary storage file: invalid number");
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * A format in which the elements of the local storage are written to the disk. New formats can be made available with
+ * {@link StorageUtils#registerSerializer(ISerializer)}; the format used to write is chosen with
+ * {@link StorageUtils#setSerializer(ISerializer)}, while files are always read with the format they have been written
+ * with, so that switching format doesn't require to rewrite the local storage.
+ *
+ * @version $Id$
+ */
+public interface ISerializer
+{
+    /**
+     * @return The name of the format, as used in the storage format preference.
+     */
+    String getName();
+
+    /**
+     * @param bytes The content of a file.
+     * @return true if the content has been written in this format.
+     */
+    boolean canRead(byte[] bytes);
+
+    /**
+     * @param data The object to serialize.
+     * @return The serialized object.
+     * @throws IOException
+     */
+    byte[] serialize(Object data) throws IOException;
+
+    /**
+     * @param bytes The serialized object.
+     * @param type The type of the object.
+     * @return The object.
+     * @throws IOException If the content is not valid, or has been written by a newer version of the format.
+     */
+    Object deserialize(byte[] bytes, Type type) throws IOException;
+}
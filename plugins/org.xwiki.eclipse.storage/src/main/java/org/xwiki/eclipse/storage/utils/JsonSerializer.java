@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * The original format of the local storage: the JSON serialization produced by {@link StorageUtils#getGson()}.
+ *
+ * @version $Id$
+ */
+public class JsonSerializer implements ISerializer
+{
+    public static final String NAME = "json"; //$NON-NLS-1$
+
+    private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+    public String getName()
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This format is the fallback: files written before the format could be chosen are JSON files.
+     */
+    public boolean canRead(byte[] bytes)
+    {
+        return true;
+    }
+
+    public byte[] serialize(Object data) throws IOException
+    {
+        // We must use UTF-8 since the reader always assumes UTF-8, but getBytes uses the JVM encoding by default
+        return StorageUtils.getGson().toJson(data).getBytes(ENCODING);
+    }
+
+    public Object deserialize(byte[] bytes, Type type) throws IOException
+    {
+        try {
+            return StorageUtils.getGson().fromJson(new String(bytes, ENCODING), type);
+        } catch (JsonParseException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
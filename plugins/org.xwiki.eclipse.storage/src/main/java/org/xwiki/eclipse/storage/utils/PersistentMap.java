@@ -16,18 +16,30 @@
  * License along with this software; if not, write to the Free
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
- *
  */
 package org.xwiki.eclipse.storage.utils;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.xwiki.eclipse.core.CoreLog;
 import org.xwiki.eclipse.storage.StoragePlugin;
 
@@ -35,54 +47,131 @@
 
 /**
  * A class that implements a Map from strings to strings, that saves its content to the disk.
- * 
+ * <p>
+ * The content is stored in a JSON snapshot of the map and in an append-only journal of the changes made since the
+ * snapshot was written. Each change only appends a line to the journal; when the journal grows larger than the map
+ * it is compacted into a new snapshot. When the map is loaded, the journal is replayed over the snapshot, ignoring a
+ * trailing entry that was only partially written.
+ * <p>
+ * Changes are written to the journal immediately unless a write-behind delay is given, in which case they are
+ * buffered and flushed in the background. Reads are always served from memory.
+ *
  * @version $Id$
  */
 public class PersistentMap
 {
+    /**
+     * The minimum number of journal entries before the journal is compacted into a new snapshot.
+     */
+    private static final int COMPACTION_THRESHOLD = 500;
+
+    private static final String JOURNAL_EXTENSION = ".journal"; //$NON-NLS-1$
+
+    private static final String NEW_SNAPSHOT_EXTENSION = ".new"; //$NON-NLS-1$
+
+    private static final String PUT = "put"; //$NON-NLS-1$
+
+    private static final String REMOVE = "remove"; //$NON-NLS-1$
+
     private IFile file;
 
+    private IFile journalFile;
+
+    private IFile newSnapshotFile;
+
     private Map<String, String> map;
 
+    /**
+     * The journal entries that have not been written to the journal file yet.
+     */
+    private List<JournalEntry> pendingEntries;
+
+    private int journalSize;
+
+    private long writeBehindDelay;
+
+    private Job flushJob;
+
     /**
      * Constructor.
-     * 
+     *
      * @param file The file where to synchronize the map content.
      * @throws CoreException
      */
     public PersistentMap(IFile file) throws CoreException
+    {
+        this(file, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The file where to synchronize the map content.
+     * @param writeBehindDelay The delay, in milliseconds, after which changes are flushed to the disk. If 0 changes
+     *            are written immediately.
+     * @throws CoreException
+     */
+    public PersistentMap(IFile file, long writeBehindDelay) throws CoreException
     {
         this.file = file;
+        this.journalFile = file.getParent().getFile(new Path(file.getName() + JOURNAL_EXTENSION));
+        this.newSnapshotFile = file.getParent().getFile(new Path(file.getName() + NEW_SNAPSHOT_EXTENSION));
+        this.writeBehindDelay = writeBehindDelay;
+        this.map = new ConcurrentHashMap<String, String>();
+        this.pendingEntries = new ArrayList<JournalEntry>();
 
-        if (file.exists()) {
-            try {
-                map = (Map<String, String>) StorageUtils.readFromJson(file, new TypeToken<Map<String, String>>()
+        if (writeBehindDelay > 0) {
+            flushJob = new Job(String.format("Saving %s", file.getName()))
+            {
+                @Override
+                protected IStatus run(IProgressMonitor monitor)
                 {
-                }.getType());
-            } catch (Exception e) {
-                throw new CoreException(new Status(IStatus.ERROR, StoragePlugin.PLUGIN_ID,
-                    "Unable to initialize persistent map", e));
-            }
-        } else {
-            map = new HashMap<String, String>();
-            synchronize();
+                    try {
+                        flush();
+                    } catch (CoreException e) {
+                        CoreLog.logError(String.format("Unable to save %s", PersistentMap.this.file.getName()), e);
+                    }
+
+                    return Status.OK_STATUS;
+                }
+            };
+            flushJob.setSystem(true);
         }
+
+        load();
     }
 
     public void put(String key, String value) throws CoreException
     {
-        map.put(key, value);
-        synchronize();
+        if (value == null) {
+            remove(key);
+            return;
+        }
+
+        boolean firstPendingEntry;
+        synchronized (this) {
+            if (value.equals(map.put(key, value))) {
+                return;
+            }
+
+            firstPendingEntry = log(new JournalEntry(PUT, key, value));
+        }
+
+        changed(firstPendingEntry);
     }
 
     public void remove(String key) throws CoreException
     {
-        if (!map.containsKey(key)) {
-            return;
+        boolean firstPendingEntry;
+        synchronized (this) {
+            if (map.remove(key) == null) {
+                return;
+            }
+
+            firstPendingEntry = log(new JournalEntry(REMOVE, key, null));
         }
 
-        map.remove(key);
-        synchronize();
+        changed(firstPendingEntry);
     }
 
     public String get(String key)
@@ -92,11 +181,208 @@ public String get(String key)
 
     public Set<String> keySet()
     {
-        return map.keySet();
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
+    /**
+     * Write the pending changes to the journal, compacting it if it has grown too large.
+     *
+     * @throws CoreException
+     */
+    public void flush() throws CoreException
+    {
+        /*
+         * Always acquire the workspace lock before the lock on this map, as changes are also made from within
+         * workspace operations.
+         */
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+        {
+            public void run(IProgressMonitor monitor) throws CoreException
+            {
+                synchronized (PersistentMap.this) {
+                    writePendingEntries();
+                }
+            }
+        }, null);
+    }
+
+    private void writePendingEntries() throws CoreException
+    {
+        if (pendingEntries.isEmpty()) {
+            return;
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (JournalEntry entry : pendingEntries) {
+            lines.append(StorageUtils.getGson().toJson(entry)).append('\n');
+        }
+
+        ByteArrayInputStream is = new ByteArrayInputStream(toBytes(lines.toString()));
+        if (journalFile.exists()) {
+            journalFile.appendContents(is, true, false, null);
+        } else {
+            journalFile.create(is, true, null);
+        }
+
+        journalSize += pendingEntries.size();
+        pendingEntries.clear();
+
+        if (journalSize > Math.max(COMPACTION_THRESHOLD, map.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * @return true if the entry is the first one waiting to be written.
+     */
+    private boolean log(JournalEntry entry)
+    {
+        pendingEntries.add(entry);
+
+        return pendingEntries.size() == 1;
+    }
+
+    private void changed(boolean firstPendingEntry) throws CoreException
+    {
+        if (flushJob == null) {
+            flush();
+        } else if (firstPendingEntry) {
+            flushJob.schedule(writeBehindDelay);
+        }
+    }
+
+    /**
+     * Write the current content of the map to a new snapshot and discard the journal. The snapshot is first written
+     * aside and then moved in place, so that a crash never leaves a truncated snapshot behind.
+     */
+    private void compact() throws CoreException
+    {
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable()
+        {
+            public void run(IProgressMonitor monitor) throws CoreException
+            {
+                StorageUtils.writeToJson(newSnapshotFile, map);
+                if (file.exists()) {
+                    file.delete(true, null);
+                }
+                newSnapshotFile.move(file.getFullPath(), true, null);
+
+                if (journalFile.exists()) {
+                    journalFile.delete(true, null);
+                }
+            }
+        }, null);
+
+        journalSize = 0;
+    }
+
+    private void load() throws CoreException
+    {
+        /* Recover from a compaction that was interrupted */
+        if (newSnapshotFile.exists()) {
+            if (file.exists()) {
+                /* The new snapshot might be incomplete, the old snapshot and the journal are still valid */
+                newSnapshotFile.delete(true, null);
+            } else {
+                /* The new snapshot has been completely written but not moved in place */
+                newSnapshotFile.move(file.getFullPath(), true, null);
+            }
+        }
+
+        if (file.exists()) {
+            try {
+                Map<String, String> snapshot =
+                    (Map<String, String>) StorageUtils.readFromJson(file, new TypeToken<Map<String, String>>()
+                    {
+                    }.getType());
+                if (snapshot != null) {
+                    map.putAll(snapshot);
+                }
+            } catch (Exception e) {
+                throw new CoreException(new Status(IStatus.ERROR, StoragePlugin.PLUGIN_ID,
+                    "Unable to initialize persistent map", e));
+            }
+        }
+
+        boolean hasJournal = journalFile.exists();
+        if (hasJournal) {
+            replayJournal();
+        }
+
+        if (hasJournal || !file.exists()) {
+            compact();
+        }
+    }
+
+    private void replayJournal() throws CoreException
+    {
+        journalFile.refreshLocal(0, null);
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(journalFile.getContents(true), "UTF-8")); //$NON-NLS-1$
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JournalEntry entry = null;
+                try {
+                    entry = StorageUtils.getGson().fromJson(line, JournalEntry.class);
+                } catch (Exception e) {
+                    // Handled below.
+                }
+
+                if (entry == null || entry.key == null) {
+                    /* A change that was being written when the application stopped: nothing after it is valid */
+                    CoreLog.logWarning(String.format("Ignoring incomplete journal entry in %s", journalFile.getName()));
+                    break;
+                }
+
+                if (PUT.equals(entry.op) && entry.value != null) {
+                    map.put(entry.key, entry.value);
+                } else if (REMOVE.equals(entry.op)) {
+                    map.remove(entry.key);
+                }
+            }
+        } catch (IOException e) {
+            throw new CoreException(new Status(IStatus.ERROR, StoragePlugin.PLUGIN_ID,
+                "Unable to read persistent map journal", e));
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static byte[] toBytes(String string)
+    {
+        try {
+            return string.getBytes("UTF-8"); //$NON-NLS-1$
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always available
+            return string.getBytes();
+        }
     }
 
-    private synchronized void synchronize() throws CoreException
-    {       
-            StorageUtils.writeToJson(file, map);      
+    /**
+     * A change of the map, as written in the journal.
+     */
+    private static class JournalEntry
+    {
+        private String op;
+
+        private String key;
+
+        private String value;
+
+        public JournalEntry(String op, String key, String value)
+        {
+            this.op = op;
+            this.key = key;
+            this.value = value;
+        }
     }
 }
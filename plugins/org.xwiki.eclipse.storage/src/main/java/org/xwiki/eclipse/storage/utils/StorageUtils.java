@@ -21,10 +21,14 @@
 package org.xwiki.eclipse.storage.utils;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -32,15 +36,20 @@
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.xwiki.eclipse.core.metrics.Counter;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
+import org.xwiki.eclipse.core.metrics.Timer;
 import org.xwiki.eclipse.storage.DataManager;
+import org.xwiki.eclipse.storage.StoragePlugin;
 import org.xwiki.eclipse.storage.XWikiEclipseStorageException;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.stream.JsonReader;
 
 /**
  * A class containing utility methods.
@@ -49,8 +58,37 @@
  */
 public class StorageUtils
 {
+    private static final Timer READ_TIMER = MetricsRegistry.getDefault().getTimer("storage.read"); //$NON-NLS-1$
+
+    private static final Timer WRITE_TIMER = MetricsRegistry.getDefault().getTimer("storage.write"); //$NON-NLS-1$
+
+    private static final Timer SERIALIZE_TIMER =
+        MetricsRegistry.getDefault().getTimer("storage.serialize"); //$NON-NLS-1$
+
+    private static final Counter BYTES_READ =
+        MetricsRegistry.getDefault().getCounter("storage.bytesRead"); //$NON-NLS-1$
+
+    private static final Counter BYTES_WRITTEN =
+        MetricsRegistry.getDefault().getCounter("storage.bytesWritten"); //$NON-NLS-1$
+
     private static Gson gson = null;
 
+    /**
+     * The formats files can be read with, in the order they are tried. The JSON format accepts any file, so it is last.
+     */
+    private static final List<ISerializer> serializers = new CopyOnWriteArrayList<ISerializer>(Arrays.asList(
+        new BinarySerializer(false), new BinarySerializer(true), new JsonSerializer()));
+
+    /**
+     * The format files are written with.
+     */
+    private static volatile ISerializer serializer = serializers.get(serializers.size() - 1);
+
+    /**
+     * The classes read by {@link #readFromJSON(IFile, String)}, by name, so that they are not looked up each time.
+     */
+    private static final Map<String, Class< ? >> classes = new ConcurrentHashMap<String, Class< ? >>();
+
     /**
      * Create a folder and all its parents.
      * 
@@ -92,8 +130,53 @@ public static Gson getGson()
     }
 
     /**
-     * Write an JSON serialization of the given object to a file. Overwrites the previous file content is the file
-     * already exists.
+     * Make a format available to read and write the local storage.
+     * 
+     * @param serializer The format.
+     */
+    public static void registerSerializer(ISerializer serializer)
+    {
+        /* Before the JSON format, which accepts any file */
+        serializers.add(0, serializer);
+    }
+
+    /**
+     * @param name The name of a format.
+     * @return The registered format with the given name, or null if there is none.
+     */
+    public static ISerializer getSerializer(String name)
+    {
+        for (ISerializer serializer : serializers) {
+            if (serializer.getName().equals(name)) {
+                return serializer;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The format the local storage is written with.
+     */
+    public static ISerializer getSerializer()
+    {
+        return serializer;
+    }
+
+    /**
+     * Choose the format the local storage is written with. Existing files are still read in the format they have been
+     * written with, and are converted when they are written again.
+     * 
+     * @param serializer The format.
+     */
+    public static void setSerializer(ISerializer serializer)
+    {
+        StorageUtils.serializer = serializer;
+    }
+
+    /**
+     * Write a serialization of the given object to a file, in the current format (see
+     * {@link #setSerializer(ISerializer)}). Overwrites the previous file content is the file already exists.
      * 
      * @param file The file where the serialization should be written to.
      * @param data
@@ -102,20 +185,41 @@ public static Gson getGson()
      */
     public static IFile writeToJson(IFile file, Object data) throws CoreException
     {
-        Gson gson = getGson();
+        return writeToFile(file, serialize(data));
+    }
 
-        if (file.getParent() instanceof IFolder) {
-            IFolder parentFolder = (IFolder) file.getParent();
-            createFolder(parentFolder);
+    /**
+     * @param data The object to serialize.
+     * @return The serialization of the given object, in the current format.
+     * @throws CoreException
+     */
+    public static byte[] serialize(Object data) throws CoreException
+    {
+        long start = System.nanoTime();
+        try {
+            return serializer.serialize(data);
+        } catch (IOException e) {
+            throw new CoreException(new Status(IStatus.ERROR, StoragePlugin.PLUGIN_ID, "Unable to serialize data", e));
+        } finally {
+            SERIALIZE_TIMER.recordSince(start);
         }
+    }
 
-        byte[] bytes = null;
+    /**
+     * Write the given content to a file, creating the file and its parent folders if needed.
+     * 
+     * @param file The file where the content should be written to.
+     * @param bytes The content.
+     * @return The file.
+     * @throws CoreException
+     */
+    public static IFile writeToFile(IFile file, byte[] bytes) throws CoreException
+    {
+        long start = System.nanoTime();
 
-        try {
-            // We must use UTF-8 since the reader always assumes UTF-8, but getBytes uses the JVM encoding by default
-            bytes = gson.toJson(data).getBytes("UTF-8");
-        } catch (UnsupportedEncodingException e1) {
-            // ignore, UTF-8 is always available
+        if (file.getParent() instanceof IFolder) {
+            IFolder parentFolder = (IFolder) file.getParent();
+            createFolder(parentFolder);
         }
 
         InputStream is = new ByteArrayInputStream(bytes);
@@ -131,20 +235,43 @@ public static IFile writeToJson(IFile file, Object data) throws CoreException
             // Ignore
         }
 
+        WRITE_TIMER.recordSince(start);
+        BYTES_WRITTEN.add(bytes.length);
+
         return file;
     }
 
+    /**
+     * Read a serialization from a file, whatever the format it has been written with.
+     * 
+     * @param file
+     * @param type The type of the serialized object.
+     * @return The de-serialized object (client should type-cast to the actual type).
+     * @throws Exception
+     */
     public static Object readFromJson(IFile file, java.lang.reflect.Type type) throws Exception
     {
-        Gson gson = getGson();
+        long start = System.nanoTime();
 
         file.refreshLocal(1, null);
-        JsonReader reader = new JsonReader(new InputStreamReader(file.getContents()));
-        return gson.fromJson(reader, type);
+        byte[] bytes = readBytes(file);
+        BYTES_READ.add(bytes.length);
+
+        for (ISerializer serializer : serializers) {
+            if (serializer.canRead(bytes)) {
+                try {
+                    return serializer.deserialize(bytes, type);
+                } finally {
+                    READ_TIMER.recordSince(start);
+                }
+            }
+        }
+
+        throw new IOException(String.format("Unknown format for %s", file.getName()));
     }
 
     /**
-     * Read the JSON serialization from a file.
+     * Read a serialization from a file, whatever the format it has been written with.
      * 
      * @param file
      * @return The de-serialized object (client should type-cast to the actual type).
@@ -152,13 +279,31 @@ public static Object readFromJson(IFile file, java.lang.reflect.Type type) throw
      */
     public static Object readFromJSON(IFile file, String classType) throws Exception
     {
-        Gson gson = getGson();
+        Class< ? > type = classes.get(classType);
+        if (type == null) {
+            type = Class.forName(classType);
+            classes.put(classType, type);
+        }
 
-        file.refreshLocal(1, null);
-        JsonReader reader = new JsonReader(new InputStreamReader(file.getContents()));
-        return gson.fromJson(reader, Class.forName(classType));
+        return readFromJson(file, type);
+    }
+
+    private static byte[] readBytes(IFile file) throws CoreException, IOException
+    {
+        InputStream is = file.getContents();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+
+            return bytes.toByteArray();
+        } finally {
+            is.close();
+        }
     }
-    
 }
 
 /*
@@ -0,0 +1,38 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.xwiki.eclipse.storage.StorageBenchmark;
+import org.xwiki.eclipse.storage.utils.SerializerBenchmark;
+
+/**
+ * The benchmarks of the plugins. They take much longer than the tests and only report figures, so they are kept out of
+ * {@link AllTests} and run on demand.
+ *
+ * @version $Id$
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({SerializerBenchmark.class, StorageBenchmark.class})
+public class AllBenchmarks
+{
+
+}
@@ -21,15 +21,30 @@
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
-import org.xwiki.eclipse.rest.XWikiRESTClientTest;
+import org.xwiki.eclipse.core.metrics.MetricsRegistryTest;
+import org.xwiki.eclipse.storage.LocalXWikiDataStorageBatchTest;
+import org.xwiki.eclipse.storage.LocalXWikiDataStorageSearchTest;
 import org.xwiki.eclipse.storage.RestRemoteXWikiDataStorageAdapterTest;
+import org.xwiki.eclipse.storage.RestRemoteXWikiDataStorageMetadataTest;
+import org.xwiki.eclipse.storage.SingleFlightTest;
+import org.xwiki.eclipse.storage.rest.XWikiRestClientDownloadTest;
+import org.xwiki.eclipse.storage.rest.XWikiRestClientTest;
+import org.xwiki.eclipse.storage.utils.PersistentMapTest;
+import org.xwiki.eclipse.storage.utils.SerializerTest;
 import org.xwiki.eclipse.storage.utils.StorageUtilsTest;
+import org.xwiki.eclipse.ui.editors.HeadingIndexTest;
+import org.xwiki.eclipse.ui.editors.scanners.XWikiAdvancedPartitionScannerTest;
+import org.xwiki.eclipse.ui.editors.scanners.rules.RegExRuleTest;
 
 /**
  * @version $Id$
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({XWikiRESTClientTest.class, StorageUtilsTest.class, RestRemoteXWikiDataStorageAdapterTest.class})
+@Suite.SuiteClasses({XWikiRestClientTest.class, StorageUtilsTest.class, RestRemoteXWikiDataStorageAdapterTest.class,
+XWikiAdvancedPartitionScannerTest.class, RegExRuleTest.class, SerializerTest.class, MetricsRegistryTest.class,
+XWikiRestClientDownloadTest.class, LocalXWikiDataStorageSearchTest.class, LocalXWikiDataStorageBatchTest.class,
+SingleFlightTest.class, HeadingIndexTest.class, RestRemoteXWikiDataStorageMetadataTest.class,
+PersistentMapTest.class})
 public class AllTests
 {
 
@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse;
+
+import java.util.Arrays;
+
+import org.xwiki.eclipse.core.CoreLog;
+
+/**
+ * A minimal micro-benchmark harness for the tests of the plugins. An operation is first run for a number of warm-up
+ * iterations, whose timings are discarded so that the JIT compiler and the caches settle, and then for a number of
+ * measured iterations. The mean, median and 90th percentile time per operation and the throughput are reported to the
+ * log of the platform, one entry per benchmark, so that runs can be compared.
+ * <p>
+ * The plugins are built and tested as OSGi bundles, where the JMH annotation processor and runtime are not available,
+ * hence this harness rather than JMH. It does not fork a JVM per benchmark, so the figures are meant to be compared
+ * between runs of the same suite, not taken as absolute values.
+ *
+ * @version $Id$
+ */
+public final class Benchmark
+{
+    /**
+     * An operation to benchmark.
+     */
+    public interface Operation
+    {
+        /**
+         * @param iteration The index of the iteration, starting from 0 for the first warm-up iteration.
+         * @throws Exception If the operation fails, which stops the benchmark.
+         */
+        void run(int iteration) throws Exception;
+    }
+
+    /**
+     * The timings of a benchmark.
+     */
+    public static final class Result
+    {
+        private final String name;
+
+        private final long[] times;
+
+        private Result(String name, long[] times)
+        {
+            this.name = name;
+            this.times = times.clone();
+            Arrays.sort(this.times);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return The mean time of an operation, in nanoseconds.
+         */
+        public double getMean()
+        {
+            double total = 0;
+            for (long time : times) {
+                total += time;
+            }
+
+            return times.length > 0 ? total / times.length : 0;
+        }
+
+        /**
+         * @param percentile A percentile, between 0 and 100.
+         * @return The time of an operation at the given percentile, in nanoseconds.
+         */
+        public long getPercentile(double percentile)
+        {
+            if (times.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(percentile / 100 * times.length) - 1;
+
+            return times[Math.max(0, Math.min(times.length - 1, index))];
+        }
+
+        /**
+         * @return The number of operations per second.
+         */
+        public double getThroughput()
+        {
+            double mean = getMean();
+
+            return mean > 0 ? 1e9 / mean : 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%-45s %5d ops  mean: %9.3f ms  p50: %9.3f ms  p90: %9.3f ms  %10.1f ops/s", name,
+                times.length, getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(90) / 1e6, getThroughput());
+        }
+    }
+
+    private Benchmark()
+    {
+        // Utility class.
+    }
+
+    /**
+     * Run a benchmark and report its result to the log of the platform.
+     *
+     * @param name The name of the benchmark.
+     * @param warmupIterations The number of iterations that are run but not measured.
+     * @param iterations The number of measured iterations.
+     * @param operation The operation to benchmark.
+     * @return The result of the benchmark.
+     * @throws Exception If the operation fails.
+     */
+    public static Result run(String name, int warmupIterations, int iterations, Operation operation) throws Exception
+    {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.run(i);
+        }
+
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run(warmupIterations + i);
+            times[i] = System.nanoTime() - start;
+        }
+
+        Result result = new Result(name, times);
+        CoreLog.logInfo(result.toString());
+
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.core.metrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @version $Id$
+ */
+public class MetricsRegistryTest
+{
+    @Test
+    public void testTimer()
+    {
+        Timer timer = MetricsRegistry.getDefault().getTimer("test.timer");
+        Assert.assertSame(timer, MetricsRegistry.getDefault().getTimer("test.timer"));
+        timer.reset();
+
+        /* 90 operations of 1ms and 10 of 100ms */
+        for (int i = 0; i < 90; i++) {
+            timer.record(1000000);
+        }
+        for (int i = 0; i < 10; i++) {
+            timer.record(100000000);
+        }
+
+        Assert.assertEquals(100, timer.getCount());
+        Assert.assertEquals(10.9, timer.getMean(), 0.001);
+        Assert.assertEquals(100, timer.getMax(), 0.001);
+
+        /* The percentiles are accurate within a factor of 2 */
+        Assert.assertTrue(timer.getPercentile(50) >= 1 && timer.getPercentile(50) <= 2);
+        Assert.assertTrue(timer.getPercentile(90) >= 1 && timer.getPercentile(90) <= 2);
+        Assert.assertEquals(100, timer.getPercentile(99), 0.001);
+
+        timer.reset();
+        Assert.assertEquals(0, timer.getCount());
+        Assert.assertEquals(0, timer.getPercentile(99), 0.001);
+    }
+
+    @Test
+    public void testHitRatio()
+    {
+        HitRatio hitRatio = MetricsRegistry.getDefault().getHitRatio("test.hitRatio");
+        hitRatio.reset();
+
+        hitRatio.hit();
+        hitRatio.hit();
+        hitRatio.hit();
+        hitRatio.miss();
+
+        Assert.assertEquals(0.75, hitRatio.getRatio(), 0.001);
+    }
+
+    @Test
+    public void testDump() throws Exception
+    {
+        MetricsRegistry.getDefault().getCounter("test.counter").add(42);
+
+        File file = File.createTempFile("metrics", ".txt");
+        try {
+            MetricsRegistry.getDefault().dump(file);
+
+            StringBuilder content = new StringBuilder();
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                char[] buffer = new char[4096];
+                int count;
+                while ((count = reader.read(buffer)) != -1) {
+                    content.append(buffer, 0, count);
+                }
+            } finally {
+                reader.close();
+            }
+
+            Assert.assertTrue(content.toString().contains("test.counter"));
+        } finally {
+            file.delete();
+        }
+    }
+}
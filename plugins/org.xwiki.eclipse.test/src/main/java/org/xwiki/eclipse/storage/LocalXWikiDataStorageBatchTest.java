@@ -0,0 +1,212 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.storage.utils.IdProcessor;
+
+/**
+ * Tests the batches of writes of {@link LocalXWikiDataStorage}.
+ *
+ * @version $Id$
+ */
+public class LocalXWikiDataStorageBatchTest
+{
+    private static final String WIKI = "xwiki";
+
+    private static final String SPACE = "Main";
+
+    private IProject project;
+
+    private IFolder storageFolder;
+
+    private DataManager dataManager;
+
+    private LocalXWikiDataStorage localStorage;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("batchTestProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+
+        dataManager = new DataManager(project);
+        storageFolder = project.getFolder("batchTestStorage");
+        localStorage = new LocalXWikiDataStorage(storageFolder);
+    }
+
+    @After
+    public void tearDown() throws CoreException
+    {
+        localStorage.dispose();
+        project.delete(true, null);
+    }
+
+    @Test
+    public void testChangesAreAppliedOnCommit() throws Exception
+    {
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            storePage("Page1");
+            Assert.assertNull(getPage("Page1"));
+
+            batch.commit();
+        } finally {
+            batch.close();
+        }
+
+        Assert.assertNotNull(getPage("Page1"));
+    }
+
+    @Test
+    public void testCloseWithoutCommitDiscardsTheChanges() throws Exception
+    {
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            storePage("Page1");
+        } finally {
+            batch.close();
+        }
+
+        Assert.assertNull(getPage("Page1"));
+
+        /* The batch is over: changes are written directly again */
+        storePage("Page2");
+        Assert.assertNotNull(getPage("Page2"));
+    }
+
+    @Test
+    public void testNestedBatchesAreAppliedWithTheOutermostOne() throws Exception
+    {
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            storePage("Page1");
+
+            LocalXWikiDataStorage.Batch nestedBatch = LocalXWikiDataStorage.beginBatch();
+            try {
+                storePage("Page2");
+                nestedBatch.commit();
+            } finally {
+                nestedBatch.close();
+            }
+
+            /* Committing the nested batch doesn't apply anything */
+            Assert.assertNull(getPage("Page1"));
+            Assert.assertNull(getPage("Page2"));
+
+            batch.commit();
+        } finally {
+            batch.close();
+        }
+
+        Assert.assertNotNull(getPage("Page1"));
+        Assert.assertNotNull(getPage("Page2"));
+    }
+
+    @Test
+    public void testOutermostBatchDiscardsTheChangesOfNestedBatches() throws Exception
+    {
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            LocalXWikiDataStorage.Batch nestedBatch = LocalXWikiDataStorage.beginBatch();
+            try {
+                storePage("Page1");
+                nestedBatch.commit();
+            } finally {
+                nestedBatch.close();
+            }
+        } finally {
+            batch.close();
+        }
+
+        Assert.assertNull(getPage("Page1"));
+    }
+
+    @Test
+    public void testCommitEmitsASingleResourceDelta() throws Exception
+    {
+        /* Create the storage folders first, so that only the page files are written below */
+        storePage("Page0");
+
+        final AtomicInteger deltaCount = new AtomicInteger();
+        IResourceChangeListener listener = new IResourceChangeListener()
+        {
+            public void resourceChanged(IResourceChangeEvent event)
+            {
+                if (event.getDelta() != null && event.getDelta().findMember(storageFolder.getFullPath()) != null) {
+                    deltaCount.incrementAndGet();
+                }
+            }
+        };
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+        try {
+            LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+            try {
+                for (int i = 1; i <= 10; i++) {
+                    storePage(String.format("Page%d", i));
+                }
+
+                batch.commit();
+            } finally {
+                batch.close();
+            }
+        } finally {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(listener);
+        }
+
+        Assert.assertEquals(1, deltaCount.get());
+        for (int i = 0; i <= 10; i++) {
+            Assert.assertNotNull(getPage(String.format("Page%d", i)));
+        }
+    }
+
+    private void storePage(String name) throws Exception
+    {
+        XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
+        page.setId(new IdProcessor(WIKI, SPACE, name).getPageId());
+        page.setWiki(WIKI);
+        page.setSpace(SPACE);
+        page.setName(name);
+        page.setTitle(name);
+        page.setLanguage("");
+        page.setContent(String.format("The content of %s", name));
+        localStorage.storePage(page);
+    }
+
+    private XWikiEclipsePage getPage(String name) throws Exception
+    {
+        return localStorage.getPage(WIKI, SPACE, name, "");
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.eclipse.model.XWikiEclipseObject;
+import org.xwiki.eclipse.model.XWikiEclipseObjectProperty;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.utils.IdProcessor;
+
+/**
+ * Tests the full-text search of the pages of a {@link LocalXWikiDataStorage}.
+ *
+ * @version $Id$
+ */
+public class LocalXWikiDataStorageSearchTest
+{
+    private static final String WIKI = "xwiki";
+
+    private static final String SPACE = "Main";
+
+    private static final String CLASS_NAME = "Main.SomeClass";
+
+    private IProject project;
+
+    private DataManager dataManager;
+
+    private LocalXWikiDataStorage localStorage;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("searchTestProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+
+        dataManager = new DataManager(project);
+        localStorage = new LocalXWikiDataStorage(project.getFolder("searchTestStorage"), true);
+    }
+
+    @After
+    public void tearDown() throws CoreException
+    {
+        localStorage.dispose();
+        project.delete(true, null);
+    }
+
+    @Test
+    public void testSearchTermsOfTheContentAndTheObjectsOfAPage() throws Exception
+    {
+        storePage("WebHome", "", "Welcome", "Some content about gardening");
+        storePage("Other", "", "Other", "Some content about cooking");
+        storeObject("WebHome", 0, "tomatoes");
+
+        assertResult(localStorage.searchPages("gardening tomatoes ", 10), "WebHome");
+        assertResult(localStorage.searchPages("tomatoes gardening ", 10), "WebHome");
+        assertResult(localStorage.searchPages("cooking tomatoes ", 10));
+        assertResult(localStorage.searchPages("content ", 10), "Other", "WebHome");
+    }
+
+    @Test
+    public void testSearchTranslations() throws Exception
+    {
+        storePage("WebHome", "", "Welcome", "Some content about gardening");
+        storePage("WebHome", "fr", "Bienvenue", "Du contenu sur le jardinage");
+        storeObject("WebHome", 0, "tomates");
+
+        /* The objects are shared by the translations of a page */
+        List<XWikiEclipsePageSummary> result = localStorage.searchPages("jardinage tomates ", 10);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("fr", result.get(0).getLanguage());
+
+        result = localStorage.searchPages("gardening tomates ", 10);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("", result.get(0).getLanguage());
+
+        /* A page matching only through its objects is returned in its default language */
+        result = localStorage.searchPages("tomates ", 10);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("", result.get(0).getLanguage());
+
+        Assert.assertTrue(localStorage.searchPages("jardinage gardening ", 10).isEmpty());
+    }
+
+    @Test
+    public void testRemovedPagesAreNotFound() throws Exception
+    {
+        storePage("WebHome", "", "Welcome", "Some content about gardening");
+        storeObject("WebHome", 0, "tomatoes");
+
+        localStorage.removeObject(WIKI, SPACE, "WebHome", CLASS_NAME, 0);
+        assertResult(localStorage.searchPages("gardening tomatoes ", 10));
+        assertResult(localStorage.searchPages("gardening ", 10), "WebHome");
+
+        localStorage.removePage(new IdProcessor(WIKI, SPACE, "WebHome").getPageId());
+        assertResult(localStorage.searchPages("gardening ", 10));
+    }
+
+    private void storePage(String name, String language, String title, String content) throws Exception
+    {
+        XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(dataManager);
+        pageSummary.setId(new IdProcessor(WIKI, SPACE, name).getPageId());
+        pageSummary.setWiki(WIKI);
+        pageSummary.setSpace(SPACE);
+        pageSummary.setName(name);
+        pageSummary.setTitle(title);
+        pageSummary.setLanguage(language);
+        localStorage.storePageSummary(pageSummary);
+
+        XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
+        page.setId(pageSummary.getId());
+        page.setWiki(WIKI);
+        page.setSpace(SPACE);
+        page.setName(name);
+        page.setTitle(title);
+        page.setLanguage(language);
+        page.setContent(content);
+        localStorage.storePage(page);
+    }
+
+    private void storeObject(String pageName, int number, String value) throws Exception
+    {
+        XWikiEclipseObjectProperty property = new XWikiEclipseObjectProperty(dataManager);
+        property.setName("description");
+        property.setValue(value);
+        List<XWikiEclipseObjectProperty> properties = new ArrayList<XWikiEclipseObjectProperty>();
+        properties.add(property);
+
+        XWikiEclipseObject object = new XWikiEclipseObject(dataManager);
+        object.setWiki(WIKI);
+        object.setSpace(SPACE);
+        object.setPageName(pageName);
+        object.setPageId(new IdProcessor(WIKI, SPACE, pageName).getPageId());
+        object.setClassName(CLASS_NAME);
+        object.setNumber(number);
+        object.setProperties(properties);
+        localStorage.storeObject(object);
+    }
+
+    private static void assertResult(List<XWikiEclipsePageSummary> result, String... expectedPageNames)
+    {
+        List<String> pageNames = new ArrayList<String>();
+        for (XWikiEclipsePageSummary pageSummary : result) {
+            pageNames.add(pageSummary.getName());
+        }
+        Collections.sort(pageNames);
+
+        Assert.assertEquals(Arrays.asList(expectedPageNames), pageNames);
+    }
+}
@@ -27,14 +27,24 @@
 import org.eclipse.core.runtime.CoreException;
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.storage.rest.StandInXWikiServer;
 
 /**
  * @version $Id$
  */
 public class RestRemoteXWikiDataStorageAdapterTest
 {
+    private static StandInXWikiServer server;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        server = new StandInXWikiServer(1, 10);
+        server.start();
+    }
 
     /**
      * Test method for
@@ -44,10 +54,10 @@
     @Test
     public void testStorePage()
     {
-        String serverUrl = "http://localhost:8080/xwiki/rest";
+        String serverUrl = server.getEndpoint();
 
-        String username = "XWiki.Admin";
-        String password = "admin";
+        String username = StandInXWikiServer.USERNAME;
+        String password = StandInXWikiServer.PASSWORD;
 
         IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
 
@@ -63,7 +73,7 @@ public void testStorePage()
             DataManager dataManager = new DataManager(project);
 
             IRemoteXWikiDataStorage remoteXWikiDataStorage =
-                RemoteXWikiDataStorageFactory.getRemoteXWikiDataStorage(dataManager, serverUrl, username, password);
+                new RestRemoteXWikiDataStorage(dataManager, serverUrl, username, password);
 
             XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
             page.setFullName("test.test");
@@ -94,6 +104,8 @@ public void testStorePage()
     @AfterClass
     public static void tearDown()
     {
+        server.stop();
+
         IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
 
         IProject project = workspaceRoot.getProject("testProject");
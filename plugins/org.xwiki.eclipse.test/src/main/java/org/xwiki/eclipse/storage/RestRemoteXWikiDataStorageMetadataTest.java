@@ -0,0 +1,181 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.Calendar;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.model.XWikiEclipseSpaceSummary;
+import org.xwiki.eclipse.storage.rest.StandInXWikiServer;
+
+/**
+ * Checks that the spaces cached by {@link RestRemoteXWikiDataStorage} are memoized and follow the removals and the
+ * creations of spaces made through the connection, against a {@link StandInXWikiServer}.
+ *
+ * @version $Id$
+ */
+public class RestRemoteXWikiDataStorageMetadataTest
+{
+    private static final String GET = "GET"; //$NON-NLS-1$
+
+    private static IProject project;
+
+    private static DataManager dataManager;
+
+    private StandInXWikiServer server;
+
+    private RestRemoteXWikiDataStorage storage;
+
+    @BeforeClass
+    public static void setUpProject() throws CoreException
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("metadataCacheProject"); //$NON-NLS-1$
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+        dataManager = new DataManager(project);
+    }
+
+    @AfterClass
+    public static void tearDownProject() throws CoreException
+    {
+        project.delete(true, null);
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new StandInXWikiServer(2, 1);
+        server.start();
+
+        storage =
+            new RestRemoteXWikiDataStorage(dataManager, server.getEndpoint(), StandInXWikiServer.USERNAME,
+                StandInXWikiServer.PASSWORD);
+    }
+
+    @After
+    public void tearDown()
+    {
+        storage.dispose();
+        server.stop();
+    }
+
+    @Test
+    public void testSpaceListIsMemoized() throws Exception
+    {
+        Assert.assertEquals(2, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+
+        server.resetRequestCounts();
+        Assert.assertEquals(2, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+        Assert.assertEquals(0, server.getRequestCount(GET));
+    }
+
+    @Test
+    public void testRemovingTheLastPageOfASpace() throws Exception
+    {
+        String space = StandInXWikiServer.getSpaceName(0);
+        Assert.assertNotNull(storage.getSpace(StandInXWikiServer.WIKI, space));
+        Assert.assertEquals(2, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+
+        storage.remove(createPageSummary(space, StandInXWikiServer.getPageName(0)));
+
+        List<XWikiEclipseSpaceSummary> spaces = storage.getSpaceSummaries(StandInXWikiServer.WIKI);
+        Assert.assertEquals(1, spaces.size());
+        Assert.assertEquals(StandInXWikiServer.getSpaceName(1), spaces.get(0).getName());
+
+        /* The summary of the space is not served from the cache either */
+        server.resetRequestCounts();
+        try {
+            storage.getSpace(StandInXWikiServer.WIKI, space);
+        } catch (XWikiEclipseStorageException e) {
+            // The space does not exist anymore.
+        }
+        Assert.assertEquals(1, server.getRequestCount(GET));
+    }
+
+    @Test
+    public void testRemovingASpace() throws Exception
+    {
+        XWikiEclipseSpaceSummary spaceSummary = storage.getSpaceSummaries(StandInXWikiServer.WIKI).get(0);
+
+        storage.remove(spaceSummary);
+
+        server.resetRequestCounts();
+        storage.getSpaceSummaries(StandInXWikiServer.WIKI);
+        Assert.assertEquals(1, server.getRequestCount(GET));
+    }
+
+    @Test
+    public void testStoringAPageInANewSpace() throws Exception
+    {
+        Assert.assertEquals(2, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+
+        /* Storing a page in a listed space keeps the list */
+        storage.storePage(createPage(StandInXWikiServer.getSpaceName(0), "Other")); //$NON-NLS-1$
+        server.resetRequestCounts();
+        Assert.assertEquals(2, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+        Assert.assertEquals(0, server.getRequestCount(GET));
+
+        storage.storePage(createPage("NewSpace", "WebHome")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertEquals(3, storage.getSpaceSummaries(StandInXWikiServer.WIKI).size());
+    }
+
+    private XWikiEclipsePageSummary createPageSummary(String space, String name)
+    {
+        XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(dataManager);
+        pageSummary.setWiki(StandInXWikiServer.WIKI);
+        pageSummary.setSpace(space);
+        pageSummary.setName(name);
+        pageSummary.setId(String.format("%s:%s.%s", StandInXWikiServer.WIKI, space, name)); //$NON-NLS-1$
+        pageSummary.setLanguage(""); //$NON-NLS-1$
+
+        return pageSummary;
+    }
+
+    private XWikiEclipsePage createPage(String space, String name)
+    {
+        XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
+        page.setWiki(StandInXWikiServer.WIKI);
+        page.setSpace(space);
+        page.setName(name);
+        page.setFullName(String.format("%s.%s", space, name)); //$NON-NLS-1$
+        page.setId(String.format("%s:%s.%s", StandInXWikiServer.WIKI, space, name)); //$NON-NLS-1$
+        page.setTitle(name);
+        page.setContent("Content"); //$NON-NLS-1$
+        page.setLanguage(""); //$NON-NLS-1$
+        page.setParentId(""); //$NON-NLS-1$
+        page.setCreated(Calendar.getInstance());
+        page.setModified(Calendar.getInstance());
+
+        return page;
+    }
+}
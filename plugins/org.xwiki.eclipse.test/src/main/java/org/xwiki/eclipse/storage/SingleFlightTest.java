@@ -0,0 +1,247 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link SingleFlight}.
+ *
+ * @version $Id$
+ */
+public class SingleFlightTest
+{
+    private static final long TIMEOUT = 10;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception
+    {
+        BlockingCall call = new BlockingCall("result");
+        Caller first = new Caller(SingleFlight.key("page", "Main.WebHome"), call);
+        first.start();
+        Assert.assertTrue(call.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        List<Caller> others = new ArrayList<Caller>();
+        for (int i = 0; i < 5; i++) {
+            Caller caller = new Caller(SingleFlight.key("page", "Main.WebHome"), new BlockingCall("other"));
+            caller.start();
+            others.add(caller);
+        }
+        for (Caller caller : others) {
+            caller.awaitWaiting();
+        }
+
+        call.release.countDown();
+        first.join();
+        Assert.assertEquals("result", first.result.get());
+        for (Caller caller : others) {
+            caller.join();
+            Assert.assertEquals("result", caller.result.get());
+        }
+        Assert.assertEquals(1, call.count.get());
+    }
+
+    @Test
+    public void testCallsForDifferentKeysAreNotCoalesced() throws Exception
+    {
+        BlockingCall call = new BlockingCall("result");
+        Caller first = new Caller(SingleFlight.key("page", "Main.WebHome"), call);
+        first.start();
+        Assert.assertTrue(call.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        /* The first call is still in flight, yet this one runs */
+        Assert.assertEquals("other", singleFlight.execute(SingleFlight.key("page", "Main.Other"), new Callable<String>()
+        {
+            public String call()
+            {
+                return "other";
+            }
+        }));
+
+        call.release.countDown();
+        first.join();
+        Assert.assertEquals("result", first.result.get());
+    }
+
+    @Test
+    public void testExceptionsArePropagatedToAllTheCallers() throws Exception
+    {
+        final IOException exception = new IOException("Server unavailable");
+        BlockingCall call = new BlockingCall(exception);
+        Caller first = new Caller(SingleFlight.key("spaces", "xwiki"), call);
+        first.start();
+        Assert.assertTrue(call.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        Caller second = new Caller(SingleFlight.key("spaces", "xwiki"), new BlockingCall("other"));
+        second.start();
+        second.awaitWaiting();
+
+        call.release.countDown();
+        first.join();
+        second.join();
+        Assert.assertSame(exception, first.failure.get());
+        Assert.assertSame(exception, second.failure.get());
+        Assert.assertEquals(1, call.count.get());
+    }
+
+    @Test
+    public void testKeyIsReleasedWhenTheCallCompletes() throws Exception
+    {
+        final AtomicInteger count = new AtomicInteger();
+        Callable<Integer> call = new Callable<Integer>()
+        {
+            public Integer call() throws Exception
+            {
+                if (count.incrementAndGet() == 1) {
+                    throw new IOException("First call fails");
+                }
+
+                return count.get();
+            }
+        };
+
+        try {
+            singleFlight.execute("key", call);
+            Assert.fail("The exception of the call should have been thrown");
+        } catch (IOException e) {
+            /* Expected */
+        }
+
+        /* Neither a failure nor a result is kept */
+        Assert.assertEquals(Integer.valueOf(2), singleFlight.execute("key", call));
+        Assert.assertEquals(Integer.valueOf(3), singleFlight.execute("key", call));
+    }
+
+    @Test
+    public void testCallsStartedAfterAnInvalidationAreNotCoalesced() throws Exception
+    {
+        BlockingCall call = new BlockingCall("before");
+        Caller first = new Caller(SingleFlight.key("page", "xwiki", "Main", "WebHome", "fr"), call);
+        first.start();
+        Assert.assertTrue(call.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        /* The page is modified: invalidate all its languages */
+        singleFlight.invalidate("page", "xwiki", "Main", "WebHome");
+
+        Assert.assertEquals("after", singleFlight.execute(SingleFlight.key("page", "xwiki", "Main", "WebHome", "fr"),
+            new Callable<String>()
+            {
+                public String call()
+                {
+                    return "after";
+                }
+            }));
+
+        call.release.countDown();
+        first.join();
+        Assert.assertEquals("before", first.result.get());
+    }
+
+    /**
+     * A call blocking until it is released, counting its invocations.
+     */
+    private static class BlockingCall implements Callable<String>
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final Object outcome;
+
+        /**
+         * @param outcome The result of the call, or the exception it throws.
+         */
+        public BlockingCall(Object outcome)
+        {
+            this.outcome = outcome;
+        }
+
+        public String call() throws Exception
+        {
+            count.incrementAndGet();
+            started.countDown();
+            if (!release.await(TIMEOUT, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The call has not been released");
+            }
+
+            if (outcome instanceof Exception) {
+                throw (Exception) outcome;
+            }
+
+            return (String) outcome;
+        }
+    }
+
+    /**
+     * A thread executing a call through the single flight.
+     */
+    private class Caller extends Thread
+    {
+        private final String key;
+
+        private final Callable<String> call;
+
+        private final AtomicReference<String> result = new AtomicReference<String>();
+
+        private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+        public Caller(String key, Callable<String> call)
+        {
+            this.key = key;
+            this.call = call;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                result.set(singleFlight.execute(key, call));
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        }
+
+        /**
+         * Wait until the thread waits for the call in flight.
+         */
+        public void awaitWaiting() throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+            while (getState() != Thread.State.WAITING) {
+                Assert.assertTrue("The caller is not waiting", System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.eclipse.Benchmark;
+import org.xwiki.eclipse.model.XWikiEclipseObject;
+import org.xwiki.eclipse.model.XWikiEclipseObjectProperty;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.rest.StandInXWikiServer;
+import org.xwiki.eclipse.storage.rest.XWikiRestClient;
+import org.xwiki.eclipse.storage.utils.IdProcessor;
+import org.xwiki.rest.model.jaxb.Page;
+import org.xwiki.rest.model.jaxb.PageSummary;
+
+/**
+ * Benchmarks of the hot paths of the storage layer, run offline against a {@link StandInXWikiServer}: the REST
+ * client, the retrieval and the storage of pages through the data manager, the crawl of all the page ids, the local
+ * storage and its full-text search. Each benchmark reports its timings to the log of the platform and checks that the
+ * operations actually did their job.
+ * <p>
+ * This benchmark is not part of {@link org.xwiki.eclipse.AllTests}, it is run with
+ * {@link org.xwiki.eclipse.AllBenchmarks}.
+ *
+ * @version $Id$
+ */
+public class StorageBenchmark
+{
+    private static final int SPACE_COUNT = 20;
+
+    private static final int PAGES_PER_SPACE = 50;
+
+    /**
+     * The latency of the stand-in server, in milliseconds, roughly the one of a server on the local network.
+     */
+    private static final long LATENCY = 1;
+
+    private static final int WARMUP_ITERATIONS = 50;
+
+    private static final int ITERATIONS = 200;
+
+    private static StandInXWikiServer server;
+
+    private static IProject project;
+
+    private static DataManager dataManager;
+
+    private static XWikiRestClient restClient;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        server = new StandInXWikiServer(SPACE_COUNT, PAGES_PER_SPACE);
+        server.setLatency(LATENCY);
+        server.start();
+
+        restClient =
+            new XWikiRestClient(server.getEndpoint(), StandInXWikiServer.USERNAME, StandInXWikiServer.PASSWORD);
+
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("storageBenchmarkProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+
+        dataManager = new DataManager(project);
+        dataManager.setEndpoint(server.getEndpoint());
+        dataManager.setUserName(StandInXWikiServer.USERNAME);
+        dataManager.setPassword(StandInXWikiServer.PASSWORD);
+        dataManager.connect();
+    }
+
+    @AfterClass
+    public static void tearDown() throws CoreException
+    {
+        dataManager.disconnect();
+        restClient.dispose();
+        project.delete(true, null);
+        server.stop();
+    }
+
+    @Test
+    public void benchmarkRestClientGetPage() throws Exception
+    {
+        Benchmark.run("XWikiRestClient.getPage", WARMUP_ITERATIONS, ITERATIONS, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                Page page =
+                    restClient.getPage(StandInXWikiServer.WIKI, getSpace(iteration), getPage(iteration), "");
+                Assert.assertNotNull(page.getContent());
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkRestClientGetPages() throws Exception
+    {
+        Benchmark.run("XWikiRestClient.getPages", WARMUP_ITERATIONS, ITERATIONS, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                List<PageSummary> pages =
+                    restClient.getPages(StandInXWikiServer.WIKI,
+                        StandInXWikiServer.getSpaceName(iteration % SPACE_COUNT));
+                Assert.assertEquals(PAGES_PER_SPACE, pages.size());
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkDataManagerGetPage() throws Exception
+    {
+        /* The first pass retrieves and caches the pages, the second one only revalidates them */
+        final int pageCount = SPACE_COUNT * PAGES_PER_SPACE / 2;
+
+        Benchmark.run("DataManager.getPage (not cached)", 0, pageCount, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                XWikiEclipsePage page =
+                    dataManager.getPage(StandInXWikiServer.WIKI, getSpace(iteration), getPage(iteration), "");
+                Assert.assertNotNull(page.getContent());
+            }
+        });
+
+        server.resetRequestCounts();
+        Benchmark.run("DataManager.getPage (cached)", 0, pageCount, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                XWikiEclipsePage page =
+                    dataManager.getPage(StandInXWikiServer.WIKI, getSpace(iteration), getPage(iteration), "");
+                Assert.assertNotNull(page.getContent());
+            }
+        });
+
+        /* A cached page costs a single conditional request */
+        Assert.assertEquals(pageCount, server.getRequestCount());
+    }
+
+    @Test
+    public void benchmarkDataManagerStorePage() throws Exception
+    {
+        final String space = StandInXWikiServer.getSpaceName(0);
+        final String name = StandInXWikiServer.getPageName(0);
+
+        Benchmark.run("DataManager.storePage", WARMUP_ITERATIONS / 5, ITERATIONS / 5, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                XWikiEclipsePage page = dataManager.getPage(StandInXWikiServer.WIKI, space, name, "");
+                page.setContent(String.format("%s\n\nEdit %d", page.getContent(), iteration));
+
+                XWikiEclipsePage storedPage = dataManager.storePage(page);
+                Assert.assertTrue(storedPage.getContent().endsWith(String.format("Edit %d", iteration)));
+            }
+        });
+
+        XWikiEclipsePage page = dataManager.getPage(StandInXWikiServer.WIKI, space, name, "");
+        Assert.assertTrue(page.getMinorVersion() > 1);
+        Assert.assertFalse(dataManager.isInConflict(IdProcessor.getExtendedPageId(page.getId(), page.getLanguage())));
+    }
+
+    @Test
+    public void benchmarkGetAllPageIds() throws Exception
+    {
+        Benchmark.run("DataManager.getAllPageIds", 2, 10, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                List<XWikiEclipsePageSummary> pageSummaries = dataManager.getAllPageIds();
+                Assert.assertTrue(pageSummaries.size() >= SPACE_COUNT * PAGES_PER_SPACE);
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkLocalStorage() throws Exception
+    {
+        final LocalXWikiDataStorage localStorage =
+            new LocalXWikiDataStorage(project.getFolder("benchmarkLocalStorage"));
+        final int pageCount = SPACE_COUNT * PAGES_PER_SPACE;
+        final XWikiEclipsePage[] pages = new XWikiEclipsePage[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            Page page = restClient.getPage(StandInXWikiServer.WIKI, getSpace(i), getPage(i), "");
+
+            pages[i] = new XWikiEclipsePage(dataManager);
+            pages[i].setId(page.getId());
+            pages[i].setWiki(page.getWiki());
+            pages[i].setSpace(page.getSpace());
+            pages[i].setName(page.getName());
+            pages[i].setFullName(page.getFullName());
+            pages[i].setTitle(page.getTitle());
+            pages[i].setLanguage(page.getLanguage());
+            pages[i].setContent(page.getContent());
+            pages[i].setMajorVersion(page.getMajorVersion());
+            pages[i].setMinorVersion(page.getMinorVersion());
+            pages[i].setModified(page.getModified());
+        }
+
+        Benchmark.run("LocalXWikiDataStorage.storePage", 0, pageCount, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                localStorage.storePage(pages[iteration]);
+            }
+        });
+
+        Benchmark.run("LocalXWikiDataStorage.storePage (batch)", 0, 1, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+                try {
+                    for (XWikiEclipsePage page : pages) {
+                        localStorage.storePage(page);
+                    }
+                    batch.commit();
+                } finally {
+                    batch.close();
+                }
+            }
+        });
+
+        Benchmark.run("LocalXWikiDataStorage.getPage", 0, pageCount, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                XWikiEclipsePage page =
+                    localStorage.getPage(StandInXWikiServer.WIKI, getSpace(iteration), getPage(iteration), "");
+                Assert.assertEquals(pages[iteration].getContent(), page.getContent());
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkLocalSearch() throws Exception
+    {
+        final LocalXWikiDataStorage localStorage =
+            new LocalXWikiDataStorage(project.getFolder("benchmarkSearchStorage"), true);
+        final int pageCount = SPACE_COUNT * PAGES_PER_SPACE;
+
+        LocalXWikiDataStorage.Batch batch = LocalXWikiDataStorage.beginBatch();
+        try {
+            for (int i = 0; i < pageCount; i++) {
+                String pageId = new IdProcessor(StandInXWikiServer.WIKI, getSpace(i), getPage(i)).getPageId();
+
+                XWikiEclipsePageSummary pageSummary = new XWikiEclipsePageSummary(dataManager);
+                pageSummary.setId(pageId);
+                pageSummary.setWiki(StandInXWikiServer.WIKI);
+                pageSummary.setSpace(getSpace(i));
+                pageSummary.setName(getPage(i));
+                pageSummary.setTitle(String.format("Title number%d", i));
+                pageSummary.setLanguage("");
+                localStorage.storePageSummary(pageSummary);
+
+                XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
+                page.setId(pageId);
+                page.setWiki(StandInXWikiServer.WIKI);
+                page.setSpace(getSpace(i));
+                page.setName(getPage(i));
+                page.setTitle(pageSummary.getTitle());
+                page.setLanguage("");
+                page.setContent(String.format("Some **common** content with a unique word%d, see also number%d.", i,
+                    i + 1));
+                localStorage.storePage(page);
+            }
+
+            XWikiEclipseObjectProperty property = new XWikiEclipseObjectProperty(dataManager);
+            property.setName("description");
+            property.setValue("A needle in the haystack");
+            List<XWikiEclipseObjectProperty> properties = new ArrayList<XWikiEclipseObjectProperty>();
+            properties.add(property);
+
+            XWikiEclipseObject object = new XWikiEclipseObject(dataManager);
+            object.setWiki(StandInXWikiServer.WIKI);
+            object.setSpace(getSpace(7));
+            object.setPageName(getPage(7));
+            object.setPageId(new IdProcessor(StandInXWikiServer.WIKI, getSpace(7), getPage(7)).getPageId());
+            object.setClassName(StandInXWikiServer.CLASS_NAME);
+            object.setNumber(0);
+            object.setProperties(properties);
+            localStorage.storeObject(object);
+
+            batch.commit();
+        } finally {
+            batch.close();
+        }
+
+        Benchmark.run("LocalXWikiDataStorage.searchPages", WARMUP_ITERATIONS, ITERATIONS, new Benchmark.Operation()
+        {
+            public void run(int iteration) throws Exception
+            {
+                /* The trailing space disables the prefix match of the last word */
+                int i = iteration % pageCount;
+                List<XWikiEclipsePageSummary> result =
+                    localStorage.searchPages(String.format("common word%d ", i), 10);
+                Assert.assertEquals(1, result.size());
+                Assert.assertEquals(getPage(i), result.get(0).getName());
+            }
+        });
+
+        Benchmark.run("LocalXWikiDataStorage.searchPages (prefix)", WARMUP_ITERATIONS, ITERATIONS,
+            new Benchmark.Operation()
+            {
+                public void run(int iteration) throws Exception
+                {
+                    Assert.assertEquals(100, localStorage.searchPages("comm", 100).size());
+                }
+            });
+
+        /* Pages are also found by the property values of their objects, and matches in the title come first */
+        List<XWikiEclipsePageSummary> result = localStorage.searchPages("needle", 10);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(getPage(7), result.get(0).getName());
+        result = localStorage.searchPages("number7 ", 10);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(getPage(7), result.get(0).getName());
+        Assert.assertEquals(getPage(6), result.get(1).getName());
+
+        localStorage.removePage(new IdProcessor(StandInXWikiServer.WIKI, getSpace(7), getPage(7)).getPageId());
+        localStorage.removeObject(StandInXWikiServer.WIKI, getSpace(7), getPage(7), StandInXWikiServer.CLASS_NAME, 0);
+        Assert.assertTrue(localStorage.searchPages("word7 ", 10).isEmpty());
+        Assert.assertTrue(localStorage.searchPages("needle", 10).isEmpty());
+    }
+
+    /**
+     * @return The space of the page of the given index, so that consecutive indexes go through all the pages.
+     */
+    private static String getSpace(int index)
+    {
+        return StandInXWikiServer.getSpaceName(index % (SPACE_COUNT * PAGES_PER_SPACE) / PAGES_PER_SPACE);
+    }
+
+    private static String getPage(int index)
+    {
+        return StandInXWikiServer.getPageName(index % PAGES_PER_SPACE);
+    }
+}
@@ -0,0 +1,773 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.xwiki.rest.model.jaxb.Attachments;
+import org.xwiki.rest.model.jaxb.Classes;
+import org.xwiki.rest.model.jaxb.Comments;
+import org.xwiki.rest.model.jaxb.Link;
+import org.xwiki.rest.model.jaxb.ObjectSummary;
+import org.xwiki.rest.model.jaxb.Objects;
+import org.xwiki.rest.model.jaxb.Page;
+import org.xwiki.rest.model.jaxb.PageSummary;
+import org.xwiki.rest.model.jaxb.Pages;
+import org.xwiki.rest.model.jaxb.Property;
+import org.xwiki.rest.model.jaxb.Space;
+import org.xwiki.rest.model.jaxb.Spaces;
+import org.xwiki.rest.model.jaxb.Syntaxes;
+import org.xwiki.rest.model.jaxb.Tag;
+import org.xwiki.rest.model.jaxb.Tags;
+import org.xwiki.rest.model.jaxb.Translations;
+import org.xwiki.rest.model.jaxb.Wiki;
+import org.xwiki.rest.model.jaxb.Wikis;
+import org.xwiki.rest.model.jaxb.Xwiki;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the REST API of an XWiki server, so that the storage layer can be tested and benchmarked
+ * without a live XWiki. It serves the <code>org.xwiki.rest.model.jaxb</code> resources used by
+ * {@link XWikiRestClient} from a synthetic wiki of configurable size: the server information and syntaxes, the wikis,
+ * spaces, pages (with <code>ETag</code> and <code>If-None-Match</code> support), objects, page tags, the class of the
+ * objects, and empty attachment, comment and class lists. Pages and page tags can be stored, and pages removed, along
+ * with their space when it becomes empty. The content of attachments can be set or uploaded, and is served with an
+ * <code>ETag</code> and support for <code>Range</code> and <code>If-Range</code> requests. Every request can be delayed
+ * by a fixed latency to mimic a remote server.
+ * <p>
+ * The size and the latency must be configured before the server is started. Credentials are not checked.
+ *
+ * @version $Id$
+ */
+public class StandInXWikiServer
+{
+    public static final String WIKI = "xwiki"; //$NON-NLS-1$
+
+    public static final String USERNAME = "XWiki.Admin"; //$NON-NLS-1$
+
+    public static final String PASSWORD = "admin"; //$NON-NLS-1$
+
+    public static final String CLASS_NAME = "Benchmark.BenchmarkClass"; //$NON-NLS-1$
+
+    private static final String VERSION = "4.2"; //$NON-NLS-1$
+
+    private static final String CONTEXT_PATH = "/xwiki/rest"; //$NON-NLS-1$
+
+    private static final String JAXB_CONTEXT_PATH = "org.xwiki.rest.model.jaxb"; //$NON-NLS-1$
+
+    private static final String XML_CONTENT_TYPE = "application/xml; charset=UTF-8"; //$NON-NLS-1$
+
+    private static final String OBJECTS_REL = "http://www.xwiki.org/rel/objects"; //$NON-NLS-1$
+
+    /**
+     * Missing from {@link HttpURLConnection}.
+     */
+    private static final int HTTP_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    private final int spaceCount;
+
+    private final int pagesPerSpace;
+
+    private int contentSize = 4096;
+
+    private int objectsPerPage = 2;
+
+    private long latency;
+
+    /**
+     * The pages: space name to page name to page. The inner maps are sorted so that listings are stable.
+     */
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, Page>> spaces =
+        new ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Page>>();
+
+    /**
+     * The content of the attachments, by space name, page name and attachment name separated by slashes.
+     */
+    private final ConcurrentMap<String, byte[]> attachments = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * The tags of the pages, by space name and page name separated by a slash.
+     */
+    private final ConcurrentMap<String, List<String>> tags = new ConcurrentHashMap<String, List<String>>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final ConcurrentMap<String, AtomicLong> requestCountByMethod = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final ConcurrentMap<Integer, AtomicLong> attachmentResponseCountByStatus =
+        new ConcurrentHashMap<Integer, AtomicLong>();
+
+    private JAXBContext context;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param spaceCount The number of spaces of the synthetic wiki.
+     * @param pagesPerSpace The number of pages of each space.
+     */
+    public StandInXWikiServer(int spaceCount, int pagesPerSpace)
+    {
+        this.spaceCount = spaceCount;
+        this.pagesPerSpace = pagesPerSpace;
+    }
+
+    /**
+     * @param contentSize The approximate size, in characters, of the content of the generated pages.
+     */
+    public void setContentSize(int contentSize)
+    {
+        this.contentSize = contentSize;
+    }
+
+    /**
+     * @param objectsPerPage The number of objects attached to each generated page.
+     */
+    public void setObjectsPerPage(int objectsPerPage)
+    {
+        this.objectsPerPage = objectsPerPage;
+    }
+
+    /**
+     * @param latency The delay, in milliseconds, added to the handling of each request.
+     */
+    public void setLatency(long latency)
+    {
+        this.latency = latency;
+    }
+
+    /**
+     * Generate the synthetic wiki and start serving it on a free local port.
+     *
+     * @throws IOException If the server cannot be started.
+     * @throws JAXBException If the REST model cannot be loaded.
+     */
+    public void start() throws IOException, JAXBException
+    {
+        context = JAXBContext.newInstance(JAXB_CONTEXT_PATH, Xwiki.class.getClassLoader());
+
+        spaces.clear();
+        for (int i = 0; i < spaceCount; i++) {
+            String space = getSpaceName(i);
+            ConcurrentSkipListMap<String, Page> pages = new ConcurrentSkipListMap<String, Page>();
+            for (int j = 0; j < pagesPerSpace; j++) {
+                Page page = createPage(space, getPageName(j), "");
+                page.setContent(generateContent(i * pagesPerSpace + j));
+                pages.put(page.getName(), page);
+            }
+            spaces.put(space, pages);
+        }
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0); //$NON-NLS-1$
+        server.createContext(CONTEXT_PATH, new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try {
+                    StandInXWikiServer.this.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop()
+    {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return The URL of the REST API served, to be used as the endpoint of a data manager or REST client.
+     */
+    public String getEndpoint()
+    {
+        return String.format("http://localhost:%d%s", server.getAddress().getPort(), CONTEXT_PATH); //$NON-NLS-1$
+    }
+
+    public static String getSpaceName(int index)
+    {
+        return String.format("Space%d", index); //$NON-NLS-1$
+    }
+
+    public static String getPageName(int index)
+    {
+        return String.format("Page%d", index); //$NON-NLS-1$
+    }
+
+    /**
+     * Set the content of an attachment of one of the pages of the synthetic wiki. The page must exist.
+     *
+     * @param space The space of the page.
+     * @param page The name of the page.
+     * @param name The name of the attachment.
+     * @param content The content of the attachment.
+     */
+    public void setAttachment(String space, String page, String name, byte[] content)
+    {
+        attachments.put(getAttachmentKey(space, page, name), content.clone());
+    }
+
+    /**
+     * @return The content of an attachment, or null if it has not been set or uploaded.
+     */
+    public byte[] getAttachment(String space, String page, String name)
+    {
+        byte[] content = attachments.get(getAttachmentKey(space, page, name));
+
+        return content != null ? content.clone() : null;
+    }
+
+    /**
+     * @return The absolute URL of an attachment, as the one of {@link org.xwiki.eclipse.model.XWikiEclipseAttachment#getAbsoluteUrl()}.
+     */
+    public String getAttachmentURL(String space, String page, String name)
+    {
+        return String.format("%s/wikis/%s/spaces/%s/pages/%s/attachments/%s", getEndpoint(), WIKI, space, page, //$NON-NLS-1$
+            name);
+    }
+
+    /**
+     * @return The number of pages currently stored in the synthetic wiki.
+     */
+    public int getPageCount()
+    {
+        int result = 0;
+        for (Map<String, Page> pages : spaces.values()) {
+            result += pages.size();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of requests handled since the server was started or the counters were reset.
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * @param method An HTTP method, e.g., GET.
+     * @return The number of requests with the given method handled since the server was started or the counters were
+     *         reset.
+     */
+    public long getRequestCount(String method)
+    {
+        AtomicLong count = requestCountByMethod.get(method);
+
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * @param status An HTTP status, e.g., 206.
+     * @return The number of attachment downloads answered with the given status since the server was started or the
+     *         counters were reset.
+     */
+    public long getAttachmentResponseCount(int status)
+    {
+        AtomicLong count = attachmentResponseCountByStatus.get(status);
+
+        return count != null ? count.get() : 0;
+    }
+
+    public void resetRequestCounts()
+    {
+        requestCount.set(0);
+        requestCountByMethod.clear();
+        attachmentResponseCountByStatus.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String method = exchange.getRequestMethod();
+        requestCount.incrementAndGet();
+        requestCountByMethod.putIfAbsent(method, new AtomicLong());
+        requestCountByMethod.get(method).incrementAndGet();
+
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        String path = exchange.getRequestURI().getPath().substring(CONTEXT_PATH.length());
+        List<String> segments = Arrays.asList(path.replaceAll("^/+|/+$", "").split("/")); //$NON-NLS-1$
+        if (segments.size() == 1 && segments.get(0).length() == 0) {
+            segments = Arrays.asList(new String[0]);
+        }
+
+        try {
+            route(exchange, method, segments);
+        } catch (JAXBException e) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, List<String> segments) throws IOException, JAXBException
+    {
+        int size = segments.size();
+
+        if (size == 0) {
+            Xwiki xwiki = new Xwiki();
+            xwiki.setVersion(VERSION);
+            send(exchange, HttpURLConnection.HTTP_OK, xwiki);
+        } else if (size == 1 && segments.get(0).equals("syntaxes")) { //$NON-NLS-1$
+            Syntaxes syntaxes = new Syntaxes();
+            syntaxes.getSyntaxes().add("xwiki/2.0"); //$NON-NLS-1$
+            syntaxes.getSyntaxes().add("xwiki/2.1"); //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, syntaxes);
+        } else if (size == 1 && segments.get(0).equals("wikis")) { //$NON-NLS-1$
+            Wiki wiki = new Wiki();
+            wiki.setId(WIKI);
+            wiki.setName(WIKI);
+            Wikis wikis = new Wikis();
+            wikis.getWikis().add(wiki);
+            send(exchange, HttpURLConnection.HTTP_OK, wikis);
+        } else if (size < 2 || !segments.get(0).equals("wikis") || !segments.get(1).equals(WIKI)) { //$NON-NLS-1$
+            sendNotFound(exchange);
+        } else if (size == 3 && segments.get(2).equals("spaces")) { //$NON-NLS-1$
+            Spaces result = new Spaces();
+            for (String space : spaces.keySet()) {
+                result.getSpaces().add(createSpace(space));
+            }
+            send(exchange, HttpURLConnection.HTTP_OK, result);
+        } else if (size == 3 && segments.get(2).equals("tags")) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, new Tags());
+        } else if (size == 3 && segments.get(2).equals("classes")) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, new Classes());
+        } else if (size == 4 && segments.get(2).equals("classes") && segments.get(3).equals(CLASS_NAME)) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, createClass());
+        } else if (size >= 4 && segments.get(2).equals("spaces")) { //$NON-NLS-1$
+            routeSpace(exchange, method, segments.get(3), segments.subList(4, size));
+        } else {
+            sendNotFound(exchange);
+        }
+    }
+
+    private void routeSpace(HttpExchange exchange, String method, String space, List<String> segments)
+        throws IOException, JAXBException
+    {
+        ConcurrentSkipListMap<String, Page> pages = spaces.get(space);
+        int size = segments.size();
+
+        if (size >= 2 && segments.get(0).equals("pages") && "PUT".equals(method)) { //$NON-NLS-1$ //$NON-NLS-2$
+            if (size == 2) {
+                storePage(exchange, space, segments.get(1));
+            } else {
+                sendNotFound(exchange);
+            }
+
+            return;
+        }
+
+        if (pages == null) {
+            sendNotFound(exchange);
+        } else if (size == 0) {
+            send(exchange, HttpURLConnection.HTTP_OK, createSpace(space));
+        } else if (size == 1 && segments.get(0).equals("pages")) { //$NON-NLS-1$
+            Pages result = new Pages();
+            for (Page page : pages.values()) {
+                result.getPageSummaries().add(toPageSummary(page));
+            }
+            send(exchange, HttpURLConnection.HTTP_OK, result);
+        } else if (size >= 2 && segments.get(0).equals("pages")) { //$NON-NLS-1$
+            Page page = pages.get(segments.get(1));
+            if (page == null) {
+                sendNotFound(exchange);
+            } else {
+                routePage(exchange, method, pages, page, segments.subList(2, size));
+            }
+        } else {
+            sendNotFound(exchange);
+        }
+    }
+
+    private void routePage(HttpExchange exchange, String method, Map<String, Page> pages, Page page,
+        List<String> segments) throws IOException, JAXBException
+    {
+        int size = segments.size();
+
+        if (size == 0 && "DELETE".equals(method)) { //$NON-NLS-1$
+            pages.remove(page.getName());
+            /* As in XWiki, a space without pages does not exist */
+            if (pages.isEmpty()) {
+                spaces.remove(page.getSpace(), pages);
+            }
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+        } else if (size == 0) {
+            String eTag = getETag(page);
+            exchange.getResponseHeaders().set("ETag", eTag); //$NON-NLS-1$
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) { //$NON-NLS-1$
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            } else {
+                send(exchange, HttpURLConnection.HTTP_OK, page);
+            }
+        } else if (size == 1 && segments.get(0).equals("objects")) { //$NON-NLS-1$
+            Objects objects = new Objects();
+            for (int i = 0; i < objectsPerPage; i++) {
+                objects.getObjectSummaries().add(createObject(page, i));
+            }
+            send(exchange, HttpURLConnection.HTTP_OK, objects);
+        } else if (size == 3 && segments.get(0).equals("objects") && segments.get(1).equals(CLASS_NAME)) { //$NON-NLS-1$
+            int number;
+            try {
+                number = Integer.parseInt(segments.get(2));
+            } catch (NumberFormatException e) {
+                number = -1;
+            }
+
+            if (number >= 0 && number < objectsPerPage) {
+                send(exchange, HttpURLConnection.HTTP_OK, createObject(page, number));
+            } else {
+                sendNotFound(exchange);
+            }
+        } else if (size == 1 && segments.get(0).equals("attachments")) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, new Attachments());
+        } else if (size == 2 && segments.get(0).equals("attachments") && "PUT".equals(method)) { //$NON-NLS-1$ //$NON-NLS-2$
+            storeAttachment(exchange, getAttachmentKey(page.getSpace(), page.getName(), segments.get(1)));
+        } else if (size == 2 && segments.get(0).equals("attachments")) { //$NON-NLS-1$
+            sendAttachment(exchange, getAttachmentKey(page.getSpace(), page.getName(), segments.get(1)));
+        } else if (size == 1 && segments.get(0).equals("tags") && "PUT".equals(method)) { //$NON-NLS-1$ //$NON-NLS-2$
+            Tags received = (Tags) context.createUnmarshaller().unmarshal(exchange.getRequestBody());
+            List<String> names = new ArrayList<String>();
+            for (Tag tag : received.getTags()) {
+                names.add(tag.getName());
+            }
+            tags.put(getPageKey(page.getSpace(), page.getName()), names);
+            send(exchange, HttpURLConnection.HTTP_ACCEPTED, createTags(page));
+        } else if (size == 1 && segments.get(0).equals("tags")) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, createTags(page));
+        } else if (size == 1 && segments.get(0).equals("comments")) { //$NON-NLS-1$
+            send(exchange, HttpURLConnection.HTTP_OK, new Comments());
+        } else {
+            sendNotFound(exchange);
+        }
+    }
+
+    private void storePage(HttpExchange exchange, String space, String name) throws IOException, JAXBException
+    {
+        Page received = (Page) context.createUnmarshaller().unmarshal(exchange.getRequestBody());
+
+        ConcurrentSkipListMap<String, Page> pages = spaces.get(space);
+        if (pages == null) {
+            spaces.putIfAbsent(space, new ConcurrentSkipListMap<String, Page>());
+            pages = spaces.get(space);
+        }
+
+        Page page = createPage(space, name, received.getLanguage());
+        page.setTitle(received.getTitle());
+        page.setContent(received.getContent());
+        page.setParentId(received.getParentId());
+        if (received.getSyntax() != null) {
+            page.setSyntax(received.getSyntax());
+        }
+
+        int status = HttpURLConnection.HTTP_CREATED;
+        synchronized (pages) {
+            Page existing = pages.get(name);
+            if (existing != null) {
+                /* Each save is a minor edit of the existing page */
+                page.setCreated(existing.getCreated());
+                page.setMajorVersion(existing.getMajorVersion());
+                page.setMinorVersion(existing.getMinorVersion() + 1);
+                page.setVersion(String.format("%d.%d", page.getMajorVersion(), page.getMinorVersion())); //$NON-NLS-1$
+                status = HttpURLConnection.HTTP_ACCEPTED;
+            }
+            pages.put(name, page);
+        }
+
+        send(exchange, status, page);
+    }
+
+    private Page createPage(String space, String name, String language)
+    {
+        Calendar now = Calendar.getInstance();
+
+        Page page = new Page();
+        page.setId(String.format("%s:%s.%s", WIKI, space, name)); //$NON-NLS-1$
+        page.setFullName(String.format("%s.%s", space, name)); //$NON-NLS-1$
+        page.setWiki(WIKI);
+        page.setSpace(space);
+        page.setName(name);
+        page.setTitle(name);
+        page.setParentId(""); //$NON-NLS-1$
+        page.setLanguage(language != null ? language : ""); //$NON-NLS-1$
+        page.setSyntax("xwiki/2.1"); //$NON-NLS-1$
+        page.setCreator(USERNAME);
+        page.setModifier(USERNAME);
+        page.setCreated(now);
+        page.setModified(now);
+        page.setMajorVersion(1);
+        page.setMinorVersion(1);
+        page.setVersion("1.1"); //$NON-NLS-1$
+        page.setXwikiAbsoluteUrl(String.format("http://localhost/xwiki/bin/view/%s/%s", space, name)); //$NON-NLS-1$
+        page.setTranslations(createTranslations());
+
+        if (objectsPerPage > 0) {
+            Link link = new Link();
+            link.setRel(OBJECTS_REL);
+            page.getLinks().add(link);
+        }
+
+        return page;
+    }
+
+    private String generateContent(int seed)
+    {
+        StringBuilder content = new StringBuilder(contentSize + 128);
+        for (int i = 0; content.length() < contentSize; i++) {
+            content.append(String.format("== Section %d ==\n\nSome **text** of the page %d, see [[Page%d]].\n\n", i,
+                seed, (seed * 31 + i) % Math.max(1, pagesPerSpace)));
+        }
+
+        return content.toString();
+    }
+
+    private PageSummary toPageSummary(Page page)
+    {
+        PageSummary result = new PageSummary();
+        result.setId(page.getId());
+        result.setFullName(page.getFullName());
+        result.setWiki(page.getWiki());
+        result.setSpace(page.getSpace());
+        result.setName(page.getName());
+        result.setTitle(page.getTitle());
+        result.setParentId(page.getParentId());
+        result.setSyntax(page.getSyntax());
+        result.setXwikiAbsoluteUrl(page.getXwikiAbsoluteUrl());
+        result.setTranslations(createTranslations());
+        result.getLinks().addAll(page.getLinks());
+
+        return result;
+    }
+
+    private Space createSpace(String name)
+    {
+        Space space = new Space();
+        space.setId(String.format("%s:%s", WIKI, name)); //$NON-NLS-1$
+        space.setWiki(WIKI);
+        space.setName(name);
+        space.setHome(String.format("%s.WebHome", name)); //$NON-NLS-1$
+        space.setXwikiAbsoluteUrl(String.format("http://localhost/xwiki/bin/view/%s/", name)); //$NON-NLS-1$
+
+        return space;
+    }
+
+    private org.xwiki.rest.model.jaxb.Object createObject(Page page, int number)
+    {
+        org.xwiki.rest.model.jaxb.Object object = new org.xwiki.rest.model.jaxb.Object();
+        object.setId(String.format("%s:%s[%d]", page.getId(), CLASS_NAME, number)); //$NON-NLS-1$
+        object.setGuid(String.format("%s-%d", page.getId(), number)); //$NON-NLS-1$
+        object.setPageId(page.getId());
+        object.setWiki(page.getWiki());
+        object.setSpace(page.getSpace());
+        object.setPageName(page.getName());
+        object.setClassName(CLASS_NAME);
+        object.setNumber(number);
+        object.setHeadline(String.format("%s %d", page.getName(), number)); //$NON-NLS-1$
+
+        Property property = new Property();
+        property.setName("value"); //$NON-NLS-1$
+        property.setType("String"); //$NON-NLS-1$
+        property.setValue(String.format("Value %d of %s", number, page.getFullName())); //$NON-NLS-1$
+        object.getProperties().add(property);
+
+        return object;
+    }
+
+    private org.xwiki.rest.model.jaxb.Class createClass()
+    {
+        org.xwiki.rest.model.jaxb.Class result = new org.xwiki.rest.model.jaxb.Class();
+        result.setId(String.format("%s:%s", WIKI, CLASS_NAME)); //$NON-NLS-1$
+        result.setName(CLASS_NAME);
+
+        Property property = new Property();
+        property.setName("value"); //$NON-NLS-1$
+        property.setType("String"); //$NON-NLS-1$
+        result.getProperties().add(property);
+
+        return result;
+    }
+
+    private Tags createTags(Page page)
+    {
+        Tags result = new Tags();
+        List<String> names = tags.get(getPageKey(page.getSpace(), page.getName()));
+        if (names != null) {
+            for (String name : names) {
+                Tag tag = new Tag();
+                tag.setName(name);
+                result.getTags().add(tag);
+            }
+        }
+
+        return result;
+    }
+
+    private Translations createTranslations()
+    {
+        Translations translations = new Translations();
+        translations.setDefault(""); //$NON-NLS-1$
+
+        return translations;
+    }
+
+    private String getETag(Page page)
+    {
+        return String.format("\"%s-%d\"", page.getVersion(), page.getModified().getTimeInMillis()); //$NON-NLS-1$
+    }
+
+    private static String getPageKey(String space, String page)
+    {
+        return String.format("%s/%s", space, page); //$NON-NLS-1$
+    }
+
+    private static String getAttachmentKey(String space, String page, String name)
+    {
+        return String.format("%s/%s/%s", space, page, name); //$NON-NLS-1$
+    }
+
+    private static String getETag(byte[] content)
+    {
+        return String.format("\"%x-%d\"", Arrays.hashCode(content), content.length); //$NON-NLS-1$
+    }
+
+    private void storeAttachment(HttpExchange exchange, String key) throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        InputStream is = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+
+        boolean created = attachments.put(key, content.toByteArray()) == null;
+        exchange.sendResponseHeaders(created ? HttpURLConnection.HTTP_CREATED : HttpURLConnection.HTTP_ACCEPTED, -1);
+    }
+
+    private void sendAttachment(HttpExchange exchange, String key) throws IOException
+    {
+        byte[] content = attachments.get(key);
+        if (content == null) {
+            sendNotFound(exchange);
+            return;
+        }
+
+        String eTag = getETag(content);
+        exchange.getResponseHeaders().set("ETag", eTag); //$NON-NLS-1$
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* Only the "bytes=<first>-" ranges sent by the REST client are supported, other ranges are ignored */
+        int start = 0;
+        String range = exchange.getRequestHeaders().getFirst("Range"); //$NON-NLS-1$
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range"); //$NON-NLS-1$
+        if (range != null && range.matches("bytes=\\d+-") && (ifRange == null || ifRange.equals(eTag))) { //$NON-NLS-1$
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)); //$NON-NLS-1$
+            if (start >= content.length) {
+                countAttachmentResponse(HTTP_REQUESTED_RANGE_NOT_SATISFIABLE);
+                exchange.getResponseHeaders().set("Content-Range", //$NON-NLS-1$
+                    String.format("bytes */%d", content.length)); //$NON-NLS-1$
+                exchange.sendResponseHeaders(HTTP_REQUESTED_RANGE_NOT_SATISFIABLE, -1);
+                return;
+            }
+        } else {
+            range = null;
+        }
+
+        int status = HttpURLConnection.HTTP_OK;
+        if (range != null) {
+            status = HttpURLConnection.HTTP_PARTIAL;
+            exchange.getResponseHeaders().set("Content-Range", //$NON-NLS-1$
+                String.format("bytes %d-%d/%d", start, content.length - 1, content.length)); //$NON-NLS-1$
+        }
+        countAttachmentResponse(status);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream"); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.sendResponseHeaders(status, content.length - start);
+        OutputStream os = exchange.getResponseBody();
+        os.write(content, start, content.length - start);
+        os.close();
+    }
+
+    private void countAttachmentResponse(int status)
+    {
+        attachmentResponseCountByStatus.putIfAbsent(status, new AtomicLong());
+        attachmentResponseCountByStatus.get(status).incrementAndGet();
+    }
+
+    private void send(HttpExchange exchange, int status, Object entity) throws IOException, JAXBException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        context.createMarshaller().marshal(entity, body);
+
+        exchange.getResponseHeaders().set("Content-Type", XML_CONTENT_TYPE); //$NON-NLS-1$
+        exchange.sendResponseHeaders(status, body.size());
+        OutputStream os = exchange.getResponseBody();
+        body.writeTo(os);
+        os.close();
+    }
+
+    private void sendNotFound(HttpExchange exchange) throws IOException
+    {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+    }
+}
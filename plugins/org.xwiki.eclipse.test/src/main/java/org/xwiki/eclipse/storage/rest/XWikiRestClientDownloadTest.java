@@ -0,0 +1,332 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.eclipse.model.XWikiEclipseAttachment;
+import org.xwiki.eclipse.storage.DataManager;
+
+/**
+ * Tests the resumable downloads of {@link XWikiRestClient} and the cancellation of concurrent attachment transfers,
+ * against a {@link StandInXWikiServer}.
+ *
+ * @version $Id$
+ */
+public class XWikiRestClientDownloadTest
+{
+    private static final String SPACE = StandInXWikiServer.getSpaceName(0);
+
+    private static final String PAGE = StandInXWikiServer.getPageName(0);
+
+    private static final String ATTACHMENT = "attachment.bin"; //$NON-NLS-1$
+
+    private static final int HTTP_OK = 200;
+
+    private static final int HTTP_PARTIAL = 206;
+
+    private static final int HTTP_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    private static StandInXWikiServer server;
+
+    private static XWikiRestClient client;
+
+    private File directory;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        server = new StandInXWikiServer(1, 1);
+        server.start();
+
+        client = new XWikiRestClient(server.getEndpoint(), StandInXWikiServer.USERNAME, StandInXWikiServer.PASSWORD);
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        client.dispose();
+        server.stop();
+    }
+
+    @Before
+    public void createDirectory() throws IOException
+    {
+        directory = File.createTempFile("downloads", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertTrue(directory.delete() && directory.mkdir());
+        server.resetRequestCounts();
+    }
+
+    @After
+    public void deleteDirectory()
+    {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testDownload() throws Exception
+    {
+        byte[] content = setAttachment(ATTACHMENT, 100 * 1024, 1);
+
+        File file = new File(directory, ATTACHMENT);
+        client.download(file, getAttachmentURI(ATTACHMENT), null);
+
+        Assert.assertArrayEquals(content, read(file));
+        Assert.assertEquals(1, server.getAttachmentResponseCount(HTTP_OK));
+        Assert.assertEquals(Arrays.asList(ATTACHMENT), Arrays.asList(directory.list()));
+    }
+
+    @Test
+    public void testResumeCanceledDownload() throws Exception
+    {
+        byte[] content = setAttachment(ATTACHMENT, 1024 * 1024, 2);
+
+        File file = new File(directory, ATTACHMENT);
+        CountingMonitor monitor = new CountingMonitor(true);
+        try {
+            client.download(file, getAttachmentURI(ATTACHMENT), monitor);
+            Assert.fail("The download should have been canceled");
+        } catch (IOException e) {
+            /* Expected */
+        }
+        Assert.assertFalse(file.exists());
+        long partialLength = new File(directory, ATTACHMENT + ".part").length(); //$NON-NLS-1$
+        Assert.assertTrue(partialLength > 0 && partialLength < content.length);
+
+        monitor = new CountingMonitor(false);
+        client.download(file, getAttachmentURI(ATTACHMENT), monitor);
+
+        Assert.assertArrayEquals(content, read(file));
+        Assert.assertEquals(1, server.getAttachmentResponseCount(HTTP_OK));
+        Assert.assertEquals(1, server.getAttachmentResponseCount(HTTP_PARTIAL));
+        Assert.assertEquals(monitor.totalWork, monitor.worked);
+        Assert.assertEquals(Arrays.asList(ATTACHMENT), Arrays.asList(directory.list()));
+    }
+
+    @Test
+    public void testRestartWhenTheFileHasChanged() throws Exception
+    {
+        setAttachment(ATTACHMENT, 1024 * 1024, 3);
+
+        File file = new File(directory, ATTACHMENT);
+        try {
+            client.download(file, getAttachmentURI(ATTACHMENT), new CountingMonitor(true));
+            Assert.fail("The download should have been canceled");
+        } catch (IOException e) {
+            /* Expected */
+        }
+
+        /* The same size, but a different content: the range sent is satisfiable, but If-Range doesn't match */
+        byte[] content = setAttachment(ATTACHMENT, 1024 * 1024, 4);
+        client.download(file, getAttachmentURI(ATTACHMENT), null);
+
+        Assert.assertArrayEquals(content, read(file));
+        Assert.assertEquals(2, server.getAttachmentResponseCount(HTTP_OK));
+        Assert.assertEquals(0, server.getAttachmentResponseCount(HTTP_PARTIAL));
+        Assert.assertEquals(Arrays.asList(ATTACHMENT), Arrays.asList(directory.list()));
+    }
+
+    @Test
+    public void testPartialFileWithoutValidatorIsIgnored() throws Exception
+    {
+        byte[] content = setAttachment(ATTACHMENT, 10 * 1024, 5);
+
+        File file = new File(directory, ATTACHMENT);
+        write(new File(directory, ATTACHMENT + ".part"), new byte[5 * 1024]); //$NON-NLS-1$
+        client.download(file, getAttachmentURI(ATTACHMENT), null);
+
+        Assert.assertArrayEquals(content, read(file));
+        Assert.assertEquals(0, server.getAttachmentResponseCount(HTTP_PARTIAL));
+    }
+
+    @Test
+    public void testRestartOnceWhenTheRangeIsNotSatisfiable() throws Exception
+    {
+        byte[] content = setAttachment(ATTACHMENT, 1024 * 1024, 6);
+
+        File file = new File(directory, ATTACHMENT);
+        try {
+            client.download(file, getAttachmentURI(ATTACHMENT), new CountingMonitor(true));
+            Assert.fail("The download should have been canceled");
+        } catch (IOException e) {
+            /* Expected */
+        }
+
+        /* A partial file longer than the file, with a validator still matching */
+        File partialFile = new File(directory, ATTACHMENT + ".part"); //$NON-NLS-1$
+        write(partialFile, Arrays.copyOf(content, 2 * content.length));
+        server.resetRequestCounts();
+
+        client.download(file, getAttachmentURI(ATTACHMENT), null);
+
+        Assert.assertArrayEquals(content, read(file));
+        Assert.assertEquals(1, server.getAttachmentResponseCount(HTTP_REQUESTED_RANGE_NOT_SATISFIABLE));
+        Assert.assertEquals(1, server.getAttachmentResponseCount(HTTP_OK));
+        Assert.assertEquals(Arrays.asList(ATTACHMENT), Arrays.asList(directory.list()));
+    }
+
+    @Test
+    public void testCanceledTransfersDontStart() throws Exception
+    {
+        int count = 5;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            names.add(String.format("attachment%d.bin", i)); //$NON-NLS-1$
+            setAttachment(names.get(i), 1024 * 1024, 10 + i);
+        }
+
+        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject("downloadTestProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+
+        DataManager dataManager = new DataManager(project);
+        try {
+            dataManager.setEndpoint(server.getEndpoint());
+            dataManager.setUserName(StandInXWikiServer.USERNAME);
+            dataManager.setPassword(StandInXWikiServer.PASSWORD);
+            dataManager.connect();
+
+            List<XWikiEclipseAttachment> attachments = new ArrayList<XWikiEclipseAttachment>();
+            for (String name : names) {
+                XWikiEclipseAttachment attachment = new XWikiEclipseAttachment(dataManager);
+                attachment.setName(name);
+                attachment.setAbsoluteUrl(server.getAttachmentURL(SPACE, PAGE, name));
+                attachments.add(attachment);
+            }
+
+            NullProgressMonitor monitor = new NullProgressMonitor();
+            monitor.setCanceled(true);
+            dataManager.downloadAttachments(directory.getPath(), attachments, 1, monitor);
+
+            /* At most the transfer started before the cancellation was noticed has reached the server */
+            Assert.assertTrue(server.getAttachmentResponseCount(HTTP_OK) <= 1);
+            for (String name : names) {
+                Assert.assertFalse(new File(directory, name).exists());
+            }
+        } finally {
+            dataManager.disconnect();
+            cleanUp(project);
+        }
+    }
+
+    private static void cleanUp(IProject project) throws CoreException
+    {
+        project.delete(true, null);
+    }
+
+    private byte[] setAttachment(String name, int size, long seed)
+    {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        server.setAttachment(SPACE, PAGE, name, content);
+
+        return content;
+    }
+
+    private URI getAttachmentURI(String name) throws Exception
+    {
+        return new URI(server.getAttachmentURL(SPACE, PAGE, name));
+    }
+
+    private static byte[] read(File file) throws IOException
+    {
+        InputStream is = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            return content.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void write(File file, byte[] content) throws IOException
+    {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * A progress monitor summing the work reported, which can cancel the task as soon as some work is reported.
+     */
+    private static class CountingMonitor extends NullProgressMonitor
+    {
+        private final boolean cancelOnWork;
+
+        private int totalWork;
+
+        private int worked;
+
+        public CountingMonitor(boolean cancelOnWork)
+        {
+            this.cancelOnWork = cancelOnWork;
+        }
+
+        @Override
+        public void beginTask(String name, int totalWork)
+        {
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void worked(int work)
+        {
+            worked += work;
+            if (cancelOnWork) {
+                setCanceled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.rest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.rest.model.jaxb.PageSummary;
+import org.xwiki.rest.model.jaxb.Space;
+import org.xwiki.rest.model.jaxb.Tag;
+import org.xwiki.rest.model.jaxb.Wiki;
+
+/**
+ * Tests the requests of {@link XWikiRestClient} against a {@link StandInXWikiServer}, so that no live XWiki is needed.
+ *
+ * @version $Id$
+ */
+public class XWikiRestClientTest
+{
+    private static final String SPACE = StandInXWikiServer.getSpaceName(0);
+
+    private static final String PAGE = StandInXWikiServer.getPageName(0);
+
+    private static StandInXWikiServer server;
+
+    private static XWikiRestClient client;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        server = new StandInXWikiServer(2, 3);
+        server.start();
+
+        client = new XWikiRestClient(server.getEndpoint(), StandInXWikiServer.USERNAME, StandInXWikiServer.PASSWORD);
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        client.dispose();
+        server.stop();
+    }
+
+    @Test
+    public void testGetClassProperties() throws Exception
+    {
+        org.xwiki.rest.model.jaxb.Class clazz = client.getClass(StandInXWikiServer.WIKI, StandInXWikiServer.CLASS_NAME);
+
+        Assert.assertNotNull(clazz);
+        Assert.assertEquals(StandInXWikiServer.CLASS_NAME, clazz.getName());
+        Assert.assertTrue(clazz.getProperties().size() > 0);
+    }
+
+    @Test
+    public void testAddTag() throws Exception
+    {
+        String tagName = "TestTagInJunit"; //$NON-NLS-1$
+        List<Tag> tags = client.addTag(StandInXWikiServer.WIKI, SPACE, PAGE, tagName);
+
+        Assert.assertNotNull(tags);
+        boolean found = false;
+        for (Tag t : tags) {
+            if (t.getName().equals(tagName)) {
+                found = true;
+                break;
+            }
+        }
+        Assert.assertTrue(found);
+
+        Assert.assertEquals(tags.size(), client.getTags(StandInXWikiServer.WIKI, SPACE, PAGE).size());
+    }
+
+    @Test
+    public void testUploadAttachment() throws Exception
+    {
+        String attachmentName = "notice.html"; //$NON-NLS-1$
+        byte[] content = "<html><body>Notice</body></html>".getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        File file = File.createTempFile("upload", ".html"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            OutputStream os = new FileOutputStream(file);
+            try {
+                os.write(content);
+            } finally {
+                os.close();
+            }
+
+            client.uploadAttachment(StandInXWikiServer.WIKI, SPACE, PAGE, attachmentName, file.toURI().toURL());
+            Assert.assertTrue(Arrays.equals(content, server.getAttachment(SPACE, PAGE, attachmentName)));
+
+            /* Uploading again updates the attachment */
+            client.uploadAttachment(StandInXWikiServer.WIKI, SPACE, PAGE, attachmentName, file.toURI().toURL());
+            Assert.assertTrue(Arrays.equals(content, server.getAttachment(SPACE, PAGE, attachmentName)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testGetPages() throws Exception
+    {
+        List<PageSummary> pages = client.getPages(StandInXWikiServer.WIKI, SPACE);
+
+        Assert.assertNotNull(pages);
+        Assert.assertEquals(3, pages.size());
+    }
+
+    @Test
+    public void testGetSpaces() throws Exception
+    {
+        List<Space> spaces = client.getSpaces(StandInXWikiServer.WIKI);
+
+        Assert.assertNotNull(spaces);
+        Assert.assertEquals(2, spaces.size());
+    }
+
+    @Test
+    public void testLogin() throws Exception
+    {
+        Assert.assertTrue(client.login(StandInXWikiServer.USERNAME, StandInXWikiServer.PASSWORD));
+    }
+
+    @Test
+    public void testGetWikis() throws Exception
+    {
+        List<Wiki> wikis = client.getWikis();
+
+        Assert.assertNotNull(wikis);
+        Assert.assertEquals(1, wikis.size());
+        Assert.assertEquals(StandInXWikiServer.WIKI, wikis.get(0).getName());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a {@link PersistentMap} recovers its content from its snapshot and its journal, including after a crash
+ * that left a partially written journal entry behind.
+ *
+ * @version $Id$
+ */
+public class PersistentMapTest
+{
+    private IProject project;
+
+    private IFile file;
+
+    private IFile journalFile;
+
+    @Before
+    public void setUp() throws CoreException
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("persistentMapProject"); //$NON-NLS-1$
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+
+        file = project.getFile("map"); //$NON-NLS-1$
+        journalFile = project.getFile("map.journal"); //$NON-NLS-1$
+    }
+
+    @After
+    public void tearDown() throws CoreException
+    {
+        project.delete(true, null);
+    }
+
+    @Test
+    public void testReload() throws CoreException
+    {
+        PersistentMap map = new PersistentMap(file);
+        map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+        map.put("b", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+        map.remove("a"); //$NON-NLS-1$
+        Assert.assertTrue(journalFile.exists());
+
+        PersistentMap reloaded = new PersistentMap(file);
+        Assert.assertNull(reloaded.get("a")); //$NON-NLS-1$
+        Assert.assertEquals("2", reloaded.get("b")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* The journal has been compacted into the snapshot */
+        Assert.assertFalse(journalFile.exists());
+    }
+
+    @Test
+    public void testTruncatedJournal() throws CoreException, IOException
+    {
+        PersistentMap map = new PersistentMap(file);
+        map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+        map.put("b", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+        map.put("c", "3"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* Simulate a crash while the last entry was being written */
+        byte[] journal = read(journalFile);
+        journalFile.setContents(new ByteArrayInputStream(journal, 0, journal.length - 6), true, false, null);
+
+        PersistentMap reloaded = new PersistentMap(file);
+        Assert.assertEquals("1", reloaded.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertEquals("2", reloaded.get("b")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertNull(reloaded.get("c")); //$NON-NLS-1$
+        Assert.assertEquals(2, reloaded.keySet().size());
+        Assert.assertFalse(journalFile.exists());
+
+        /* The recovered content is saved, and further changes are journaled after it */
+        reloaded.put("d", "4"); //$NON-NLS-1$ //$NON-NLS-2$
+        PersistentMap recovered = new PersistentMap(file);
+        Assert.assertEquals(3, recovered.keySet().size());
+        Assert.assertEquals("4", recovered.get("d")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void testWriteBehindFlush() throws CoreException
+    {
+        PersistentMap map = new PersistentMap(file, 60 * 1000);
+        map.put("a", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* Nothing is written before the delay */
+        Assert.assertNull(new PersistentMap(file).get("a")); //$NON-NLS-1$
+
+        map.flush();
+        Assert.assertEquals("1", new PersistentMap(file).get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static byte[] read(IFile file) throws CoreException, IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = file.getContents();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.storage.DataManager;
+
+/**
+ * Compares the formats of the local storage on a cache of 10000 pages: the time needed to write and read all of them,
+ * and the disk space they take. The pages are written to plain files, so that the figures are not blurred by the
+ * workspace. The figures are written to the log of the platform.
+ * <p>
+ * This benchmark is not part of {@link org.xwiki.eclipse.AllTests}, it is run with
+ * {@link org.xwiki.eclipse.AllBenchmarks}.
+ *
+ * @version $Id$
+ */
+public class SerializerBenchmark
+{
+    private static final int PAGE_COUNT = 10000;
+
+    private static File directory;
+
+    private static IProject project;
+
+    private static DataManager dataManager;
+
+    @BeforeClass
+    public static void setUp() throws IOException, CoreException
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("serializerBenchmarkProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+        dataManager = new DataManager(project);
+
+        directory = File.createTempFile("serializer-benchmark", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @AfterClass
+    public static void tearDown() throws CoreException
+    {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+
+        project.delete(true, null);
+    }
+
+    @Test
+    public void testBenchmark() throws IOException
+    {
+        XWikiEclipsePage[] pages = new XWikiEclipsePage[PAGE_COUNT];
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages[i] = SerializerTest.createPage(dataManager, i);
+        }
+
+        long jsonSize = benchmark(new JsonSerializer(), pages);
+        long binarySize = benchmark(new BinarySerializer(false), pages);
+        long compressedSize = benchmark(new BinarySerializer(true), pages);
+
+        Assert.assertTrue(binarySize < jsonSize);
+        Assert.assertTrue(compressedSize < binarySize);
+    }
+
+    /**
+     * @return The disk size of the pages in the given format.
+     */
+    private long benchmark(ISerializer serializer, XWikiEclipsePage[] pages) throws IOException
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < pages.length; i++) {
+            write(new File(directory, i + ".xep"), serializer.serialize(pages[i]));
+        }
+        long writeTime = System.nanoTime() - start;
+
+        long size = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < pages.length; i++) {
+            byte[] bytes = read(new File(directory, i + ".xep"));
+            size += bytes.length;
+
+            XWikiEclipsePage page = (XWikiEclipsePage) serializer.deserialize(bytes, XWikiEclipsePage.class);
+            Assert.assertEquals(pages[i].getId(), page.getId());
+        }
+        long readTime = System.nanoTime() - start;
+
+        CoreLog.logInfo(String.format("%-18s write: %6d ms, read: %6d ms, size: %8d KB", serializer.getName(),
+            writeTime / 1000000, readTime / 1000000, size / 1024));
+
+        return size;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException
+    {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.storage.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.storage.DataManager;
+
+/**
+ * Checks the formats of the local storage: round trips, format detection, and that a cache holding files written in
+ * several formats is read through {@link StorageUtils#readFromJson(IFile, java.lang.reflect.Type)}.
+ *
+ * @version $Id$
+ */
+public class SerializerTest
+{
+    private static IProject project;
+
+    private static DataManager dataManager;
+
+    @BeforeClass
+    public static void setUp() throws CoreException
+    {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("serializerProject");
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+        dataManager = new DataManager(project);
+    }
+
+    @AfterClass
+    public static void tearDown() throws CoreException
+    {
+        project.delete(true, null);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        XWikiEclipsePage page = createPage(dataManager, 42);
+
+        for (ISerializer serializer : new ISerializer[] {new JsonSerializer(), new BinarySerializer(false),
+        new BinarySerializer(true)}) {
+            assertSamePage(page, (XWikiEclipsePage) serializer.deserialize(serializer.serialize(page),
+                XWikiEclipsePage.class));
+        }
+    }
+
+    @Test
+    public void testFormatDetection() throws IOException
+    {
+        XWikiEclipsePage page = createPage(dataManager, 42);
+
+        Assert.assertFalse(new BinarySerializer(false).canRead(new JsonSerializer().serialize(page)));
+        Assert.assertTrue(new BinarySerializer(false).canRead(new BinarySerializer(true).serialize(page)));
+
+        /* A binary reader reads compressed files too */
+        XWikiEclipsePage result =
+            (XWikiEclipsePage) new BinarySerializer(false).deserialize(new BinarySerializer(true).serialize(page),
+                XWikiEclipsePage.class);
+        Assert.assertEquals(page.getContent(), result.getContent());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNewerVersionIsRejected() throws IOException
+    {
+        byte[] bytes = new BinarySerializer(false).serialize(createPage(dataManager, 42));
+        bytes[3] = (byte) (BinarySerializer.VERSION + 1);
+
+        new BinarySerializer(false).deserialize(bytes, XWikiEclipsePage.class);
+    }
+
+    /**
+     * Writes pages in each format, as a cache does when the format is changed between two runs, and reads all of them
+     * back through the storage.
+     */
+    @Test
+    public void testMixedFormats() throws Exception
+    {
+        ISerializer[] serializers =
+            new ISerializer[] {StorageUtils.getSerializer(JsonSerializer.NAME),
+            StorageUtils.getSerializer(BinarySerializer.NAME),
+            StorageUtils.getSerializer(BinarySerializer.COMPRESSED_NAME)};
+
+        ISerializer previous = StorageUtils.getSerializer();
+        try {
+            for (int i = 0; i < serializers.length; i++) {
+                Assert.assertNotNull(serializers[i]);
+                StorageUtils.setSerializer(serializers[i]);
+                StorageUtils.writeToJson(project.getFile(i + ".xep"), createPage(dataManager, i));
+            }
+        } finally {
+            StorageUtils.setSerializer(previous);
+        }
+
+        for (int i = 0; i < serializers.length; i++) {
+            IFile file = project.getFile(i + ".xep");
+            Assert.assertEquals(i > 0, new BinarySerializer(false).canRead(read(file)));
+
+            assertSamePage(createPage(dataManager, i),
+                (XWikiEclipsePage) StorageUtils.readFromJson(file, XWikiEclipsePage.class));
+        }
+    }
+
+    private void assertSamePage(XWikiEclipsePage expected, XWikiEclipsePage actual)
+    {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getContent(), actual.getContent());
+        Assert.assertEquals(expected.getMajorVersion(), actual.getMajorVersion());
+        Assert.assertEquals(expected.getMinorVersion(), actual.getMinorVersion());
+        Assert.assertEquals(expected.getModified().getTimeInMillis(), actual.getModified().getTimeInMillis());
+        Assert.assertNull(actual.getParentId());
+    }
+
+    private static byte[] read(IFile file) throws CoreException, IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = file.getContents();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param dataManager The data manager of the page.
+     * @param i The index of the page, from which its name, content and dates are derived.
+     * @return A page with the fields of a page retrieved from a server.
+     */
+    static XWikiEclipsePage createPage(DataManager dataManager, int i)
+    {
+        XWikiEclipsePage page = new XWikiEclipsePage(dataManager);
+        page.setWiki("xwiki");
+        page.setSpace("Space" + i % 50);
+        page.setName("Page" + i);
+        page.setId(String.format("xwiki:%s.%s", page.getSpace(), page.getName()));
+        page.setFullName(String.format("%s.%s", page.getSpace(), page.getName()));
+        page.setTitle("Page " + i);
+        page.setLanguage("");
+        page.setSyntax("xwiki/2.1");
+        page.setUrl(String.format("http://localhost:8080/xwiki/bin/view/%s/%s", page.getSpace(), page.getName()));
+        page.setCreator("XWiki.Admin");
+        page.setModifier("XWiki.Admin");
+        page.setMajorVersion(1 + i % 7);
+        page.setMinorVersion(i % 3);
+        page.setVersion(String.format("%d.%d", page.getMajorVersion(), page.getMinorVersion()));
+
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(1300000000000L + i * 1000L);
+        page.setCreated(date);
+        page.setModified(date);
+
+        StringBuilder content = new StringBuilder();
+        for (int j = 0; j < 20 + i % 30; j++) {
+            content.append(String.format("== Section %d ==\n\nSome **text** of page %d, see [[Page%d]].\n\n", j, i,
+                (i * 31 + j) % 10000));
+        }
+        page.setContent(content.toString());
+
+        return page;
+    }
+}
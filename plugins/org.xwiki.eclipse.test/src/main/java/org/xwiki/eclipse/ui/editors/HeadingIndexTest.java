@@ -0,0 +1,163 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.editors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocumentListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the incremental updates of {@link HeadingIndex} always give the same headings as a full scan of the
+ * modified document, and that the reported additions and removals keep a viewer in sync with the index.
+ * 
+ * @version $Id$
+ */
+public class HeadingIndexTest
+{
+    private static final String CONTENT = "1 Title\n" //
+        + "\n" //
+        + "A first paragraph.\n" //
+        + "\n" //
+        + "1.1 Section\n" //
+        + "\n" //
+        + "Some text\n" //
+        + "1.1.1 Subsection\n" //
+        + "1.1.1 Another subsection\n" //
+        + "\n" //
+        + "1 Second title\n" //
+        + "Last paragraph.\n";
+
+    private static final String[] INSERTIONS = {"a", " ", "\n", "\n\n", "1 ", "1.", "1.1 ", "1.1.1 ", "1.1.1.1.1.1 ",
+    "\n1 Heading\n", "\n1.1 Heading\n", "x\ny", "1"};
+
+    @Test
+    public void testRandomEdits() throws BadLocationException
+    {
+        Random random = new Random(42);
+
+        Document document = new Document(CONTENT);
+        TrackingListener listener = new TrackingListener(document);
+        document.addDocumentListener(listener);
+
+        for (int i = 0; i < 20000; i++) {
+            int offset = random.nextInt(document.getLength() + 1);
+            if (random.nextBoolean() || document.getLength() < 100) {
+                String text = INSERTIONS[random.nextInt(INSERTIONS.length)];
+                if (random.nextInt(4) == 0) {
+                    /* Replace rather than insert */
+                    document.replace(offset, Math.min(random.nextInt(5), document.getLength() - offset), text);
+                } else {
+                    document.replace(offset, 0, text);
+                }
+            } else {
+                document.replace(offset, Math.min(random.nextInt(20) + 1, document.getLength() - offset), "");
+            }
+
+            listener.assertConsistent();
+        }
+    }
+
+    @Test
+    public void testUntouchedHeadingsKeepTheirIdentity() throws BadLocationException
+    {
+        Document document = new Document(CONTENT);
+        TrackingListener listener = new TrackingListener(document);
+        document.addDocumentListener(listener);
+
+        List<HeadingInfo> before = new ArrayList<HeadingInfo>(listener.index.getHeadings());
+        document.replace(CONTENT.indexOf("Some text"), 0, "More ");
+        listener.assertConsistent();
+
+        Assert.assertTrue(listener.lastAdded.isEmpty());
+        Assert.assertTrue(listener.lastRemoved.isEmpty());
+        List<HeadingInfo> after = listener.index.getHeadings();
+        Assert.assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            Assert.assertSame(before.get(i), after.get(i));
+        }
+    }
+
+    /**
+     * Forwards the changes of a document to a heading index, and applies the reported additions and removals to a set
+     * standing for the content of the outline viewer.
+     */
+    private static class TrackingListener implements IDocumentListener
+    {
+        private final Document document;
+
+        private final HeadingIndex index;
+
+        private final Set<HeadingInfo> shown;
+
+        private Set<HeadingInfo> lastAdded = new HashSet<HeadingInfo>();
+
+        private Set<HeadingInfo> lastRemoved = new HashSet<HeadingInfo>();
+
+        public TrackingListener(Document document)
+        {
+            this.document = document;
+            this.index = new HeadingIndex(document);
+            this.shown = new HashSet<HeadingInfo>(index.getHeadings());
+        }
+
+        public void documentAboutToBeChanged(DocumentEvent event)
+        {
+            index.documentAboutToBeChanged(event);
+        }
+
+        public void documentChanged(DocumentEvent event)
+        {
+            lastAdded = new HashSet<HeadingInfo>();
+            lastRemoved = new HashSet<HeadingInfo>();
+            index.documentChanged(event, lastAdded, lastRemoved);
+
+            Assert.assertTrue(shown.containsAll(lastRemoved));
+            shown.removeAll(lastRemoved);
+            for (HeadingInfo heading : lastAdded) {
+                Assert.assertTrue(shown.add(heading));
+            }
+        }
+
+        public void assertConsistent()
+        {
+            String message = String.format("Headings differ for content:\n%s", document.get());
+
+            List<HeadingInfo> expected = new HeadingIndex(document).getHeadings();
+            List<HeadingInfo> actual = index.getHeadings();
+            Assert.assertEquals(message, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(message, expected.get(i).getOffset(), actual.get(i).getOffset());
+                Assert.assertEquals(message, expected.get(i).getLength(), actual.get(i).getLength());
+                Assert.assertEquals(message, expected.get(i).getTitle(), actual.get(i).getTitle());
+            }
+
+            Assert.assertEquals(message, new HashSet<HeadingInfo>(actual), shown);
+        }
+    }
+}
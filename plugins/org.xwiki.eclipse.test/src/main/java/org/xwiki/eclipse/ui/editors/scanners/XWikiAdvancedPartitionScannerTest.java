@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.editors.scanners;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.eclipse.ui.parser.Partition;
+
+/**
+ * Checks that the incremental parsing of {@link XWikiAdvancedPartitionScanner} always gives the same partitions as a
+ * full reparse of the modified content.
+ * 
+ * @version $Id$
+ */
+public class XWikiAdvancedPartitionScannerTest
+{
+    private static final String CONTENT = "= Title =\n" //
+        + "\n" //
+        + "A first paragraph with **bold** and //italic// text.\n" //
+        + "\n" //
+        + "{{velocity}}\n" //
+        + "#set($pages = $xwiki.searchDocuments('order by doc.date'))\n" //
+        + "#foreach($page in $pages)\n" //
+        + "  #if($velocityCount > 10)\n" //
+        + "    #break\n" //
+        + "  #end\n" //
+        + "  * [[$page]]\n" //
+        + "#end\n" //
+        + "{{/velocity}}\n" //
+        + "\n" //
+        + "|=Name|=Value\n" //
+        + "|a|1\n" //
+        + "|b|2\n" //
+        + "\n" //
+        + "* item 1\n" //
+        + "** item 1.1\n" //
+        + "* item 2\n" //
+        + "\n" //
+        + "== Second title ==\n" //
+        + "\n" //
+        + "(((\n" //
+        + "Embedded document\n" //
+        + "\n" //
+        + "with two paragraphs\n" //
+        + ")))\n" //
+        + "\n" //
+        + "> quoted line\n" //
+        + "> another one\n" //
+        + "\n" //
+        + "{{{verbatim {{velocity}} content\n" //
+        + "\n" //
+        + "}}}\n" //
+        + "\n" //
+        + "{{groovy}}\n" //
+        + "println 'hello'\n" //
+        + "{{/groovy}}\n" //
+        + "\n" //
+        + "{{velocity}}\n" //
+        + "#macro(hello $name)\n" //
+        + "Hello $name\n" //
+        + "#end\n" //
+        + "{{/velocity}}\n" //
+        + "\n" //
+        + "Last paragraph.\n";
+
+    private static final String[] INSERTIONS = {"a", "\n", "\n\n", "{{velocity}}", "{{/velocity}}", "#if(true)",
+    "#end", "(((", ")))", "{{{", "}}}", "= ", "|x|y\n", "* ", "**", "{{html}}\n<p/>\n{{/html}}\n"};
+
+    @Test
+    public void testSingleEdits()
+    {
+        for (int offset = 0; offset <= CONTENT.length(); offset++) {
+            for (String insertion : INSERTIONS) {
+                assertIncrementalParsing(CONTENT, insert(CONTENT, offset, insertion));
+            }
+            for (int length = 1; length <= 3 && offset + length <= CONTENT.length(); length++) {
+                assertIncrementalParsing(CONTENT, delete(CONTENT, offset, length));
+            }
+        }
+    }
+
+    @Test
+    public void testEditSequences()
+    {
+        Random random = new Random(42);
+
+        XWikiAdvancedPartitionScanner scanner = new XWikiAdvancedPartitionScanner();
+        String content = CONTENT;
+        scanner.parse(content, 0);
+
+        for (int i = 0; i < 2000; i++) {
+            int offset = random.nextInt(content.length() + 1);
+            if (random.nextBoolean() || content.length() < 100) {
+                content = insert(content, offset, INSERTIONS[random.nextInt(INSERTIONS.length)]);
+            } else {
+                content = delete(content, offset, Math.min(random.nextInt(20) + 1, content.length() - offset));
+            }
+
+            scanner.parse(content, 0);
+            assertSamePartitions(content, fullParse(content), scanner.getPartitions());
+        }
+    }
+
+    @Test
+    public void testTyping()
+    {
+        XWikiAdvancedPartitionScanner scanner = new XWikiAdvancedPartitionScanner();
+        String content = CONTENT;
+        scanner.parse(content, 0);
+
+        String typed = "\n{{velocity}}\n#if($a)\n  text\n#end\n{{/velocity}}\n\nMore text\n";
+        int offset = CONTENT.indexOf("Last paragraph");
+        for (int i = 0; i < typed.length(); i++) {
+            content = insert(content, offset + i, typed.substring(i, i + 1));
+            scanner.parse(content, 0);
+            assertSamePartitions(content, fullParse(content), scanner.getPartitions());
+        }
+    }
+
+    private void assertIncrementalParsing(String oldContent, String newContent)
+    {
+        XWikiAdvancedPartitionScanner scanner = new XWikiAdvancedPartitionScanner();
+        scanner.parse(oldContent, 0);
+        scanner.parse(newContent, 0);
+
+        assertSamePartitions(newContent, fullParse(newContent), scanner.getPartitions());
+    }
+
+    private List<Partition> fullParse(String content)
+    {
+        XWikiAdvancedPartitionScanner scanner = new XWikiAdvancedPartitionScanner();
+        scanner.setIncremental(false);
+        scanner.parse(content, 0);
+
+        return scanner.getPartitions();
+    }
+
+    private void assertSamePartitions(String content, List<Partition> expected, List<Partition> actual)
+    {
+        String message = String.format("Partitions differ for content:\n%s", content);
+
+        Assert.assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Partition expectedPartition = expected.get(i);
+            Partition actualPartition = actual.get(i);
+
+            Assert.assertEquals(message, expectedPartition.getType(), actualPartition.getType());
+            Assert.assertEquals(message, expectedPartition.getBeginOffset(), actualPartition.getBeginOffset());
+            Assert.assertEquals(message, expectedPartition.getEndOffset(), actualPartition.getEndOffset());
+            Assert.assertEquals(message, expectedPartition.getAttribute("NAME"), actualPartition.getAttribute("NAME"));
+            Assert.assertEquals(message, expectedPartition.getAttribute("LEVEL"), actualPartition.getAttribute("LEVEL"));
+        }
+    }
+
+    private String insert(String content, int offset, String text)
+    {
+        return content.substring(0, offset) + text + content.substring(offset);
+    }
+
+    private String delete(String content, int offset, int length)
+    {
+        return content.substring(0, offset) + content.substring(offset + length);
+    }
+}
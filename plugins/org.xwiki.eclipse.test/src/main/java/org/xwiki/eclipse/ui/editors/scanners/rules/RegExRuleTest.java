@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.editors.scanners.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the matches of {@link RegExRule} and that the cost of scanning a document with it grows linearly with the
+ * length of the document.
+ * 
+ * @version $Id$
+ */
+public class RegExRuleTest
+{
+    private static final IToken MATCH = new Token("match");
+
+    private static final String LINE = "Some text with a $variable.name and some more text after it\n";
+
+    @Test
+    public void testMatches()
+    {
+        RegExRule rule = new RegExRule("\\$[\\p{Alnum}\\.]*", MATCH);
+
+        Assert.assertEquals(Arrays.asList(5, 8, 19, 2), scan("text $foo.bar more\n$x", rule));
+    }
+
+    @Test
+    public void testMatchAtEndOfDocument()
+    {
+        RegExRule rule = new RegExRule("foo$", MATCH);
+
+        Assert.assertEquals(Arrays.asList(3, 3), scan("xx foo", rule));
+        Assert.assertEquals(Arrays.asList(3, 3), scan("xx foo\n", rule));
+        /* Without the MULTILINE flag, $ only matches at the end of the document, as when the whole document was read */
+        Assert.assertEquals(Arrays.asList(), scan("xx foo\nfoo bar", rule));
+    }
+
+    @Test
+    public void testColumnConstraint()
+    {
+        RegExRule rule = new RegExRule("=+", MATCH);
+        rule.setColumnConstraint(0);
+
+        Assert.assertEquals(Arrays.asList(0, 1, 6, 2), scan("= a =\n== b =", rule));
+    }
+
+    @Test
+    public void testMatchLongerThanLookahead()
+    {
+        RegExRule rule = new RegExRule("a+", MATCH);
+        StringBuilder content = new StringBuilder("b");
+        for (int i = 0; i < 10000; i++) {
+            content.append('a');
+        }
+        content.append("b\naa");
+
+        Assert.assertEquals(Arrays.asList(1, 10000, 10003, 2), scan(content.toString(), rule));
+    }
+
+    @Test
+    public void testSingleLine()
+    {
+        RegExRule rule = new RegExRule("\\{\\{\\{[^}]*\\}\\}\\}", MATCH);
+        Assert.assertEquals(Arrays.asList(0, 9, 10, 9), scan("{{{abc}}}\n{{{a\nb}}}", rule));
+
+        rule.setSingleLine(true);
+        Assert.assertEquals(Arrays.asList(0, 9), scan("{{{abc}}}\n{{{a\nb}}}", rule));
+    }
+
+    @Test
+    public void testMaxLength()
+    {
+        RegExRule rule = new RegExRule("a+", MATCH);
+        rule.setMaxLength(3);
+
+        Assert.assertEquals(Arrays.asList(0, 3, 3, 2), scan("aaaaa", rule));
+    }
+
+    /**
+     * Scans documents of increasing length and checks that the number of characters read from the scanner stays
+     * proportional to the length of the document, as each evaluation used to read the scanner up to its end.
+     */
+    @Test
+    public void testScanningCostIsLinear()
+    {
+        RegExRule rule = new RegExRule("\\$[\\p{Alnum}\\.]*", MATCH);
+
+        for (int kilobytes = 64; kilobytes <= 512; kilobytes *= 2) {
+            String content = createContent(kilobytes << 10);
+            ReadCountingScanner scanner = new ReadCountingScanner(rule);
+            int matches = scan(content, scanner).size() / 2;
+
+            Assert.assertEquals((content.length() + LINE.length() - 1) / LINE.length(), matches);
+            /*
+             * Outside the matches, each character is read once by the rule and once more by the scanner, which returns
+             * it as the default token. Reading the whole document on each evaluation would read it thousands of times.
+             */
+            Assert.assertTrue(String.format("%d characters read for %d characters", scanner.readCount,
+                content.length()), scanner.readCount <= 3 * content.length());
+        }
+    }
+
+    private String createContent(int length)
+    {
+        StringBuilder content = new StringBuilder(length + LINE.length());
+        while (content.length() < length) {
+            content.append(LINE);
+        }
+
+        return content.toString();
+    }
+
+    private List<Integer> scan(String content, RegExRule rule)
+    {
+        RuleBasedScanner scanner = new RuleBasedScanner();
+        scanner.setRules(new IRule[] {rule});
+
+        return scan(content, scanner);
+    }
+
+    /**
+     * @return The offset and length of each match.
+     */
+    private List<Integer> scan(String content, RuleBasedScanner scanner)
+    {
+        Document document = new Document(content);
+        scanner.setRange(document, 0, document.getLength());
+
+        List<Integer> result = new ArrayList<Integer>();
+        int scannedLength = 0;
+        for (IToken token = scanner.nextToken(); !token.isEOF(); token = scanner.nextToken()) {
+            Assert.assertEquals(scannedLength, scanner.getTokenOffset());
+            scannedLength += scanner.getTokenLength();
+
+            if (token == MATCH) {
+                result.add(scanner.getTokenOffset());
+                result.add(scanner.getTokenLength());
+            }
+        }
+        Assert.assertEquals(content.length(), scannedLength);
+
+        return result;
+    }
+
+    /**
+     * A scanner counting the characters read from it, including the reads returning EOF.
+     */
+    private static class ReadCountingScanner extends RuleBasedScanner
+    {
+        private int readCount;
+
+        ReadCountingScanner(IRule rule)
+        {
+            setRules(new IRule[] {rule});
+        }
+
+        @Override
+        public int read()
+        {
+            readCount++;
+            return super.read();
+        }
+    }
+}
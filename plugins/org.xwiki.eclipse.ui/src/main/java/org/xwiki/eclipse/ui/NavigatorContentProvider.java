@@ -20,8 +20,11 @@
  */
 package org.xwiki.eclipse.ui;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jface.viewers.AbstractTreeViewer;
@@ -39,7 +42,6 @@
 import org.xwiki.eclipse.model.XWikiEclipseObject;
 import org.xwiki.eclipse.model.XWikiEclipseObjectSummary;
 import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
-import org.xwiki.eclipse.model.XWikiEclipseSpaceSummary;
 import org.xwiki.eclipse.model.XWikiEclipseTag;
 import org.xwiki.eclipse.storage.DataManager;
 import org.xwiki.eclipse.storage.DataManagerRegistry;
@@ -60,6 +62,54 @@ public class NavigatorContentProvider extends BaseWorkbenchContentProvider imple
 
     private DeferredTreeContentManager deferredTreeContentManager;
 
+    /**
+     * The minimum delay, in milliseconds, between two batches of viewer updates.
+     */
+    private static final long FRAME_INTERVAL = 50;
+
+    /**
+     * The kinds of viewer updates resulting from core events.
+     */
+    private static enum ViewerOperation
+    {
+        ADD,
+        REMOVE,
+        UPDATE,
+        REFRESH,
+        EXPAND_AND_REFRESH,
+        REFRESH_KEEPING_EXPANDED_STATE
+    }
+
+    private static class ViewerUpdate
+    {
+        private final ViewerOperation operation;
+
+        private final Object element;
+
+        public ViewerUpdate(ViewerOperation operation, Object element)
+        {
+            this.operation = operation;
+            this.element = element;
+        }
+    }
+
+    /**
+     * The viewer updates waiting to be applied on the UI thread.
+     */
+    private final List<ViewerUpdate> pendingUpdates = new ArrayList<ViewerUpdate>();
+
+    private boolean flushScheduled;
+
+    private long lastFlushTime;
+
+    private final Runnable flushRunnable = new Runnable()
+    {
+        public void run()
+        {
+            flush();
+        }
+    };
+
     public NavigatorContentProvider()
     {
         super();
@@ -67,11 +117,11 @@ public NavigatorContentProvider()
             this,
             new CoreEvent.Type[] {CoreEvent.Type.DATA_MANAGER_REGISTERED, CoreEvent.Type.DATA_MANAGER_UNREGISTERED,
             CoreEvent.Type.DATA_MANAGER_CONNECTED, CoreEvent.Type.DATA_MANAGER_DISCONNECTED,
-            CoreEvent.Type.PAGE_STORED, CoreEvent.Type.OBJECT_STORED, CoreEvent.Type.PAGE_REMOVED,
+            CoreEvent.Type.DATA_MANAGER_SYNCHRONIZED, CoreEvent.Type.PAGE_STORED, CoreEvent.Type.PAGES_STORED, CoreEvent.Type.OBJECT_STORED, CoreEvent.Type.PAGE_REMOVED,
             CoreEvent.Type.OBJECT_REMOVED, CoreEvent.Type.REFRESH, CoreEvent.Type.PAGE_RENAMED,
             CoreEvent.Type.SPACE_REMOVED, CoreEvent.Type.COMMENT_REMOVED, CoreEvent.Type.COMMENT_STORED,
             CoreEvent.Type.ATTACHMENT_REMOVED, CoreEvent.Type.ATTACHMENT_UPLOADED, CoreEvent.Type.ATTACHMENT_UPDATED,
-            CoreEvent.Type.TAG_STORED});
+            CoreEvent.Type.TAG_STORED, CoreEvent.Type.OBJECTS_STORED}, true);
 
         workingSet = null;
     }
@@ -131,250 +181,261 @@ public void inputChanged(Viewer viewer, Object oldInput, Object newInput)
 
     public void handleCoreEvent(final CoreEvent event)
     {
+        /*
+         * This is called in the background, as this listener is asynchronous: any storage access is done here and only
+         * the resulting viewer updates are queued for the UI thread.
+         */
         switch (event.getType()) {
             case DATA_MANAGER_REGISTERED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        /*
-                         * FIXME: Find a way to add new DataManagers to the viewer to avoid flicker and loss of expanded
-                         * state caused by refresh(). Tried: viewer.add(dataManager.getProject().getParent(),
-                         * dataManager) but the data manager that was added could not be expanded. No arrow appeared
-                         * next to it and isExpandable(dataManager) returns false. The arrow would appear only after
-                         * issuing refresh(), but that destroys the expanded state of the viewer.
-                         */
-                        viewer.refresh();
-                    }
-                });
+                enqueue(ViewerOperation.ADD, event.getData());
                 break;
 
             case DATA_MANAGER_UNREGISTERED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        DataManager dataManager = (DataManager) event.getData();
-                        viewer.remove(dataManager);
-                    }
-                });
+                enqueue(ViewerOperation.REMOVE, event.getData());
                 break;
 
             case DATA_MANAGER_CONNECTED:
             case DATA_MANAGER_DISCONNECTED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        DataManager dataManager = (DataManager) event.getSource();
-                        viewer.refresh(dataManager);
-                    }
-                });
+            case DATA_MANAGER_SYNCHRONIZED:
+                enqueue(ViewerOperation.REFRESH, event.getSource());
                 break;
 
             case PAGE_STORED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        viewer.update(event.getData(), null);
-                    }
-                });
+                enqueue(ViewerOperation.UPDATE, event.getData());
+                break;
+
+            case PAGES_STORED:
+                /* Either a batch of fetched page summaries or a burst of coalesced stored pages */
+                for (Object page : (List< ? >) event.getData()) {
+                    enqueue(ViewerOperation.UPDATE, page);
+                }
                 break;
 
             case PAGE_RENAMED:
                 break;
 
             case PAGE_REMOVED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        viewer.remove(event.getData());
-                    }
-                });
+                enqueue(ViewerOperation.REMOVE, event.getData());
                 break;
 
             case OBJECT_STORED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        /*
-                         * Build an object summary corresponding to the object received through the event. This is
-                         * needed because in the tree we only find object summaries, and to match them we need this kind
-                         * of objects.
-                         */
-                        XWikiEclipseObject object = (XWikiEclipseObject) event.getData();
-                        XWikiEclipseObjectSummary objectSummary =
-                            new XWikiEclipseObjectSummary(object.getDataManager());
-                        objectSummary.setClassName(object.getClassName());
-                        objectSummary.setId(object.getId());
-                        objectSummary.setNumber(object.getNumber());
-                        objectSummary.setPageId(object.getPageId());
-                        objectSummary.setPageName(object.getPageName());
-                        objectSummary.setSpace(object.getSpace());
-                        objectSummary.setWiki(object.getWiki());
-
-                        viewer.update(objectSummary, null);
-                    }
-                });
+                enqueue(ViewerOperation.UPDATE, getObjectSummary((XWikiEclipseObject) event.getData()));
                 break;
+
+            case OBJECTS_STORED:
+                for (Object object : (List< ? >) event.getData()) {
+                    enqueue(ViewerOperation.UPDATE, getObjectSummary((XWikiEclipseObject) object));
+                }
+                break;
+
             case TAG_STORED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipseTag tag = (XWikiEclipseTag) event.getData();
-
-                        try {
-                            XWikiEclipsePageSummary pageSummary =
-                                tag.getDataManager().getPageSummary(tag.getWiki(), tag.getSpace(), tag.getPage(), "");
-                            /* refresh the page */
-                            viewer.setExpandedState(pageSummary, true);
-                            viewer.refresh(pageSummary);
-                        } catch (XWikiEclipseStorageException e) {
-                            CoreLog.logError("Error getting page summary in navigator content provider", e);
-                        }
-
-                    }
-                });
+                if (event.getData() instanceof XWikiEclipsePageSummary) {
+                    /* Tags added to a page */
+                    enqueue(ViewerOperation.EXPAND_AND_REFRESH, event.getData());
+                    break;
+                }
+
+                XWikiEclipseTag tag = (XWikiEclipseTag) event.getData();
+                try {
+                    XWikiEclipsePageSummary pageSummary =
+                        UIPlugin.getDefault().getPageSummaryCache(tag.getDataManager()).getPageSummary(tag.getWiki(),
+                            tag.getSpace(), tag.getPage(), "");
+                    /* refresh the page */
+                    enqueue(ViewerOperation.EXPAND_AND_REFRESH, pageSummary);
+                } catch (XWikiEclipseStorageException e) {
+                    CoreLog.logError("Error getting page summary in navigator content provider", e);
+                }
                 break;
+
             case ATTACHMENT_UPLOADED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) event.getData();
-
-                        /* refresh the page */
-                        viewer.setExpandedState(pageSummary, true);
-                        viewer.refresh(pageSummary);
-                    }
-                });
+                /* refresh the page */
+                enqueue(ViewerOperation.EXPAND_AND_REFRESH, event.getData());
                 break;
-            case ATTACHMENT_UPDATED:
 
+            case ATTACHMENT_UPDATED:
                 Map<XWikiEclipsePageSummary, List<XWikiEclipseAttachment>> pageSummaries =
                     (Map<XWikiEclipsePageSummary, List<XWikiEclipseAttachment>>) event.getData();
 
                 /* refresh the page */
-                for (final XWikiEclipsePageSummary pageSummary : pageSummaries.keySet()) {
-                    Display.getDefault().asyncExec(new Runnable()
-                    {
-                        public void run()
-                        {
-                            viewer.setExpandedState(pageSummary, true);
-                            viewer.refresh(pageSummary);
-                        }
-                    });
+                for (XWikiEclipsePageSummary pageSummary : pageSummaries.keySet()) {
+                    enqueue(ViewerOperation.EXPAND_AND_REFRESH, pageSummary);
                 }
-
                 break;
+
             case ATTACHMENT_REMOVED:
+                XWikiEclipseAttachment attachment = (XWikiEclipseAttachment) event.getData();
+                try {
+                    IdProcessor parser = new IdProcessor(attachment.getPageId());
+
+                    XWikiEclipsePageSummary pageSummary =
+                        UIPlugin.getDefault().getPageSummaryCache(attachment.getDataManager()).getPageSummary(
+                            parser.getWiki(), parser.getSpace(), parser.getPage(), "");
+                    enqueue(ViewerOperation.EXPAND_AND_REFRESH, pageSummary);
+                } catch (XWikiEclipseStorageException e) {
+                    CoreLog.logError("Error getting page summary in navigator content provider", e);
+                }
+                break;
 
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipseAttachment attachment = (XWikiEclipseAttachment) event.getData();
-                        try {
-                            String pageId = attachment.getPageId();
+            case COMMENT_REMOVED:
+                enqueue(ViewerOperation.REMOVE, event.getData());
+                break;
 
-                            IdProcessor parser = new IdProcessor(pageId);
+            case COMMENT_STORED:
+                try {
+                    XWikiEclipseComment comment = (XWikiEclipseComment) event.getData();
+                    IdProcessor parser = new IdProcessor(comment.getPageId());
+
+                    XWikiEclipsePageSummary pageSummary =
+                        UIPlugin.getDefault().getPageSummaryCache(comment.getDataManager()).getPageSummary(
+                            parser.getWiki(), parser.getSpace(), parser.getPage(), "");
+                    enqueue(ViewerOperation.EXPAND_AND_REFRESH, pageSummary);
+                } catch (XWikiEclipseStorageException e) {
+                    CoreLog.logError("Error getting page summary in navigator content provider", e);
+                }
+                break;
 
-                            XWikiEclipsePageSummary pageSummary =
-                                attachment.getDataManager().getPageSummary(parser.getWiki(), parser.getSpace(),
-                                    parser.getPage(), "");
-                            viewer.setExpandedState(pageSummary, true);
-                            viewer.refresh(pageSummary);
-                        } catch (XWikiEclipseStorageException e) {
-                            CoreLog.logError("Error getting page summary in navigator content provider", e);
-                        }
+            case OBJECT_REMOVED:
+                enqueue(ViewerOperation.REMOVE, event.getData());
+                break;
 
-                    }
+            case SPACE_REMOVED:
+                enqueue(ViewerOperation.REMOVE, event.getData());
+                break;
 
-                });
+            case REFRESH:
+                enqueue(ViewerOperation.REFRESH_KEEPING_EXPANDED_STATE, event.getData());
                 break;
-            case COMMENT_REMOVED:
+        }
+    }
 
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipseComment comment = (XWikiEclipseComment) event.getData();
-                        viewer.remove(comment);
-                    }
+    /**
+     * Queue a viewer update and make sure that the queue is flushed on the UI thread.
+     */
+    private void enqueue(ViewerOperation operation, Object element)
+    {
+        if (element == null && operation != ViewerOperation.REFRESH_KEEPING_EXPANDED_STATE) {
+            return;
+        }
 
-                });
-                break;
-            case COMMENT_STORED:
+        synchronized (pendingUpdates) {
+            pendingUpdates.add(new ViewerUpdate(operation, element));
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
 
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        try {
-                            XWikiEclipseComment comment = (XWikiEclipseComment) event.getData();
-                            String pageId = comment.getPageId();
-                            IdProcessor parser = new IdProcessor(pageId);
+        Display.getDefault().asyncExec(flushRunnable);
+    }
 
-                            XWikiEclipsePageSummary pageSummary =
-                                comment.getDataManager().getPageSummary(parser.getWiki(), parser.getSpace(),
-                                    parser.getPage(), "");
+    /**
+     * Apply the queued viewer updates, at most once every {@link #FRAME_INTERVAL} milliseconds. Must be called on the
+     * UI thread.
+     */
+    private void flush()
+    {
+        long wait = lastFlushTime + FRAME_INTERVAL - System.currentTimeMillis();
+        if (wait > 0) {
+            Display.getDefault().timerExec((int) wait, flushRunnable);
+            return;
+        }
 
-                            viewer.setExpandedState(pageSummary, true);
-                            viewer.refresh(pageSummary, true);
+        List<ViewerUpdate> updates;
+        synchronized (pendingUpdates) {
+            updates = new ArrayList<ViewerUpdate>(pendingUpdates);
+            pendingUpdates.clear();
+            flushScheduled = false;
+        }
+        lastFlushTime = System.currentTimeMillis();
 
-                        } catch (XWikiEclipseStorageException e) {
-                            CoreLog.logError("Error getting page summary in navigator content provider", e);
-                        }
+        if (viewer == null || viewer.getControl().isDisposed()) {
+            return;
+        }
 
-                    }
+        /* Consecutive label updates are sent to the viewer in a single call */
+        Set<Object> elementsToUpdate = new LinkedHashSet<Object>();
+        for (ViewerUpdate update : updates) {
+            if (update.operation == ViewerOperation.UPDATE) {
+                elementsToUpdate.add(update.element);
+                continue;
+            }
 
-                });
-                break;
-            case OBJECT_REMOVED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipseObjectSummary object = (XWikiEclipseObjectSummary) event.getData();
-                        viewer.remove(object);
-                    }
-
-                });
+            if (!elementsToUpdate.isEmpty()) {
+                viewer.update(elementsToUpdate.toArray(), null);
+                elementsToUpdate.clear();
+            }
+
+            apply(update);
+        }
+
+        if (!elementsToUpdate.isEmpty()) {
+            viewer.update(elementsToUpdate.toArray(), null);
+        }
+    }
+
+    private void apply(ViewerUpdate update)
+    {
+        switch (update.operation) {
+            case ADD:
+                /*
+                 * Add the new data manager instead of refreshing the whole viewer, which would lose its expanded state.
+                 * Refreshing the added element is needed for its expand arrow to appear.
+                 */
+                if (viewer.testFindItem(update.element) == null) {
+                    viewer.add(viewer.getInput(), update.element);
+                }
+                viewer.refresh(update.element);
                 break;
 
-            case SPACE_REMOVED:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        XWikiEclipseSpaceSummary space = (XWikiEclipseSpaceSummary) event.getData();
-                        viewer.remove(space);
-                    }
-
-                });
+            case REMOVE:
+                viewer.remove(update.element);
                 break;
 
             case REFRESH:
-                Display.getDefault().syncExec(new Runnable()
-                {
-                    public void run()
-                    {
-                        /*
-                         * FIXME: This should work but it doesn't. Can't get the viewer's expanded elements to restore
-                         * after a refresh. Tried many things, none seem to work. Any attempt at restoring the expanded
-                         * state fails, although the viewer's data classes all have equals and hashCode methods
-                         * overridden in their superclass.
-                         */
-                        Object[] expandedElements = viewer.getVisibleExpandedElements();
-                        viewer.refresh(event.getData());
-                        viewer.setExpandedElements(expandedElements);
-                    }
-                });
+                viewer.refresh(update.element);
+                break;
+
+            case EXPAND_AND_REFRESH:
+                viewer.setExpandedState(update.element, true);
+                viewer.refresh(update.element);
+                break;
+
+            case REFRESH_KEEPING_EXPANDED_STATE:
+                /*
+                 * FIXME: This should work but it doesn't. Can't get the viewer's expanded elements to restore after a
+                 * refresh. Tried many things, none seem to work. Any attempt at restoring the expanded state fails,
+                 * although the viewer's data classes all have equals and hashCode methods overridden in their
+                 * superclass.
+                 */
+                Object[] expandedElements = viewer.getVisibleExpandedElements();
+                if (update.element != null) {
+                    viewer.refresh(update.element);
+                } else {
+                    viewer.refresh();
+                }
+                viewer.setExpandedElements(expandedElements);
+                break;
+
+            default:
                 break;
         }
     }
+
+    /**
+     * Build an object summary corresponding to an object received through an event. This is needed because in the tree
+     * we only find object summaries, and to match them we need this kind of objects.
+     */
+    private XWikiEclipseObjectSummary getObjectSummary(XWikiEclipseObject object)
+    {
+        XWikiEclipseObjectSummary objectSummary = new XWikiEclipseObjectSummary(object.getDataManager());
+        objectSummary.setClassName(object.getClassName());
+        objectSummary.setId(object.getId());
+        objectSummary.setNumber(object.getNumber());
+        objectSummary.setPageId(object.getPageId());
+        objectSummary.setPageName(object.getPageName());
+        objectSummary.setSpace(object.getSpace());
+        objectSummary.setWiki(object.getWiki());
+
+        return objectSummary;
+    }
 }
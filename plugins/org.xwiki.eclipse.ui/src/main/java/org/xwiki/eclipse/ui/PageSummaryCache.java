@@ -0,0 +1,340 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.eclipse.core.metrics.HitRatio;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
+import org.xwiki.eclipse.core.notification.CoreEvent;
+import org.xwiki.eclipse.core.notification.ICoreEventListener;
+import org.xwiki.eclipse.core.notification.NotificationManager;
+import org.xwiki.eclipse.model.ModelObject;
+import org.xwiki.eclipse.model.XWikiEclipseAttachment;
+import org.xwiki.eclipse.model.XWikiEclipseComment;
+import org.xwiki.eclipse.model.XWikiEclipseObject;
+import org.xwiki.eclipse.model.XWikiEclipseObjectSummary;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.model.XWikiEclipseTag;
+import org.xwiki.eclipse.storage.DataManager;
+import org.xwiki.eclipse.storage.XWikiEclipseStorageException;
+import org.xwiki.eclipse.storage.utils.IdProcessor;
+
+/**
+ * A cache of the page summaries of a data manager, used by the navigator to decide which children a page has and how
+ * to decorate it without asking the data manager for each page.
+ * <p>
+ * Cached entries expire after a short time and the entries of a page are dropped as soon as a core event reports that
+ * the page, or one of its objects, attachments, tags or comments, has changed. The cache listens synchronously, so an
+ * entry is always invalidated before the (asynchronous) navigator refresh triggered by the same event reads it again.
+ *
+ * @version $Id$
+ */
+public class PageSummaryCache implements ICoreEventListener
+{
+    /**
+     * The time, in milliseconds, after which a cached entry is considered stale.
+     */
+    private static final long TIME_TO_LIVE = 30000;
+
+    private static final HitRatio HIT_RATIO =
+        MetricsRegistry.getDefault().getHitRatio("cache.pageSummaries"); //$NON-NLS-1$
+
+    private final DataManager dataManager;
+
+    /**
+     * The cached page summaries: page id (wiki:space.page) to language to page summary.
+     */
+    private final Map<String, Map<String, Entry<XWikiEclipsePageSummary>>> pageSummaries =
+        new HashMap<String, Map<String, Entry<XWikiEclipsePageSummary>>>();
+
+    /**
+     * The cached local availability of the pages: page id (wiki:space.page) to language to availability.
+     */
+    private final Map<String, Map<String, Entry<Boolean>>> locallyAvailable =
+        new HashMap<String, Map<String, Entry<Boolean>>>();
+
+    /**
+     * Incremented at each invalidation, so that a value fetched while an invalidation happened is not cached.
+     */
+    private long generation;
+
+    /**
+     * Constructor.
+     *
+     * @param dataManager The data manager whose page summaries are cached.
+     */
+    public PageSummaryCache(DataManager dataManager)
+    {
+        this.dataManager = dataManager;
+
+        NotificationManager.getDefault().addListener(
+            this,
+            new CoreEvent.Type[] {CoreEvent.Type.PAGE_STORED, CoreEvent.Type.PAGES_STORED, CoreEvent.Type.PAGE_REMOVED,
+            CoreEvent.Type.PAGE_RENAMED, CoreEvent.Type.OBJECT_STORED, CoreEvent.Type.OBJECTS_STORED,
+            CoreEvent.Type.OBJECT_REMOVED, CoreEvent.Type.ATTACHMENT_UPLOADED, CoreEvent.Type.ATTACHMENT_UPDATED,
+            CoreEvent.Type.ATTACHMENT_REMOVED, CoreEvent.Type.TAG_STORED, CoreEvent.Type.COMMENT_STORED,
+            CoreEvent.Type.COMMENT_REMOVED, CoreEvent.Type.SPACE_REMOVED, CoreEvent.Type.REFRESH,
+            CoreEvent.Type.DATA_MANAGER_CONNECTED, CoreEvent.Type.DATA_MANAGER_DISCONNECTED,
+            CoreEvent.Type.DATA_MANAGER_SYNCHRONIZED});
+    }
+
+    /**
+     * @param wiki The wiki.
+     * @param space The space.
+     * @param page The page name.
+     * @param language The language.
+     * @return The page summary, from the cache if it is still fresh, from the data manager otherwise.
+     * @throws XWikiEclipseStorageException
+     */
+    public XWikiEclipsePageSummary getPageSummary(String wiki, String space, String page, String language)
+        throws XWikiEclipseStorageException
+    {
+        String pageId = getPageId(wiki, space, page);
+
+        long fetchGeneration;
+        synchronized (this) {
+            XWikiEclipsePageSummary pageSummary = get(pageSummaries, pageId, language);
+            if (pageSummary != null) {
+                return pageSummary;
+            }
+
+            fetchGeneration = generation;
+        }
+
+        XWikiEclipsePageSummary pageSummary = dataManager.getPageSummary(wiki, space, page, language);
+        if (pageSummary != null) {
+            synchronized (this) {
+                if (fetchGeneration == generation) {
+                    put(pageSummaries, pageId, language, pageSummary);
+                }
+            }
+        }
+
+        return pageSummary;
+    }
+
+    /**
+     * @param pageSummary The page summary.
+     * @return true if the page is available in the local storage of the data manager.
+     */
+    public boolean isPageLocallyAvailable(XWikiEclipsePageSummary pageSummary)
+    {
+        String pageId = getPageId(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName());
+
+        long fetchGeneration;
+        synchronized (this) {
+            Boolean available = get(locallyAvailable, pageId, pageSummary.getLanguage());
+            if (available != null) {
+                return available;
+            }
+
+            fetchGeneration = generation;
+        }
+
+        boolean available = dataManager.isPageLocallyAvailable(pageSummary.getId(), pageSummary.getLanguage());
+        synchronized (this) {
+            if (fetchGeneration == generation) {
+                put(locallyAvailable, pageId, pageSummary.getLanguage(), available);
+            }
+        }
+
+        return available;
+    }
+
+    /**
+     * Cache page summaries that have just been retrieved from the data manager, e.g., when a space is expanded.
+     *
+     * @param pageSummaries The page summaries.
+     */
+    public synchronized void put(Collection<XWikiEclipsePageSummary> pageSummaries)
+    {
+        for (XWikiEclipsePageSummary pageSummary : pageSummaries) {
+            put(this.pageSummaries, getPageId(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName()),
+                pageSummary.getLanguage(), pageSummary);
+        }
+    }
+
+    /**
+     * Drop all the cached entries.
+     */
+    public synchronized void clear()
+    {
+        pageSummaries.clear();
+        locallyAvailable.clear();
+        generation++;
+    }
+
+    public void dispose()
+    {
+        NotificationManager.getDefault().removeListener(this);
+        clear();
+    }
+
+    public void handleCoreEvent(CoreEvent event)
+    {
+        switch (event.getType()) {
+            case DATA_MANAGER_CONNECTED:
+            case DATA_MANAGER_DISCONNECTED:
+            case DATA_MANAGER_SYNCHRONIZED:
+                if (event.getSource() == dataManager) {
+                    clear();
+                }
+                break;
+
+            case SPACE_REMOVED:
+            case REFRESH:
+                /* Let the refreshed elements be read again */
+                clear();
+                break;
+
+            case PAGES_STORED:
+            case OBJECTS_STORED:
+                for (Object data : (List< ? >) event.getData()) {
+                    invalidate(data);
+                }
+                break;
+
+            case ATTACHMENT_UPDATED:
+                for (Object pageSummary : ((Map< ? , ? >) event.getData()).keySet()) {
+                    invalidate(pageSummary);
+                }
+                break;
+
+            default:
+                invalidate(event.getData());
+                break;
+        }
+    }
+
+    /**
+     * Drop the cached entries of the page the given element belongs to.
+     */
+    private void invalidate(Object element)
+    {
+        if (!(element instanceof ModelObject) || ((ModelObject) element).getDataManager() != dataManager) {
+            return;
+        }
+
+        String pageId = null;
+        if (element instanceof XWikiEclipsePageSummary) {
+            XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) element;
+            pageId = getPageId(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName());
+        } else if (element instanceof XWikiEclipsePage) {
+            XWikiEclipsePage page = (XWikiEclipsePage) element;
+            pageId = getPageId(page.getWiki(), page.getSpace(), page.getName());
+        } else if (element instanceof XWikiEclipseObject) {
+            XWikiEclipseObject object = (XWikiEclipseObject) element;
+            pageId = getPageId(object.getWiki(), object.getSpace(), object.getPageName());
+        } else if (element instanceof XWikiEclipseObjectSummary) {
+            XWikiEclipseObjectSummary objectSummary = (XWikiEclipseObjectSummary) element;
+            pageId = getPageId(objectSummary.getWiki(), objectSummary.getSpace(), objectSummary.getPageName());
+        } else if (element instanceof XWikiEclipseTag) {
+            XWikiEclipseTag tag = (XWikiEclipseTag) element;
+            pageId = getPageId(tag.getWiki(), tag.getSpace(), tag.getPage());
+        } else if (element instanceof XWikiEclipseComment) {
+            pageId = getPageId(((XWikiEclipseComment) element).getPageId());
+        } else if (element instanceof XWikiEclipseAttachment) {
+            pageId = getPageId(((XWikiEclipseAttachment) element).getPageId());
+        }
+
+        synchronized (this) {
+            if (pageId != null) {
+                pageSummaries.remove(pageId);
+                locallyAvailable.remove(pageId);
+            } else {
+                /* An element we don't know how to relate to a page */
+                pageSummaries.clear();
+                locallyAvailable.clear();
+            }
+            generation++;
+        }
+    }
+
+    private static <T> T get(Map<String, Map<String, Entry<T>>> map, String pageId, String language)
+    {
+        Map<String, Entry<T>> languageToEntryMap = map.get(pageId);
+        if (languageToEntryMap == null) {
+            HIT_RATIO.miss();
+            return null;
+        }
+
+        Entry<T> entry = languageToEntryMap.get(language);
+        if (entry == null) {
+            HIT_RATIO.miss();
+            return null;
+        }
+
+        if (System.currentTimeMillis() - entry.timestamp > TIME_TO_LIVE) {
+            languageToEntryMap.remove(language);
+            if (languageToEntryMap.isEmpty()) {
+                map.remove(pageId);
+            }
+
+            HIT_RATIO.miss();
+            return null;
+        }
+
+        HIT_RATIO.hit();
+        return entry.value;
+    }
+
+    private static <T> void put(Map<String, Map<String, Entry<T>>> map, String pageId, String language, T value)
+    {
+        Map<String, Entry<T>> languageToEntryMap = map.get(pageId);
+        if (languageToEntryMap == null) {
+            languageToEntryMap = new HashMap<String, Entry<T>>();
+            map.put(pageId, languageToEntryMap);
+        }
+
+        languageToEntryMap.put(language, new Entry<T>(value));
+    }
+
+    private static String getPageId(String wiki, String space, String page)
+    {
+        return new IdProcessor(wiki, space, page).getPageId();
+    }
+
+    /**
+     * @param id A page id, extended page id or object id.
+     */
+    private static String getPageId(String id)
+    {
+        IdProcessor parser = new IdProcessor(id);
+
+        return getPageId(parser.getWiki(), parser.getSpace(), parser.getPage());
+    }
+
+    private static class Entry<T>
+    {
+        private final T value;
+
+        private final long timestamp = System.currentTimeMillis();
+
+        public Entry(T value)
+        {
+            this.value = value;
+        }
+    }
+}
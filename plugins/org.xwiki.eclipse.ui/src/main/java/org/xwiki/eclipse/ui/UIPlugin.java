@@ -21,15 +21,16 @@
 package org.xwiki.eclipse.ui;
 
 import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
 
-import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
-import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.core.notification.CoreEvent;
+import org.xwiki.eclipse.core.notification.ICoreEventListener;
+import org.xwiki.eclipse.core.notification.NotificationManager;
 import org.xwiki.eclipse.storage.DataManager;
-import org.xwiki.eclipse.ui.utils.XWikiEclipseSafeRunnable;
+import org.xwiki.eclipse.ui.editors.contentassist.PageIdIndex;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -44,7 +45,11 @@ public class UIPlugin extends AbstractUIPlugin
     // The shared instance
     private static UIPlugin plugin;
 
-    private HashMap<DataManager, List<XWikiEclipsePageSummary>> dataManagerToPageSummariesMap;
+    private Map<DataManager, PageIdIndex> dataManagerToPageIdIndexMap;
+
+    private Map<DataManager, PageSummaryCache> dataManagerToPageSummaryCacheMap;
+
+    private ICoreEventListener dataManagerListener;
 
     /**
      * The constructor
@@ -61,7 +66,34 @@ public void start(BundleContext context) throws Exception
     {
         super.start(context);
         plugin = this;
-        dataManagerToPageSummariesMap = new HashMap<DataManager, List<XWikiEclipsePageSummary>>();
+        dataManagerToPageIdIndexMap = new HashMap<DataManager, PageIdIndex>();
+        dataManagerToPageSummaryCacheMap = new HashMap<DataManager, PageSummaryCache>();
+
+        dataManagerListener = new ICoreEventListener()
+        {
+            public void handleCoreEvent(CoreEvent event)
+            {
+                PageIdIndex pageIdIndex;
+                synchronized (dataManagerToPageIdIndexMap) {
+                    pageIdIndex = dataManagerToPageIdIndexMap.remove(event.getData());
+                }
+
+                if (pageIdIndex != null) {
+                    pageIdIndex.dispose();
+                }
+
+                PageSummaryCache pageSummaryCache;
+                synchronized (dataManagerToPageSummaryCacheMap) {
+                    pageSummaryCache = dataManagerToPageSummaryCacheMap.remove(event.getData());
+                }
+
+                if (pageSummaryCache != null) {
+                    pageSummaryCache.dispose();
+                }
+            }
+        };
+        NotificationManager.getDefault().addListener(dataManagerListener,
+            new CoreEvent.Type[] {CoreEvent.Type.DATA_MANAGER_UNREGISTERED});
     }
 
     /*
@@ -70,6 +102,20 @@ public void start(BundleContext context) throws Exception
      */
     public void stop(BundleContext context) throws Exception
     {
+        NotificationManager.getDefault().removeListener(dataManagerListener);
+        synchronized (dataManagerToPageIdIndexMap) {
+            for (PageIdIndex pageIdIndex : dataManagerToPageIdIndexMap.values()) {
+                pageIdIndex.dispose();
+            }
+            dataManagerToPageIdIndexMap.clear();
+        }
+        synchronized (dataManagerToPageSummaryCacheMap) {
+            for (PageSummaryCache pageSummaryCache : dataManagerToPageSummaryCacheMap.values()) {
+                pageSummaryCache.dispose();
+            }
+            dataManagerToPageSummaryCacheMap.clear();
+        }
+
         plugin = null;
         super.stop(context);
     }
@@ -89,20 +135,38 @@ public static ImageDescriptor getImageDescriptor(String path)
         return imageDescriptorFromPlugin(PLUGIN_ID, path);
     }
 
-    public List<XWikiEclipsePageSummary> getAllPageSummariesForDataManager(final DataManager dataManager)
+    /**
+     * @param dataManager The data manager.
+     * @return The index of the page ids of the given data manager. It is built in the background the first time it is
+     *         requested.
+     */
+    public PageIdIndex getPageIdIndex(DataManager dataManager)
     {
-        /* If we don't already have summaries, then fetch them from the data manager */
-        if (dataManagerToPageSummariesMap.get(dataManager) == null) {
-            SafeRunner.run(new XWikiEclipseSafeRunnable()
-            {
-                public void run() throws Exception
-                {
-                    List<XWikiEclipsePageSummary> pageSummaries = dataManager.getAllPageIds();
-                    dataManagerToPageSummariesMap.put(dataManager, pageSummaries);
-                }
-            });
+        synchronized (dataManagerToPageIdIndexMap) {
+            PageIdIndex pageIdIndex = dataManagerToPageIdIndexMap.get(dataManager);
+            if (pageIdIndex == null) {
+                pageIdIndex = new PageIdIndex(dataManager);
+                dataManagerToPageIdIndexMap.put(dataManager, pageIdIndex);
+            }
+
+            return pageIdIndex;
         }
+    }
+
+    /**
+     * @param dataManager The data manager.
+     * @return The cache of the page summaries of the given data manager.
+     */
+    public PageSummaryCache getPageSummaryCache(DataManager dataManager)
+    {
+        synchronized (dataManagerToPageSummaryCacheMap) {
+            PageSummaryCache pageSummaryCache = dataManagerToPageSummaryCacheMap.get(dataManager);
+            if (pageSummaryCache == null) {
+                pageSummaryCache = new PageSummaryCache(dataManager);
+                dataManagerToPageSummaryCacheMap.put(dataManager, pageSummaryCache);
+            }
 
-        return dataManagerToPageSummariesMap.get(dataManager);
+            return pageSummaryCache;
+        }
     }
 }
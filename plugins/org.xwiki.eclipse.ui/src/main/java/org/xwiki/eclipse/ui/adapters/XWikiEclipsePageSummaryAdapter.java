@@ -53,11 +53,12 @@ public Object[] getChildren(Object object)
                  * Get the updated version. The version we get from the parameter is the one that was cached when the
                  * space was expanded. Since objects, attachments, etc. might be added in the meanwhie, we need to
                  * refresh this information by asking an updated version of the page summary. This is needed, for
-                 * example, when an object or a comment is added from the UI.
+                 * example, when an object or a comment is added from the UI. The cache drops the page summary when
+                 * such a change is notified, so it is only fetched again when needed.
                  */
                 pageSummary =
-                    dataManager.getPageSummary(pageSummary.getWiki(), pageSummary.getSpace(), pageSummary.getName(),
-                        pageSummary.getLanguage());
+                    UIPlugin.getDefault().getPageSummaryCache(dataManager).getPageSummary(pageSummary.getWiki(),
+                        pageSummary.getSpace(), pageSummary.getName(), pageSummary.getLanguage());
             } catch (XWikiEclipseStorageException e) {
                 return NO_CHILDREN;
             }
@@ -110,7 +111,8 @@ public ImageDescriptor getImageDescriptor(Object object)
                 return UIPlugin.getImageDescriptor(UIConstants.PAGE_CONFLICT_ICON);
             }
 
-            if (pageSummary.getDataManager().isPageLocallyAvailable(pageSummary.getId(), pageSummary.getLanguage())) {
+            if (UIPlugin.getDefault().getPageSummaryCache(pageSummary.getDataManager()).isPageLocallyAvailable(
+                pageSummary)) {
                 return UIPlugin.getImageDescriptor(UIConstants.PAGE_LOCALLY_AVAILABLE_ICON);
             } else {
                 return UIPlugin.getImageDescriptor(UIConstants.PAGE_ICON);
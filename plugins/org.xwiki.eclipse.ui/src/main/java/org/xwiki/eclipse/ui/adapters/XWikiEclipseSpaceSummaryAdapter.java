@@ -52,6 +52,8 @@ public Object[] getChildren(Object object)
             try {
                 List<XWikiEclipsePageSummary> result =
                     spaceSummary.getDataManager().getPageSummaries(spaceSummary.getWiki(), spaceSummary.getName());
+                /* Expanding the pages will not need to retrieve their summaries again */
+                UIPlugin.getDefault().getPageSummaryCache(spaceSummary.getDataManager()).put(result);
                 return result.toArray();
             } catch (XWikiEclipseStorageException e) {
                 UIUtils
@@ -20,18 +20,20 @@
  */
 package org.xwiki.eclipse.ui.dialogs;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.dialogs.IDialogSettings;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
@@ -49,9 +51,12 @@
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.dialogs.FilteredItemsSelectionDialog;
 import org.eclipse.ui.model.WorkbenchLabelProvider;
+import org.xwiki.eclipse.core.CoreLog;
 import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.XWikiEclipseStorageException;
 import org.xwiki.eclipse.storage.DataManager;
 import org.xwiki.eclipse.storage.DataManagerRegistry;
+import org.xwiki.eclipse.storage.IPageSummaryCollector;
 import org.xwiki.eclipse.ui.UIPlugin;
 import org.xwiki.eclipse.ui.utils.XWikiEclipseSafeRunnable;
 
@@ -60,6 +65,11 @@
  */
 public class OpenPageDialog extends FilteredItemsSelectionDialog
 {
+    /**
+     * The maximum number of pages matched by their content for each connection.
+     */
+    private static final int MAX_FULL_TEXT_RESULTS = 200;
+
     private Set<DataManager> targetDataManagers;
 
     private Map<DataManager, List<XWikiEclipsePageSummary>> dataManagerToPageSummariesMap;
@@ -101,7 +111,7 @@ public OpenPageDialog(Shell shell, DataManager dataManager)
         setDetailsLabelProvider(labelProvider);
 
         targetDataManagers = new HashSet<DataManager>();
-        dataManagerToPageSummariesMap = new HashMap<DataManager, List<XWikiEclipsePageSummary>>();
+        dataManagerToPageSummariesMap = new ConcurrentHashMap<DataManager, List<XWikiEclipsePageSummary>>();
 
         if (dataManager != null) {
             targetDataManagers.add(dataManager);
@@ -186,59 +196,144 @@ public void checkStateChanged(CheckStateChangedEvent event)
         return composite;
     }
 
-    @Override
-    protected ItemsFilter createFilter()
+    /**
+     * A filter matching the pages by their title, or by their content and object property values through the search
+     * index of the local storage, which doesn't need a connection.
+     */
+    private class PageFilter extends ItemsFilter
     {
-        return new ItemsFilter()
+        /**
+         * The keys of the pages matched by the search index.
+         */
+        private final Set<String> fullTextMatches = new HashSet<String>();
+
+        @Override
+        public boolean isConsistentItem(Object item)
         {
-            @Override
-            public boolean isConsistentItem(Object item)
-            {
-                return true;
+            return true;
+        }
+
+        @Override
+        public boolean isSubFilter(ItemsFilter filter)
+        {
+            /* The pages matched by the search index are not a subset of the ones matched by a shorter pattern */
+            return false;
+        }
+
+        @Override
+        public boolean matchItem(Object item)
+        {
+            if (item instanceof XWikiEclipsePageSummary) {
+                XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) item;
+                return matches(pageSummary.getTitle()) || isFullTextMatch(pageSummary);
             }
 
-            @Override
-            public boolean matchItem(Object item)
-            {
-                if (item instanceof XWikiEclipsePageSummary) {
-                    XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) item;
-                    return matches(pageSummary.getTitle());
-                }
+            return false;
+        }
 
-                return false;
+        private synchronized boolean isFullTextMatch(XWikiEclipsePageSummary pageSummary)
+        {
+            return fullTextMatches.contains(getKey(pageSummary));
+        }
+
+        /**
+         * Add the pages of a connection matched by the search index. The first search of a connection loads its
+         * index, so this must not be called from the UI thread: it is called by {@link #fillContentProvider}, which
+         * the dialog runs in its filter job.
+         *
+         * @return The keys of the matched pages.
+         */
+        private Set<String> addFullTextMatches(DataManager dataManager, AbstractContentProvider contentProvider)
+        {
+            Set<String> keys = new HashSet<String>();
+
+            /* The wildcards of the pattern are meaningless for the search index */
+            String query = getPattern().replace('*', ' ').replace('?', ' ');
+            try {
+                for (XWikiEclipsePageSummary pageSummary : dataManager.searchPages(query, MAX_FULL_TEXT_RESULTS)) {
+                    keys.add(getKey(pageSummary));
+                    synchronized (this) {
+                        fullTextMatches.add(getKey(pageSummary));
+                    }
+                    contentProvider.add(pageSummary, this);
+                }
+            } catch (XWikiEclipseStorageException e) {
+                CoreLog.logError(String.format("Unable to search the pages of %s", dataManager.getName()), e);
             }
 
-        };
+            return keys;
+        }
     }
 
     @Override
-    protected void fillContentProvider(AbstractContentProvider contentProvider, ItemsFilter itemsFilter,
+    protected ItemsFilter createFilter()
+    {
+        return new PageFilter();
+    }
+
+    /**
+     * @return A key identifying a page across the connections.
+     */
+    private static String getKey(XWikiEclipsePageSummary pageSummary)
+    {
+        return String.format("%s/%s/%s", pageSummary.getDataManager().getName(), pageSummary.getId(), //$NON-NLS-1$
+            pageSummary.getLanguage());
+    }
+
+    @Override
+    protected void fillContentProvider(final AbstractContentProvider contentProvider, final ItemsFilter itemsFilter,
         final IProgressMonitor progressMonitor) throws CoreException
     {
-        progressMonitor.beginTask("Searching...", targetDataManagers.size());
+        SubMonitor progress = SubMonitor.convert(progressMonitor, "Searching...", targetDataManagers.size());
 
         for (DataManager dataManager : targetDataManagers) {
             final DataManager currentDataManager = dataManager;
 
-            /* If we don't already have summaries, then fetch them from the data manager */
-            if (dataManagerToPageSummariesMap.get(currentDataManager) == null) {
-                SafeRunner.run(new XWikiEclipseSafeRunnable()
-                {
-                    public void run() throws Exception
-                    {
-                        List<XWikiEclipsePageSummary> pageSummaries = currentDataManager.getAllPageIds();
-                        dataManagerToPageSummariesMap.put(currentDataManager, pageSummaries);
-                    }
-                });
-            }
-
             if (progressMonitor.isCanceled()) {
                 break;
             }
 
-            for (XWikiEclipsePageSummary pageSummary : dataManagerToPageSummariesMap.get(currentDataManager)) {
-                contentProvider.add(pageSummary, itemsFilter);
+            /* First the pages matched by their content, which are available offline and without delay */
+            final Set<String> fullTextMatches =
+                ((PageFilter) itemsFilter).addFullTextMatches(currentDataManager, contentProvider);
+
+            List<XWikiEclipsePageSummary> cachedPageSummaries = dataManagerToPageSummariesMap.get(currentDataManager);
+            if (cachedPageSummaries != null) {
+                for (XWikiEclipsePageSummary pageSummary : cachedPageSummaries) {
+                    if (!fullTextMatches.contains(getKey(pageSummary))) {
+                        contentProvider.add(pageSummary, itemsFilter);
+                    }
+                }
+                progress.worked(1);
+                continue;
             }
+
+            /* If we don't already have summaries, then fetch them from the data manager, adding them as they arrive */
+            final List<XWikiEclipsePageSummary> pageSummaries = new ArrayList<XWikiEclipsePageSummary>();
+            final IProgressMonitor subMonitor = progress.newChild(1);
+            SafeRunner.run(new XWikiEclipseSafeRunnable()
+            {
+                public void run() throws Exception
+                {
+                    currentDataManager.getAllPageIds(new IPageSummaryCollector()
+                    {
+                        public void collect(List<XWikiEclipsePageSummary> spacePageSummaries)
+                        {
+                            pageSummaries.addAll(spacePageSummaries);
+                            for (XWikiEclipsePageSummary pageSummary : spacePageSummaries) {
+                                if (!fullTextMatches.contains(getKey(pageSummary))) {
+                                    contentProvider.add(pageSummary, itemsFilter);
+                                }
+                            }
+                        }
+                    }, DataManager.DEFAULT_CRAWL_PARALLELISM, subMonitor);
+
+                    /* Only keep complete results */
+                    if (!subMonitor.isCanceled()) {
+                        dataManagerToPageSummariesMap.put(currentDataManager, pageSummaries);
+                    }
+                }
+            });
         }
 
         progressMonitor.done();
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package org.xwiki.eclipse.ui.editors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.xwiki.eclipse.core.CoreLog;
+
+/**
+ * The headings of a document, in document order. The index is updated on each document change by rescanning only
+ * the lines touched by the change, and reports the headings added and removed by the change. The headings that are
+ * not touched by a change keep their identity, so that a viewer showing them doesn't have to replace them.
+ * 
+ * @version $Id$
+ */
+public class HeadingIndex
+{
+    private static final String[] HEADINGS_START = {"1 ", "1.1 ", "1.1.1 ", "1.1.1.1 ", "1.1.1.1.1 ",
+    "1.1.1.1.1.1 "};
+
+    private IDocument document;
+
+    private List<HeadingInfo> headings;
+
+    /**
+     * The region of the document, before the pending change, made of the lines touched by the change.
+     */
+    private int changedRegionOffset;
+
+    private int changedRegionEnd;
+
+    public HeadingIndex(IDocument document)
+    {
+        this.document = document;
+        headings = new ArrayList<HeadingInfo>();
+        scan(0, document.getLength(), headings);
+    }
+
+    public List<HeadingInfo> getHeadings()
+    {
+        return headings;
+    }
+
+    /**
+     * Remember the lines that are about to be changed.
+     */
+    public void documentAboutToBeChanged(DocumentEvent event)
+    {
+        try {
+            changedRegionOffset = document.getLineOffset(document.getLineOfOffset(event.getOffset()));
+            int lastLine = document.getLineOfOffset(event.getOffset() + event.getLength());
+            changedRegionEnd = document.getLineOffset(lastLine) + document.getLineLength(lastLine);
+        } catch (BadLocationException e) {
+            changedRegionOffset = 0;
+            changedRegionEnd = document.getLength();
+        }
+    }
+
+    /**
+     * Update the index after a change, rescanning only the changed lines.
+     * 
+     * @param event The change.
+     * @param added Filled with the headings that have been added.
+     * @param removed Filled with the headings that have been removed.
+     */
+    public void documentChanged(DocumentEvent event, Set<HeadingInfo> added, Set<HeadingInfo> removed)
+    {
+        int delta = (event.getText() == null ? 0 : event.getText().length()) - event.getLength();
+
+        /* Take out the headings of the changed lines and shift the following ones */
+        int index = 0;
+        while (index < headings.size() && headings.get(index).getOffset() < changedRegionOffset) {
+            index++;
+        }
+
+        List<HeadingInfo> oldHeadings = new ArrayList<HeadingInfo>();
+        while (index < headings.size() && headings.get(index).getOffset() < changedRegionEnd) {
+            oldHeadings.add(headings.remove(index));
+        }
+
+        for (int i = index; i < headings.size(); i++) {
+            headings.get(i).offset += delta;
+        }
+
+        List<HeadingInfo> newHeadings = new ArrayList<HeadingInfo>();
+        scan(changedRegionOffset, changedRegionEnd + delta, newHeadings);
+
+        /* Keep the headings that did not change, so that the viewer does not have to replace them */
+        for (int i = 0; i < newHeadings.size(); i++) {
+            HeadingInfo newHeading = newHeadings.get(i);
+            HeadingInfo oldHeading = findHeading(oldHeadings, newHeading.getTitle());
+            if (oldHeading != null) {
+                oldHeadings.remove(oldHeading);
+                oldHeading.offset = newHeading.getOffset();
+                oldHeading.length = newHeading.getLength();
+                newHeadings.set(i, oldHeading);
+            } else {
+                added.add(newHeading);
+            }
+        }
+
+        removed.addAll(oldHeadings);
+        headings.addAll(index, newHeadings);
+    }
+
+    private HeadingInfo findHeading(List<HeadingInfo> headings, String title)
+    {
+        for (HeadingInfo heading : headings) {
+            if (heading.getTitle().equals(title)) {
+                return heading;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Scan the lines starting in the given region, which starts at the beginning of a line.
+     */
+    private void scan(int offset, int end, List<HeadingInfo> result)
+    {
+        try {
+            int numberOfLines = document.getNumberOfLines();
+            for (int i = document.getLineOfOffset(offset); i < numberOfLines; i++) {
+                int start = document.getLineOffset(i);
+                if (start >= end && start > offset) {
+                    break;
+                }
+
+                int length = document.getLineLength(i);
+                String line = document.get(start, length);
+                if (line.endsWith("\n")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+
+                if (isHeading(line)) {
+                    result.add(new HeadingInfo(start, length, line));
+                }
+            }
+        } catch (BadLocationException e) {
+            CoreLog.logError("Error in content outline", e);
+        }
+    }
+
+    private boolean isHeading(String line)
+    {
+        for (int i = 0; i < HEADINGS_START.length; i++) {
+            if (line.startsWith(HEADINGS_START[i])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -20,8 +20,10 @@
  */
 package org.xwiki.eclipse.ui.editors;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import org.eclipse.core.runtime.CoreException;
@@ -38,6 +40,7 @@
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.source.IVerticalRuler;
@@ -98,8 +101,6 @@ public class PageEditor extends TextEditor implements ICoreEventListener
     
     private ColorManager colorManager;
     
-    private Annotation[] oldAnnotations;
- 
     private ProjectionAnnotationModel annotationModel;
     
  
@@ -174,7 +175,8 @@ public void init(IEditorSite site, IEditorInput input) throws PartInitException
         super.init(site, input);
         NotificationManager.getDefault().addListener(
             this,
-            new CoreEvent.Type[] {CoreEvent.Type.DATA_MANAGER_CONNECTED, CoreEvent.Type.OBJECT_STORED,
+            new CoreEvent.Type[] {CoreEvent.Type.DATA_MANAGER_CONNECTED, CoreEvent.Type.DATA_MANAGER_SYNCHRONIZED,
+            CoreEvent.Type.OBJECT_STORED,
             CoreEvent.Type.OBJECT_REMOVED, CoreEvent.Type.REFRESH, CoreEvent.Type.PAGE_REMOVED,
             CoreEvent.Type.SPACE_REMOVED, CoreEvent.Type.DATA_MANAGER_UNREGISTERED});
     }
@@ -469,7 +471,8 @@ public void handleCoreEvent(CoreEvent event)
                 break;
 
             case DATA_MANAGER_CONNECTED:
-
+            case DATA_MANAGER_SYNCHRONIZED:
+                /* The page might have been stored remotely, or found in conflict, by the synchronization */
                 updatePage = page.getDataManager().equals(dataManager);
 
                 Display.getDefault().syncExec(new Runnable()
@@ -672,32 +675,51 @@ public Object getAdapter(Class adapter)
         return super.getAdapter(adapter);
     }
 
-    public void updateFoldingStructure(ArrayList positions)
+    /**
+     * @return The folding annotations currently displayed, with their current positions. Annotations whose region has
+     *         been deleted are associated to a null position.
+     */
+    public Map<Annotation, Position> getFoldingAnnotations()
     {
-        Annotation[] annotations = new Annotation[positions.size()];
-        
-        //this will hold the new annotations along
-        //with their corresponding positions
-        HashMap newAnnotations = new HashMap();
-        
-        for(int i =0;i<positions.size();i++)
-        {
-        	// System.out.println("Position " + i + " " + positions.get(i).toString());
-        	
-            ProjectionAnnotation annotation = new ProjectionAnnotation();
-            
-            newAnnotations.put(annotation,positions.get(i));
-            
-            annotations[i]=annotation;
+        Map<Annotation, Position> result = new HashMap<Annotation, Position>();
+
+        if (annotationModel != null) {
+            Iterator<?> iterator = annotationModel.getAnnotationIterator();
+            while (iterator.hasNext()) {
+                Annotation annotation = (Annotation) iterator.next();
+                if (annotation instanceof ProjectionAnnotation) {
+                    Position position = annotationModel.getPosition(annotation);
+                    if (position != null && !position.isDeleted()) {
+                        result.put(annotation, new Position(position.getOffset(), position.getLength()));
+                    } else {
+                        result.put(annotation, null);
+                    }
+                }
+            }
         }
-        
-        if (annotationModel!=null) {
-         annotationModel.modifyAnnotations(oldAnnotations,newAnnotations,null);
-        } else {
-            System.out.println("Annotation Model is not ready");
+
+        return result;
+    }
+
+    /**
+     * Update the folding structure by removing and adding only the annotations that changed.
+     * 
+     * @param removedAnnotations The folding annotations to remove.
+     * @param addedPositions The positions of the folding annotations to add.
+     */
+    public void updateFoldingStructure(List<Annotation> removedAnnotations, List<Position> addedPositions)
+    {
+        if (annotationModel == null) {
+            return;
         }
-        
-        oldAnnotations=annotations;
+
+        Map<Annotation, Position> newAnnotations = new HashMap<Annotation, Position>();
+        for (Position position : addedPositions) {
+            newAnnotations.put(new ProjectionAnnotation(), position);
+        }
+
+        annotationModel.modifyAnnotations(removedAnnotations.toArray(new Annotation[removedAnnotations.size()]),
+            newAnnotations, null);
     }
     
     /**
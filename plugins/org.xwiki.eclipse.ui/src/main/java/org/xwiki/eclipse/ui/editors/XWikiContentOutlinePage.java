@@ -20,10 +20,14 @@
  */
 package org.xwiki.eclipse.ui.editors;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
@@ -34,46 +38,37 @@
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.ui.progress.UIJob;
 import org.eclipse.ui.views.contentoutline.ContentOutlinePage;
-import org.xwiki.eclipse.core.CoreLog;
 
 /**
+ * The outline of a page, listing its headings.
+ * <p>
+ * The headings are kept in an index that is updated on each document change by rescanning only the lines touched by
+ * the change. The resulting additions and removals are accumulated and pushed to the viewer at most once every
+ * {@link #REFRESH_DELAY} milliseconds, so that typing does not wait for the outline.
+ * 
  * @version $Id$
  */
 public class XWikiContentOutlinePage extends ContentOutlinePage implements IDocumentListener
 {
+    /**
+     * The minimum delay, in milliseconds, between two updates of the viewer.
+     */
+    private static final long REFRESH_DELAY = 300;
+
     private PageEditor pageEditor;
 
-    private static class HeadingInfo
-    {
-        private int offset;
+    private HeadingIndex headingIndex;
 
-        private int length;
+    /**
+     * The headings added to the index and removed from it since the viewer was last updated.
+     */
+    private Set<HeadingInfo> addedHeadings;
 
-        private String title;
+    private Set<HeadingInfo> removedHeadings;
 
-        public HeadingInfo(int offset, int length, String title)
-        {
-            this.offset = offset;
-            this.length = length;
-            this.title = title;
-        }
-
-        public int getOffset()
-        {
-            return offset;
-        }
-
-        public int getLength()
-        {
-            return length;
-        }
-
-        public String getTitle()
-        {
-            return title;
-        }
-    }
+    private UIJob refreshJob;
 
     private static class HeadingInfoLabelProvider extends LabelProvider
     {
@@ -91,10 +86,8 @@ public String getText(Object element)
 
     }
 
-    private static class HeadingInfoContentProvider implements ITreeContentProvider
+    private class HeadingInfoContentProvider implements ITreeContentProvider
     {
-        private String[] headingsStart = {"1 ", "1.1 ", "1.1.1 ", "1.1.1.1 ", "1.1.1.1.1 ", "1.1.1.1.1.1 "};
-
         private Object[] NO_OBJECTS = new Object[0];
 
         public Object[] getChildren(Object parentElement)
@@ -114,42 +107,11 @@ public boolean hasChildren(Object element)
 
         public Object[] getElements(Object inputElement)
         {
-            if (!(inputElement instanceof IDocument)) {
+            if (!(inputElement instanceof IDocument) || headingIndex == null) {
                 return NO_OBJECTS;
             }
 
-            IDocument document = (IDocument) inputElement;
-            List<HeadingInfo> headings = new ArrayList<HeadingInfo>();
-
-            for (int i = 0; i < document.getNumberOfLines(); i++) {
-                try {
-                    int start = document.getLineOffset(i);
-                    int length = document.getLineLength(i);
-                    String line = document.get(start, length);
-                    if (line.endsWith("\n")) {
-                        line = line.substring(0, line.length() - 1);
-                    }
-
-                    if (isHeading(line)) {
-                        headings.add(new HeadingInfo(start, length, line));
-                    }
-                } catch (BadLocationException e) {
-                    CoreLog.logError("Error in content outline", e);
-                }
-            }
-
-            return headings.toArray();
-        }
-
-        private boolean isHeading(String line)
-        {
-            for (int i = 0; i < headingsStart.length; i++) {
-                if (line.startsWith(headingsStart[i])) {
-                    return true;
-                }
-            }
-
-            return false;
+            return headingIndex.getHeadings().toArray();
         }
 
         public void dispose()
@@ -175,6 +137,22 @@ public void createControl(Composite parent)
 
         super.createControl(parent);
 
+        headingIndex = new HeadingIndex(pageEditor.getDocument());
+        addedHeadings = new HashSet<HeadingInfo>();
+        removedHeadings = new HashSet<HeadingInfo>();
+
+        refreshJob = new UIJob("Updating outline")
+        {
+            @Override
+            public IStatus runInUIThread(IProgressMonitor monitor)
+            {
+                updateViewer();
+
+                return Status.OK_STATUS;
+            }
+        };
+        refreshJob.setSystem(true);
+
         TreeViewer viewer = getTreeViewer();
         viewer.setContentProvider(new HeadingInfoContentProvider());
         viewer.setLabelProvider(new HeadingInfoLabelProvider());
@@ -185,18 +163,64 @@ public void createControl(Composite parent)
 
     public void documentAboutToBeChanged(DocumentEvent event)
     {
-        // TODO Auto-generated method stub
-
+        headingIndex.documentAboutToBeChanged(event);
     }
 
     public void documentChanged(DocumentEvent event)
     {
-        getTreeViewer().refresh();
+        Set<HeadingInfo> added = new HashSet<HeadingInfo>();
+        Set<HeadingInfo> removed = new HashSet<HeadingInfo>();
+        headingIndex.documentChanged(event, added, removed);
+
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        for (HeadingInfo heading : removed) {
+            /* A heading that has not been shown yet does not need to be removed from the viewer */
+            if (!addedHeadings.remove(heading)) {
+                removedHeadings.add(heading);
+            }
+        }
+        addedHeadings.addAll(added);
+
+        /* Rate-limit the updates: don't postpone an update that is already scheduled */
+        if (refreshJob.getState() == Job.NONE) {
+            refreshJob.schedule(REFRESH_DELAY);
+        }
+    }
+
+    /**
+     * Push the pending additions and removals to the viewer.
+     */
+    private void updateViewer()
+    {
+        TreeViewer viewer = getTreeViewer();
+        if (viewer == null || viewer.getControl().isDisposed()) {
+            return;
+        }
+
+        if (!removedHeadings.isEmpty()) {
+            viewer.remove(removedHeadings.toArray());
+            removedHeadings.clear();
+        }
+
+        if (!addedHeadings.isEmpty()) {
+            /* Insert in document order, so that each position is relative to the headings already in the viewer */
+            List<HeadingInfo> headings = headingIndex.getHeadings();
+            for (int i = 0; i < headings.size(); i++) {
+                if (addedHeadings.contains(headings.get(i))) {
+                    viewer.insert(viewer.getInput(), headings.get(i), i);
+                }
+            }
+            addedHeadings.clear();
+        }
     }
 
     @Override
     public void dispose()
     {
+        refreshJob.cancel();
         pageEditor.getDocument().removeDocumentListener(this);
         getTreeViewer().removeSelectionChangedListener(this);
         super.dispose();
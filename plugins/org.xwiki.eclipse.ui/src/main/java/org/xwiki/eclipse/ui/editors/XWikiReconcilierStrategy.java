@@ -1,36 +1,42 @@
 package org.xwiki.eclipse.ui.editors;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
-import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.TypedPosition;
 import org.eclipse.jface.text.reconciler.DirtyRegion;
 import org.eclipse.jface.text.reconciler.IReconcilingStrategy;
 import org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension;
-import org.eclipse.jface.text.rules.FastPartitioner;
+import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.swt.widgets.Display;
 import org.xwiki.eclipse.ui.editors.scanners.XWikiAdvancedPartitionScanner;
 import org.xwiki.eclipse.ui.parser.Partition;
 
+/**
+ * Computes the folding structure of the editor. The partitions are computed incrementally by a scanner that is kept
+ * between reconciles, and only the folding annotations that changed are removed from or added to the editor, on the UI
+ * thread. A reconcile is dropped as soon as its progress monitor is canceled or the modification stamp of the document
+ * changes, i.e., when the document has changed again.
+ */
 public class XWikiReconcilierStrategy implements IReconcilingStrategy, IReconcilingStrategyExtension {
     private PageEditor editor;
 
     private IDocument fDocument;
 
-    /** holds the calculated positions for code folding */
-    protected final ArrayList fPositions = new ArrayList();
+    /** The scanner used to compute the partitions, kept between reconciles to parse incrementally */
+    private XWikiAdvancedPartitionScanner fScanner;
 
-    /** The offset of the next character to be read */
-    protected int fOffset;
+    /** The monitor of the current reconcile, canceled by the reconciler when the document changes */
+    private IProgressMonitor fProgressMonitor = new NullProgressMonitor();
 
-    /** The end offset of the range to be scanned */
-    protected int fRangeEnd;
-    
     public XWikiReconcilierStrategy() {
     }
     
@@ -52,7 +58,7 @@ public void setEditor(PageEditor editor) {
      */
     public void setDocument(IDocument document) {
             this.fDocument = document;
-
+            this.fScanner = new XWikiAdvancedPartitionScanner();
     }
 
     /*
@@ -62,7 +68,8 @@ public void setDocument(IDocument document) {
      *      org.eclipse.jface.text.IRegion)
      */
     public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion) {
-            initialReconcile();
+            /* The scanner finds by itself the part of the document that has to be parsed again */
+            calculatePositions();
     }
 
     /*
@@ -71,7 +78,7 @@ public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion) {
      * @see org.eclipse.jface.text.reconciler.IReconcilingStrategy#reconcile(org.eclipse.jface.text.IRegion)
      */
     public void reconcile(IRegion partition) {
-            initialReconcile();
+            calculatePositions();
     }
 
     /*
@@ -80,8 +87,7 @@ public void reconcile(IRegion partition) {
      * @see org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension#setProgressMonitor(org.eclipse.core.runtime.IProgressMonitor)
      */
     public void setProgressMonitor(IProgressMonitor monitor) {
-            // TODO Auto-generated method stub
-
+            fProgressMonitor = monitor != null ? monitor : new NullProgressMonitor();
     }
 
     /*
@@ -96,52 +102,111 @@ public void initialReconcile() {
     /*
      * This code is used by the code folding to update it based on the positions
      * The actual positions are calculated in the "parse" function below
+     * The differences with the folding annotations currently displayed are computed and sent to the editor on the UI
+     * thread, only if the document has not changed since it was parsed
      */
     protected void calculatePositions()
     {
-        fPositions.clear();
-        
+        final IProgressMonitor monitor = fProgressMonitor;
+        final long modificationStamp = getModificationStamp();
+
+        final List<Position> positions;
         try {
-                parse();
+                positions = parse();
         } catch (Exception e) {
                 e.printStackTrace();
+                return;
+        }
+
+        if (monitor.isCanceled()) {
+            return;
         }
- 
+
         Display.getDefault().asyncExec(new Runnable() {
                 public void run() {
-                        if (fPositions!=null)
-                         editor.updateFoldingStructure(new ArrayList(fPositions));
+                        /* The document changed in the meantime, a new reconcile will follow */
+                        if (!monitor.isCanceled() && modificationStamp == getModificationStamp()) {
+                            updateFoldingStructure(positions);
+                        }
                 }
 
         });
     }
 
+    /**
+     * @return The modification stamp of the document, or {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} if the
+     *         document does not have one.
+     */
+    private long getModificationStamp()
+    {
+        if (fDocument instanceof IDocumentExtension4) {
+            return ((IDocumentExtension4) fDocument).getModificationStamp();
+        }
+
+        return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+    }
+
+    /**
+     * Match the computed positions with the current positions of the displayed annotations, and remove or add only the
+     * annotations that changed. Must be called on the UI thread, so that the annotations cannot change meanwhile.
+     * 
+     * @param positions The computed folding positions.
+     */
+    private void updateFoldingStructure(List<Position> positions)
+    {
+        Map<Annotation, Position> annotations = editor.getFoldingAnnotations();
+        Map<Position, Annotation> annotationByPosition = new HashMap<Position, Annotation>();
+        List<Annotation> removedAnnotations = new ArrayList<Annotation>();
+        for (Map.Entry<Annotation, Position> entry : annotations.entrySet()) {
+            if (entry.getValue() == null || annotationByPosition.containsKey(entry.getValue())) {
+                removedAnnotations.add(entry.getKey());
+            } else {
+                annotationByPosition.put(entry.getValue(), entry.getKey());
+            }
+        }
+
+        List<Position> addedPositions = new ArrayList<Position>();
+        for (Position position : positions) {
+            /* Position.equals() only compares the offset and the length, not the type of a TypedPosition */
+            Position key = new Position(position.getOffset(), position.getLength());
+            if (annotationByPosition.remove(key) == null) {
+                addedPositions.add(position);
+            }
+        }
+        removedAnnotations.addAll(annotationByPosition.values());
+
+        if (!removedAnnotations.isEmpty() || !addedPositions.isEmpty()) {
+            editor.updateFoldingStructure(removedAnnotations, addedPositions);
+        }
+    }
+
     /**
      * This code calculates the positions for code folding
      * The XWiki+Velocity parser is used to calculate these positions which can overlap
      * Currently the positions are calculated for Macros, Velocity if, foreach and macros and XWiki Tables
      */
-    protected void parse()
+    protected List<Position> parse()
     {
-    	XWikiAdvancedPartitionScanner scanner = new XWikiAdvancedPartitionScanner();
-        FastPartitioner partitioner = new FastPartitioner(scanner, XWikiAdvancedPartitionScanner.ALL_PARTITIONS);
-        partitioner.connect(fDocument);
-        partitioner.computePartitioning(0, fDocument.getLength());
-        List<Partition> partitions = scanner.getPartitions(); 
-       
-        for (int i=1;i<partitions.size();i++) {
-        	Partition partition = partitions.get(i);
+        List<Position> positions = new ArrayList<Position>();
+
+        fScanner.parse(fDocument.get(), 0);
+        List<Partition> partitions = fScanner.getPartitions();
+        if (partitions == null) {
+            return positions;
+        }
+
+        for (Partition partition : partitions) {
             if (partition.getType().equals(Partition.Type.VELOCITY_FOREACH) 
             		|| partition.getType().equals(Partition.Type.VELOCITY_IF) 
             		|| partition.getType().equals(Partition.Type.VELOCITY_MACRO) 
             		|| partition.getType().equals(Partition.Type.MACRO) 
             		|| partition.getType().equals(Partition.Type.TABLE)) {
-        	   Position position = new TypedPosition(partition.getBeginOffset(), partition.getEndOffset()-partition.getBeginOffset(), partition.getType().toString());
-               // System.out.println("Adding position " + i + " " + position.toString());
-               fPositions.add(position);
+               positions.add(new TypedPosition(partition.getBeginOffset(), partition.getEndOffset()-partition.getBeginOffset(), partition.getType().toString()));
             }
         }
+
+        return positions;
     }
 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.editors.contentassist;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.storage.DataManager;
+import org.xwiki.eclipse.storage.rest.Hints;
+
+/**
+ * Retrieves the auto completion hints from the server in the background. Only a bounded window of the document around
+ * the cursor is sent, requests are debounced, a request superseded by a newer one is canceled, and the results are
+ * cached by data manager, prefix and context. The caller never waits for the server: hints that are not cached yet are
+ * not returned, so that the caller can fall back to local proposals, and the caller is notified when they arrive.
+ *
+ * @version $Id$
+ */
+public class AutoCompleteHintsProvider
+{
+    /**
+     * The number of characters before the cursor sent to the server.
+     */
+    private static final int CONTEXT_BEFORE = 4000;
+
+    /**
+     * The number of characters after the cursor sent to the server.
+     */
+    private static final int CONTEXT_AFTER = 500;
+
+    /**
+     * The delay, in milliseconds, before a request is actually sent, so that requests made while typing are coalesced.
+     */
+    private static final long DEBOUNCE_DELAY = 150;
+
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * The cached hints, keyed by data manager, syntax, prefix and hash of the context.
+     */
+    private final Map<List<Object>, Hints> cache = new LinkedHashMap<List<Object>, Hints>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Hints> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private HintsJob currentJob;
+
+    /**
+     * @param dataManager The data manager of the page being edited.
+     * @param document The document.
+     * @param offset The cursor offset.
+     * @param prefix The prefix being completed.
+     * @param syntax The syntax of the page.
+     * @param callback Run from a background thread when the hints, which were not cached, become available. It is not
+     *            run if the request is superseded by a newer one.
+     * @return The cached hints, or null if they have to be retrieved from the server.
+     */
+    public Hints getHints(DataManager dataManager, IDocument document, int offset, String prefix, String syntax,
+        Runnable callback)
+    {
+        if (!dataManager.isConnected()) {
+            return null;
+        }
+
+        int contextBegin = Math.max(0, offset - CONTEXT_BEFORE);
+        int contextEnd = Math.min(document.getLength(), offset + CONTEXT_AFTER);
+        String context;
+        try {
+            context = document.get(contextBegin, contextEnd - contextBegin);
+        } catch (BadLocationException e) {
+            return null;
+        }
+
+        /* The context is hashed without the prefix, which is already part of the key */
+        int prefixBegin = Math.max(0, offset - contextBegin - prefix.length());
+        int contextHash =
+            31 * context.substring(0, prefixBegin).hashCode() + context.substring(offset - contextBegin).hashCode();
+        List<Object> key = Arrays.<Object> asList(dataManager, syntax, prefix, contextHash);
+
+        synchronized (this) {
+            Hints hints = cache.get(key);
+            if (hints != null) {
+                return hints;
+            }
+
+            if (currentJob != null && currentJob.key.equals(key)) {
+                currentJob.callback = callback;
+            } else {
+                if (currentJob != null) {
+                    currentJob.cancel();
+                }
+
+                currentJob = new HintsJob(key, dataManager, context, offset - contextBegin, syntax, callback);
+                currentJob.schedule(DEBOUNCE_DELAY);
+            }
+        }
+
+        return null;
+    }
+
+    private class HintsJob extends Job
+    {
+        private final List<Object> key;
+
+        private final DataManager dataManager;
+
+        private final String context;
+
+        private final int offset;
+
+        private final String syntax;
+
+        private volatile Runnable callback;
+
+        public HintsJob(List<Object> key, DataManager dataManager, String context, int offset, String syntax,
+            Runnable callback)
+        {
+            super("Retrieving auto completion hints");
+            this.key = key;
+            this.dataManager = dataManager;
+            this.context = context;
+            this.offset = offset;
+            this.syntax = syntax;
+            this.callback = callback;
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor)
+        {
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            Hints hints = null;
+            try {
+                hints = dataManager.getAutoCompleteHints(context, offset, syntax);
+            } catch (Exception e) {
+                CoreLog.logError("Unable to retrieve auto completion hints", e);
+            }
+
+            boolean current;
+            synchronized (AutoCompleteHintsProvider.this) {
+                if (hints != null) {
+                    cache.put(key, hints);
+                }
+
+                current = currentJob == this;
+                if (current) {
+                    currentJob = null;
+                }
+            }
+
+            Runnable callback = this.callback;
+            if (hints != null && current && callback != null) {
+                callback.run();
+            }
+
+            return Status.OK_STATUS;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.editors.contentassist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.core.notification.CoreEvent;
+import org.xwiki.eclipse.core.notification.ICoreEventListener;
+import org.xwiki.eclipse.core.notification.NotificationManager;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.DataManager;
+
+/**
+ * An index of the ids of the pages available through a data manager, used for completing page links.
+ * <p>
+ * The ids are kept in a sorted array, so that the ids starting with a given prefix are found with a binary search.
+ * Ids can also be matched by their camel case initials (e.g., "MWH" matches "xwiki:Main.WebHome") or by a case
+ * insensitive substring. The index is built in the background and is then kept up to date from the page core events,
+ * so that it never blocks the caller: until it is built, it only contains the pages stored since.
+ *
+ * @version $Id$
+ */
+public class PageIdIndex implements ICoreEventListener
+{
+    /**
+     * The maximum number of ids returned by a lookup.
+     */
+    private static final int MAX_MATCHES = 200;
+
+    private final DataManager dataManager;
+
+    /**
+     * The indexed ids. Never modified: changes replace it with a new one.
+     */
+    private volatile Ids ids = new Ids(new String[0], new String[0]);
+
+    private volatile boolean built;
+
+    /**
+     * The changes received while the index is being built, which are applied on top of the built index. Null when no
+     * build is in progress.
+     */
+    private List<Change> changesDuringBuild;
+
+    private Job buildJob;
+
+    /**
+     * Constructor. The index starts building immediately.
+     *
+     * @param dataManager The data manager whose pages are indexed.
+     */
+    public PageIdIndex(DataManager dataManager)
+    {
+        this.dataManager = dataManager;
+
+        buildJob = new Job(String.format("Indexing pages of %s", dataManager.getName()))
+        {
+            @Override
+            protected IStatus run(IProgressMonitor monitor)
+            {
+                synchronized (PageIdIndex.this) {
+                    changesDuringBuild = new ArrayList<Change>();
+                }
+
+                List<String> pageIds = new ArrayList<String>();
+                try {
+                    for (XWikiEclipsePageSummary pageSummary : PageIdIndex.this.dataManager.getAllPageIds()) {
+                        pageIds.add(pageSummary.getId());
+                    }
+                } catch (Exception e) {
+                    CoreLog.logError(String.format("Unable to index the pages of %s",
+                        PageIdIndex.this.dataManager.getName()), e);
+                }
+
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+
+                synchronized (PageIdIndex.this) {
+                    setIds(pageIds);
+                    for (Change change : changesDuringBuild) {
+                        apply(change);
+                    }
+                    changesDuringBuild = null;
+                    built = true;
+                }
+
+                return Status.OK_STATUS;
+            }
+        };
+        buildJob.setSystem(true);
+
+        NotificationManager.getDefault().addListener(
+            this,
+            new CoreEvent.Type[] {CoreEvent.Type.PAGE_STORED, CoreEvent.Type.PAGES_STORED, CoreEvent.Type.PAGE_REMOVED,
+            CoreEvent.Type.DATA_MANAGER_CONNECTED}, true);
+
+        buildJob.schedule();
+    }
+
+    /**
+     * @return true if the index has been built, i.e., if it contains all the pages of the data manager.
+     */
+    public boolean isBuilt()
+    {
+        return built;
+    }
+
+    /**
+     * @param prefix The prefix.
+     * @return The ids starting with the given prefix, in alphabetical order.
+     */
+    public List<String> getIdsStartingWith(String prefix)
+    {
+        return getIdsStartingWith(this.ids.sorted, prefix);
+    }
+
+    /**
+     * @param query The text typed by the user.
+     * @return The ids starting with the given query, followed by the ids whose camel case initials match the query
+     *         and then by the ids containing it, ignoring case.
+     */
+    public List<String> getMatchingIds(String query)
+    {
+        Ids snapshot = this.ids;
+        String[] ids = snapshot.sorted;
+        String[] lowerCaseIds = snapshot.lowerCase;
+
+        List<String> result = getIdsStartingWith(ids, query);
+        if (query.length() == 0) {
+            return result;
+        }
+
+        String lowerCaseQuery = query.toLowerCase(Locale.ENGLISH);
+        boolean camelCaseQuery = Character.isUpperCase(query.charAt(0));
+
+        List<String> substringMatches = new ArrayList<String>();
+        for (int i = 0; i < ids.length && result.size() < MAX_MATCHES; i++) {
+            if (ids[i].startsWith(query)) {
+                continue;
+            }
+
+            if (camelCaseQuery && matchesCamelCase(query, ids[i])) {
+                result.add(ids[i]);
+            } else if (substringMatches.size() < MAX_MATCHES && lowerCaseIds[i].contains(lowerCaseQuery)) {
+                substringMatches.add(ids[i]);
+            }
+        }
+
+        for (String id : substringMatches) {
+            if (result.size() == MAX_MATCHES) {
+                break;
+            }
+            result.add(id);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stop updating the index.
+     */
+    public void dispose()
+    {
+        NotificationManager.getDefault().removeListener(this);
+        buildJob.cancel();
+    }
+
+    public void handleCoreEvent(CoreEvent event)
+    {
+        if (event.getSource() instanceof DataManager && event.getSource() != dataManager) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case DATA_MANAGER_CONNECTED:
+                /* The remote pages might have changed while we were disconnected */
+                buildJob.schedule();
+                break;
+            case PAGE_STORED:
+                changed(new Change(getPageId(event.getData()), true));
+                break;
+            case PAGES_STORED:
+                /* Either a batch of fetched page summaries or a burst of coalesced stored pages */
+                if (event.getData() instanceof Collection< ? >) {
+                    for (Object page : (Collection< ? >) event.getData()) {
+                        changed(new Change(getPageId(page), true));
+                    }
+                }
+                break;
+            case PAGE_REMOVED:
+                /* This event is fired by the UI, so check the data manager of the removed page */
+                if (event.getData() instanceof XWikiEclipsePageSummary) {
+                    XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) event.getData();
+                    /* Translations share the id of their page, which is still there */
+                    if (pageSummary.getDataManager() == dataManager && "".equals(pageSummary.getLanguage())) { //$NON-NLS-1$
+                        changed(new Change(pageSummary.getId(), false));
+                    }
+                }
+                break;
+        }
+    }
+
+    private static String getPageId(Object page)
+    {
+        if (page instanceof XWikiEclipsePageSummary) {
+            return ((XWikiEclipsePageSummary) page).getId();
+        } else if (page instanceof XWikiEclipsePage) {
+            return ((XWikiEclipsePage) page).getId();
+        }
+
+        return null;
+    }
+
+    private synchronized void changed(Change change)
+    {
+        if (change.id == null) {
+            return;
+        }
+
+        if (changesDuringBuild != null) {
+            changesDuringBuild.add(change);
+        }
+
+        apply(change);
+    }
+
+    private void apply(Change change)
+    {
+        String[] ids = this.ids.sorted;
+        String[] lowerCaseIds = this.ids.lowerCase;
+        int index = Arrays.binarySearch(ids, change.id);
+        if (change.added == index >= 0) {
+            return;
+        }
+
+        String[] newIds;
+        String[] newLowerCaseIds;
+        if (change.added) {
+            int insertionPoint = -index - 1;
+            newIds = new String[ids.length + 1];
+            newLowerCaseIds = new String[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, insertionPoint);
+            System.arraycopy(lowerCaseIds, 0, newLowerCaseIds, 0, insertionPoint);
+            newIds[insertionPoint] = change.id;
+            newLowerCaseIds[insertionPoint] = change.id.toLowerCase(Locale.ENGLISH);
+            System.arraycopy(ids, insertionPoint, newIds, insertionPoint + 1, ids.length - insertionPoint);
+            System.arraycopy(lowerCaseIds, insertionPoint, newLowerCaseIds, insertionPoint + 1, ids.length
+                - insertionPoint);
+        } else {
+            newIds = new String[ids.length - 1];
+            newLowerCaseIds = new String[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(lowerCaseIds, 0, newLowerCaseIds, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+            System.arraycopy(lowerCaseIds, index + 1, newLowerCaseIds, index, ids.length - index - 1);
+        }
+
+        this.ids = new Ids(newIds, newLowerCaseIds);
+    }
+
+    private void setIds(List<String> pageIds)
+    {
+        /* Translations share the id of their page */
+        String[] sortedIds = pageIds.toArray(new String[pageIds.size()]);
+        Arrays.sort(sortedIds);
+
+        int count = 0;
+        for (String id : sortedIds) {
+            if (id != null && (count == 0 || !id.equals(sortedIds[count - 1]))) {
+                sortedIds[count++] = id;
+            }
+        }
+
+        String[] newIds = Arrays.copyOf(sortedIds, count);
+        String[] newLowerCaseIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            newLowerCaseIds[i] = newIds[i].toLowerCase(Locale.ENGLISH);
+        }
+
+        this.ids = new Ids(newIds, newLowerCaseIds);
+    }
+
+    private static List<String> getIdsStartingWith(String[] ids, String prefix)
+    {
+        List<String> result = new ArrayList<String>();
+        for (int i = findFirst(ids, prefix); i < ids.length && ids[i].startsWith(prefix); i++) {
+            if (result.size() == MAX_MATCHES) {
+                break;
+            }
+            result.add(ids[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The index of the first id greater than or equal to the prefix.
+     */
+    private static int findFirst(String[] ids, String prefix)
+    {
+        int index = Arrays.binarySearch(ids, prefix);
+
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Check if the query matches the camel case words of an id. The query is split before each upper case letter and
+     * each part must be the beginning of a word of the id, in order. Words start with an upper case letter or after a
+     * separator (e.g., "MWeH" matches "xwiki:Main.WebHome").
+     */
+    static boolean matchesCamelCase(String query, String id)
+    {
+        int queryIndex = 0;
+        int idIndex = 0;
+        while (queryIndex < query.length()) {
+            int partEnd = queryIndex + 1;
+            while (partEnd < query.length() && !Character.isUpperCase(query.charAt(partEnd))) {
+                partEnd++;
+            }
+
+            /* Find the next word of the id starting with the part */
+            boolean found = false;
+            for (; idIndex < id.length(); idIndex++) {
+                if (isWordStart(id, idIndex) && id.startsWith(query.substring(queryIndex, partEnd), idIndex)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+
+            idIndex += partEnd - queryIndex;
+            queryIndex = partEnd;
+        }
+
+        return true;
+    }
+
+    private static boolean isWordStart(String id, int index)
+    {
+        if (index == 0) {
+            return true;
+        }
+
+        char c = id.charAt(index);
+        char previous = id.charAt(index - 1);
+
+        return Character.isLetterOrDigit(c)
+            && (!Character.isLetterOrDigit(previous) || (Character.isUpperCase(c) && !Character.isUpperCase(previous)));
+    }
+
+    private static class Ids
+    {
+        private final String[] sorted;
+
+        /**
+         * The lower case version of each sorted id, used for substring matching.
+         */
+        private final String[] lowerCase;
+
+        public Ids(String[] sorted, String[] lowerCase)
+        {
+            this.sorted = sorted;
+            this.lowerCase = lowerCase;
+        }
+    }
+
+    private static class Change
+    {
+        private final String id;
+
+        private final boolean added;
+
+        public Change(String id, boolean added)
+        {
+            this.id = id;
+            this.added = added;
+        }
+    }
+}
@@ -31,12 +31,16 @@
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextOperationTarget;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.contentassist.CompletionProposal;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 import org.eclipse.jface.text.contentassist.IContentAssistProcessor;
 import org.eclipse.jface.text.contentassist.IContextInformation;
 import org.eclipse.jface.text.contentassist.IContextInformationValidator;
+import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.swt.widgets.Display;
 import org.xwiki.eclipse.core.CoreLog;
 import org.xwiki.eclipse.storage.rest.HintData;
 import org.xwiki.eclipse.storage.rest.Hints;
@@ -52,6 +56,7 @@ public class VelocityVariableContentAssistProcessor implements IContentAssistPro
 {
 	private Pattern VARIABLE_REFERENCE_PATTERN = Pattern.compile("\\$([\\p{Alnum}_]+)");
 	private PageEditor pageEditor;
+	private AutoCompleteHintsProvider hintsProvider = new AutoCompleteHintsProvider();
 
 	public VelocityVariableContentAssistProcessor(PageEditor pageEditor)
 	{
@@ -66,9 +71,9 @@ public ICompletionProposal[] computeCompletionProposals(ITextViewer viewer, int
 
 		if (variablePrefix != null) {
 
-			// let's try the server autocompletion api
+			// let's try the server autocompletion api, falling back to local proposals until its hints arrive
 			PageEditorInput pageInput = (PageEditorInput)pageEditor.getEditorInput();
-			Hints hints = pageInput.getPage().getDataManager().getAutoCompleteHints(document.get(), offset, pageInput.getPage().getSyntax());
+			Hints hints = hintsProvider.getHints(pageInput.getPage().getDataManager(), document, offset, variablePrefix, pageInput.getPage().getSyntax(), new ShowProposalsAgain(viewer, offset));
 
 			if (hints!=null) {
 				int nbchars = 0;
@@ -147,6 +152,60 @@ private Set<String> getVariables(IDocument document, int offset)
 		return variables;
 	}
 
+	/**
+	 * Shows the proposals again when the server hints arrive, if the document and the cursor did not change meanwhile.
+	 * The hints are then served from the cache.
+	 */
+	private static class ShowProposalsAgain implements Runnable
+	{
+		private final ITextViewer viewer;
+
+		private final int offset;
+
+		private final long modificationStamp;
+
+		public ShowProposalsAgain(ITextViewer viewer, int offset)
+		{
+			this.viewer = viewer;
+			this.offset = offset;
+			this.modificationStamp = getModificationStamp(viewer.getDocument());
+		}
+
+		public void run()
+		{
+			Display.getDefault().asyncExec(new Runnable()
+			{
+				public void run()
+				{
+					if (viewer.getTextWidget() == null || viewer.getTextWidget().isDisposed()) {
+						return;
+					}
+
+					if (viewer.getSelectedRange().x != offset
+						|| modificationStamp != getModificationStamp(viewer.getDocument())) {
+						return;
+					}
+
+					if (viewer instanceof ITextOperationTarget) {
+						ITextOperationTarget target = (ITextOperationTarget) viewer;
+						if (target.canDoOperation(ISourceViewer.CONTENTASSIST_PROPOSALS)) {
+							target.doOperation(ISourceViewer.CONTENTASSIST_PROPOSALS);
+						}
+					}
+				}
+			});
+		}
+
+		private static long getModificationStamp(IDocument document)
+		{
+			if (document instanceof IDocumentExtension4) {
+				return ((IDocumentExtension4) document).getModificationStamp();
+			}
+
+			return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		}
+	}
+
 	public IContextInformation[] computeContextInformation(ITextViewer viewer, int offset)
 	{
 		return null;
@@ -30,7 +30,6 @@
 import org.eclipse.jface.text.contentassist.IContentAssistProcessor;
 import org.eclipse.jface.text.contentassist.IContextInformation;
 import org.eclipse.jface.text.contentassist.IContextInformationValidator;
-import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
 import org.xwiki.eclipse.storage.DataManager;
 import org.xwiki.eclipse.ui.UIPlugin;
 import org.xwiki.eclipse.ui.editors.utils.Utils;
@@ -42,6 +41,8 @@ public class XWikiLinkContentAssistProcessor implements IContentAssistProcessor
 {
     private DataManager dataManager;
 
+    private String errorMessage;
+
     public XWikiLinkContentAssistProcessor(DataManager dataManager)
     {
         this.dataManager = dataManager;
@@ -50,21 +51,22 @@ public XWikiLinkContentAssistProcessor(DataManager dataManager)
     public ICompletionProposal[] computeCompletionProposals(ITextViewer viewer, int offset)
     {
         List<ICompletionProposal> result = new ArrayList<ICompletionProposal>();
+        errorMessage = null;
 
         IDocument document = viewer.getDocument();
 
         String linkPrefix = Utils.getPrefix(document, offset, "[>", "]");
 
         if (linkPrefix != null) {
-            List<XWikiEclipsePageSummary> pageSummaries =
-                UIPlugin.getDefault().getAllPageSummariesForDataManager(dataManager);
-
-            for (XWikiEclipsePageSummary pageSummary : pageSummaries) {
-                String pageId = pageSummary.getId();
-                if (pageId.startsWith(linkPrefix)) {
-                    result.add(new CompletionProposal(pageId, offset - linkPrefix.length(), linkPrefix.length(), pageId
-                        .length(), null, pageId, null, null));
-                }
+            PageIdIndex pageIdIndex = UIPlugin.getDefault().getPageIdIndex(dataManager);
+
+            for (String pageId : pageIdIndex.getMatchingIds(linkPrefix)) {
+                result.add(new CompletionProposal(pageId, offset - linkPrefix.length(), linkPrefix.length(), pageId
+                    .length(), null, pageId, null, null));
+            }
+
+            if (result.isEmpty() && !pageIdIndex.isBuilt()) {
+                errorMessage = "Pages are still being indexed";
             }
         }
 
@@ -97,7 +99,7 @@ public IContextInformationValidator getContextInformationValidator()
 
     public String getErrorMessage()
     {
-        return null;
+        return errorMessage;
     }
 
 }
@@ -20,8 +20,7 @@
  */
 package org.xwiki.eclipse.ui.editors.scanners;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,6 +47,10 @@
  * 
  * This partitionner is not used for syntax highlighting
  * 
+ * The scanner is incremental: it keeps the partitions of the last parsed content and, when it is asked to parse a
+ * modified version of it, only reparses from the last stable boundary before the modification, i.e., the beginning of
+ * a top level partition which follows an empty line, reusing the partitions located before it.
+ * 
  * @version $Id$
  */
 public class XWikiAdvancedPartitionScanner implements IPartitionTokenScanner
@@ -80,6 +83,9 @@ public class XWikiAdvancedPartitionScanner implements IPartitionTokenScanner
     XWIKI_STYLE, VELOCITY, VELOCITY_IF, VELOCITY_FOREACH, VELOCITY_MACRO, GROOVY, XWIKI_DEFAULT};
     
     protected List<Partition> partitions;
+    /* The content the partitions have been computed for. */
+    protected String content;
+    protected boolean incremental = true;
     protected int offset;
     protected int position;
     protected int length;
@@ -107,32 +113,220 @@ public List<Partition> getPartitions() {
     	return partitions;
     }
 
+    /**
+     * @param incremental false to always reparse the whole content
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
 	@Override
 	public void setRange(IDocument document, int offset, int length) {
-		// TODO Auto-generated method stub
-		String content = document.get();
-		parse(content, offset);
+		parse(document.get(), offset, length);
 	}
 	
 	public void parse(String content, int offset) {
-		OffsetCharStream offsetCharStream = new OffsetCharStream(
-				new InputStreamReader(new ByteArrayInputStream(content.getBytes())));
+		parse(content, offset, content.length() - offset);
+	}
+
+	protected void parse(String content, int offset, int length) {
+		try {
+			List<Partition> result = null;
+			if (incremental && this.content != null && partitions != null) {
+				try {
+					result = parseIncrementally(content);
+				} catch (ParseException e) {
+					/* Fall back to a full parse */
+				}
+			}
+			if (result == null) {
+				result = scan(content, 0);
+			}
+			this.partitions = result;
+			this.content = content;
+			this.offset = offset;
+			this.position = findFirstPartition(offset);
+			this.length = length;
+		} catch (ParseException e) {
+			this.content = null;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reparse the content starting from the last stable boundary before the first modified character, and splice the
+	 * resulting partitions after the ones of the previous content that are located before the boundary.
+	 * 
+	 * @return the partitions of the new content, or null if there is nothing to reuse.
+	 */
+	protected List<Partition> parseIncrementally(String content) throws ParseException {
+		if (content.equals(this.content)) {
+			return partitions;
+		}
+
+		int changeOffset = 0;
+		int maxChangeOffset = Math.min(content.length(), this.content.length());
+		while (changeOffset < maxChangeOffset && content.charAt(changeOffset) == this.content.charAt(changeOffset)) {
+			changeOffset++;
+		}
+
+		/*
+		 * An embedded document opened at the very beginning and never closed can't be told apart from the partition of
+		 * the whole document.
+		 */
+		String trimmedContent = this.content.trim();
+		if (trimmedContent.startsWith("(((") || trimmedContent.startsWith("(%")) {
+			return null;
+		}
+
+		Partition root = findRootPartition(partitions, this.content.length());
+		Partition boundaryPartition = findStableBoundary(content, changeOffset, root);
+		if (boundaryPartition == null) {
+			return null;
+		}
+		int boundary = boundaryPartition.getBeginOffset();
+
+		List<Partition> result = new ArrayList<Partition>();
+		for (Partition partition : partitions) {
+			if (partition.getBeginOffset() >= boundary) {
+				break;
+			}
+			if (partition != root) {
+				result.add(partition);
+			}
+		}
+
+		/* The partition of the whole document is emitted by the parser only if it reaches the end of the content */
+		List<Partition> reparsedPartitions = scan(content.substring(boundary), boundary);
+		Partition reparsedRoot = findRootPartition(reparsedPartitions, content.length());
+		if (reparsedRoot == null) {
+			/* The end of the content is malformed, let the full parse decide what to emit */
+			return null;
+		}
+		reparsedPartitions.remove(reparsedRoot);
+
+		/*
+		 * If the modification changed the block at the boundary into something else, the boundary was not stable: the
+		 * first block of a document is not parsed the same way as the following ones.
+		 */
+		if (reparsedPartitions.isEmpty()
+				|| reparsedPartitions.get(0).getType() != boundaryPartition.getType()
+				|| reparsedPartitions.get(0).getBeginOffset() != boundary) {
+			return null;
+		}
+
+		reparsedRoot.setBeginOffset(0);
+		result.add(0, reparsedRoot);
+		result.addAll(reparsedPartitions);
+
+		return result;
+	}
+
+	/**
+	 * The partition of the whole document is the last one emitted by the parser, so it is the last one among the
+	 * partitions that start at the first offset and end at the end of the content.
+	 * 
+	 * @return the partition corresponding to the whole document, or null if there is none.
+	 */
+	private Partition findRootPartition(List<Partition> partitions, int contentLength) {
+		Partition root = null;
+		for (Partition partition : partitions) {
+			if (partition.getBeginOffset() != partitions.get(0).getBeginOffset()) {
+				break;
+			}
+			if (partition.getType() == Partition.Type.DOCUMENT && partition.getEndOffset() == contentLength) {
+				root = partition;
+			}
+		}
+
+		return root;
+	}
+
+	/**
+	 * A stable boundary is the beginning of a macro or a header which is not nested in another partition (other than
+	 * the one of the whole document), and which starts at the beginning of a line that follows an empty line. The
+	 * parser is in its initial state at such a position, so what comes before does not influence the rest of the
+	 * parsing. Other partitions are not used because their offsets don't always match the beginning of their block.
+	 * 
+	 * @return the partition starting at the last stable boundary before the change offset, or null if there is none.
+	 */
+	protected Partition findStableBoundary(String content, int changeOffset, Partition root) {
+		Partition boundary = null;
+		int enclosingEndOffset = 0;
+		for (Partition partition : partitions) {
+			if (partition.getBeginOffset() >= changeOffset) {
+				break;
+			}
+			if (partition == root) {
+				continue;
+			}
+			if ((partition.getType() == Partition.Type.MACRO || partition.getType() == Partition.Type.HEADER)
+					&& partition.getBeginOffset() >= enclosingEndOffset
+					&& followsEmptyLine(content, partition.getBeginOffset())) {
+				boundary = partition;
+			}
+			enclosingEndOffset = Math.max(enclosingEndOffset, partition.getEndOffset());
+		}
+
+		return boundary;
+	}
+
+	private boolean followsEmptyLine(String content, int offset) {
+		int i = offset - 1;
+		if (i < 0 || content.charAt(i) != '\n') {
+			return false;
+		}
+		i--;
+		while (i >= 0 && (content.charAt(i) == ' ' || content.charAt(i) == '\t' || content.charAt(i) == '\r')) {
+			i--;
+		}
+
+		return i >= 0 && content.charAt(i) == '\n';
+	}
+
+	/**
+	 * Parse a text with the XWiki scanner.
+	 * 
+	 * @param text the text to parse
+	 * @param baseOffset the offset of the text in the document, added to the offsets of the partitions
+	 * @return the partitions of the text
+	 */
+	protected List<Partition> scan(String text, int baseOffset) throws ParseException {
+		OffsetCharStream offsetCharStream = new OffsetCharStream(new StringReader(text));
 
 		PartitionTokenManager regionTokenManager = new PartitionTokenManager(
 				offsetCharStream);
 
 		XWikiScanner xwikiScanner = new XWikiScanner(regionTokenManager);
 		PartitionsBuilder partitionsBuilder = new PartitionsBuilder();
-		try {
-			xwikiScanner.parse(partitionsBuilder);
-			partitions = partitionsBuilder.getPartitions();
-			this.offset = offset;
-			this.position = 0;
-			this.length = offset + length;
-		} catch (ParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		xwikiScanner.parse(partitionsBuilder);
+		List<Partition> result = partitionsBuilder.getPartitions();
+		if (baseOffset != 0) {
+			for (Partition partition : result) {
+				partition.setBeginOffset(partition.getBeginOffset() + baseOffset);
+				partition.setEndOffset(partition.getEndOffset() + baseOffset);
+			}
 		}
+
+		return result;
+	}
+
+	/**
+	 * @return the index of the first partition starting at or after the given offset.
+	 */
+	private int findFirstPartition(int offset) {
+		int low = 0;
+		int high = partitions.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (partitions.get(middle).getBeginOffset() < offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
 	}
 	
 	public void dumpPartitions(String content) {
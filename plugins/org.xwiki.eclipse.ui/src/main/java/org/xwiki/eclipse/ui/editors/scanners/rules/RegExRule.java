@@ -32,11 +32,22 @@
 
 /**
  * This rule is capable of detecting a sequence that matches against a given regular expression.
+ * <p>
+ * The regular expression is matched against the rest of the document. Characters are read from the scanner in small
+ * chunks, and more are only read while the regular expression needs them to decide, so that the cost of an evaluation
+ * depends on the length of the match and not on the length of the document. A rule can be further bounded to a maximum
+ * length or to the current line.
  * 
  * @version $Id$
  */
 public class RegExRule implements IPredicateRule
 {
+    /**
+     * The number of characters read before the first match attempt. It is doubled each time the regular expression
+     * needs more input.
+     */
+    private static final int INITIAL_LOOKAHEAD = 1;
+
     /**
      * The regular expression pattern.
      */
@@ -52,6 +63,23 @@ public class RegExRule implements IPredicateRule
      */
     private int columnConstraint;
 
+    /**
+     * The maximum number of characters a match can span.
+     */
+    private int maxLength = Integer.MAX_VALUE;
+
+    /**
+     * Whether a match is bounded to the current line.
+     */
+    private boolean singleLine;
+
+    /**
+     * The char sequence and the matcher, reused across evaluations.
+     */
+    private CharacterScannerCharSequence charSequence;
+
+    private Matcher matcher;
+
     /**
      * Constructor
      * 
@@ -63,6 +91,9 @@ public RegExRule(String patternString, IToken token)
         pattern = Pattern.compile(patternString);
         this.token = token;
         columnConstraint = -1;
+
+        charSequence = new CharacterScannerCharSequence();
+        matcher = pattern.matcher(charSequence);
     }
 
     /*
@@ -71,23 +102,28 @@ public RegExRule(String patternString, IToken token)
      */
     public IToken evaluate(ICharacterScanner scanner, boolean resume)
     {
+        /* If there is a column constraint, check that it is satisfied before reading anything. */
+        if (columnConstraint != -1 && scanner.getColumn() != columnConstraint) {
+            return Token.UNDEFINED;
+        }
+
         /* Wrap the character scanner into a char sequence to be used later for pattern matching. */
-        CharacterScannerCharSequence charSequence = new CharacterScannerCharSequence(scanner);
-
-        /* If there is a column constraint, check that it is satisfied. */
-        if (columnConstraint != -1) {
-            if (charSequence.getColumn() != columnConstraint) {
-                /*
-                 * On failure, push all the read character back into the scanner, so that other rules can process them.
-                 */
-                charSequence.unread();
-                return Token.UNDEFINED;
+        charSequence.reset(scanner, maxLength, singleLine);
+        boolean more = charSequence.fill(INITIAL_LOOKAHEAD);
+
+        boolean found;
+        for (int lookahead = INITIAL_LOOKAHEAD;; lookahead *= 2) {
+            matcher.reset(charSequence);
+            found = matcher.lookingAt();
+
+            /* Only read more characters if they could change the outcome */
+            if (!more || !(matcher.hitEnd() || matcher.requireEnd())) {
+                break;
             }
+            more = charSequence.fill(lookahead);
         }
 
-        Matcher matcher = pattern.matcher(charSequence);
-
-        if (matcher.lookingAt()) {
+        if (found) {
             /* Push all the characters that are not part of the match back to the scanner. */
             charSequence.unread(charSequence.length() - matcher.end());
             return token;
@@ -111,6 +147,27 @@ public void setColumnConstraint(int columnConstraint)
         this.columnConstraint = columnConstraint;
     }
 
+    /**
+     * Set the maximum number of characters a match can span.
+     * 
+     * @param maxLength The maximum length of a match.
+     */
+    public void setMaxLength(int maxLength)
+    {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Bound the matches to the current line. The regular expression is then matched against the rest of the line,
+     * including its delimiter, instead of the rest of the document.
+     * 
+     * @param singleLine True if a match cannot span several lines.
+     */
+    public void setSingleLine(boolean singleLine)
+    {
+        this.singleLine = singleLine;
+    }
+
     @Override
     public IToken getSuccessToken()
     {
@@ -25,6 +25,11 @@
 /**
  * This class implements a CharSequence that is backed by an ICharacterScanner. It is used as a bridge for using Java
  * regex pattern matching with IRules that use ICharacterScanners for the evaluation.
+ * <p>
+ * Characters are read from the scanner on demand, through {@link #fill(int)}, and never beyond the bounds given to
+ * {@link #reset(ICharacterScanner, int, boolean)}: a maximum length and, optionally, the end of the current line. The
+ * sequence only contains the characters read so far. An instance can be reset and reused, so that its buffer is not
+ * reallocated for each evaluation.
  * 
  * @version $Id$
  */
@@ -33,7 +38,7 @@ public class CharacterScannerCharSequence implements CharSequence
     /**
      * The buffer used for buffering characters read from scanner.
      */
-    private StringBuffer buffer;
+    private StringBuilder buffer;
 
     /**
      * The source scanner.
@@ -45,19 +50,114 @@ public class CharacterScannerCharSequence implements CharSequence
      */
     private int column;
 
+    /**
+     * The maximum number of characters to read.
+     */
+    private int maxLength;
+
+    /**
+     * Whether to stop reading after the first line delimiter.
+     */
+    private boolean stopAtLineEnd;
+
+    /**
+     * Whether nothing more can be read, because the end of the document, of the line or the maximum length has been
+     * reached.
+     */
+    private boolean complete;
+
+    /**
+     * The number of times the scanner has been read, including the read returning EOF, which also moves the scanner.
+     */
+    private int readCount;
+
+    /**
+     * Constructor. The sequence must be {@link #reset(ICharacterScanner, int, boolean) reset} before being used.
+     */
+    public CharacterScannerCharSequence()
+    {
+        buffer = new StringBuilder();
+    }
+
+    /**
+     * Constructor. All the characters up to the end of the scanner are read.
+     * 
+     * @param scanner The source scanner.
+     */
     public CharacterScannerCharSequence(ICharacterScanner scanner)
     {
-        this.scanner = scanner;
+        this();
+        reset(scanner, Integer.MAX_VALUE, false);
+        fill(Integer.MAX_VALUE);
+    }
 
-        buffer = new StringBuffer();
+    /**
+     * Start reading a new sequence from the current position of a scanner. Nothing is read until {@link #fill(int)} is
+     * called.
+     * 
+     * @param scanner The source scanner.
+     * @param maxLength The maximum number of characters to read.
+     * @param stopAtLineEnd True if reading must stop after the first line delimiter, which is part of the sequence.
+     */
+    public void reset(ICharacterScanner scanner, int maxLength, boolean stopAtLineEnd)
+    {
+        this.scanner = scanner;
+        this.maxLength = maxLength;
+        this.stopAtLineEnd = stopAtLineEnd;
 
+        buffer.setLength(0);
         column = scanner.getColumn();
+        complete = false;
+        readCount = 0;
+    }
+
+    /**
+     * Read more characters from the scanner, within the bounds of this sequence.
+     * 
+     * @param count The maximum number of characters to read.
+     * @return true if more characters could still be read afterwards.
+     */
+    public boolean fill(int count)
+    {
+        for (int i = 0; i < count && !complete; i++) {
+            if (buffer.length() >= maxLength) {
+                complete = true;
+                break;
+            }
+
+            int c = scanner.read();
+            readCount++;
+            if (c == ICharacterScanner.EOF) {
+                complete = true;
+                break;
+            }
 
-        /* Buffer all the characters */
-        int c;
-        while ((c = scanner.read()) != ICharacterScanner.EOF) {
             buffer.append((char) c);
+
+            if (stopAtLineEnd && (c == '\n' || c == '\r')) {
+                if (c == '\r') {
+                    /* Keep a \r\n delimiter whole */
+                    int next = scanner.read();
+                    if (next == '\n') {
+                        readCount++;
+                        buffer.append((char) next);
+                    } else {
+                        scanner.unread();
+                    }
+                }
+                complete = true;
+            }
         }
+
+        return !complete;
+    }
+
+    /**
+     * @return true if nothing more can be read from the scanner.
+     */
+    public boolean isComplete()
+    {
+        return complete;
     }
 
     /**
@@ -106,13 +206,18 @@ public void unread()
     /**
      * Push back characters to the scanner.
      * 
-     * @param n The number of characters to push back.
+     * @param n The number of buffered characters to push back, starting from the last one.
      */
     public void unread(int n)
     {
-        for (int i = 0; i <= n; i++) {
+        /* Also push back the EOF, if it has been read */
+        int count = n + readCount - buffer.length();
+        for (int i = 0; i < count; i++) {
             scanner.unread();
         }
+
+        readCount -= count;
+        buffer.setLength(buffer.length() - n);
     }
 
     @Override
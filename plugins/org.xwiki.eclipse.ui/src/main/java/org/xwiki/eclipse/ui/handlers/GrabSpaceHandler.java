@@ -20,7 +20,10 @@
  */
 package org.xwiki.eclipse.ui.handlers;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.commands.AbstractHandler;
@@ -29,12 +32,14 @@
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.xwiki.eclipse.core.CoreLog;
 import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
 import org.xwiki.eclipse.model.XWikiEclipseSpaceSummary;
+import org.xwiki.eclipse.storage.DataManager;
 import org.xwiki.eclipse.ui.utils.UIUtils;
 
 /**
@@ -55,33 +60,37 @@ public Object execute(ExecutionEvent event) throws ExecutionException
             protected IStatus run(final IProgressMonitor monitor)
             {
                 try {
+                    /* Group the pages to be fetched by data manager, so that each one is fetched in a single batch */
+                    Map<DataManager, List<XWikiEclipsePageSummary>> pagesToFetch =
+                        new LinkedHashMap<DataManager, List<XWikiEclipsePageSummary>>();
+
                     for (Object object : selectedObjects) {
                         if (object instanceof XWikiEclipseSpaceSummary) {
                             final XWikiEclipseSpaceSummary spaceSummary = (XWikiEclipseSpaceSummary) object;
+                            DataManager dataManager = spaceSummary.getDataManager();
 
                             List<XWikiEclipsePageSummary> pageSummaries =
-                                spaceSummary.getDataManager().getPageSummaries(spaceSummary.getWiki(),
-                                    spaceSummary.getName());
+                                dataManager.getPageSummaries(spaceSummary.getWiki(), spaceSummary.getName());
 
-                            monitor.beginTask("Fetching pages", pageSummaries.size());
+                            if (!pagesToFetch.containsKey(dataManager)) {
+                                pagesToFetch.put(dataManager, new ArrayList<XWikiEclipsePageSummary>());
+                            }
+                            pagesToFetch.get(dataManager).addAll(pageSummaries);
 
                             if (monitor.isCanceled()) {
                                 return Status.CANCEL_STATUS;
                             }
+                        }
+                    }
 
-                            for (XWikiEclipsePageSummary pageSummary : pageSummaries) {
-                                monitor.setTaskName(String.format("Fetching %s", pageSummary.getId()));
-
-                                pageSummary.getDataManager().getPage(pageSummary.getWiki(), pageSummary.getSpace(),
-                                    pageSummary.getName(), pageSummary.getLanguage());
-
-                                if (monitor.isCanceled()) {
-                                    return Status.CANCEL_STATUS;
-                                }
+                    SubMonitor progress = SubMonitor.convert(monitor, "Fetching pages", pagesToFetch.size());
 
-                                monitor.worked(1);
-                            }
+                    for (DataManager dataManager : pagesToFetch.keySet()) {
+                        dataManager.fetchPages(pagesToFetch.get(dataManager), DataManager.DEFAULT_FETCH_PARALLELISM,
+                            progress.newChild(1));
 
+                        if (monitor.isCanceled()) {
+                            return Status.CANCEL_STATUS;
                         }
                     }
                 } catch (Exception e) {
@@ -29,6 +29,8 @@
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.xwiki.eclipse.core.notification.CoreEvent;
 import org.xwiki.eclipse.core.notification.NotificationManager;
+import org.xwiki.eclipse.model.ModelObject;
+import org.xwiki.eclipse.storage.DataManager;
 import org.xwiki.eclipse.ui.utils.UIUtils;
 
 /**
@@ -43,6 +45,14 @@ public Object execute(ExecutionEvent event) throws ExecutionException
         Set selectedObjects = UIUtils.getSelectedObjectsFromSelection(selection);
         if (selectedObjects.size() == 1) {
             Object selectedObject = selectedObjects.iterator().next();
+
+            /* An explicit refresh also drops the server metadata cached by the connection */
+            if (selectedObject instanceof DataManager) {
+                ((DataManager) selectedObject).refreshServerMetadata();
+            } else if (selectedObject instanceof ModelObject) {
+                ((ModelObject) selectedObject).getDataManager().refreshServerMetadata();
+            }
+
             NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.REFRESH, this, selectedObject);
         }
 
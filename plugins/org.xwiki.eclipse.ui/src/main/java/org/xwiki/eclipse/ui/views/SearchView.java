@@ -0,0 +1,292 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.views;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.layout.GridDataFactory;
+import org.eclipse.jface.layout.GridLayoutFactory;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.DoubleClickEvent;
+import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.part.ViewPart;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.model.XWikiEclipsePage;
+import org.xwiki.eclipse.model.XWikiEclipsePageSummary;
+import org.xwiki.eclipse.storage.DataManager;
+import org.xwiki.eclipse.storage.DataManagerRegistry;
+import org.xwiki.eclipse.storage.XWikiEclipseStorageException;
+import org.xwiki.eclipse.ui.editors.PageEditor;
+import org.xwiki.eclipse.ui.editors.PageEditorInput;
+import org.xwiki.eclipse.ui.utils.UIUtils;
+
+/**
+ * A view searching the pages cached locally by all the connections, by their title, content and object property
+ * values. The search doesn't need a connection and is run as the query is typed, in a background job since the first
+ * search of a connection loads its index.
+ *
+ * @version $Id$
+ */
+public class SearchView extends ViewPart
+{
+    /*
+     * The View's ID
+     */
+    public final static String VIEW_ID = "org.xwiki.eclipse.ui.views.Search";
+
+    /**
+     * The maximum number of results for each connection.
+     */
+    private static final int MAX_RESULTS = 500;
+
+    /**
+     * The delay, in milliseconds, before a search is run, so that a search is not started for each key typed.
+     */
+    private static final long SEARCH_DELAY = 150;
+
+    private Text queryText;
+
+    private TableViewer tableViewer;
+
+    private Label statusLabel;
+
+    private SearchJob searchJob = new SearchJob();
+
+    @Override
+    public void createPartControl(Composite parent)
+    {
+        Composite composite = new Composite(parent, SWT.NONE);
+        GridLayoutFactory.fillDefaults().margins(2, 2).applyTo(composite);
+
+        queryText = new Text(composite, SWT.BORDER | SWT.SEARCH);
+        queryText.setMessage("Search the pages available offline");
+        GridDataFactory.fillDefaults().align(SWT.FILL, SWT.CENTER).grab(true, false).applyTo(queryText);
+        queryText.addModifyListener(new ModifyListener()
+        {
+            public void modifyText(ModifyEvent e)
+            {
+                search();
+            }
+        });
+
+        tableViewer = new TableViewer(composite, SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER);
+        GridDataFactory.fillDefaults().align(SWT.FILL, SWT.FILL).grab(true, true).applyTo(tableViewer.getControl());
+
+        Table table = tableViewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        TableColumn column = new TableColumn(table, SWT.LEFT);
+        column.setText("Title");
+        column.setWidth(250);
+
+        column = new TableColumn(table, SWT.LEFT);
+        column.setText("Page");
+        column.setWidth(300);
+
+        column = new TableColumn(table, SWT.LEFT);
+        column.setText("Connection");
+        column.setWidth(150);
+
+        tableViewer.setContentProvider(new ArrayContentProvider());
+        tableViewer.setLabelProvider(new PageSummaryLabelProvider());
+        tableViewer.addDoubleClickListener(new IDoubleClickListener()
+        {
+            public void doubleClick(DoubleClickEvent event)
+            {
+                Object selectedObject = ((IStructuredSelection) event.getSelection()).getFirstElement();
+                if (selectedObject instanceof XWikiEclipsePageSummary) {
+                    openPage((XWikiEclipsePageSummary) selectedObject);
+                }
+            }
+        });
+
+        statusLabel = new Label(composite, SWT.NONE);
+        GridDataFactory.fillDefaults().align(SWT.FILL, SWT.CENTER).grab(true, false).applyTo(statusLabel);
+
+        getViewSite().getActionBars().getToolBarManager().add(new Action("Rebuild Index")
+        {
+            @Override
+            public void run()
+            {
+                for (DataManager dataManager : DataManagerRegistry.getDefault().getDataManagers()) {
+                    dataManager.rebuildSearchIndex();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setFocus()
+    {
+        queryText.setFocus();
+    }
+
+    @Override
+    public void dispose()
+    {
+        searchJob.cancel();
+        super.dispose();
+    }
+
+    private void search()
+    {
+        String query = queryText.getText();
+
+        searchJob.cancel();
+        if (query.trim().length() > 0) {
+            searchJob.setQuery(query);
+            searchJob.schedule(SEARCH_DELAY);
+        } else {
+            tableViewer.setInput(new ArrayList<XWikiEclipsePageSummary>());
+            statusLabel.setText("");
+        }
+    }
+
+    /**
+     * Show the results of a search, unless the query has changed since the search was started.
+     */
+    private void showResult(final String query, final List<XWikiEclipsePageSummary> result, final long time)
+    {
+        Display.getDefault().asyncExec(new Runnable()
+        {
+            public void run()
+            {
+                if (tableViewer.getControl().isDisposed() || !query.equals(queryText.getText())) {
+                    return;
+                }
+
+                tableViewer.setInput(result);
+                statusLabel.setText(String.format("%d pages found in %d ms", result.size(), time));
+            }
+        });
+    }
+
+    private void openPage(XWikiEclipsePageSummary pageSummary)
+    {
+        try {
+            XWikiEclipsePage page =
+                pageSummary.getDataManager().getPage(pageSummary.getWiki(), pageSummary.getSpace(),
+                    pageSummary.getName(), pageSummary.getLanguage());
+            if (page == null) {
+                UIUtils.showMessageDialog(getSite().getShell(), "Error opening page",
+                    "The page is no longer available.");
+                return;
+            }
+
+            IWorkbenchPage workbenchPage = getSite().getPage();
+            workbenchPage.openEditor(new PageEditorInput(page, false), PageEditor.ID);
+        } catch (XWikiEclipseStorageException e) {
+            CoreLog.logError("Error opening page", e);
+            UIUtils.showMessageDialog(getSite().getShell(), SWT.ICON_ERROR, "Error opening page",
+                String.format("There was an error while opening the page.\n%s", e.getMessage()));
+        } catch (PartInitException e) {
+            UIUtils.showMessageDialog(getSite().getShell(), "Error opening editor",
+                "There was an error while opening the editor.");
+        }
+    }
+
+    /**
+     * The job searching the pages of all the connections.
+     */
+    private class SearchJob extends Job
+    {
+        private volatile String query;
+
+        public SearchJob()
+        {
+            super("Searching the XWiki pages");
+            setSystem(true);
+        }
+
+        public void setQuery(String query)
+        {
+            this.query = query;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor)
+        {
+            String query = this.query;
+            List<XWikiEclipsePageSummary> result = new ArrayList<XWikiEclipsePageSummary>();
+
+            long start = System.currentTimeMillis();
+            for (DataManager dataManager : DataManagerRegistry.getDefault().getDataManagers()) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+
+                try {
+                    result.addAll(dataManager.searchPages(query, MAX_RESULTS));
+                } catch (XWikiEclipseStorageException e) {
+                    CoreLog.logError(String.format("Unable to search the pages of %s", dataManager.getName()), e);
+                }
+            }
+
+            showResult(query, result, System.currentTimeMillis() - start);
+
+            return Status.OK_STATUS;
+        }
+    }
+
+    private static class PageSummaryLabelProvider extends LabelProvider implements ITableLabelProvider
+    {
+        public Image getColumnImage(Object element, int columnIndex)
+        {
+            return null;
+        }
+
+        public String getColumnText(Object element, int columnIndex)
+        {
+            XWikiEclipsePageSummary pageSummary = (XWikiEclipsePageSummary) element;
+            switch (columnIndex) {
+                case 0:
+                    return pageSummary.getTitle();
+                case 1:
+                    return pageSummary.getLanguage().equals("") ? pageSummary.getId() : String.format("%s [%s]",
+                        pageSummary.getId(), pageSummary.getLanguage());
+                default:
+                    return pageSummary.getDataManager().getName();
+            }
+        }
+    }
+}
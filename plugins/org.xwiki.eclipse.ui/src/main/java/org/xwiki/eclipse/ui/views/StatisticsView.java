@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eclipse.ui.views;
+
+import java.io.File;
+import java.util.Map;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+import org.xwiki.eclipse.core.CoreLog;
+import org.xwiki.eclipse.core.metrics.IMetric;
+import org.xwiki.eclipse.core.metrics.MetricsRegistry;
+
+/**
+ * A view displaying the metrics recorded by the {@link MetricsRegistry}: REST latencies and bytes transferred, local
+ * storage timings, cache hit ratios and event dispatch times. Durations are in milliseconds.
+ *
+ * @version $Id$
+ */
+public class StatisticsView extends ViewPart
+{
+    /*
+     * The View's ID
+     */
+    public final static String VIEW_ID = "org.xwiki.eclipse.ui.views.Statistics";
+
+    private TableViewer tableViewer;
+
+    @Override
+    public void createPartControl(Composite parent)
+    {
+        tableViewer = new TableViewer(parent, SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL);
+
+        Table table = tableViewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        TableColumn column = new TableColumn(table, SWT.LEFT);
+        column.setText("Metric");
+        column.setWidth(320);
+
+        column = new TableColumn(table, SWT.LEFT);
+        column.setText("Values");
+        column.setWidth(480);
+
+        tableViewer.setContentProvider(new ArrayContentProvider());
+        tableViewer.setLabelProvider(new MetricLabelProvider());
+
+        IToolBarManager toolBarManager = getViewSite().getActionBars().getToolBarManager();
+        toolBarManager.add(new Action("Refresh")
+        {
+            @Override
+            public void run()
+            {
+                refresh();
+            }
+        });
+        toolBarManager.add(new Action("Reset")
+        {
+            @Override
+            public void run()
+            {
+                MetricsRegistry.getDefault().reset();
+                refresh();
+            }
+        });
+        toolBarManager.add(new Action("Dump to File...")
+        {
+            @Override
+            public void run()
+            {
+                dump();
+            }
+        });
+
+        refresh();
+    }
+
+    @Override
+    public void setFocus()
+    {
+        /* The metrics keep changing in the background, show their current values */
+        refresh();
+        tableViewer.getControl().setFocus();
+    }
+
+    private void refresh()
+    {
+        tableViewer.setInput(MetricsRegistry.getDefault().getMetrics());
+    }
+
+    private void dump()
+    {
+        FileDialog fileDialog = new FileDialog(getSite().getShell(), SWT.SAVE);
+        fileDialog.setFileName("xwiki-eclipse-statistics.txt");
+        fileDialog.setOverwrite(true);
+        String path = fileDialog.open();
+        if (path == null) {
+            return;
+        }
+
+        try {
+            MetricsRegistry.getDefault().dump(new File(path));
+        } catch (Exception e) {
+            CoreLog.logError(String.format("Unable to write the statistics to %s", path), e);
+            MessageDialog.openError(getSite().getShell(), "Error",
+                String.format("Unable to write the statistics to %s\n%s", path, e));
+        }
+    }
+
+    private static class MetricLabelProvider extends LabelProvider implements ITableLabelProvider
+    {
+        public Image getColumnImage(Object element, int columnIndex)
+        {
+            return null;
+        }
+
+        public String getColumnText(Object element, int columnIndex)
+        {
+            IMetric metric = (IMetric) element;
+            if (columnIndex == 0) {
+                return metric.getName();
+            }
+
+            StringBuilder values = new StringBuilder();
+            for (Map.Entry<String, Number> value : metric.getValues().entrySet()) {
+                if (values.length() > 0) {
+                    values.append("  ");
+                }
+                values.append(value.getKey()).append('=').append(MetricsRegistry.format(value.getValue()));
+            }
+
+            return values.toString();
+        }
+    }
+}
@@ -117,8 +117,13 @@ public void run(IProgressMonitor monitor) throws InvocationTargetException, Inte
                         XWikiRestClient client =
                             new XWikiRestClient(newConnectionWizardState.getServerUrl(), newConnectionWizardState
                                 .getUserName(), newConnectionWizardState.getPassword());
-                        client.login(newConnectionWizardState.getUserName(), newConnectionWizardState.getPassword());
-                        client.logout();
+                        try {
+                            client.login(newConnectionWizardState.getUserName(),
+                                newConnectionWizardState.getPassword());
+                            client.logout();
+                        } finally {
+                            client.dispose();
+                        }
                     } catch (Exception e) {
                         throw new InvocationTargetException(e, e.getMessage());
                     } finally {
@@ -20,10 +20,12 @@
 package org.xwiki.eclipse.ui.wizards;
 
 import java.io.File;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,8 +33,8 @@
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
@@ -67,7 +69,6 @@
 import org.xwiki.eclipse.storage.utils.IdProcessor;
 import org.xwiki.eclipse.ui.UIConstants;
 import org.xwiki.eclipse.ui.UIPlugin;
-import org.xwiki.eclipse.ui.utils.XWikiEclipseSafeRunnable;
 
 /**
  * @version $Id$
@@ -192,29 +193,39 @@ public boolean performFinish()
                 @Override
                 protected IStatus run(IProgressMonitor monitor)
                 {
-
-                    monitor.beginTask("Downloading", attachments.size());
-                    if (monitor.isCanceled()) {
-                        return Status.CANCEL_STATUS;
+                    /* The selected attachments might come from different data managers */
+                    Map<DataManager, List<XWikiEclipseAttachment>> dataManagerToAttachmentsMap =
+                        new LinkedHashMap<DataManager, List<XWikiEclipseAttachment>>();
+                    for (XWikiEclipseAttachment attachment : attachments) {
+                        List<XWikiEclipseAttachment> dataManagerAttachments =
+                            dataManagerToAttachmentsMap.get(attachment.getDataManager());
+                        if (dataManagerAttachments == null) {
+                            dataManagerAttachments = new ArrayList<XWikiEclipseAttachment>();
+                            dataManagerToAttachmentsMap.put(attachment.getDataManager(), dataManagerAttachments);
+                        }
+                        dataManagerAttachments.add(attachment);
                     }
 
-                    for (XWikiEclipseAttachment attachment : attachments) {
-                        DataManager dataManager = attachment.getDataManager();
-                        monitor.setTaskName("Downloading " + attachment.getName());
-                        try {
-                            dataManager.download(dir, attachment);
-                            monitor.worked(1);
-
-                            Thread.sleep(2000);
-                        } catch (InterruptedException e) {
-                            // Do nothing
-                        } catch (XWikiEclipseStorageException e) {
-                            CoreLog.logError(String.format("Error downloading attachment %s", attachment.getName()), e);
+                    SubMonitor progress = SubMonitor.convert(monitor, "Downloading", attachments.size());
+                    try {
+                        for (Map.Entry<DataManager, List<XWikiEclipseAttachment>> entry : dataManagerToAttachmentsMap
+                            .entrySet()) {
+                            if (monitor.isCanceled()) {
+                                return Status.CANCEL_STATUS;
+                            }
+
+                            entry.getKey().downloadAttachments(dir, entry.getValue(),
+                                DataManager.DEFAULT_TRANSFER_PARALLELISM,
+                                progress.newChild(entry.getValue().size()));
                         }
+                    } catch (XWikiEclipseStorageException e) {
+                        CoreLog.logError("Error downloading attachments", e);
+                        return new Status(IStatus.ERROR, UIPlugin.PLUGIN_ID, e.getMessage(), e);
+                    } finally {
+                        monitor.done();
                     }
 
-                    monitor.done();
-                    return Status.OK_STATUS;
+                    return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
                 }
             };
             downloadJob.setUser(true);
@@ -236,39 +247,28 @@ protected IStatus run(IProgressMonitor monitor)
             {
 
                 @Override
-                protected IStatus run(final IProgressMonitor monitor)
+                protected IStatus run(IProgressMonitor monitor)
                 {
+                    IStatus status = Status.OK_STATUS;
+                    try {
+                        List<URL> fileUrls = new ArrayList<URL>();
+                        for (String path : filesToBeUploaded) {
+                            fileUrls.add(new File(path).toURI().toURL());
+                        }
 
-                    monitor.beginTask("Uploading", filesToBeUploaded.size());
-                    if (monitor.isCanceled()) {
-                        return Status.CANCEL_STATUS;
-                    }
-
-                    for (int i = 0; i < filesToBeUploaded.size(); i++) {
-
-                        final int idx = i;
-                        final DataManager dataManager = pageSummaryOfUploadingAttachment.getDataManager();
-                        monitor.setTaskName("Uploading Attachment: " + fileNames[i]);
-                        SafeRunner.run(new XWikiEclipseSafeRunnable()
-                        {
-
-                            @Override
-                            public void run() throws Exception
-                            {
-                                String path = filesToBeUploaded.get(idx);
-                                dataManager.uploadAttachment(pageSummaryOfUploadingAttachment, new File(path).toURI()
-                                    .toURL());
-                                monitor.worked(1);
-                                Thread.sleep(2000);
-                            }
-                        });
+                        pageSummaryOfUploadingAttachment.getDataManager().uploadAttachments(
+                            pageSummaryOfUploadingAttachment, fileUrls, DataManager.DEFAULT_TRANSFER_PARALLELISM,
+                            monitor);
+                    } catch (Exception e) {
+                        CoreLog.logError("Error uploading attachments", e);
+                        status = new Status(IStatus.ERROR, UIPlugin.PLUGIN_ID, e.getMessage(), e);
                     }
 
-                    monitor.done();
+                    /* Some of the attachments might have been uploaded even if others failed */
                     NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.ATTACHMENT_UPLOADED, this,
                         pageSummaryOfUploadingAttachment);
 
-                    return Status.OK_STATUS;
+                    return monitor.isCanceled() ? Status.CANCEL_STATUS : status;
                 }
             };
             uploadJob.setUser(true);
@@ -284,42 +284,51 @@ public void run() throws Exception
                 {
 
                     @Override
-                    protected IStatus run(final IProgressMonitor monitor)
+                    protected IStatus run(IProgressMonitor monitor)
                     {
+                        IStatus status = Status.OK_STATUS;
 
-                        monitor.beginTask("Updating", attachmentUpdateMap.size());
-                        if (monitor.isCanceled()) {
-                            return Status.CANCEL_STATUS;
-                        }
-
-                        for (final XWikiEclipseAttachment attachment : attachmentUpdateMap.keySet()) {
-
-                            final DataManager dataManager = attachment.getDataManager();
-                            monitor.setTaskName("Updating Attachment: " + attachment.getName());
+                        SubMonitor progress = SubMonitor.convert(monitor, "Updating", attachmentUpdateMap.size());
+                        try {
+                            /* The selected attachments might come from different data managers */
+                            Map<DataManager, Map<XWikiEclipseAttachment, URL>> dataManagerToAttachmentsMap =
+                                new LinkedHashMap<DataManager, Map<XWikiEclipseAttachment, URL>>();
+                            for (XWikiEclipseAttachment attachment : attachmentUpdateMap.keySet()) {
+                                String filePath = attachmentUpdateMap.get(attachment);
+                                if (filePath != null && new File(filePath).exists()) {
+                                    Map<XWikiEclipseAttachment, URL> dataManagerAttachments =
+                                        dataManagerToAttachmentsMap.get(attachment.getDataManager());
+                                    if (dataManagerAttachments == null) {
+                                        dataManagerAttachments = new LinkedHashMap<XWikiEclipseAttachment, URL>();
+                                        dataManagerToAttachmentsMap.put(attachment.getDataManager(),
+                                            dataManagerAttachments);
+                                    }
+                                    dataManagerAttachments.put(attachment, new File(filePath).toURI().toURL());
+                                }
+                            }
 
-                            final String filePath = attachmentUpdateMap.get(attachment);
-                            if (filePath != null && new File(filePath).exists()) {
-                                SafeRunner.run(new XWikiEclipseSafeRunnable()
-                                {
+                            for (Map.Entry<DataManager, Map<XWikiEclipseAttachment, URL>> entry :
+                                dataManagerToAttachmentsMap.entrySet()) {
+                                if (monitor.isCanceled()) {
+                                    break;
+                                }
 
-                                    @Override
-                                    public void run() throws Exception
-                                    {
-                                        String path = filePath;
-                                        dataManager.updateAttachment(attachment, new File(path).toURI().toURL());
-                                        monitor.worked(1);
-                                        Thread.sleep(2000);
-                                    }
-                                });
+                                entry.getKey().updateAttachments(entry.getValue(),
+                                    DataManager.DEFAULT_TRANSFER_PARALLELISM,
+                                    progress.newChild(entry.getValue().size()));
                             }
+                        } catch (Exception e) {
+                            CoreLog.logError("Error updating attachments", e);
+                            status = new Status(IStatus.ERROR, UIPlugin.PLUGIN_ID, e.getMessage(), e);
+                        } finally {
+                            monitor.done();
                         }
 
-                        monitor.done();
                         /* return a list of pages that have updated attachment */
                         NotificationManager.getDefault().fireCoreEvent(CoreEvent.Type.ATTACHMENT_UPDATED, this,
                             pageAttachmentsMap);
 
-                        return Status.OK_STATUS;
+                        return monitor.isCanceled() ? Status.CANCEL_STATUS : status;
                     }
                 };
             updateJob.setUser(true);